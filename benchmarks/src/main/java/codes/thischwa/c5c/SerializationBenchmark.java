@@ -0,0 +1,108 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.requestcycle.FilemanagerCapability.Capability;
+import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.requestcycle.response.mode.FileInfo;
+import codes.thischwa.c5c.requestcycle.response.mode.FolderInfo;
+
+/**
+ * Measures the serialization of the {@link FolderInfo} and {@link FileInfo} responses to JSON. The state is held per thread, because
+ * the dates are formatted with the {@link java.util.Locale} of the request cycle of the thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+	private static final Capability[] capabilities = { Capability.select, Capability.delete, Capability.rename, Capability.download };
+
+	@Param({ "100", "10000" })
+	private int entries;
+
+	private List<FileInfo> fileInfos;
+
+	private FileInfo fileInfo;
+
+	@Setup
+	public void setUp() {
+		// a request without any header, so the default locale is used
+		HttpServletRequest req = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return null;
+					}
+				});
+		RequestData.beginRequestWithoutContext(req);
+
+		fileInfos = new ArrayList<>(entries);
+		Date modified = new Date(1400000000000L);
+		for(int i = 0; i < entries; i++) {
+			FileProperties fp = (i % 10 == 0) ? new FileProperties("folder-" + i, false, modified) : new FileProperties(String.format(
+					"file-%d.png", i), false, 320, 200, 20000 + i, modified);
+			fileInfos.add(buildFileInfo(fp));
+		}
+		fileInfo = fileInfos.get(1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		RequestData.endRequest();
+	}
+
+	private static FileInfo buildFileInfo(FileProperties fp) {
+		FileInfo fi = new FileInfo("/filemanager/userfiles/folder/", fp.isDir(), false);
+		fi.setFileProperties(fp);
+		fi.setCapabilities(capabilities);
+		fi.setPreviewPath((fp.isDir()) ? "/filemanager/images/fileicons/_Open.png"
+				: "/context/filemanager/connectors/java?mode=preview&path=%2Ffilemanager%2Fuserfiles%2Ffolder%2F" + fp.getName());
+		return fi;
+	}
+
+	@Benchmark
+	public String folderInfo() {
+		return new FolderInfo(fileInfos).toString();
+	}
+
+	@Benchmark
+	public String fileInfo() {
+		return fileInfo.toString();
+	}
+}
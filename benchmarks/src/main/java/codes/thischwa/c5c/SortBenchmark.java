@@ -0,0 +1,82 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.filemanager.Options.FILE_SORTING;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+
+/**
+ * Measures {@link GenericDispatcher#sortFileProperties(List, FILE_SORTING)}. The properties are copied for each call, because the
+ * list is sorted in place, so the copy is part of the result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SortBenchmark {
+
+	@Param({ "100", "10000" })
+	private int entries;
+
+	@Param({ "DEFAULT", "NAME_ASC", "MODIFIED_DESC" })
+	private FILE_SORTING sorting;
+
+	private List<FileProperties> props;
+
+	private GenericDispatcher dispatcher;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		props = new ArrayList<>(entries);
+		for(int i = 0; i < entries; i++) {
+			Date modified = new Date(1400000000000L + random.nextInt(Integer.MAX_VALUE));
+			String name = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+			// every 10th entry is a folder
+			props.add((i % 10 == 0) ? new FileProperties(name, false, modified) : new FileProperties(name.concat(".txt"), false,
+					random.nextInt(1000000), modified));
+		}
+		dispatcher = new GenericDispatcher(null, null, null, null, null, null) {
+			@Override
+			GenericResponse doRequest() {
+				return null;
+			}
+		};
+	}
+
+	@Benchmark
+	public List<FileProperties> sort() {
+		List<FileProperties> copy = new ArrayList<>(props);
+		dispatcher.sortFileProperties(copy, sorting);
+		return copy;
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.exception.C5CException;
+
+/**
+ * Measures {@link LocalConnector#getFolder(String, boolean)} of a folder with a synthetic content: Every 10th entry is a folder, the
+ * files have several extensions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalConnectorBenchmark {
+
+	private static final String[] extensions = { "txt", "pdf", "docx", "html", "zip", "mp4" };
+
+	@Param({ "100", "10000", "100000" })
+	private int entries;
+
+	private Path folder;
+
+	private LocalConnector connector;
+
+	/**
+	 * The names are checked like by the default configuration, but without a request.
+	 */
+	static class BenchmarkConnector extends LocalConnector {
+		private final Set<String> disallowedFiles = new HashSet<>(Arrays.asList(".htaccess", "web.config"));
+		private final Set<String> disallowedDirs = new HashSet<>(Arrays.asList("_thumbs", ".CDN_ACCESS_LOGS", "cloudservers"));
+
+		@Override
+		protected boolean checkFilename(String name) {
+			return !disallowedFiles.contains(name);
+		}
+
+		@Override
+		protected boolean checkFolderName(String name) {
+			return !disallowedDirs.contains(name);
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		folder = Files.createTempDirectory("c5c-benchmark");
+		byte[] content = new byte[128];
+		for(int i = 0; i < entries; i++) {
+			if(i % 10 == 0)
+				Files.createDirectory(folder.resolve("folder-" + i));
+			else
+				Files.write(folder.resolve(String.format("file-%d.%s", i, extensions[i % extensions.length])), content);
+		}
+		connector = new BenchmarkConnector();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(folder.toFile());
+	}
+
+	@Benchmark
+	public Set<FileProperties> getFolder() throws C5CException {
+		return connector.getFolder(folder.toString(), false);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codes.thischwa.c5c.GenericConnector.StreamContent;
+import codes.thischwa.c5c.exception.C5CException;
+
+/**
+ * Measures the resizing of JPEG images to the default thumbnail dimension: {@link LocalConnector#resize(java.io.InputStream, String,
+ * Dimension)} decodes the whole image, {@link LocalConnector#buildThumbnail(String, Dimension)} decodes with subsampling.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ResizeBenchmark {
+
+	@Param({ "640x480", "1920x1080", "6000x4000" })
+	private String size;
+
+	private Dimension thumbnailDim = new Dimension(64, 64);
+
+	private byte[] jpeg;
+
+	private Path file;
+
+	private LocalConnector connector = new LocalConnector();
+
+	@Setup
+	public void setUp() throws IOException {
+		String[] parts = size.split("x");
+		int width = Integer.parseInt(parts[0]);
+		int height = Integer.parseInt(parts[1]);
+		// a gradient with noise, so the encoder can't compress it too well
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(42);
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				int r = (x * 255 / width + random.nextInt(32)) & 0xFF;
+				int g = (y * 255 / height + random.nextInt(32)) & 0xFF;
+				int b = random.nextInt(256);
+				img.setRGB(x, y, (r << 16) | (g << 8) | b);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(img, "jpg", out);
+		jpeg = out.toByteArray();
+		file = Files.createTempFile("c5c-benchmark", ".jpg");
+		Files.write(file, jpeg);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public StreamContent resize() throws IOException {
+		return connector.resize(new ByteArrayInputStream(jpeg), "jpg", thumbnailDim);
+	}
+
+	@Benchmark
+	public StreamContent thumbnail() throws C5CException {
+		return connector.buildThumbnail(file.toString(), thumbnailDim);
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.load;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Generates a reproducible corpus of folders with images and text files: The same settings of the {@link Scenario} always build the
+ * same names and contents. The images are gradients with noise, so they are compressed like photos and not like blank images.
+ */
+public class CorpusGenerator {
+
+	private static final String[] words = { "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+			"eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua", "filemanager", "connector", "folder",
+			"thumbnail", "preview", "upload" };
+
+	private final Scenario scenario;
+
+	/**
+	 * Holds the url paths of the generated corpus, as they are requested from the filemanager.
+	 */
+	public static class Corpus {
+		private final List<String> folders = new ArrayList<>();
+		private final List<String> images = new ArrayList<>();
+		private final List<String> texts = new ArrayList<>();
+		private final String uploadFolder;
+
+		Corpus(String uploadFolder) {
+			this.uploadFolder = uploadFolder;
+		}
+
+		public List<String> getFolders() {
+			return Collections.unmodifiableList(folders);
+		}
+
+		public List<String> getImages() {
+			return Collections.unmodifiableList(images);
+		}
+
+		public List<String> getTexts() {
+			return Collections.unmodifiableList(texts);
+		}
+
+		/**
+		 * @return the url path of the folder, into which the mode <code>add</code> uploads
+		 */
+		public String getUploadFolder() {
+			return uploadFolder;
+		}
+	}
+
+	public CorpusGenerator(Scenario scenario) {
+		this.scenario = scenario;
+	}
+
+	/**
+	 * Generates the corpus. An existing corpus will be deleted before.
+	 * 
+	 * @param dir
+	 *            the directory of the corpus, which has to be reachable by the 'urlPath'
+	 * @param urlPath
+	 *            the url path of 'dir', must end with '/'
+	 * @return the url paths of the generated corpus
+	 * @throws IOException
+	 *             if the corpus couldn't be written
+	 */
+	public Corpus generate(Path dir, String urlPath) throws IOException {
+		if(Files.exists(dir))
+			FileUtils.deleteDirectory(dir.toFile());
+		Files.createDirectories(dir.resolve("uploads"));
+		Corpus corpus = new Corpus(urlPath + "uploads/");
+		Random random = new Random(scenario.getSeed());
+		List<Dimension> imageSizes = scenario.getImageSizes();
+		int imageCount = 0;
+		for(int f = 0; f < scenario.getFolders(); f++) {
+			String folderName = String.format("folder-%03d", f);
+			Path folder = Files.createDirectory(dir.resolve(folderName));
+			String folderUrlPath = urlPath + folderName + "/";
+			corpus.folders.add(folderUrlPath);
+			for(int i = 0; i < scenario.getImages(); i++) {
+				Dimension dim = imageSizes.get(imageCount++ % imageSizes.size());
+				String name = String.format("image-%03d-%dx%d.jpg", i, dim.width, dim.height);
+				writeImage(folder.resolve(name), dim, random);
+				corpus.images.add(folderUrlPath + name);
+			}
+			for(int i = 0; i < scenario.getTexts(); i++) {
+				String name = String.format("text-%03d.txt", i);
+				int size = scenario.getTextSize() / 2 + random.nextInt(scenario.getTextSize() + 1);
+				Files.write(folder.resolve(name), buildText(size, random));
+				corpus.texts.add(folderUrlPath + name);
+			}
+		}
+		return corpus;
+	}
+
+	private static void writeImage(Path file, Dimension dim, Random random) throws IOException {
+		BufferedImage img = new BufferedImage(dim.width, dim.height, BufferedImage.TYPE_INT_RGB);
+		int base = random.nextInt(256);
+		for(int y = 0; y < dim.height; y++) {
+			for(int x = 0; x < dim.width; x++) {
+				int r = (base + x * 255 / dim.width + random.nextInt(32)) & 0xFF;
+				int g = (base + y * 255 / dim.height + random.nextInt(32)) & 0xFF;
+				int b = random.nextInt(256);
+				img.setRGB(x, y, (r << 16) | (g << 8) | b);
+			}
+		}
+		try (OutputStream out = Files.newOutputStream(file)) {
+			ImageIO.write(img, "jpg", out);
+		}
+	}
+
+	/**
+	 * Builds a text of random words with the desired size.
+	 */
+	static byte[] buildText(int size, Random random) {
+		StringBuilder sb = new StringBuilder(size + 16);
+		int lineLength = 0;
+		while(sb.length() < size) {
+			String word = words[random.nextInt(words.length)];
+			sb.append(word);
+			lineLength += word.length() + 1;
+			if(lineLength > 72) {
+				sb.append('\n');
+				lineLength = 0;
+			} else {
+				sb.append(' ');
+			}
+		}
+		sb.setLength(size);
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.load;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of the requests of one mode. Each client has its own recorders, so they aren't synchronized. All
+ * latencies are kept, because the percentiles are calculated exactly after the merge of the recorders.
+ */
+class LatencyRecorder {
+
+	private long[] latencies = new long[1024];
+
+	private int count = 0;
+
+	private int errors = 0;
+
+	/**
+	 * @param nanos
+	 *            the latency of a successful request in ns
+	 */
+	void record(long nanos) {
+		if(count == latencies.length)
+			latencies = Arrays.copyOf(latencies, count * 2);
+		latencies[count++] = nanos;
+	}
+
+	void recordError() {
+		errors++;
+	}
+
+	void merge(LatencyRecorder other) {
+		if(count + other.count > latencies.length)
+			latencies = Arrays.copyOf(latencies, count + other.count);
+		System.arraycopy(other.latencies, 0, latencies, count, other.count);
+		count += other.count;
+		errors += other.errors;
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	int getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Sorts the latencies, it has to be called before {@link #getPercentile(double)} and {@link #getMax()}.
+	 */
+	void sort() {
+		Arrays.sort(latencies, 0, count);
+	}
+
+	/**
+	 * @param percentile
+	 *            the percentile, e.g. 99.9
+	 * @return the latency of the percentile in ns by the nearest-rank method, or 0 if nothing was recorded
+	 */
+	long getPercentile(double percentile) {
+		if(count == 0)
+			return 0;
+		int rank = (int) Math.ceil(percentile / 100.0 * count);
+		return latencies[Math.min(Math.max(rank, 1), count) - 1];
+	}
+
+	long getMax() {
+		return (count == 0) ? 0 : latencies[count - 1];
+	}
+
+	double getMean() {
+		if(count == 0)
+			return 0;
+		double sum = 0;
+		for(int i = 0; i < count; i++)
+			sum += latencies[i];
+		return sum / count;
+	}
+}
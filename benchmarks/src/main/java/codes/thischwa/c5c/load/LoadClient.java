@@ -0,0 +1,234 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.load.CorpusGenerator.Corpus;
+
+/**
+ * A client, which sends requests to the connector until the end of the run. The modes are chosen randomly by the weights of the
+ * {@link Scenario}, the files and folders are chosen randomly from the {@link Corpus}. Each client has its own seed, so a run is
+ * reproducible apart from the timing.<br/>
+ * A request fails, if the status isn't 200 or if the JSON response contains an error code.
+ */
+class LoadClient implements Runnable {
+
+	private static final Pattern errorCodePattern = Pattern.compile("\"Code\"\\s*:\\s*(-?\\d+)");
+
+	private static final String boundary = "----c5c-load-boundary";
+
+	private final String connectorUrl;
+
+	private final Scenario scenario;
+
+	private final Corpus corpus;
+
+	private final int id;
+
+	private final long measureStart;
+
+	private final long end;
+
+	private final Random random;
+
+	private final byte[] uploadContent;
+
+	private final Map<FilemanagerAction, LatencyRecorder> recorders = new EnumMap<>(FilemanagerAction.class);
+
+	private int uploads = 0;
+
+	/**
+	 * @param connectorUrl
+	 *            the url of the connector servlet
+	 * @param scenario
+	 *            the scenario to run
+	 * @param corpus
+	 *            the generated corpus
+	 * @param id
+	 *            the index of the client, it's part of the seed and of the names of the uploaded files
+	 * @param measureStart
+	 *            the start of the measurement by {@link System#nanoTime()}, the requests before are the warmup
+	 * @param end
+	 *            the end of the run by {@link System#nanoTime()}
+	 */
+	LoadClient(String connectorUrl, Scenario scenario, Corpus corpus, int id, long measureStart, long end) {
+		this.connectorUrl = connectorUrl;
+		this.scenario = scenario;
+		this.corpus = corpus;
+		this.id = id;
+		this.measureStart = measureStart;
+		this.end = end;
+		this.random = new Random(scenario.getSeed() + id);
+		this.uploadContent = CorpusGenerator.buildText(scenario.getUploadSize(), random);
+		for(FilemanagerAction mode : scenario.getMix().keySet())
+			recorders.put(mode, new LatencyRecorder());
+	}
+
+	static boolean isSupported(FilemanagerAction mode) {
+		switch(mode) {
+			case FOLDER:
+			case INFO:
+			case THUMBNAIL:
+			case PREVIEW:
+			case DOWNLOAD:
+			case UPLOAD:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	@Override
+	public void run() {
+		long now = System.nanoTime();
+		while(now < end) {
+			FilemanagerAction mode = scenario.chooseMode(random.nextInt(scenario.getTotalWeight()));
+			boolean success;
+			try {
+				success = send(mode);
+			} catch (IOException e) {
+				success = false;
+			}
+			long finished = System.nanoTime();
+			if(now >= measureStart && finished <= end) {
+				if(success)
+					recorders.get(mode).record(finished - now);
+				else
+					recorders.get(mode).recordError();
+			}
+			if(scenario.getThinkTime() > 0) {
+				try {
+					Thread.sleep(scenario.getThinkTime());
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			now = System.nanoTime();
+		}
+	}
+
+	Map<FilemanagerAction, LatencyRecorder> getRecorders() {
+		return recorders;
+	}
+
+	private boolean send(FilemanagerAction mode) throws IOException {
+		HttpURLConnection conn;
+		switch(mode) {
+			case FOLDER:
+				conn = get(mode, choose(corpus.getFolders()), "&getsize=false");
+				break;
+			case INFO:
+				conn = get(mode, choose((random.nextBoolean()) ? corpus.getImages() : corpus.getTexts()), "&getsize=false");
+				break;
+			case THUMBNAIL:
+			case PREVIEW:
+				conn = get(mode, choose(corpus.getImages()), "");
+				break;
+			case DOWNLOAD:
+				conn = get(mode, choose((random.nextBoolean()) ? corpus.getImages() : corpus.getTexts()), "");
+				break;
+			case UPLOAD:
+				conn = upload(String.format("upload-%d-%d.txt", id, uploads++));
+				break;
+			default:
+				throw new IllegalArgumentException(String.format("Mode isn't supported: %s", mode.getParameterName()));
+		}
+		// the body is read completely and the connection isn't disconnected, so it can be kept alive
+		int status = conn.getResponseCode();
+		InputStream in = (status < 400) ? conn.getInputStream() : conn.getErrorStream();
+		byte[] body;
+		if(in == null) {
+			body = new byte[0];
+		} else {
+			try {
+				body = IOUtils.toByteArray(in);
+			} finally {
+				in.close();
+			}
+		}
+		return status == 200 && !hasErrorCode(conn.getContentType(), body);
+	}
+
+	private String choose(List<String> urlPaths) {
+		return urlPaths.get(random.nextInt(urlPaths.size()));
+	}
+
+	private HttpURLConnection get(FilemanagerAction mode, String urlPath, String additionalParams) throws IOException {
+		String url = String.format("%s?mode=%s&path=%s%s", connectorUrl, mode.getParameterName(), encode(urlPath), additionalParams);
+		return (HttpURLConnection) new URL(url).openConnection();
+	}
+
+	/**
+	 * Uploads a file like the upload form of the filemanager.
+	 */
+	private HttpURLConnection upload(String name) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) new URL(connectorUrl).openConnection();
+		conn.setRequestMethod("POST");
+		conn.setDoOutput(true);
+		conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+		StringBuilder head = new StringBuilder();
+		appendField(head, "mode", FilemanagerAction.UPLOAD.getParameterName());
+		appendField(head, "currentpath", corpus.getUploadFolder());
+		head.append("--").append(boundary).append("\r\n");
+		head.append("Content-Disposition: form-data; name=\"newfile\"; filename=\"").append(name).append("\"\r\n");
+		head.append("Content-Type: text/plain\r\n\r\n");
+		byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] tailBytes = String.format("\r\n--%s--\r\n", boundary).getBytes(StandardCharsets.UTF_8);
+		conn.setFixedLengthStreamingMode(headBytes.length + uploadContent.length + tailBytes.length);
+		try (OutputStream out = conn.getOutputStream()) {
+			out.write(headBytes);
+			out.write(uploadContent);
+			out.write(tailBytes);
+		}
+		return conn;
+	}
+
+	private static void appendField(StringBuilder sb, String name, String value) {
+		sb.append("--").append(boundary).append("\r\n");
+		sb.append("Content-Disposition: form-data; name=\"").append(name).append("\"\r\n\r\n");
+		sb.append(value).append("\r\n");
+	}
+
+	/**
+	 * Checks the error code of a JSON response, the response of an upload is JSON wrapped by HTML.
+	 */
+	private static boolean hasErrorCode(String contentType, byte[] body) {
+		if(contentType == null || !(contentType.startsWith("application/json") || contentType.startsWith("text/html")))
+			return false;
+		Matcher matcher = errorCodePattern.matcher(new String(body, StandardCharsets.UTF_8));
+		return matcher.find() && !"0".equals(matcher.group(1));
+	}
+
+	private static String encode(String urlPath) {
+		try {
+			return URLEncoder.encode(urlPath, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.load;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.ServletContext;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.testing.ServletTester;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import codes.thischwa.c5c.ConnectorServlet;
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.load.CorpusGenerator.Corpus;
+
+/**
+ * An end-to-end load harness: It boots the {@link ConnectorServlet} in an embedded Jetty like the request tests, generates the
+ * corpus of a {@link Scenario} and drives the traffic of the scenario by concurrent {@link LoadClient}s over HTTP. At the end the
+ * throughput and the latency percentiles of each mode and the heap and CPU use of the JVM are reported.<br/>
+ * Usage: <code>java -cp target/benchmarks.jar codes.thischwa.c5c.load.LoadHarness &lt;scenario file&gt; [work directory]</code><br/>
+ * The work directory is the resource base of the servlet context, the corpus is generated into
+ * <code>filemanager/userfiles/corpus</code> inside. It defaults to a new temporary directory, which is deleted afterwards.
+ */
+public class LoadHarness {
+
+	private static final String servlet_path = "/filemanager/connectors/java";
+
+	private static final String corpus_url_path = "/filemanager/userfiles/corpus/";
+
+	private ResourceSampler sampler;
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1 || args.length > 2) {
+			System.err.println("Usage: LoadHarness <scenario file> [work directory]");
+			System.exit(1);
+		}
+		Scenario scenario = Scenario.read(Paths.get(args[0]));
+		boolean tempWorkDir = args.length == 1;
+		Path workDir = (tempWorkDir) ? Files.createTempDirectory("c5c-load") : Paths.get(args[1]).toAbsolutePath();
+		try {
+			new LoadHarness().run(scenario, workDir, System.out);
+		} finally {
+			if(tempWorkDir)
+				FileUtils.deleteQuietly(workDir.toFile());
+		}
+	}
+
+	/**
+	 * Runs a scenario and prints the report.
+	 * 
+	 * @param scenario
+	 *            the scenario to run
+	 * @param workDir
+	 *            the resource base of the servlet context
+	 * @param out
+	 *            the stream for the progress and the report
+	 * @throws Exception
+	 *             if the server couldn't be started or if a client thread was interrupted
+	 */
+	public void run(Scenario scenario, Path workDir, PrintStream out) throws Exception {
+		out.printf("Generating the corpus in %s ...%n", workDir);
+		Path tempDir = Files.createDirectories(workDir.resolve("tmp"));
+		Corpus corpus = new CorpusGenerator(scenario).generate(workDir.resolve("filemanager/userfiles/corpus"), corpus_url_path);
+		out.printf("Corpus: %d folders, %d images, %d text files%n", corpus.getFolders().size(), corpus.getImages().size(), corpus
+				.getTexts().size());
+
+		ServletTester servletTester = new ServletTester();
+		servletTester.setResourceBase(workDir.toString());
+		servletTester.getContext().setAttribute(ServletContext.TEMPDIR, tempDir.toFile());
+		ServletHolder holder = servletTester.addServlet(ConnectorServlet.class, servlet_path + "/*");
+		// the annotations aren't scanned by the tester, so the multipart config of the servlet has to be set explicitly
+		holder.getRegistration().setMultipartConfig(new MultipartConfigElement(tempDir.toString()));
+		// enough threads to serve each client without queuing
+		servletTester.getContext().getServer().setThreadPool(new QueuedThreadPool(Math.max(scenario.getClients() * 2, 32)));
+		String baseUrl = servletTester.createSocketConnector(true);
+		servletTester.start();
+		try {
+			List<LoadClient> clients = runClients(scenario, corpus, baseUrl + servlet_path, out);
+			report(scenario, clients, out);
+		} finally {
+			servletTester.stop();
+		}
+	}
+
+	private List<LoadClient> runClients(Scenario scenario, Corpus corpus, String connectorUrl, PrintStream out)
+			throws InterruptedException {
+		long start = System.nanoTime();
+		long measureStart = start + TimeUnit.SECONDS.toNanos(scenario.getWarmup());
+		long end = measureStart + TimeUnit.SECONDS.toNanos(scenario.getDuration());
+		List<LoadClient> clients = new ArrayList<>(scenario.getClients());
+		List<Thread> threads = new ArrayList<>(scenario.getClients());
+		for(int i = 0; i < scenario.getClients(); i++) {
+			LoadClient client = new LoadClient(connectorUrl, scenario, corpus, i, measureStart, end);
+			clients.add(client);
+			Thread thread = new Thread(client, "c5c-load-client-" + i);
+			threads.add(thread);
+			thread.start();
+		}
+		out.printf("%d clients started, warmup %d s, measurement %d s%n", clients.size(), scenario.getWarmup(), scenario.getDuration());
+
+		TimeUnit.NANOSECONDS.sleep(measureStart - System.nanoTime());
+		sampler = new ResourceSampler(250);
+		Thread samplerThread = new Thread(sampler, "c5c-load-sampler");
+		samplerThread.setDaemon(true);
+		samplerThread.start();
+		for(Thread thread : threads)
+			thread.join();
+		sampler.stop();
+		samplerThread.interrupt();
+		samplerThread.join();
+		return clients;
+	}
+
+	private void report(Scenario scenario, List<LoadClient> clients, PrintStream out) {
+		Map<FilemanagerAction, LatencyRecorder> merged = new EnumMap<>(FilemanagerAction.class);
+		LatencyRecorder total = new LatencyRecorder();
+		for(FilemanagerAction mode : scenario.getMix().keySet()) {
+			LatencyRecorder recorder = new LatencyRecorder();
+			for(LoadClient client : clients)
+				recorder.merge(client.getRecorders().get(mode));
+			total.merge(recorder);
+			recorder.sort();
+			merged.put(mode, recorder);
+		}
+		total.sort();
+
+		double seconds = scenario.getDuration();
+		out.println();
+		out.printf("%-12s %9s %7s %10s %9s %9s %9s %9s %9s%n", "mode", "requests", "errors", "req/s", "mean ms", "p50 ms", "p99 ms",
+				"p999 ms", "max ms");
+		for(Map.Entry<FilemanagerAction, LatencyRecorder> entry : merged.entrySet())
+			printRow(out, entry.getKey().getParameterName(), entry.getValue(), seconds);
+		printRow(out, "total", total, seconds);
+
+		out.println();
+		out.printf("heap: avg %.1f MB, max %.1f MB%n", toMB(sampler.getHeapAvg()), toMB(sampler.getHeapMax()));
+		if(sampler.getCpuAvg() < 0)
+			out.println("cpu: not available");
+		else
+			out.printf("cpu: avg %.1f %%, max %.1f %% (%d cores, server and clients)%n", sampler.getCpuAvg() * 100,
+					sampler.getCpuMax() * 100, Runtime.getRuntime().availableProcessors());
+		out.printf("gc: %d collections, %d ms%n", sampler.getGcCount(), sampler.getGcTime());
+	}
+
+	private static void printRow(PrintStream out, String name, LatencyRecorder recorder, double seconds) {
+		out.printf("%-12s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, recorder.getCount(), recorder.getErrors(),
+				recorder.getCount() / seconds, toMillis(recorder.getMean()), toMillis(recorder.getPercentile(50)),
+				toMillis(recorder.getPercentile(99)), toMillis(recorder.getPercentile(99.9)), toMillis(recorder.getMax()));
+	}
+
+	private static double toMillis(double nanos) {
+		return nanos / 1000000.0;
+	}
+
+	private static double toMB(long bytes) {
+		return bytes / (1024.0 * 1024.0);
+	}
+}
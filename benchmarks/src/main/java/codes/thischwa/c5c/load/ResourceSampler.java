@@ -0,0 +1,148 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Samples the heap and the CPU use of the JVM periodically. The server and the clients run in the same JVM, so both are included.
+ * The CPU load is just available, if the JVM provides <code>com.sun.management.OperatingSystemMXBean</code>, otherwise it's
+ * reported as -1.
+ */
+class ResourceSampler implements Runnable {
+
+	private final long interval;
+
+	private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+
+	private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+
+	private volatile boolean running = true;
+
+	private int samples = 0;
+
+	private long heapSum = 0;
+
+	private long heapMax = 0;
+
+	private double cpuSum = 0;
+
+	private double cpuMax = -1;
+
+	private int cpuSamples = 0;
+
+	private long gcCountStart;
+
+	private long gcTimeStart;
+
+	private long gcCount;
+
+	private long gcTime;
+
+	/**
+	 * @param interval
+	 *            the interval of the samples in ms
+	 */
+	ResourceSampler(long interval) {
+		this.interval = interval;
+		gcCountStart = sumGcCount();
+		gcTimeStart = sumGcTime();
+	}
+
+	@Override
+	public void run() {
+		while(running) {
+			sample();
+			try {
+				Thread.sleep(interval);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+		synchronized (this) {
+			gcCount = sumGcCount() - gcCountStart;
+			gcTime = sumGcTime() - gcTimeStart;
+		}
+	}
+
+	void stop() {
+		running = false;
+	}
+
+	private synchronized void sample() {
+		long heap = memoryBean.getHeapMemoryUsage().getUsed();
+		samples++;
+		heapSum += heap;
+		heapMax = Math.max(heapMax, heap);
+		if(osBean instanceof com.sun.management.OperatingSystemMXBean) {
+			double cpu = ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuLoad();
+			// the first values can be negative, if the load isn't available yet
+			if(cpu >= 0) {
+				cpuSamples++;
+				cpuSum += cpu;
+				cpuMax = Math.max(cpuMax, cpu);
+			}
+		}
+	}
+
+	synchronized long getHeapAvg() {
+		return (samples == 0) ? 0 : heapSum / samples;
+	}
+
+	synchronized long getHeapMax() {
+		return heapMax;
+	}
+
+	/**
+	 * @return the average CPU load of the process between 0 and 1, or -1 if it isn't available
+	 */
+	synchronized double getCpuAvg() {
+		return (cpuSamples == 0) ? -1 : cpuSum / cpuSamples;
+	}
+
+	/**
+	 * @return the max. CPU load of the process between 0 and 1, or -1 if it isn't available
+	 */
+	synchronized double getCpuMax() {
+		return cpuMax;
+	}
+
+	private static long sumGcCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(gcBean.getCollectionCount(), 0);
+		return count;
+	}
+
+	private static long sumGcTime() {
+		long time = 0;
+		for(GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(gcBean.getCollectionTime(), 0);
+		return time;
+	}
+
+	/**
+	 * @return the number of garbage collections during the sampling
+	 */
+	synchronized long getGcCount() {
+		return gcCount;
+	}
+
+	/**
+	 * @return the time of the garbage collections during the sampling in ms
+	 */
+	synchronized long getGcTime() {
+		return gcTime;
+	}
+}
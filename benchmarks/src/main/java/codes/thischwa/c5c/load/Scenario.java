@@ -0,0 +1,181 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.load;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import codes.thischwa.c5c.FilemanagerAction;
+
+/**
+ * Holds the settings of a load scenario, which are read from a properties file. The keys and their defaults:
+ * <ul>
+ * <li><code>corpus.seed</code> (42): the seed of the random generators, the same seed builds the same corpus and the same traffic</li>
+ * <li><code>corpus.folders</code> (20): the number of folders</li>
+ * <li><code>corpus.images</code> (10): the number of images per folder</li>
+ * <li><code>corpus.imageSizes</code> (640x480,1920x1080): the sizes of the images, they are used in turn</li>
+ * <li><code>corpus.texts</code> (20): the number of text files per folder</li>
+ * <li><code>corpus.textSize</code> (4096): the average size of the text files in bytes</li>
+ * <li><code>clients</code> (16): the number of concurrent clients</li>
+ * <li><code>thinkTime</code> (0): the pause of a client between two requests in ms</li>
+ * <li><code>warmup</code> (10): the duration of the warmup in seconds, its requests aren't recorded</li>
+ * <li><code>duration</code> (60): the duration of the measurement in seconds</li>
+ * <li><code>uploadSize</code> (16384): the size of the files uploaded by the mode <code>add</code> in bytes</li>
+ * <li><code>mix.&lt;mode&gt;</code>: the weight of a mode of the filemanager, supported are <code>getfolder</code>,
+ * <code>getinfo</code>, <code>thumbnail</code>, <code>preview</code>, <code>download</code> and <code>add</code></li>
+ * </ul>
+ */
+public class Scenario {
+
+	private static final String prefix_mix = "mix.";
+
+	private final Properties props;
+
+	private final Map<FilemanagerAction, Integer> mix = new EnumMap<>(FilemanagerAction.class);
+
+	private final int totalWeight;
+
+	private Scenario(Properties props) {
+		this.props = props;
+		int total = 0;
+		for(String key : props.stringPropertyNames()) {
+			if(!key.startsWith(prefix_mix))
+				continue;
+			FilemanagerAction mode = FilemanagerAction.valueOfIgnoreCase(key.substring(prefix_mix.length()));
+			if(!LoadClient.isSupported(mode))
+				throw new IllegalArgumentException(String.format("Mode isn't supported by the load harness: %s", mode.getParameterName()));
+			int weight = getInt(key, 0);
+			if(weight > 0) {
+				mix.put(mode, weight);
+				total += weight;
+			}
+		}
+		if(total == 0)
+			throw new IllegalArgumentException("The scenario doesn't contain any weight > 0 of a mode, e.g. mix.getfolder = 1");
+		totalWeight = total;
+	}
+
+	/**
+	 * Reads a scenario from a properties file.
+	 * 
+	 * @param file
+	 *            the properties file
+	 * @return the scenario
+	 * @throws IOException
+	 *             if the file couldn't be read
+	 * @throws IllegalArgumentException
+	 *             if the file contains an unknown mode or no mode at all
+	 */
+	public static Scenario read(Path file) throws IOException, IllegalArgumentException {
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			props.load(in);
+		}
+		return new Scenario(props);
+	}
+
+	public long getSeed() {
+		return getInt("corpus.seed", 42);
+	}
+
+	public int getFolders() {
+		return getInt("corpus.folders", 20);
+	}
+
+	public int getImages() {
+		return getInt("corpus.images", 10);
+	}
+
+	public List<Dimension> getImageSizes() {
+		List<Dimension> sizes = new ArrayList<>();
+		for(String size : props.getProperty("corpus.imageSizes", "640x480,1920x1080").split(",")) {
+			String[] parts = size.trim().split("x");
+			sizes.add(new Dimension(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])));
+		}
+		return sizes;
+	}
+
+	public int getTexts() {
+		return getInt("corpus.texts", 20);
+	}
+
+	public int getTextSize() {
+		return getInt("corpus.textSize", 4096);
+	}
+
+	public int getClients() {
+		return getInt("clients", 16);
+	}
+
+	public int getThinkTime() {
+		return getInt("thinkTime", 0);
+	}
+
+	public int getWarmup() {
+		return getInt("warmup", 10);
+	}
+
+	public int getDuration() {
+		return getInt("duration", 60);
+	}
+
+	public int getUploadSize() {
+		return getInt("uploadSize", 16384);
+	}
+
+	/**
+	 * @return the modes of the filemanager with their weight
+	 */
+	public Map<FilemanagerAction, Integer> getMix() {
+		return Collections.unmodifiableMap(mix);
+	}
+
+	/**
+	 * Chooses a mode by its weight.
+	 * 
+	 * @param random
+	 *            a value between 0 (inclusive) and {@link #getTotalWeight()} (exclusive)
+	 * @return the chosen mode
+	 */
+	FilemanagerAction chooseMode(int random) {
+		int sum = 0;
+		for(Map.Entry<FilemanagerAction, Integer> entry : mix.entrySet()) {
+			sum += entry.getValue();
+			if(random < sum)
+				return entry.getKey();
+		}
+		throw new IllegalArgumentException(String.format("Random value is out of range: %d", random));
+	}
+
+	int getTotalWeight() {
+		return totalWeight;
+	}
+
+	private int getInt(String key, int defaultValue) {
+		String value = props.getProperty(key);
+		if(value == null || value.trim().isEmpty())
+			return defaultValue;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Property isn't a number: %s = %s", key, value));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the parsing and building of paths and names by {@link VirtualFile}, {@link PathBuilder} and
+ * {@link FileUtils#sanitizeName(String)}. Each operation handles all paths or names of the state.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PathBenchmark {
+
+	private String[] paths = { "/filemanager/userfiles/pic01.png", "/filemanager/userfiles/folder/sub/document.final.pdf",
+			"/filemanager/userfiles/a/b/c/d/e/f/g/archive.tar.gz", "/filemanager/userfiles/folder/", "/filemanager/userfiles/README" };
+
+	private String[] names = { "pic01.png", "Résumé (final) 2015.docx", "a b/c\\d:e*f?g\"h<i>j|k.txt", "   trailing blanks   ",
+			"..hidden..name..tar.gz" };
+
+	@Benchmark
+	public void virtualFile(Blackhole bh) {
+		for(String path : paths) {
+			VirtualFile vf = new VirtualFile(path, false);
+			bh.consume(vf.getFolder());
+			bh.consume(vf.getName());
+			bh.consume(vf.getExtension());
+		}
+	}
+
+	@Benchmark
+	public void pathBuilder(Blackhole bh) {
+		for(String name : names) {
+			PathBuilder pb = new PathBuilder("/filemanager/userfiles/").addFolder("folder").addFolder("sub");
+			bh.consume(pb.addFile(name));
+		}
+	}
+
+	@Benchmark
+	public void sanitizeName(Blackhole bh) {
+		for(String name : names)
+			bh.consume(FileUtils.sanitizeName(name));
+	}
+}
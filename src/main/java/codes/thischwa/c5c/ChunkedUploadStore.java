@@ -0,0 +1,288 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.util.ByteRange;
+import codes.thischwa.c5c.util.SizeLimitInputStream;
+
+/**
+ * Stores the state of chunked uploads in the temporary directory, so an upload could be resumed also after a restart.<br/>
+ * Each upload gets its own directory with the properties of the upload and a staging file, the chunks are written at their offsets
+ * into it. So the chunks could be sent out of order and in parallel. After a chunk is written completely, an empty marker file
+ * is created, which name holds the range of the chunk. The received ranges are determined by these markers, so no shared state has to
+ * be locked.<br/>
+ * Uploads, which weren't touched for longer than the max. age, are removed.
+ */
+final class ChunkedUploadStore {
+	private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadStore.class);
+
+	private static final String file_data = "data";
+
+	private static final String file_properties = "upload.properties";
+
+	private static final String prefix_chunk = "chunk-";
+
+	private static final Pattern chunkPattern = Pattern.compile(prefix_chunk + "(\\d+)-(\\d+)");
+
+	private static final Pattern idPattern = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+	private static final int bufferSize = 64 * 1024;
+
+	private final Path stagingDir;
+
+	private final long maxAge;
+
+	/**
+	 * Holds the properties of a chunked upload.
+	 */
+	static class Upload {
+		private final String id;
+		private final Path dir;
+		private final String urlPath;
+		private final String name;
+		private final long size;
+
+		private Upload(String id, Path dir, String urlPath, String name, long size) {
+			this.id = id;
+			this.dir = dir;
+			this.urlPath = urlPath;
+			this.name = name;
+			this.size = size;
+		}
+
+		String getId() {
+			return id;
+		}
+
+		/**
+		 * @return the url path of the folder, in which the file has to be stored
+		 */
+		String getUrlPath() {
+			return urlPath;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		long getSize() {
+			return size;
+		}
+
+		Path getDataFile() {
+			return dir.resolve(file_data);
+		}
+	}
+
+	/**
+	 * Instantiates the store.
+	 * 
+	 * @param stagingDir
+	 *            the directory for the chunked uploads
+	 * @param maxAge
+	 *            the time in milliseconds after which an untouched upload is removed
+	 * @throws IOException
+	 *             if the directory couldn't be created
+	 */
+	ChunkedUploadStore(Path stagingDir, long maxAge) throws IOException {
+		this.stagingDir = stagingDir;
+		this.maxAge = maxAge;
+		Files.createDirectories(stagingDir);
+		purgeExpired();
+	}
+
+	/**
+	 * Starts a new chunked upload.
+	 * 
+	 * @param urlPath
+	 *            the url path of the folder, in which the file has to be stored
+	 * @param name
+	 *            the name of the file
+	 * @param size
+	 *            the size of the whole file
+	 * @return the new upload
+	 * @throws IOException
+	 *             if the upload couldn't be stored
+	 */
+	Upload init(String urlPath, String name, long size) throws IOException {
+		purgeExpired();
+		String id = UUID.randomUUID().toString();
+		Path dir = stagingDir.resolve(id);
+		Files.createDirectory(dir);
+		Properties props = new Properties();
+		props.setProperty("urlPath", urlPath);
+		props.setProperty("name", name);
+		props.setProperty("size", String.valueOf(size));
+		try (OutputStream out = Files.newOutputStream(dir.resolve(file_properties))) {
+			props.store(out, null);
+		}
+		Files.createFile(dir.resolve(file_data));
+		logger.debug("Chunked upload {} initialized for {} ({} bytes)", id, name, size);
+		return new Upload(id, dir, urlPath, name, size);
+	}
+
+	/**
+	 * Retrieves an upload.
+	 * 
+	 * @param id
+	 *            the id of the upload
+	 * @return the upload or <code>null</code>, if it doesn't exist
+	 * @throws IOException
+	 *             if the upload couldn't be read
+	 */
+	Upload get(String id) throws IOException {
+		if(id == null || !idPattern.matcher(id).matches())
+			return null;
+		Path dir = stagingDir.resolve(id);
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(dir.resolve(file_properties))) {
+			props.load(in);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		return new Upload(id, dir, props.getProperty("urlPath"), props.getProperty("name"), Long.parseLong(props.getProperty("size")));
+	}
+
+	/**
+	 * Writes a chunk at its offset into the staging file. The chunk is registered as received after it's written completely.
+	 * 
+	 * @param upload
+	 *            the upload
+	 * @param offset
+	 *            the position of the chunk in the whole file
+	 * @param in
+	 *            the content of the chunk
+	 * @return the number of written bytes
+	 * @throws IOException
+	 *             if the chunk couldn't be written, or a {@link SizeLimitInputStream.SizeLimitExceededException} if it exceeds the
+	 *             size of the upload
+	 */
+	long writeChunk(Upload upload, long offset, InputStream in) throws IOException {
+		if(offset < 0 || offset >= upload.getSize())
+			throw new IllegalArgumentException(String.format("Invalid offset: %d", offset));
+		InputStream limitedIn = new SizeLimitInputStream(in, upload.getSize() - offset);
+		long position = offset;
+		try (FileChannel channel = FileChannel.open(upload.getDataFile(), StandardOpenOption.WRITE)) {
+			byte[] bytes = new byte[bufferSize];
+			int read;
+			while((read = limitedIn.read(bytes)) != -1) {
+				ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+				while(buffer.hasRemaining())
+					position += channel.write(buffer, position);
+			}
+			// the marker mustn't exist before the data is persisted
+			channel.force(false);
+		}
+		long written = position - offset;
+		if(written > 0) {
+			try {
+				Files.createFile(upload.dir.resolve(String.format("%s%d-%d", prefix_chunk, offset, position - 1)));
+			} catch (FileAlreadyExistsException e) {
+				// the chunk was sent again
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Determines the received ranges of an upload.
+	 * 
+	 * @param upload
+	 *            the upload
+	 * @return the merged ranges in ascending order
+	 * @throws IOException
+	 *             if the markers couldn't be read
+	 */
+	List<ByteRange> getReceived(Upload upload) throws IOException {
+		List<ByteRange> ranges = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(upload.dir, prefix_chunk + "*")) {
+			for(Path marker : stream) {
+				Matcher matcher = chunkPattern.matcher(marker.getFileName().toString());
+				if(matcher.matches())
+					ranges.add(new ByteRange(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))));
+			}
+		}
+		return ByteRange.merge(ranges);
+	}
+
+	/**
+	 * Checks whether all chunks of an upload are received.
+	 * 
+	 * @param upload
+	 *            the upload
+	 * @return <code>true</code>, if the whole file is received
+	 * @throws IOException
+	 *             if the markers couldn't be read
+	 */
+	boolean isComplete(Upload upload) throws IOException {
+		if(upload.getSize() == 0)
+			return true;
+		List<ByteRange> received = getReceived(upload);
+		return received.size() == 1 && received.get(0).getStart() == 0 && received.get(0).getEnd() == upload.getSize() - 1;
+	}
+
+	/**
+	 * Removes an upload with all of its data.
+	 * 
+	 * @param upload
+	 *            the upload
+	 */
+	void remove(Upload upload) {
+		deleteQuietly(upload.dir);
+	}
+
+	/**
+	 * Removes the uploads, which weren't touched for longer than the max. age. A directory is touched by each received chunk.
+	 */
+	private void purgeExpired() {
+		long expired = System.currentTimeMillis() - maxAge;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(stagingDir)) {
+			for(Path dir : stream) {
+				if(Files.isDirectory(dir) && Files.getLastModifiedTime(dir).toMillis() < expired) {
+					logger.info("Expired chunked upload removed: {}", dir.getFileName());
+					deleteQuietly(dir);
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Error while removing the expired chunked uploads.", e);
+		}
+	}
+
+	private static void deleteQuietly(Path dir) {
+		try {
+			FileUtils.deleteDirectory(dir.toFile());
+		} catch (IOException e) {
+			logger.warn("Couldn't delete the chunked upload {}", dir);
+		}
+	}
+}
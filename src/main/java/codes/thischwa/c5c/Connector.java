@@ -22,6 +22,8 @@ package codes.thischwa.c5c;
 import java.awt.Dimension;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Set;
 
 import codes.thischwa.c5c.GenericConnector.FileProperties;
@@ -51,6 +53,11 @@ public interface Connector {
 	 */
 	public void init() throws RuntimeException;
 
+	/**
+	 * Releases the resources of the connector, e.g. background threads. It's called, if the connector servlet is taken out of service.
+	 */
+	public void destroy();
+
 	/**
 	 * Setter for the file extensions for images. It will be used for additional checks and the handling of file properties.
 	 * 
@@ -100,6 +107,31 @@ public interface Connector {
 	 */
 	public boolean rename(String oldBackendPath, String sanitizedNewName) throws C5CException;
 
+	/**
+	 * Executes the 'copy'-method of the filemanager. The file or directory keeps its name, directories are copied with their whole
+	 * content.
+	 * 
+	 * @param sourceBackendPath
+	 *            the requested backend file or directory to copy, e.g. <code>/UserFiles/Image/logo.png</code>
+	 * @param targetBackendDirectory
+	 *            the directory to copy in, e.g. <code>/UserFiles/File/</code>
+	 * @return <code>true</code> if the copied file is a directory, otherwise <code>false</code>
+	 * @throws C5CException
+	 */
+	public boolean copy(String sourceBackendPath, String targetBackendDirectory) throws C5CException;
+
+	/**
+	 * Executes the 'move'-method of the filemanager. The file or directory keeps its name.
+	 * 
+	 * @param sourceBackendPath
+	 *            the requested backend file or directory to move, e.g. <code>/UserFiles/Image/logo.png</code>
+	 * @param targetBackendDirectory
+	 *            the directory to move in, e.g. <code>/UserFiles/File/</code>
+	 * @return <code>true</code> if the moved file is a directory, otherwise <code>false</code>
+	 * @throws C5CException
+	 */
+	public boolean move(String sourceBackendPath, String targetBackendDirectory) throws C5CException;
+
 	/**
 	 * Executes the 'addfolder'-method of the filemanger.
 	 * 
@@ -121,6 +153,18 @@ public interface Connector {
 	 */
 	public boolean delete(String backendPath) throws C5CException;
 
+	/**
+	 * Executes the 'restore'-method of the filemanager: A deleted file or folder is restored, if the connector supports a trash and
+	 * the restore window isn't over yet.
+	 * 
+	 * @param backendPath
+	 *            the former backend path of the deleted file or folder, e.g. <code>/UserFiles/Image/logo.png</code>
+	 * @return <code>true</code> if the restored file is a directory, otherwise <code>false</code>
+	 * @throws C5CException
+	 *             if the file or folder couldn't be restored
+	 */
+	public boolean restore(String backendPath) throws C5CException;
+
 	/**
 	 * Executes the 'add'-method of the filemanager. The implementation has to overwrite the file, if there exists one with the same name.
 	 * 
@@ -134,6 +178,62 @@ public interface Connector {
 	 */
 	public void upload(String backendDirectory, String sanitizedName, InputStream in) throws C5CException;
 
+	/**
+	 * Reserves the name for a new file in a directory, so concurrent uploads never get the same one. If 'sanitizedName' is already used,
+	 * it will be suffixed, e.g. <code>logo_1.png</code>. The implementation should reserve the name atomically, e.g. by creating an empty
+	 * file, which will be overwritten by the following upload.<br/>
+	 * {@link GenericConnector} determines the name by listing the directory, that isn't atomic.
+	 * 
+	 * @param backendDirectory
+	 *            the path to the directory, in which the new file will be created, e.g. <code>/UserFiles/</code>
+	 * @param sanitizedName
+	 *            the (sanitized) name of the file, e.g. <code>logo.png</code>
+	 * @return the reserved name
+	 * @throws C5CException
+	 */
+	public String reserveName(String backendDirectory, String sanitizedName) throws C5CException;
+
+	/**
+	 * Reserves the names for a batch of new files in a directory, see {@link #reserveName(String, String)}. The reserved names are
+	 * unique within the batch too.<br/>
+	 * {@link GenericConnector} lists the directory just once for the whole batch.
+	 * 
+	 * @param backendDirectory
+	 *            the path to the directory, in which the new files will be created, e.g. <code>/UserFiles/</code>
+	 * @param sanitizedNames
+	 *            the (sanitized) names of the files
+	 * @return the reserved names in the order of 'sanitizedNames'
+	 * @throws C5CException
+	 */
+	public List<String> reserveNames(String backendDirectory, List<String> sanitizedNames) throws C5CException;
+
+	/**
+	 * Releases a name reserved by {@link #reserveName(String, String)}, if the upload failed.
+	 * 
+	 * @param backendDirectory
+	 *            the path to the directory, e.g. <code>/UserFiles/</code>
+	 * @param reservedName
+	 *            the reserved name
+	 * @throws C5CException
+	 */
+	public void releaseName(String backendDirectory, String reservedName) throws C5CException;
+
+	/**
+	 * Executes the 'add'-method of the filemanager with a file, which is already received completely. The file is located in the
+	 * temporary directory and will be deleted by the caller afterwards, if it still exists. So the implementation may take it over,
+	 * e.g. by moving it.<br/>
+	 * {@link GenericConnector} delegates to {@link #upload(String, String, InputStream)}.
+	 * 
+	 * @param backendDirectory
+	 *            the path to the directory, in which the new folder has to be created, e.g. <code>/UserFiles/</code>
+	 * @param sanitizedName
+	 *            the (sanitized) name of the file that should be created, e.g. <code>logo.png</code>
+	 * @param file
+	 *            the received file
+	 * @throws C5CException
+	 */
+	public void upload(String backendDirectory, String sanitizedName, Path file) throws C5CException;
+
 	/**
 	 * Executes the 'download'-method of the filemanager.
 	 * 
@@ -145,6 +245,23 @@ public interface Connector {
 	 */
 	public GenericConnector.StreamContent download(String backendPath) throws C5CException;
 
+	/**
+	 * Reads a range of a file. It's used to serve HTTP range requests, e.g. for resumed downloads or for seeking in videos.<br/>
+	 * {@link GenericConnector} emulates it by skipping the leading bytes of {@link #download(String)}. Implementations should
+	 * override it, if the backend supports positioned reads.
+	 * 
+	 * @param backendPath
+	 *            the requested file, e.g. <code>/UserFiles/folder/video.mp4</code>
+	 * @param offset
+	 *            the position of the first byte to read
+	 * @param length
+	 *            the max. number of bytes to read
+	 * @return {@link GenericConnector.StreamContent} which holds the required data of the range. Use
+	 *         {@link GenericConnector#buildStreamContent(InputStream, long)} to build it.
+	 * @throws C5CException
+	 */
+	public GenericConnector.StreamContent downloadRange(String backendPath, long offset, long length) throws C5CException;
+
 	/**
 	 * Generates a thumbnail of the requested image ('backendPath') and writes it to the returned {@link StreamContent}. The caller has to
 	 * ensure that 'backendPath' is an image. <br/>
@@ -220,6 +337,20 @@ public interface Connector {
 	 * @throws C5CException
 	 */
 	public void replace(String backendPath, InputStream in) throws C5CException;
+
+	/**
+	 * Executes the 'replace'-method of the filemanager with a file, which is already received completely. The file is located in the
+	 * temporary directory and will be deleted by the caller afterwards, if it still exists. So the implementation may take it over,
+	 * e.g. by moving it.<br/>
+	 * {@link GenericConnector} delegates to {@link #replace(String, InputStream)}.
+	 * 
+	 * @param backendPath
+	 *            the file to replace, e.g. <code>/UserFiles/sub/text.txt</code>
+	 * @param file
+	 *            the received file
+	 * @throws C5CException
+	 */
+	public void replace(String backendPath, Path file) throws C5CException;
 	
 	
 	public boolean isProtected(String backendPath);
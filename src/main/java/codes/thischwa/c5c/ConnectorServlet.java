@@ -11,6 +11,7 @@
 package codes.thischwa.c5c;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.MultipartConfig;
@@ -21,6 +22,8 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import codes.thischwa.c5c.Tracing.Kind;
+import codes.thischwa.c5c.Tracing.Span;
 import codes.thischwa.c5c.requestcycle.RequestData;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
 import codes.thischwa.c5c.util.StringUtils;
@@ -52,11 +55,29 @@ public class ConnectorServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 	
 	private static final String propertyKey_connectorImpl = "connector.impl";
+	
+	private static final String renditionCacheFolder = "c5c-renditions";
+
+	private static final String chunkedUploadFolder = "c5c-uploads";
+
+	private static final String contentIndexFile = "c5c-content-index/index.bin";
 
 	private static Logger logger = LoggerFactory.getLogger(ConnectorServlet.class);
 
+	private Connector connector;
+
 	private GenericDispatcher dispatcherGET;
-	private GenericDispatcher dispatcherPUT;
+	private DispatcherPUT dispatcherPUT;
+
+	private FolderCache folderCache;
+
+	private FolderSizes folderSizes;
+
+	private FilenameIndex filenameIndex;
+
+	private ContentIndex contentIndex;
+
+	private Metrics metrics = Metrics.disabled();
 
 	/**
 	 * Initializes this servlet. It initializes the {@link DispatcherGET} and {@link UserObjectProxy}.
@@ -66,7 +87,6 @@ public class ConnectorServlet extends HttpServlet {
 		String connectorClassName = PropertiesLoader.getProperty(propertyKey_connectorImpl);
 		if(StringUtils.isNullOrEmpty(connectorClassName))
 			throw new RuntimeException("Empty Connector implementation class name not allowed.");
-		Connector connector;
 		try {
 			Class<?> clazz = Class.forName(connectorClassName);
 			connector = (Connector) clazz.newInstance();
@@ -85,13 +105,102 @@ public class ConnectorServlet extends HttpServlet {
 		}
 
 		connector.init();
+
+		metrics = new Metrics(PropertiesLoader.getMetricsWindow());
+		if(metrics.isEnabled() || Tracing.isEnabled() || PropertiesLoader.isServerTimingEnabled())
+			connector = new InstrumentedConnector(connector, metrics);
+		if(metrics.isEnabled()) {
+			metrics.register(getServletContext().getContextPath());
+			getServletContext().setAttribute(Metrics.attribute_name, metrics);
+		}
 		
-		dispatcherGET = new DispatcherGET(connector);
-		dispatcherPUT = new DispatcherPUT(connector);
+		RenditionCache renditionCache = initRenditionCache();
+		folderCache = initFolderCache();
+		folderSizes = new FolderSizes(PropertiesLoader.getFolderSizesMaxFolders());
+		filenameIndex = new FilenameIndex(PropertiesLoader.getSearchMaxIndexes());
+		contentIndex = initContentIndex();
+		dispatcherGET = new DispatcherGET(connector, renditionCache, folderCache, folderSizes, filenameIndex, contentIndex);
+		dispatcherPUT = new DispatcherPUT(connector, renditionCache, folderCache, folderSizes, filenameIndex, contentIndex,
+				initChunkedUploadStore());
 		
 		logger.info(String.format("*** %s sucessful initialized.", this.getClass().getName()));
 	}
 
+	@Override
+	public void destroy() {
+		if(metrics.isEnabled()) {
+			metrics.unregister();
+			getServletContext().removeAttribute(Metrics.attribute_name);
+		}
+		if(folderCache != null)
+			folderCache.close();
+		if(folderSizes != null)
+			folderSizes.close();
+		if(filenameIndex != null)
+			filenameIndex.close();
+		if(contentIndex != null)
+			contentIndex.close();
+		if(dispatcherPUT != null)
+			dispatcherPUT.close();
+		if(connector != null)
+			connector.destroy();
+		super.destroy();
+	}
+
+	private FolderCache initFolderCache() {
+		int maxFolders = PropertiesLoader.getFolderCacheMaxFolders();
+		if(maxFolders <= 0) {
+			logger.info("Folder cache is disabled.");
+			return FolderCache.disabled();
+		}
+		try {
+			return new FolderCache(maxFolders);
+		} catch (IOException e) {
+			logger.warn("Folder cache couldn't be initialized, folder listings won't be cached.", e);
+			return FolderCache.disabled();
+		}
+	}
+
+	private ChunkedUploadStore initChunkedUploadStore() {
+		int maxAge = PropertiesLoader.getChunkedUploadMaxAge();
+		try {
+			// without a max. age the uploads never expire
+			long maxAgeMillis = (maxAge > 0) ? TimeUnit.HOURS.toMillis(maxAge) : Long.MAX_VALUE;
+			return new ChunkedUploadStore(UserObjectProxy.getTempDirectory().resolve(chunkedUploadFolder), maxAgeMillis);
+		} catch (IOException e) {
+			logger.warn("The store for chunked uploads couldn't be initialized, chunked uploads are disabled.", e);
+			return null;
+		}
+	}
+
+	private ContentIndex initContentIndex() {
+		long maxFileSize = PropertiesLoader.getContentSearchMaxFileSize();
+		if(maxFileSize <= 0) {
+			logger.info("Content index is disabled.");
+			return ContentIndex.disabled();
+		}
+		try {
+			return new ContentIndex(UserObjectProxy.getTempDirectory().resolve(contentIndexFile), maxFileSize * 1024);
+		} catch (IOException e) {
+			logger.warn("Content index couldn't be initialized, the mode searchcontent won't find anything.", e);
+			return ContentIndex.disabled();
+		}
+	}
+
+	private RenditionCache initRenditionCache() {
+		long maxSize = PropertiesLoader.getRenditionCacheMaxSize();
+		if(maxSize <= 0) {
+			logger.info("Rendition cache is disabled.");
+			return RenditionCache.disabled();
+		}
+		try {
+			return new RenditionCache(UserObjectProxy.getTempDirectory().resolve(renditionCacheFolder), maxSize * 1024 * 1024);
+		} catch (IOException e) {
+			logger.warn("Rendition cache couldn't be initialized, thumbnails and previews won't be cached.", e);
+			return RenditionCache.disabled();
+		}
+	}
+
 	static void initResponseHeader(HttpServletResponse resp) {
 		// set some default headers 
 		resp.setHeader("Cache-Control", "no-cache");
@@ -109,17 +218,66 @@ public class ConnectorServlet extends HttpServlet {
 	@Override
 	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 		initResponseHeader(resp);
+		if(rejectOversizedUpload(req, resp))
+			return;
 		doRequest(req, resp, dispatcherPUT);
 	}
+
+	/**
+	 * Rejects an upload, if its 'Content-Length' exceeds the max. upload size. The limits of {@link MultipartConfig} can't be used,
+	 * because they must be constant and the limit depends on the configuration of the filemanager. So it's checked here, before the
+	 * container reads the body of the request.
+	 * 
+	 * @return <code>true</code>, if the upload was rejected and the error response was written
+	 */
+	private boolean rejectOversizedUpload(HttpServletRequest req, HttpServletResponse resp) throws ServletException {
+		String contentType = req.getContentType();
+		if(contentType == null || !contentType.toLowerCase().startsWith("multipart/"))
+			return false;
+		try {
+			RequestData.beginRequestWithoutContext(req);
+			GenericResponse response = dispatcherPUT.checkContentLength(req);
+			if(response == null)
+				return false;
+			// the body won't be read, so the container shouldn't try to keep the connection alive
+			resp.setHeader("Connection", "close");
+			response.write(resp);
+			return true;
+		} catch (Exception e) {
+			throw new ServletException(e);
+		} finally {
+			RequestData.endRequest();
+		}
+	}
 	
 	private void doRequest(HttpServletRequest req, HttpServletResponse resp, GenericDispatcher dispatcher) throws ServletException {
+		long start = System.nanoTime();
+		Span requestSpan = Tracing.begin(Kind.REQUEST);
+		FilemanagerAction mode = null;
+		String urlPath = null;
+		boolean failed = true;
 		try {
+			Span span = Tracing.begin(Kind.PHASE);
 			RequestData.beginRequest(req);
+			mode = RequestData.getContext().getMode();
+			urlPath = RequestData.getContext().getUrlPath();
+			span.end("beginRequest", urlPath, -1);
+
+			span = Tracing.begin(Kind.PHASE);
 			GenericResponse response = dispatcher.doRequest();
+			span.end("dispatch", urlPath, -1);
+			// the header has to be set before the content is written, the serialization updates it, if the response isn't committed yet
+			RequestData.getServerTiming().writeHeader(resp);
+
+			span = Tracing.begin(Kind.PHASE);
 			response.write(resp);
+			span.end("write", urlPath, -1);
+			failed = response.hasError();
 		} catch (Exception e) {
 			throw new ServletException(e);
 		} finally {
+			metrics.recordRequest(mode, start, failed);
+			requestSpan.end(req.getMethod(), urlPath, req.getContentLength());
 			/*
 			 * call this method to prevent detached requests or else the request will probably never be garbage collected and will fill your
 			 * memory
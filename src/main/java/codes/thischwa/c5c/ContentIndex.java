@@ -0,0 +1,917 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inverted index over the content of the editable text files for the mode 'searchcontent'. For each term the positions inside of the
+ * files are stored, so the hits are ranked by BM25 and a phrase of the search string ranks higher. The text of each file is stored
+ * deflated, so a snippet is built without opening the file.<br/>
+ * Just files of the local file system are indexed, see {@link GenericConnector#getLocalPath(String)}, because the files are read by
+ * a crawler thread with a low priority, which is detached from the requests. So the exclusions of the configuration are checked by
+ * the {@link Filter} of a search. A searched folder is crawled once, afterwards it's kept current by
+ * {@link #update(Connector, String)}, if the dispatchers change something. Hidden folders aren't indexed.<br/>
+ * The index is stored in one file, the numbers are written as variable-length integers and the positions as deltas. After a restart
+ * the stored folders are crawled again, but unchanged files aren't read.
+ */
+final class ContentIndex {
+	private static final Logger logger = LoggerFactory.getLogger(ContentIndex.class);
+
+	private static final int version = 1;
+
+	private static final int max_term_length = 64;
+
+	/** The number of chars before and after the hit, which are shown in a snippet. */
+	private static final int snippet_radius = 60;
+
+	private static final double bm25_k1 = 1.2;
+
+	private static final double bm25_b = 0.75;
+
+	private final Path indexFile;
+
+	private final long maxFileSize;
+
+	private final ThreadPoolExecutor crawler;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** The crawled folders with the extensions of the indexed files. */
+	private final Map<Path, Set<String>> roots = new HashMap<>();
+
+	private final Map<Path, Doc> docs = new HashMap<>();
+
+	private final Map<Integer, Doc> docsById = new HashMap<>();
+
+	/** The positions of each term per document id. */
+	private final Map<String, Map<Integer, int[]>> postings = new HashMap<>();
+
+	private long totalTerms = 0;
+
+	private int nextId = 0;
+
+	/** Is just changed by the crawler thread. */
+	private boolean dirty = false;
+
+	/**
+	 * Decides, if a hit is visible for the current request.
+	 */
+	interface Filter {
+		/**
+		 * @param relativePath
+		 *            the path of the file relative to the searched folder, separated by '/'
+		 * @return <code>true</code>, if the file can be returned
+		 */
+		boolean accept(String relativePath);
+	}
+
+	/**
+	 * A file found by a search.
+	 */
+	static final class Hit {
+		private final String relativePath;
+		private final double score;
+		private final String snippet;
+
+		private Hit(String relativePath, double score, String snippet) {
+			this.relativePath = relativePath;
+			this.score = score;
+			this.snippet = snippet;
+		}
+
+		/**
+		 * @return the path of the file relative to the searched folder, separated by '/'
+		 */
+		String getRelativePath() {
+			return relativePath;
+		}
+
+		double getScore() {
+			return score;
+		}
+
+		String getSnippet() {
+			return snippet;
+		}
+	}
+
+	/**
+	 * An indexed file.
+	 */
+	private static class Doc {
+		private final int id;
+		private final Path path;
+		private final long modified;
+		private final long size;
+		private final int length;
+		/** The deflated UTF-8 text. */
+		private final byte[] text;
+		private final List<String> terms = new ArrayList<>();
+
+		Doc(int id, Path path, long modified, long size, int length, byte[] text) {
+			this.id = id;
+			this.path = path;
+			this.modified = modified;
+			this.size = size;
+			this.length = length;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Splits a text into terms: Sequences of letters and digits, the other chars are separators.
+	 */
+	private static class Tokenizer {
+		private final String text;
+		private int pos = 0;
+		private int start;
+		private int end;
+
+		Tokenizer(String text) {
+			this.text = text;
+		}
+
+		boolean next() {
+			int length = text.length();
+			while(pos < length && !Character.isLetterOrDigit(text.charAt(pos)))
+				pos++;
+			if(pos >= length)
+				return false;
+			start = pos;
+			while(pos < length && Character.isLetterOrDigit(text.charAt(pos)))
+				pos++;
+			end = pos;
+			return true;
+		}
+
+		String term() {
+			return text.substring(start, Math.min(end, start + max_term_length)).toLowerCase(Locale.ROOT);
+		}
+	}
+
+	/**
+	 * A candidate of a search.
+	 */
+	private static class Candidate {
+		private final Doc doc;
+		private final String relativePath;
+		private final double score;
+		private final int position;
+		private final int termCount;
+
+		Candidate(Doc doc, String relativePath, double score, int position, int termCount) {
+			this.doc = doc;
+			this.relativePath = relativePath;
+			this.score = score;
+			this.position = position;
+			this.termCount = termCount;
+		}
+	}
+
+	/**
+	 * Instantiates the index, reads the stored index and starts the crawler. If 'maxFileSize' isn't greater than 0, the index is
+	 * disabled.
+	 *
+	 * @param indexFile
+	 *            the file in which the index is stored
+	 * @param maxFileSize
+	 *            the max. size of an indexed file in bytes
+	 * @throws IOException
+	 *             if the directory of the index couldn't be created
+	 */
+	ContentIndex(Path indexFile, long maxFileSize) throws IOException {
+		this.indexFile = indexFile;
+		this.maxFileSize = maxFileSize;
+		if(!isEnabled()) {
+			crawler = null;
+			return;
+		}
+		Files.createDirectories(indexFile.getParent());
+		load();
+		crawler = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "c5c-content-indexer");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		// files could be changed while the server was down
+		for(Path root : new ArrayList<>(roots.keySet()))
+			submitCrawl(root);
+		logger.info("Content index initialized in {} with {} files.", indexFile, docs.size());
+	}
+
+	/**
+	 * Builds a disabled index.
+	 *
+	 * @return an index that doesn't index anything
+	 */
+	static ContentIndex disabled() {
+		try {
+			return new ContentIndex(null, 0);
+		} catch (IOException e) {
+			// can't happen because a disabled index doesn't touch the file system
+			throw new RuntimeException(e);
+		}
+	}
+
+	boolean isEnabled() {
+		return maxFileSize > 0;
+	}
+
+	/**
+	 * Searches inside of a folder for the files, which contain all terms of the search string. The hits are ranked by BM25, the
+	 * files containing the terms as phrase rank higher. If the folder isn't indexed yet, it will be crawled in the background, so the
+	 * hits are incomplete until the crawler is done.
+	 *
+	 * @param connector
+	 *            the connector of the folder
+	 * @param backendPath
+	 *            the backend path of the searched folder
+	 * @param extensions
+	 *            the extensions of the files to index
+	 * @param query
+	 *            the search string
+	 * @param limit
+	 *            the max. number of hits
+	 * @param filter
+	 *            decides, which files are visible
+	 * @return the hits, the best first
+	 */
+	List<Hit> search(Connector connector, String backendPath, Set<String> extensions, String query, int limit, Filter filter) {
+		Path folder = getLocalPath(connector, backendPath);
+		if(folder == null)
+			return new ArrayList<>();
+		register(folder, extensions);
+		List<String> terms = new ArrayList<>();
+		Tokenizer tokenizer = new Tokenizer(query);
+		while(tokenizer.next())
+			terms.add(tokenizer.term());
+		if(terms.isEmpty())
+			return new ArrayList<>();
+
+		List<Candidate> candidates;
+		lock.readLock().lock();
+		try {
+			candidates = collect(folder, terms, filter);
+		} finally {
+			lock.readLock().unlock();
+		}
+		Collections.sort(candidates, new Comparator<Candidate>() {
+			@Override
+			public int compare(Candidate c1, Candidate c2) {
+				int result = Double.compare(c2.score, c1.score);
+				return (result != 0) ? result : c1.relativePath.compareTo(c2.relativePath);
+			}
+		});
+		List<Hit> hits = new ArrayList<>();
+		for(Candidate candidate : candidates) {
+			if(hits.size() >= limit)
+				break;
+			if(!Files.exists(candidate.doc.path)) {
+				// removed outside of the connector
+				update(candidate.doc.path);
+				continue;
+			}
+			hits.add(new Hit(candidate.relativePath, candidate.score, buildSnippet(candidate)));
+		}
+		return hits;
+	}
+
+	/**
+	 * Updates the index of the desired backend path in the background. If it's a folder, its content is crawled again.
+	 *
+	 * @param connector
+	 *            the connector of the path
+	 * @param backendPath
+	 *            the changed backend path
+	 */
+	void update(Connector connector, String backendPath) {
+		Path path = getLocalPath(connector, backendPath);
+		if(path != null)
+			update(path);
+	}
+
+	/**
+	 * Stops the crawler and stores the index.
+	 */
+	void close() {
+		if(!isEnabled())
+			return;
+		crawler.shutdownNow();
+		try {
+			crawler.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(dirty)
+			store();
+	}
+
+	private Path getLocalPath(Connector connector, String backendPath) {
+		if(!isEnabled() || backendPath == null || !(connector instanceof GenericConnector))
+			return null;
+		Path path = ((GenericConnector) connector).getLocalPath(backendPath);
+		return (path == null) ? null : path.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Registers a folder for the crawler, if it isn't inside of a crawled folder with the same extensions.
+	 */
+	private void register(Path folder, Set<String> extensions) {
+		Set<String> lowerExtensions = new HashSet<>();
+		if(extensions != null) {
+			for(String ext : extensions)
+				lowerExtensions.add(ext.toLowerCase(Locale.ROOT));
+		}
+		lock.writeLock().lock();
+		try {
+			for(Map.Entry<Path, Set<String>> root : roots.entrySet()) {
+				if(folder.startsWith(root.getKey()) && root.getValue().containsAll(lowerExtensions))
+					return;
+			}
+			for(Iterator<Path> iter = roots.keySet().iterator(); iter.hasNext();) {
+				if(iter.next().startsWith(folder))
+					iter.remove();
+			}
+			roots.put(folder, lowerExtensions);
+		} finally {
+			lock.writeLock().unlock();
+		}
+		submitCrawl(folder);
+	}
+
+	private void update(final Path path) {
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				Set<String> extensions = getExtensions(path);
+				if(extensions.isEmpty())
+					return;
+				try {
+					BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					if(attrs.isDirectory()) {
+						crawl(path, extensions);
+					} else if(attrs.isRegularFile() && isIndexable(path, attrs, extensions)) {
+						if(!isIndexed(path, attrs))
+							index(path, attrs);
+					} else {
+						removeAll(path, null);
+					}
+				} catch (IOException e) {
+					// the path was removed
+					removeAll(path, null);
+				}
+			}
+		});
+	}
+
+	private void submitCrawl(final Path folder) {
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				Set<String> extensions = getExtensions(folder);
+				if(!extensions.isEmpty())
+					crawl(folder, extensions);
+			}
+		});
+	}
+
+	/**
+	 * Executes a task by the crawler. The index is stored, if all queued tasks are done.
+	 */
+	private void submit(final Runnable task) {
+		if(!isEnabled())
+			return;
+		try {
+			crawler.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} catch (RuntimeException e) {
+						logger.warn("Error while updating the content index.", e);
+					}
+					if(dirty && crawler.getQueue().isEmpty() && !Thread.currentThread().isInterrupted())
+						store();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			logger.debug("Content index is closed.");
+		}
+	}
+
+	/**
+	 * @return the extensions of the crawled folders, which contain the path
+	 */
+	private Set<String> getExtensions(Path path) {
+		Set<String> extensions = new HashSet<>();
+		lock.readLock().lock();
+		try {
+			for(Map.Entry<Path, Set<String>> root : roots.entrySet()) {
+				if(path.startsWith(root.getKey()))
+					extensions.addAll(root.getValue());
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return extensions;
+	}
+
+	/**
+	 * Indexes the new and changed files of the folder and removes the files, which don't exist anymore.
+	 */
+	private void crawl(final Path folder, final Set<String> extensions) {
+		final Set<Path> found = new HashSet<>();
+		try {
+			Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+					if(Thread.currentThread().isInterrupted())
+						return FileVisitResult.TERMINATE;
+					if(!dir.equals(folder) && dir.getFileName().toString().startsWith("."))
+						return FileVisitResult.SKIP_SUBTREE;
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					if(attrs.isRegularFile() && isIndexable(file, attrs, extensions)) {
+						found.add(file);
+						if(!isIndexed(file, attrs))
+							index(file, attrs);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			logger.debug("Folder couldn't be crawled: {}", folder);
+		}
+		if(!Thread.currentThread().isInterrupted())
+			removeAll(folder, found);
+	}
+
+	private boolean isIndexable(Path file, BasicFileAttributes attrs, Set<String> extensions) {
+		return attrs.size() <= maxFileSize
+				&& extensions.contains(FilenameUtils.getExtension(file.getFileName().toString()).toLowerCase(Locale.ROOT));
+	}
+
+	private boolean isIndexed(Path file, BasicFileAttributes attrs) {
+		lock.readLock().lock();
+		try {
+			Doc doc = docs.get(file);
+			return doc != null && doc.modified == attrs.lastModifiedTime().toMillis() && doc.size == attrs.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void index(Path file, BasicFileAttributes attrs) {
+		String text;
+		try {
+			text = new String(Files.readAllBytes(file), getEncoding());
+		} catch (IOException e) {
+			logger.debug("File couldn't be indexed: {}", file);
+			return;
+		}
+		Map<String, List<Integer>> positions = new HashMap<>();
+		Tokenizer tokenizer = new Tokenizer(text);
+		int length = 0;
+		while(tokenizer.next()) {
+			String term = tokenizer.term();
+			List<Integer> termPositions = positions.get(term);
+			if(termPositions == null) {
+				termPositions = new ArrayList<>();
+				positions.put(term, termPositions);
+			}
+			termPositions.add(length++);
+		}
+		byte[] deflated = deflate(text.getBytes(StandardCharsets.UTF_8));
+
+		lock.writeLock().lock();
+		try {
+			remove(docs.get(file));
+			Doc doc = new Doc(nextId++, file, attrs.lastModifiedTime().toMillis(), attrs.size(), length, deflated);
+			for(Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+				int[] termPositions = new int[entry.getValue().size()];
+				for(int i = 0; i < termPositions.length; i++)
+					termPositions[i] = entry.getValue().get(i);
+				addPosting(entry.getKey(), doc, termPositions);
+			}
+			add(doc);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the files inside of the path, which aren't kept.
+	 */
+	private void removeAll(Path path, Set<Path> keep) {
+		lock.writeLock().lock();
+		try {
+			for(Doc doc : new ArrayList<>(docs.values())) {
+				if(doc.path.startsWith(path) && (keep == null || !keep.contains(doc.path)))
+					remove(doc);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Must be called with the write lock held.
+	 */
+	private void add(Doc doc) {
+		docs.put(doc.path, doc);
+		docsById.put(doc.id, doc);
+		totalTerms += doc.length;
+		dirty = true;
+	}
+
+	/**
+	 * Must be called with the write lock held.
+	 */
+	private void addPosting(String term, Doc doc, int[] positions) {
+		Map<Integer, int[]> termPostings = postings.get(term);
+		if(termPostings == null) {
+			termPostings = new HashMap<>();
+			postings.put(term, termPostings);
+		}
+		termPostings.put(doc.id, positions);
+		doc.terms.add(term);
+	}
+
+	/**
+	 * Must be called with the write lock held.
+	 */
+	private void remove(Doc doc) {
+		if(doc == null)
+			return;
+		for(String term : doc.terms) {
+			Map<Integer, int[]> termPostings = postings.get(term);
+			termPostings.remove(doc.id);
+			if(termPostings.isEmpty())
+				postings.remove(term);
+		}
+		docs.remove(doc.path);
+		docsById.remove(doc.id);
+		totalTerms -= doc.length;
+		dirty = true;
+	}
+
+	/**
+	 * Collects the files inside of the folder, which contain all terms. Must be called with the read lock held.
+	 */
+	private List<Candidate> collect(Path folder, List<String> terms, Filter filter) {
+		List<Candidate> candidates = new ArrayList<>();
+		List<String> distinctTerms = new ArrayList<>(new LinkedHashSet<>(terms));
+		final Map<String, Map<Integer, int[]>> termPostings = new HashMap<>();
+		for(String term : distinctTerms) {
+			Map<Integer, int[]> p = postings.get(term);
+			if(p == null)
+				return candidates;
+			termPostings.put(term, p);
+		}
+		// the rarest term first
+		Collections.sort(distinctTerms, new Comparator<String>() {
+			@Override
+			public int compare(String t1, String t2) {
+				return Integer.compare(termPostings.get(t1).size(), termPostings.get(t2).size());
+			}
+		});
+		double avgLength = (docs.isEmpty()) ? 1 : Math.max(1, (double) totalTerms / docs.size());
+		Map<Integer, int[]> rarest = termPostings.get(distinctTerms.get(0));
+		for(Integer docId : rarest.keySet()) {
+			Doc doc = docsById.get(docId);
+			if(!doc.path.startsWith(folder) || doc.path.equals(folder))
+				continue;
+			double score = 0;
+			for(String term : distinctTerms) {
+				int[] positions = termPostings.get(term).get(docId);
+				if(positions == null) {
+					score = -1;
+					break;
+				}
+				int df = termPostings.get(term).size();
+				double idf = Math.log(1 + (docs.size() - df + 0.5) / (df + 0.5));
+				double tf = positions.length;
+				score += idf * tf * (bm25_k1 + 1) / (tf + bm25_k1 * (1 - bm25_b + bm25_b * doc.length / avgLength));
+			}
+			if(score < 0)
+				continue;
+			String relativePath = folder.relativize(doc.path).toString().replace(doc.path.getFileSystem().getSeparator(),
+					Constants.defaultSeparator);
+			if(!filter.accept(relativePath))
+				continue;
+			int phrase = (terms.size() > 1) ? findPhrase(termPostings, terms, docId) : -1;
+			if(phrase >= 0)
+				candidates.add(new Candidate(doc, relativePath, score * 2, phrase, terms.size()));
+			else
+				candidates.add(new Candidate(doc, relativePath, score, rarest.get(docId)[0], 1));
+		}
+		return candidates;
+	}
+
+	/**
+	 * @return the position of the first occurrence of the terms as phrase, or -1 if there isn't any
+	 */
+	private static int findPhrase(Map<String, Map<Integer, int[]>> termPostings, List<String> terms, Integer docId) {
+		for(int start : termPostings.get(terms.get(0)).get(docId)) {
+			boolean found = true;
+			for(int i = 1; i < terms.size() && found; i++)
+				found = Arrays.binarySearch(termPostings.get(terms.get(i)).get(docId), start + i) >= 0;
+			if(found)
+				return start;
+		}
+		return -1;
+	}
+
+	/**
+	 * Builds the snippet around the terms at the position of the candidate from the stored text.
+	 */
+	private static String buildSnippet(Candidate candidate) {
+		String text;
+		try {
+			text = new String(inflate(candidate.doc.text), StandardCharsets.UTF_8);
+		} catch (DataFormatException e) {
+			return "";
+		}
+		Tokenizer tokenizer = new Tokenizer(text);
+		int position = 0;
+		int start = 0;
+		int end = 0;
+		while(tokenizer.next()) {
+			if(position == candidate.position)
+				start = tokenizer.start;
+			if(position == candidate.position + candidate.termCount - 1) {
+				end = tokenizer.end;
+				break;
+			}
+			position++;
+		}
+		int from = Math.max(0, start - snippet_radius);
+		int to = Math.min(text.length(), end + snippet_radius);
+		// don't cut words
+		while(from > 0 && !Character.isWhitespace(text.charAt(from - 1)) && from > start - 2 * snippet_radius)
+			from--;
+		while(to < text.length() && !Character.isWhitespace(text.charAt(to)) && to < end + 2 * snippet_radius)
+			to++;
+		StringBuilder snippet = new StringBuilder();
+		if(from > 0)
+			snippet.append("...");
+		snippet.append(text.substring(from, to).trim().replaceAll("\\s+", " "));
+		if(to < text.length())
+			snippet.append("...");
+		return snippet.toString();
+	}
+
+	private static Charset getEncoding() {
+		try {
+			return Charset.forName(PropertiesLoader.getDefaultEncoding());
+		} catch (RuntimeException e) {
+			return StandardCharsets.UTF_8;
+		}
+	}
+
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+			byte[] buffer = new byte[8192];
+			while(!deflater.finished())
+				out.write(buffer, 0, deflater.deflate(buffer));
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] data) throws DataFormatException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+			byte[] buffer = new byte[8192];
+			while(!inflater.finished()) {
+				int count = inflater.inflate(buffer);
+				if(count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new DataFormatException("Truncated data.");
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Writes the index into a temporary file, which replaces the index file afterwards.
+	 */
+	private void store() {
+		Path tempFile = null;
+		lock.readLock().lock();
+		try {
+			tempFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(version);
+				out.writeInt(roots.size());
+				for(Map.Entry<Path, Set<String>> root : roots.entrySet()) {
+					out.writeUTF(root.getKey().toString());
+					out.writeInt(root.getValue().size());
+					for(String ext : root.getValue())
+						out.writeUTF(ext);
+				}
+				// the documents are renumbered by their order in the file
+				Map<Integer, Integer> storedIds = new HashMap<>();
+				out.writeInt(docs.size());
+				for(Doc doc : docs.values()) {
+					storedIds.put(doc.id, storedIds.size());
+					out.writeUTF(doc.path.toString());
+					out.writeLong(doc.modified);
+					out.writeLong(doc.size);
+					writeVarInt(out, doc.length);
+					writeVarInt(out, doc.text.length);
+					out.write(doc.text);
+				}
+				out.writeInt(postings.size());
+				for(Map.Entry<String, Map<Integer, int[]>> entry : postings.entrySet()) {
+					out.writeUTF(entry.getKey());
+					Map<Integer, int[]> sortedPostings = new TreeMap<>();
+					for(Map.Entry<Integer, int[]> posting : entry.getValue().entrySet())
+						sortedPostings.put(storedIds.get(posting.getKey()), posting.getValue());
+					writeVarInt(out, sortedPostings.size());
+					int previousId = 0;
+					for(Map.Entry<Integer, int[]> posting : sortedPostings.entrySet()) {
+						writeVarInt(out, posting.getKey() - previousId);
+						previousId = posting.getKey();
+						int[] positions = posting.getValue();
+						writeVarInt(out, positions.length);
+						int previousPosition = 0;
+						for(int position : positions) {
+							writeVarInt(out, position - previousPosition);
+							previousPosition = position;
+						}
+					}
+				}
+			}
+			try {
+				Files.move(tempFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+			dirty = false;
+			logger.debug("Content index stored with {} files and {} terms.", docs.size(), postings.size());
+		} catch (IOException e) {
+			logger.warn("Error while storing the content index.", e);
+			if(tempFile != null) {
+				try {
+					Files.deleteIfExists(tempFile);
+				} catch (IOException e1) {
+					logger.debug("Couldn't delete {}", tempFile);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads the stored index. An unreadable index is dropped, the files will be indexed again.
+	 */
+	private void load() {
+		if(!Files.exists(indexFile))
+			return;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if(in.readInt() != version)
+				throw new IOException("Unsupported version.");
+			int rootCount = in.readInt();
+			for(int i = 0; i < rootCount; i++) {
+				Path root = Paths.get(in.readUTF());
+				Set<String> extensions = new HashSet<>();
+				int extCount = in.readInt();
+				for(int j = 0; j < extCount; j++)
+					extensions.add(in.readUTF());
+				roots.put(root, extensions);
+			}
+			int docCount = in.readInt();
+			for(int i = 0; i < docCount; i++) {
+				Path path = Paths.get(in.readUTF());
+				long modified = in.readLong();
+				long size = in.readLong();
+				int length = readVarInt(in);
+				byte[] text = new byte[readVarInt(in)];
+				in.readFully(text);
+				add(new Doc(nextId++, path, modified, size, length, text));
+			}
+			int termCount = in.readInt();
+			for(int i = 0; i < termCount; i++) {
+				String term = in.readUTF();
+				int docIdCount = readVarInt(in);
+				int docId = 0;
+				for(int j = 0; j < docIdCount; j++) {
+					docId += readVarInt(in);
+					int[] positions = new int[readVarInt(in)];
+					int position = 0;
+					for(int k = 0; k < positions.length; k++) {
+						position += readVarInt(in);
+						positions[k] = position;
+					}
+					Doc doc = docsById.get(docId);
+					if(doc == null)
+						throw new IOException("Unknown document.");
+					addPosting(term, doc, positions);
+				}
+			}
+			dirty = false;
+		} catch (IOException | RuntimeException e) {
+			logger.warn(String.format("The stored content index %s couldn't be read, it will be rebuilt.", indexFile), e);
+			roots.clear();
+			docs.clear();
+			docsById.clear();
+			postings.clear();
+			totalTerms = 0;
+			nextId = 0;
+		}
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		int v = value;
+		while((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed variable-length integer.");
+	}
+}
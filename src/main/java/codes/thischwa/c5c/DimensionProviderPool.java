@@ -0,0 +1,171 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.jii.IDimensionProvider;
+import codes.thischwa.jii.exception.ReadException;
+
+/**
+ * A bounded pool of {@link IDimensionProvider} instances. The implementations aren't thread-safe, so each one is used by just one thread
+ * at the same time. The instances are created lazily up to the size of the pool. If all of them are in use, the caller has to wait.
+ * The time the callers are waiting for a provider is recorded, it can be retrieved by the getters.
+ */
+public final class DimensionProviderPool {
+	private static final Logger logger = LoggerFactory.getLogger(DimensionProviderPool.class);
+
+	private final Class<? extends IDimensionProvider> providerClass;
+
+	private final int size;
+
+	private final BlockingQueue<IDimensionProvider> idleProviders;
+
+	private final AtomicInteger createdProviders = new AtomicInteger();
+
+	private final AtomicLong waitCount = new AtomicLong();
+
+	private final AtomicLong waitTimeTotal = new AtomicLong();
+
+	private final AtomicLong waitTimeMax = new AtomicLong();
+
+	/**
+	 * Instantiates the pool.
+	 *
+	 * @param providerClass
+	 *            the implementation of the {@link IDimensionProvider}
+	 * @param size
+	 *            the max. number of provider instances, must be greater than 0
+	 */
+	DimensionProviderPool(Class<? extends IDimensionProvider> providerClass, int size) {
+		if(size < 1)
+			throw new IllegalArgumentException("The size of the pool must be greater than 0.");
+		this.providerClass = providerClass;
+		this.size = size;
+		this.idleProviders = new ArrayBlockingQueue<>(size);
+	}
+
+	/**
+	 * Retrieves the {@link Dimension} of the image with a provider of the pool.
+	 *
+	 * @param imageIn
+	 *            the {@link InputStream} of an image
+	 * @return the {@link Dimension} of the image
+	 * @throws IOException
+	 *             if the image data couldn't be analyzed or no provider could be obtained
+	 */
+	Dimension getDimension(InputStream imageIn) throws IOException {
+		IDimensionProvider provider = acquire();
+		try {
+			provider.set(imageIn);
+			return provider.getDimension();
+		} catch (UnsupportedOperationException | ReadException e) {
+			throw new IOException(e);
+		} finally {
+			idleProviders.offer(provider);
+		}
+	}
+
+	private IDimensionProvider acquire() throws IOException {
+		IDimensionProvider provider = idleProviders.poll();
+		if(provider != null)
+			return provider;
+		provider = create();
+		if(provider != null)
+			return provider;
+
+		long start = System.nanoTime();
+		try {
+			provider = idleProviders.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a DimensionProvider.", e);
+		}
+		recordWait(System.nanoTime() - start);
+		return provider;
+	}
+
+	/**
+	 * Creates a new provider, if the pool isn't exhausted.
+	 *
+	 * @return a new provider or <code>null</code>, if the max. number of providers is already created
+	 */
+	private IDimensionProvider create() throws IOException {
+		while(true) {
+			int created = createdProviders.get();
+			if(created >= size)
+				return null;
+			if(createdProviders.compareAndSet(created, created + 1))
+				break;
+		}
+		try {
+			IDimensionProvider provider = providerClass.newInstance();
+			logger.debug("New DimensionProvider created, {} of {}.", createdProviders.get(), size);
+			return provider;
+		} catch (InstantiationException | IllegalAccessException e) {
+			createdProviders.decrementAndGet();
+			throw new IOException(String.format("DimensionProvider implementation [%s] couldn't be instantiated.", providerClass.getName()), e);
+		}
+	}
+
+	private void recordWait(long nanos) {
+		waitCount.incrementAndGet();
+		waitTimeTotal.addAndGet(nanos);
+		long max = waitTimeMax.get();
+		while(nanos > max && !waitTimeMax.compareAndSet(max, nanos))
+			max = waitTimeMax.get();
+	}
+
+	/**
+	 * @return the max. number of provider instances
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the number of provider instances created so far
+	 */
+	public int getCreatedProviders() {
+		return createdProviders.get();
+	}
+
+	/**
+	 * @return the number of calls, which had to wait for a provider
+	 */
+	public long getWaitCount() {
+		return waitCount.get();
+	}
+
+	/**
+	 * @return the sum of the waiting times in milliseconds
+	 */
+	public long getWaitTimeTotal() {
+		return TimeUnit.NANOSECONDS.toMillis(waitTimeTotal.get());
+	}
+
+	/**
+	 * @return the longest waiting time in milliseconds
+	 */
+	public long getWaitTimeMax() {
+		return TimeUnit.NANOSECONDS.toMillis(waitTimeMax.get());
+	}
+}
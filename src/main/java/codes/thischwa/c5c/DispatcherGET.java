@@ -11,35 +11,51 @@
 package codes.thischwa.c5c;
 
 import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import codes.thischwa.c5c.GenericConnector.StreamContent;
 import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.exception.FilemanagerException;
 import codes.thischwa.c5c.exception.FilemanagerException.Key;
 import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.requestcycle.Context;
 import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.requestcycle.ServerTiming.Phase;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+import codes.thischwa.c5c.requestcycle.response.PartialContent;
+import codes.thischwa.c5c.requestcycle.response.mode.ContentSearch;
 import codes.thischwa.c5c.requestcycle.response.mode.CreateFolder;
 import codes.thischwa.c5c.requestcycle.response.mode.Delete;
+import codes.thischwa.c5c.requestcycle.response.mode.Dimensions;
 import codes.thischwa.c5c.requestcycle.response.mode.Download;
 import codes.thischwa.c5c.requestcycle.response.mode.EditFile;
 import codes.thischwa.c5c.requestcycle.response.mode.FileInfo;
 import codes.thischwa.c5c.requestcycle.response.mode.FolderInfo;
 import codes.thischwa.c5c.requestcycle.response.mode.Prieview;
 import codes.thischwa.c5c.requestcycle.response.mode.Rename;
+import codes.thischwa.c5c.requestcycle.response.mode.Restore;
 import codes.thischwa.c5c.requestcycle.response.mode.ShowThumbnail;
+import codes.thischwa.c5c.requestcycle.response.mode.Transfer;
+import codes.thischwa.c5c.requestcycle.response.mode.ZipDownload;
+import codes.thischwa.c5c.util.ByteRange;
 import codes.thischwa.c5c.util.FileUtils;
+import codes.thischwa.c5c.util.PathBuilder;
+import codes.thischwa.c5c.util.StringUtils;
 import codes.thischwa.c5c.util.VirtualFile;
 
 /**
@@ -49,18 +65,32 @@ import codes.thischwa.c5c.util.VirtualFile;
 final class DispatcherGET extends GenericDispatcher {
 	private static Logger logger = LoggerFactory.getLogger(DispatcherGET.class);
 
+	/** The base name of a zip archive with multiple files or folders. */
+	private static final String zipName = "download";
+
 	/**
 	 * Instantiates and initializes the connector (object which extends the {@link GenericConnector});
 	 * 
 	 * @param connector
 	 *            the implementation of the {@link Connector} interface
+	 * @param renditionCache
+	 *            the cache for thumbnails and previews
+	 * @param folderCache
+	 *            the cache for folder listings
+	 * @param folderSizes
+	 *            the cache for the sizes of folders
+	 * @param filenameIndex
+	 *            the index for the mode 'search'
+	 * @param contentIndex
+	 *            the index for the mode 'searchcontent'
 	 */
-	DispatcherGET(Connector connector) {
-		super(connector);
+	DispatcherGET(Connector connector, RenditionCache renditionCache, FolderCache folderCache, FolderSizes folderSizes,
+			FilenameIndex filenameIndex, ContentIndex contentIndex) {
+		super(connector, renditionCache, folderCache, folderSizes, filenameIndex, contentIndex);
 	}
 
 	/**
-	 * Processes the get-request. Known modes are: getinfo, getfolder, rename, delete, download.
+	 * Processes the get-request. Known modes are: getinfo, getfolder, getdimensions, search, searchcontent, rename, copy, move, delete, restore, download, downloadzip.
 	 * 
 	 * @return the response
 	 */
@@ -86,7 +116,10 @@ final class DispatcherGET extends GenericDispatcher {
 				}
 				boolean needSize = Boolean.parseBoolean(req.getParameter("getsize"));
 				logger.debug("* getFolder -> urlPath: {}, backendPath: {}, needSize: {}", urlPath, backendPath, needSize);
-				Set<GenericConnector.FileProperties> props = connector.getFolder(backendPath, needSize);
+				String configKey = buildConfigKey();
+				Collection<GenericConnector.FileProperties> props = folderCache.getFolder(connector, backendPath, needSize, configKey);
+				if(needSize && props != null)
+					props = folderSizes.withSizes(connector, backendPath, props, configKey);
 				resp = buildFolder(urlPath, props);
 				break;
 			}
@@ -95,10 +128,51 @@ final class DispatcherGET extends GenericDispatcher {
 				String backendPath = buildBackendPath(urlPath);
 				boolean needSize = Boolean.parseBoolean(req.getParameter("getsize"));
 				logger.debug("* getInfo -> urlPath: {}, backendPath {}, needSize: {}", urlPath, backendPath, needSize);
-				GenericConnector.FileProperties fp = connector.getInfo(backendPath, needSize);
+				String configKey = buildConfigKey();
+				GenericConnector.FileProperties fp = folderCache.getInfo(connector, backendPath, needSize, configKey);
+				if(needSize)
+					fp = folderSizes.withSize(connector, backendPath, fp, configKey);
 				resp = buildFileInfo(urlPath, fp, fp.isDir());
 				break;
 			}
+			case DIMENSIONS: {
+				String[] urlPaths = req.getParameterValues("path");
+				logger.debug("* getDimensions -> number of paths: {}", (urlPaths == null) ? 0 : urlPaths.length);
+				resp = buildDimensions(urlPaths);
+				break;
+			}
+			case SEARCH: {
+				String urlPath = req.getParameter("path");
+				String backendPath = buildBackendPath(urlPath);
+				String query = req.getParameter("string");
+				if(StringUtils.isNullOrEmptyOrBlank(query))
+					throw new FilemanagerException(mode, Key.InvalidVar, "string");
+				int maxLimit = PropertiesLoader.getSearchLimit();
+				int offset = Math.max(parseInt(req.getParameter("offset"), 0), 0);
+				int limit = parseInt(req.getParameter("limit"), maxLimit);
+				if(limit <= 0 || limit > maxLimit)
+					limit = maxLimit;
+				logger.debug("* search -> urlPath: {}, backendPath: {}, string: {}, offset: {}, limit: {}", urlPath, backendPath, query,
+						offset, limit);
+				resp = buildSearchResult(urlPath, filenameIndex.search(connector, backendPath, query, offset, limit, buildConfigKey()));
+				break;
+			}
+			case SEARCHCONTENT: {
+				String urlPath = req.getParameter("path");
+				String backendPath = buildBackendPath(urlPath);
+				String query = req.getParameter("string");
+				if(StringUtils.isNullOrEmptyOrBlank(query))
+					throw new FilemanagerException(mode, Key.InvalidVar, "string");
+				int maxLimit = PropertiesLoader.getSearchLimit();
+				int limit = parseInt(req.getParameter("limit"), maxLimit);
+				if(limit <= 0 || limit > maxLimit)
+					limit = maxLimit;
+				logger.debug("* searchcontent -> urlPath: {}, backendPath: {}, string: {}, limit: {}", urlPath, backendPath, query, limit);
+				Set<String> editExtensions = UserObjectProxy.getFilemanagerConfig().getEdit().getExtensions();
+				resp = buildContentSearch(urlPath,
+						contentIndex.search(connector, backendPath, editExtensions, query, limit, new ExclusionFilter()));
+				break;
+			}
 			case RENAME: {
 				String oldUrlPath = req.getParameter("old");
 				String oldBackendPath = buildBackendPath(oldUrlPath);
@@ -107,9 +181,28 @@ final class DispatcherGET extends GenericDispatcher {
 				logger.debug("* rename -> oldUrlPath: {}, backendPath: {}, new name: {}, santized new name: {}", oldUrlPath,
 						oldBackendPath, newName, sanitizedName);
 				boolean isDirectory = connector.rename(oldBackendPath, sanitizedName);
+				invalidateCaches(oldBackendPath);
 				resp = buildRename(oldUrlPath, sanitizedName, isDirectory);
 				break;
 			}
+			case COPY:
+			case MOVE: {
+				String oldUrlPath = req.getParameter("old");
+				String oldBackendPath = buildBackendPath(oldUrlPath);
+				String newUrlPath = req.getParameter("new");
+				String newBackendPath = buildBackendPath(newUrlPath);
+				logger.debug("* {} -> oldUrlPath: {}, backendPath: {}, new urlPath: {}, new backendPath: {}", mode.getParameterName(),
+						oldUrlPath, oldBackendPath, newUrlPath, newBackendPath);
+				// checked for all connectors, not just for the fallback of the GenericConnector
+				GenericConnector.checkTransferTarget(mode, oldBackendPath, newBackendPath);
+				boolean isDirectory = (mode == FilemanagerAction.COPY) ? connector.copy(oldBackendPath, newBackendPath) : connector.move(
+						oldBackendPath, newBackendPath);
+				if(mode == FilemanagerAction.MOVE)
+					invalidateCaches(oldBackendPath);
+				invalidateCaches(newBackendPath);
+				resp = new Transfer(mode, oldUrlPath, newUrlPath, isDirectory);
+				break;
+			}
 			case CREATEFOLDER: {
 				String urlPath = req.getParameter("path");
 				String backendPath = buildBackendPath(urlPath);
@@ -118,6 +211,7 @@ final class DispatcherGET extends GenericDispatcher {
 				logger.debug("* createFolder -> urlPath: {}, backendPath: {}, name: {}, sanitized name: {}", urlPath, backendPath,
 						folderName, sanitizedFolderName);
 				connector.createFolder(backendPath, sanitizedFolderName);
+				invalidateCaches(new PathBuilder(backendPath).addFolder(sanitizedFolderName).toString());
 				resp = buildCreateFolder(urlPath, sanitizedFolderName);
 				break;
 			}
@@ -126,15 +220,40 @@ final class DispatcherGET extends GenericDispatcher {
 				String backendPath = buildBackendPath(urlPath);
 				logger.debug("* delete -> urlPath: {}, backendPath: {}", urlPath, backendPath);
 				boolean isDirectory = connector.delete(backendPath);
+				invalidateCaches(backendPath);
 				resp = buildDelete(urlPath, isDirectory);
 				break;
 			}
+			case RESTORE: {
+				String urlPath = req.getParameter("path");
+				String backendPath = buildBackendPath(urlPath);
+				logger.debug("* restore -> urlPath: {}, backendPath: {}", urlPath, backendPath);
+				boolean isDirectory = connector.restore(backendPath);
+				invalidateCaches(backendPath);
+				String restoredPath = urlPath;
+				if(isDirectory && !restoredPath.endsWith(Constants.defaultSeparator))
+					restoredPath += Constants.defaultSeparator;
+				resp = new Restore(restoredPath);
+				break;
+			}
 			case DOWNLOAD: {
 				String urlPath = req.getParameter("path");
 				String backendPath = buildBackendPath(urlPath);
 				logger.debug("* download -> urlPath: {}, backendPath: {}", urlPath, backendPath);
-				StreamContent sc = connector.download(backendPath);
-				resp = buildDownload(backendPath, sc);
+				resp = buildContent(FilemanagerAction.DOWNLOAD, backendPath);
+				break;
+			}
+			case DOWNLOADZIP: {
+				String[] urlPaths = req.getParameterValues("path");
+				if(urlPaths == null || urlPaths.length == 0)
+					throw new FilemanagerException(mode, Key.InvalidVar, "path");
+				logger.debug("* downloadzip -> number of paths: {}", urlPaths.length);
+				ZipEntries entries = new ZipEntries(connector, folderCache, buildConfigKey());
+				for(String urlPath : urlPaths)
+					entries.add(buildBackendPath(urlPath));
+				// a single folder gives its name to the archive
+				String name = (urlPaths.length == 1) ? new VirtualFile(urlPaths[0], false).getName() : zipName;
+				resp = new ZipDownload(String.format("%s.zip", StringUtils.isNullOrEmptyOrBlank(name) ? zipName : name), entries);
 				break;
 			}
 			case THUMBNAIL: {
@@ -151,8 +270,11 @@ final class DispatcherGET extends GenericDispatcher {
 				logger.debug("* thumbnail -> urlPath: {}, backendPath: {}, thumbnail: {}", urlPath, backendPath, thumbnail);
 				if(thumbnail) {
 					resp = buildThumbnailView(backendPath);					
+				} else if(!isImage(backendPath)) {
+					// e.g. videos, they are served as-is and ranges of them could be requested
+					resp = buildContent(FilemanagerAction.PREVIEW, backendPath);
 				} else {
-					StreamContent sc = connector.preview(backendPath, UserObjectProxy.getPreviewDimension());
+					StreamContent sc = buildRendition(FilemanagerAction.PREVIEW, backendPath, UserObjectProxy.getPreviewDimension());
 					resp = buildPrieview(backendPath, sc);
 				}
 				break;
@@ -175,19 +297,118 @@ final class DispatcherGET extends GenericDispatcher {
 		}
 	}
 
-	private FolderInfo buildFolder(String urlPath, Set<GenericConnector.FileProperties> fileProperties) {
-		FolderInfo folderInfo = buildFolderInfo();
+	private FolderInfo buildFolder(final String urlPath, Collection<GenericConnector.FileProperties> fileProperties) {
 		if(fileProperties == null)
-			return folderInfo;
-		List<GenericConnector.FileProperties> props = new ArrayList<>(fileProperties);
+			return buildFolderInfo();
+		final List<GenericConnector.FileProperties> props = new ArrayList<>(fileProperties);
+		long start = System.nanoTime();
 		sortFileProperties(props, UserObjectProxy.getFilemanagerConfig().getOptions().getFileSorting());
-		List<FileInfo> infos = new ArrayList<>(props.size());
-		for(GenericConnector.FileProperties fp : props) {
-			FileInfo fileInfo = buildFileInfo(urlPath, fp);
-			infos.add(fileInfo);
-			add(folderInfo, fileInfo);
+		RequestData.getServerTiming().add(Phase.SORT, start);
+		// the FileInfos are built while streaming the response
+		return new FolderInfo(new Iterable<FileInfo>() {
+			@Override
+			public Iterator<FileInfo> iterator() {
+				final Iterator<GenericConnector.FileProperties> iter = props.iterator();
+				return new Iterator<FileInfo>() {
+					@Override
+					public boolean hasNext() {
+						return iter.hasNext();
+					}
+
+					@Override
+					public FileInfo next() {
+						return buildFileInfo(urlPath, iter.next());
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		});
+	}
+
+	private FolderInfo buildSearchResult(String urlPath, final List<FilenameIndex.Hit> hits) {
+		final String folderUrlPath = (urlPath.endsWith(Constants.defaultSeparator)) ? urlPath : urlPath.concat(Constants.defaultSeparator);
+		// the FileInfos are built while streaming the response
+		return new FolderInfo(new Iterable<FileInfo>() {
+			@Override
+			public Iterator<FileInfo> iterator() {
+				final Iterator<FilenameIndex.Hit> iter = hits.iterator();
+				return new Iterator<FileInfo>() {
+					@Override
+					public boolean hasNext() {
+						return iter.hasNext();
+					}
+
+					@Override
+					public FileInfo next() {
+						FilenameIndex.Hit hit = iter.next();
+						return buildFileInfo(folderUrlPath.concat(hit.getParentPath()), hit.getFileProperties());
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		});
+	}
+
+	private ContentSearch buildContentSearch(String urlPath, List<ContentIndex.Hit> hits) {
+		String folderUrlPath = (urlPath.endsWith(Constants.defaultSeparator)) ? urlPath : urlPath.concat(Constants.defaultSeparator);
+		ContentSearch contentSearch = new ContentSearch(folderUrlPath);
+		for(ContentIndex.Hit hit : hits)
+			contentSearch.add(new ContentSearch.Hit(folderUrlPath.concat(hit.getRelativePath()), hit.getScore(), hit.getSnippet()));
+		return contentSearch;
+	}
+
+	/**
+	 * Applies the exclusions of the current configuration to the hits of a full-text search, because the content is indexed
+	 * detached from the requests.
+	 */
+	private class ExclusionFilter implements ContentIndex.Filter {
+		@Override
+		public boolean accept(String relativePath) {
+			if(!(connector instanceof GenericConnector))
+				return true;
+			GenericConnector genericConnector = (GenericConnector) connector;
+			String[] names = relativePath.split(Constants.defaultSeparator);
+			for(int i = 0; i < names.length - 1; i++) {
+				if(!genericConnector.checkFolderName(names[i]))
+					return false;
+			}
+			return genericConnector.checkFilename(names[names.length - 1]);
+		}
+	}
+
+	private static int parseInt(String value, int defaultValue) {
+		if(value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private Dimensions buildDimensions(String[] urlPaths) {
+		Dimensions dimensions = new Dimensions();
+		if(urlPaths == null)
+			return dimensions;
+		String configKey = buildConfigKey();
+		for(String urlPath : urlPaths) {
+			GenericConnector.FileProperties fp = null;
+			try {
+				fp = folderCache.getInfo(connector, buildBackendPath(urlPath), true, configKey);
+			} catch (C5CException e) {
+				logger.debug("Couldn't get the dimension of {}: {}", urlPath, e.getMessage());
+			}
+			dimensions.add(urlPath, fp);
 		}
-		return folderInfo;
+		return dimensions;
 	}
 
 	private FileInfo buildFileInfo(String urlPath, GenericConnector.FileProperties fp) {
@@ -213,10 +434,6 @@ final class DispatcherGET extends GenericDispatcher {
 		return fi;
 	}
 	
-	private void add(FolderInfo folderInfo, FileInfo fileInfo) {
-		folderInfo.add(fileInfo);
-	}
-
 	private Rename buildRename(String urlPath, String newSanitizedName, boolean isDirectory) {
 		return new Rename(urlPath, newSanitizedName, isDirectory);
 	}
@@ -236,19 +453,121 @@ final class DispatcherGET extends GenericDispatcher {
 		return new CreateFolder(parentUrlPath, folderName);
 	}
 
+	/**
+	 * Builds the response for the original content of a file, {@link FilemanagerAction#DOWNLOAD} or {@link FilemanagerAction#PREVIEW}.
+	 * If the request contains a valid 'Range' header, just the requested ranges will be read by
+	 * {@link Connector#downloadRange(String, long, long)}. The properties of a range request are read by the connector, not by the
+	 * {@link FolderCache}.
+	 */
+	private GenericResponse buildContent(FilemanagerAction mode, final String backendPath) throws C5CException {
+		HttpServletRequest req = RequestData.getContext().getServletRequest();
+		String rangeHeader = req.getHeader("Range");
+		// the ranges, the Content-Range and the If-Range check need the current size and date, the cached ones could be stale
+		GenericConnector.FileProperties fp = (rangeHeader == null) ? folderCache.getInfo(connector, backendPath, false, buildConfigKey())
+				: connector.getInfo(backendPath, false);
+		long lastModified = (fp.getRawModified() == null) ? -1 : fp.getRawModified().getTime();
+		List<ByteRange> ranges = null;
+		if(rangeHeader != null && fp.getRawSize() != null && isIfRangeValid(req, lastModified))
+			ranges = ByteRange.parse(rangeHeader, fp.getRawSize());
+		if(ranges != null) {
+			logger.debug("* range request -> backendPath: {}, ranges: {}", backendPath, ranges);
+			PartialContent partialContent = new PartialContent(fp.getRawSize(), ranges, new PartialContent.PartReader() {
+				@Override
+				public InputStream read(long offset, long length) throws IOException {
+					try {
+						return connector.downloadRange(backendPath, offset, length).getInputStream();
+					} catch (C5CException e) {
+						throw new IOException(e);
+					}
+				}
+			});
+			if(mode == FilemanagerAction.DOWNLOAD) {
+				Download download = new Download(backendPath, partialContent);
+				download.setLastModified(lastModified);
+				return download;
+			}
+			Prieview preview = new Prieview(backendPath, partialContent);
+			preview.setLastModified(lastModified);
+			return preview;
+		}
+
+		StreamContent sc = connector.download(backendPath);
+		if(mode == FilemanagerAction.DOWNLOAD) {
+			Download download = buildDownload(backendPath, sc);
+			download.setLastModified(lastModified);
+			return download;
+		}
+		Prieview preview = buildPrieview(backendPath, sc);
+		preview.setAcceptRanges(true);
+		preview.setLastModified(lastModified);
+		return preview;
+	}
+
+	/**
+	 * Checks the optional 'If-Range' header. Just the date of the last modification is supported as validator.
+	 */
+	private boolean isIfRangeValid(HttpServletRequest req, long lastModified) {
+		if(req.getHeader("If-Range") == null)
+			return true;
+		try {
+			long ifRange = req.getDateHeader("If-Range");
+			return lastModified > 0 && ifRange / 1000 == lastModified / 1000;
+		} catch (IllegalArgumentException e) {
+			// an entity tag isn't supported
+			return false;
+		}
+	}
+
+	private boolean isImage(String backendPath) {
+		String ext = FilenameUtils.getExtension(backendPath).toLowerCase();
+		return UserObjectProxy.getFilemanagerConfig().getImages().getExtensions().contains(ext);
+	}
+
 	private Download buildDownload(String fullPath, StreamContent sc) {
-		return new Download(fullPath, sc.getSize(), sc.getInputStream());
+		Download download = new Download(fullPath, sc.getSize(), sc.getInputStream());
+		download.setFile(sc.getFile());
+		return download;
 	}
 
 	private ShowThumbnail buildThumbnailView(String fullPath) throws C5CException {
 		Dimension dim = UserObjectProxy.getThumbnailDimension();
-		// TODO calling the cache, see issue#27
-		StreamContent sc = connector.buildThumbnail(fullPath, dim);
+		StreamContent sc = buildRendition(FilemanagerAction.THUMBNAIL, fullPath, dim);
 		return new ShowThumbnail(fullPath, sc.getSize(), sc.getInputStream());
 	}
+
+	/**
+	 * Builds a thumbnail or a preview. If the {@link RenditionCache} is enabled, it's asked first and a new rendition will be cached. So
+	 * the {@link Connector} has to decode and encode an image just once as long as it isn't changed.
+	 * 
+	 * @param mode
+	 *            {@link FilemanagerAction#THUMBNAIL} or {@link FilemanagerAction#PREVIEW}
+	 * @param backendPath
+	 *            the requested image
+	 * @param dim
+	 *            the dimension of the rendition
+	 * @return the rendition
+	 * @throws C5CException
+	 */
+	private StreamContent buildRendition(FilemanagerAction mode, String backendPath, Dimension dim) throws C5CException {
+		if(!renditionCache.isEnabled())
+			return callRendition(mode, backendPath, dim);
+		GenericConnector.FileProperties fp = connector.getInfo(backendPath, false);
+		StreamContent sc = renditionCache.get(mode, backendPath, fp, dim);
+		if(sc != null)
+			return sc;
+		sc = renditionCache.put(mode, backendPath, fp, dim, callRendition(mode, backendPath, dim));
+		// the rendition couldn't be cached, so it has to be built again
+		return (sc != null) ? sc : callRendition(mode, backendPath, dim);
+	}
+	
+	private StreamContent callRendition(FilemanagerAction mode, String backendPath, Dimension dim) throws C5CException {
+		return (mode == FilemanagerAction.THUMBNAIL) ? connector.buildThumbnail(backendPath, dim) : connector.preview(backendPath, dim);
+	}
 	
 	private Prieview buildPrieview(String fullPath, StreamContent sc) {
-		return new Prieview(fullPath, sc.getSize(), sc.getInputStream());
+		Prieview preview = new Prieview(fullPath, sc.getSize(), sc.getInputStream());
+		preview.setFile(sc.getFile());
+		return preview;
 	}
 	
 	private void setCapabilities(FileInfo fi, String urlPath) {
@@ -14,12 +14,26 @@ import java.awt.Dimension;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -39,10 +53,15 @@ import codes.thischwa.c5c.filemanager.Resize;
 import codes.thischwa.c5c.requestcycle.Context;
 import codes.thischwa.c5c.requestcycle.RequestData;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+import codes.thischwa.c5c.requestcycle.response.mode.BatchUpload;
+import codes.thischwa.c5c.requestcycle.response.mode.ChunkedUpload;
 import codes.thischwa.c5c.requestcycle.response.mode.Replace;
 import codes.thischwa.c5c.requestcycle.response.mode.SaveFile;
 import codes.thischwa.c5c.requestcycle.response.mode.UploadFile;
+import codes.thischwa.c5c.util.ByteRange;
 import codes.thischwa.c5c.util.FileUtils;
+import codes.thischwa.c5c.util.PathBuilder;
+import codes.thischwa.c5c.util.SizeLimitInputStream;
 import codes.thischwa.c5c.util.StringUtils;
 import codes.thischwa.c5c.util.VirtualFile;
 
@@ -52,22 +71,77 @@ import codes.thischwa.c5c.util.VirtualFile;
  */
 final class DispatcherPUT extends GenericDispatcher {
 	private static Logger logger = LoggerFactory.getLogger(DispatcherPUT.class);
+
+	/** The tolerated size of the multipart encoding and the other parts of an upload request. */
+	private static final long multipartOverhead = 64 * 1024;
+
+	private final ChunkedUploadStore chunkedUploads;
+
+	/** Processes the files of the batch uploads, it's <code>null</code> if batch uploads are disabled. */
+	private final ExecutorService batchExecutor;
+
+	private final int batchMaxFiles;
 	
 	/**
 	 * Instantiates and initializes the connector (object which extends the {@link GenericConnector});
 	 * 
 	 * @param connector
 	 *            the implementation of the {@link Connector} interface
+	 * @param renditionCache
+	 *            the cache for thumbnails and previews
+	 * @param folderCache
+	 *            the cache for folder listings
+	 * @param folderSizes
+	 *            the cache for the sizes of folders
+	 * @param filenameIndex
+	 *            the index for the mode 'search'
+	 * @param contentIndex
+	 *            the index for the mode 'searchcontent'
+	 * @param chunkedUploads
+	 *            the store of the chunked uploads, if it's <code>null</code> chunked uploads are disabled
+	 */
+	DispatcherPUT(Connector connector, RenditionCache renditionCache, FolderCache folderCache, FolderSizes folderSizes,
+			FilenameIndex filenameIndex, ContentIndex contentIndex, ChunkedUploadStore chunkedUploads) {
+		super(connector, renditionCache, folderCache, folderSizes, filenameIndex, contentIndex);
+		this.chunkedUploads = chunkedUploads;
+		this.batchMaxFiles = PropertiesLoader.getBatchUploadMaxFiles();
+		this.batchExecutor = (batchMaxFiles > 0) ? buildBatchExecutor(PropertiesLoader.getBatchUploadThreads()) : null;
+	}
+
+	/**
+	 * Builds the bounded pool of daemon threads for the batch uploads.
+	 * 
+	 * @param threads
+	 *            the number of threads, if it isn't greater than 0 the number of processors is used
+	 */
+	private static ExecutorService buildBatchExecutor(int threads) {
+		int poolSize = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+		logger.info("Batch uploads are processed by {} threads.", poolSize);
+		return Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "c5c-upload-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Stops the threads of the batch uploads.
 	 */
-	DispatcherPUT(Connector connector ) {
-		super(connector);
+	void close() {
+		if(batchExecutor != null)
+			batchExecutor.shutdownNow();
 	}
 
 	@Override
 	GenericResponse doRequest() {
 		logger.debug("Entering DispatcherPUT#doRequest");
 
-		InputStream in = null;
+		Path tempPath = null;
 		try {
 			Context ctx = RequestData.getContext();
 			FilemanagerAction mode = ctx.getMode();
@@ -75,7 +149,6 @@ final class DispatcherPUT extends GenericDispatcher {
 			FilemanagerConfig conf = UserObjectProxy.getFilemanagerUserConfig(req);
 			switch(mode) {
 			case UPLOAD: {
-				boolean overwrite = conf.getUpload().isOverwrite();
 				String currentPath = IOUtils.toString(req.getPart("currentpath").getInputStream());
 				String backendPath = buildBackendPath(currentPath);
 				Part uploadPart = req.getPart("newfile");
@@ -84,29 +157,11 @@ final class DispatcherPUT extends GenericDispatcher {
 				// Some browsers transfer the entire source path not just the filename
 				String fileName = FilenameUtils.getName(newName); // TODO check forceSingleExtension
 				String sanitizedName = FileUtils.sanitizeName(fileName);
-				if(!overwrite)
-					sanitizedName = getUniqueName(backendPath, sanitizedName);
-				logger.debug("* upload -> currentpath: {}, filename: {}, sanitized filename: {}", currentPath, fileName, sanitizedName);
-
-				// check 'overwrite' and unambiguity
-				String uniqueName = getUniqueName(backendPath, sanitizedName);
-				if(!overwrite && !uniqueName.equals(sanitizedName)) {
-					throw new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.FileAlreadyExists, sanitizedName);
-				}
-				sanitizedName = uniqueName;
-				
-				in = uploadPart.getInputStream();
-				
-				// save the file temporary
-				Path tempPath = saveTemp(in, sanitizedName);
-				
-				// pre-process the upload
-				imageProcessingAndSizeCheck(tempPath, sanitizedName, uploadPart.getSize(), conf);
-				
-				connector.upload(backendPath, sanitizedName, new BufferedInputStream(Files.newInputStream(tempPath)));
+
+				sanitizedName = store(backendPath, sanitizedName, buildSource(uploadPart), conf);
+				logger.debug("* upload -> currentpath: {}, filename: {}, stored filename: {}", currentPath, fileName, sanitizedName);
 
 				logger.debug("successful uploaded {} bytes", uploadPart.getSize());
-				Files.delete(tempPath);
 				UploadFile ufResp = new UploadFile(currentPath, sanitizedName);
 				ufResp.setName(newName);
 				ufResp.setPath(currentPath);
@@ -126,20 +181,17 @@ final class DispatcherPUT extends GenericDispatcher {
 				// check if file already exits
 				VirtualFile vf = new VirtualFile(backendPath, false);
 				String fileName = vf.getName();
-				String uniqueName = getUniqueName(vf.getFolder(), fileName);
-				if(uniqueName.equals(fileName)) {
+				try {
+					connector.getInfo(backendPath, false);
+				} catch (FilemanagerException e) {
 					throw new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.FileNotExists, backendPath);
 				}
 				
-				in = uploadPart.getInputStream();
-
-				// save the file temporary
-				Path tempPath = saveTemp(in, fileName);
-				
-				// pre-process the upload
-				imageProcessingAndSizeCheck(tempPath, fileName, uploadPart.getSize(), conf);
+				// receive and pre-process the upload
+				tempPath = receive(buildSource(uploadPart), fileName, conf);
 				
-				connector.replace(backendPath, new BufferedInputStream(Files.newInputStream(tempPath)));
+				connector.replace(backendPath, tempPath);
+				invalidateCaches(backendPath);
 				logger.debug("successful replaced {} bytes", uploadPart.getSize());
 				VirtualFile vfUrlPath = new VirtualFile(newFilePath, false);
  				return new Replace(vfUrlPath.getFolder(), vfUrlPath.getName());
@@ -149,8 +201,18 @@ final class DispatcherPUT extends GenericDispatcher {
 				logger.debug("* savefile -> urlPath: {}, backendPath: {}", urlPath, backendPath);
 				String content = req.getParameter("content");
 				connector.saveFile(backendPath, content);
+				invalidateCaches(backendPath);
 				return new SaveFile(urlPath);
 			}
+			case UPLOADINIT:
+			case UPLOADCHUNK:
+			case UPLOADSTATUS:
+			case UPLOADCOMMIT: {
+				return doChunkedUpload(mode, req, conf);
+			}
+			case UPLOADBATCH: {
+				return doBatchUpload(req, conf);
+			}
 			default: {
 				logger.error("Unknown 'mode' for POST: {}", req.getParameter("mode"));
 				throw new C5CException(UserObjectProxy.getFilemanagerErrorMessage(Key.ModeError));
@@ -165,58 +227,379 @@ final class DispatcherPUT extends GenericDispatcher {
 			logger.error("A IOException was thrown while uploading: " + e.getMessage(), e);
 			return ErrorResponseFactory.buildErrorResponseForUpload(e.getMessage(), 200);
 		} finally {
-			IOUtils.closeQuietly(in);
+			deleteQuietly(tempPath);
 		}
 	};
 	
-	private void imageProcessingAndSizeCheck(Path tempPath, String sanitizedName, long fileSize, FilemanagerConfig conf) throws C5CException, IOException {
-		Integer maxSize = (conf.getUpload().isFileSizeLimitAuto()) ? PropertiesLoader.getMaxUploadSize() : conf.getUpload().getFileSizeLimit();
-		if(fileSize > maxSize.longValue() * 1024 * 1024)
+	/**
+	 * Handles the modes of a chunked upload:
+	 * <ul>
+	 * <li><code>uploadinit</code>: Starts an upload with the parameters 'currentpath', 'name' and 'size', and returns its id.</li>
+	 * <li><code>uploadchunk</code>: Writes the body of the request at the parameter 'offset' of the upload with the parameter 'id'. The
+	 * chunks could be sent out of order and in parallel.</li>
+	 * <li><code>uploadstatus</code>: Returns the received ranges of the upload with the parameter 'id', so it could be resumed.</li>
+	 * <li><code>uploadcommit</code>: Checks and stores the upload with the parameter 'id' like a regular upload.</li>
+	 * </ul>
+	 * The responses are plain JSON, because the client has to send the chunks by XHR.
+	 */
+	private GenericResponse doChunkedUpload(FilemanagerAction mode, HttpServletRequest req, FilemanagerConfig conf) {
+		try {
+			if(chunkedUploads == null)
+				throw new C5CException(UserObjectProxy.getFilemanagerErrorMessage(Key.ModeError));
+			if(mode == FilemanagerAction.UPLOADINIT) {
+				String currentPath = req.getParameter("currentpath");
+				buildBackendPath(currentPath);
+				String sanitizedName = FileUtils.sanitizeName(FilenameUtils.getName(req.getParameter("name")));
+				long size = parseLong(req.getParameter("size"));
+				logger.debug("* uploadinit -> currentpath: {}, filename: {}, size: {}", currentPath, sanitizedName, size);
+				if(size < 0)
+					throw new FilemanagerException(mode, Key.InvalidVar, "size");
+				int maxSize = getMaxUploadSize(conf);
+				if(size > toBytes(maxSize))
+					throw new FilemanagerException(mode, Key.UploadFilesSmallerThan, String.valueOf(maxSize));
+				checkImageExtension(sanitizedName, conf.getUpload().isImagesOnly(), conf.getImages().getExtensions());
+				ChunkedUploadStore.Upload upload = chunkedUploads.init(currentPath, sanitizedName, size);
+				return new ChunkedUpload(mode, upload.getId(), size, Collections.<ByteRange> emptyList());
+			}
+
+			ChunkedUploadStore.Upload upload = chunkedUploads.get(req.getParameter("id"));
+			if(upload == null)
+				throw new FilemanagerException(mode, Key.InvalidVar, "id");
+			switch(mode) {
+			case UPLOADCHUNK: {
+				long offset = parseLong(req.getParameter("offset"));
+				if(offset < 0 || offset >= upload.getSize())
+					throw new FilemanagerException(mode, Key.InvalidVar, "offset");
+				try (InputStream in = req.getInputStream()) {
+					long written = chunkedUploads.writeChunk(upload, offset, in);
+					logger.debug("* uploadchunk -> id: {}, offset: {}, length: {}", upload.getId(), offset, written);
+				} catch (SizeLimitInputStream.SizeLimitExceededException e) {
+					throw new FilemanagerException(mode, Key.InvalidFileUpload, upload.getName());
+				}
+				break;
+			}
+			case UPLOADCOMMIT: {
+				if(!chunkedUploads.isComplete(upload))
+					throw new FilemanagerException(mode, Key.InvalidFileUpload, upload.getName());
+				String backendPath = buildBackendPath(upload.getUrlPath());
+				String storedName = store(backendPath, upload.getName(), buildSource(upload.getDataFile()), conf);
+				logger.debug("* uploadcommit -> id: {}, stored filename: {}", upload.getId(), storedName);
+				ChunkedUpload resp = new ChunkedUpload(mode, upload.getId(), upload.getSize(), chunkedUploads.getReceived(upload));
+				chunkedUploads.remove(upload);
+				resp.setPath(upload.getUrlPath());
+				resp.setName(storedName);
+				return resp;
+			}
+			default:
+				break;
+			}
+			return new ChunkedUpload(mode, upload.getId(), upload.getSize(), chunkedUploads.getReceived(upload));
+		} catch (C5CException e) {
+			return ErrorResponseFactory.buildException(e);
+		} catch (IOException e) {
+			logger.error("A IOException was thrown while a chunked upload: " + e.getMessage(), e);
+			return ErrorResponseFactory.buildErrorResponse(e.getMessage(), GenericResponse.DEFAULT_ERROR_CODE);
+		}
+	}
+
+	/**
+	 * Handles the batch upload: Each part 'newfile' of the request is stored in the folder of the part 'currentpath'. The names of all
+	 * files are reserved at once, afterwards the files are received, pre-processed and stored in parallel. A failed file doesn't fail
+	 * the whole batch, the plain JSON response contains the result of each file.<br/>
+	 * The parameter 'mode' should be part of the query string, otherwise the early check of the size of the request can't recognize
+	 * the batch and applies the limit of a single file.
+	 */
+	private GenericResponse doBatchUpload(HttpServletRequest req, final FilemanagerConfig conf) throws ServletException, IOException {
+		try {
+			if(batchExecutor == null)
+				throw new C5CException(UserObjectProxy.getFilemanagerErrorMessage(Key.ModeError));
+			String currentPath = IOUtils.toString(req.getPart("currentpath").getInputStream());
+			final String backendPath = buildBackendPath(currentPath);
+			List<Part> parts = new ArrayList<>();
+			for(Part part : req.getParts()) {
+				if("newfile".equals(part.getName()))
+					parts.add(part);
+			}
+			if(parts.isEmpty() || parts.size() > batchMaxFiles)
+				throw new FilemanagerException(FilemanagerAction.UPLOADBATCH, Key.InvalidVar, "newfile");
+			List<String> originalNames = new ArrayList<>(parts.size());
+			List<String> sanitizedNames = new ArrayList<>(parts.size());
+			for(Part part : parts) {
+				String newName = getFileName(part);
+				originalNames.add(newName);
+				sanitizedNames.add(FileUtils.sanitizeName(FilenameUtils.getName(newName)));
+			}
+			logger.debug("* addbatch -> currentpath: {}, files: {}", currentPath, originalNames);
+
+			// the names are reserved at once, so the folder is listed just once for the whole batch
+			List<String> names = connector.reserveNames(backendPath, sanitizedNames);
+			// a name is claimed either by its task or by the clean-up, so it's released exactly once if the task doesn't run
+			List<AtomicBoolean> claims = new ArrayList<>(names.size());
+			for(int i = 0; i < names.size(); i++)
+				claims.add(new AtomicBoolean());
+			List<Future<String>> results = new ArrayList<>(parts.size());
+			try {
+				for(int i = 0; i < parts.size(); i++) {
+					final String name = names.get(i);
+					final AtomicBoolean claim = claims.get(i);
+					final UploadSource source = buildSource(parts.get(i));
+					results.add(batchExecutor.submit(RequestData.propagate(new Callable<String>() {
+						@Override
+						public String call() throws Exception {
+							if(!claim.compareAndSet(false, true))
+								throw new CancellationException();
+							return storeReserved(backendPath, name, source, conf);
+						}
+					})));
+				}
+
+				BatchUpload resp = new BatchUpload(currentPath);
+				for(int i = 0; i < results.size(); i++) {
+					resp.add(getResult(originalNames.get(i), results.get(i)));
+				}
+				return resp;
+			} finally {
+				releaseUnclaimed(backendPath, names, claims, results);
+			}
+		} catch (C5CException e) {
+			return ErrorResponseFactory.buildException(e);
+		}
+	}
+
+	/**
+	 * Cancels the outstanding tasks of a batch upload, e.g. after an interruption, and releases the names of the tasks, which didn't
+	 * start. A started task releases its name by itself, if it fails.
+	 */
+	private void releaseUnclaimed(String backendPath, List<String> names, List<AtomicBoolean> claims, List<Future<String>> results) {
+		for(Future<String> result : results)
+			result.cancel(true);
+		for(int i = 0; i < names.size(); i++) {
+			if(!claims.get(i).compareAndSet(false, true))
+				continue;
+			try {
+				connector.releaseName(backendPath, names.get(i));
+			} catch (C5CException e) {
+				logger.warn(String.format("The reserved name '%s' of a batch upload couldn't be released.", names.get(i)), e);
+			}
+		}
+	}
+
+	private BatchUpload.Result getResult(String originalName, Future<String> result) {
+		try {
+			return new BatchUpload.Result(originalName, result.get());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(!(cause instanceof C5CException))
+				logger.error(String.format("Error while storing '%s' of a batch upload.", originalName), cause);
+			return new BatchUpload.Result(originalName, cause.getMessage(), GenericResponse.DEFAULT_ERROR_CODE);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.cancel(true);
+			return new BatchUpload.Result(originalName, e.getMessage(), GenericResponse.DEFAULT_ERROR_CODE);
+		}
+	}
+
+	/**
+	 * Stores an upload: A unique name is reserved, the file is received and pre-processed and handed over to the connector.
+	 * 
+	 * @return the name of the stored file
+	 */
+	private String store(String backendPath, String sanitizedName, UploadSource source, FilemanagerConfig conf) throws C5CException,
+			IOException {
+		// reserve a unique name, so concurrent uploads can't get the same one
+		String name = connector.reserveName(backendPath, sanitizedName);
+		return storeReserved(backendPath, name, source, conf);
+	}
+
+	/**
+	 * Stores an upload with a name reserved by {@link Connector#reserveName(String, String)}. The reservation is released, if the upload
+	 * fails.
+	 * 
+	 * @return the name of the stored file
+	 */
+	private String storeReserved(String backendPath, String name, UploadSource source, FilemanagerConfig conf) throws C5CException,
+			IOException {
+		Path tempPath = null;
+		boolean uploaded = false;
+		try {
+			tempPath = receive(source, name, conf);
+			connector.upload(backendPath, name, tempPath);
+			uploaded = true;
+		} finally {
+			if(!uploaded)
+				connector.releaseName(backendPath, name);
+			// a staged file is owned by the caller
+			if(tempPath != null && !tempPath.equals(source.getFile()))
+				deleteQuietly(tempPath);
+		}
+		invalidateCaches(new PathBuilder(backendPath).addFile(name));
+		return name;
+	}
+
+	private static long parseLong(String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Checks the header 'Content-Length' of an upload request against the max. upload size. It's called before the container reads the
+	 * body of the request, so an oversized upload will be rejected before it's buffered. The overhead of the multipart encoding is
+	 * tolerated.
+	 * 
+	 * @param req
+	 *            the upload request
+	 * @return the error response or <code>null</code>, if the upload is accepted or its size is unknown
+	 */
+	GenericResponse checkContentLength(HttpServletRequest req) {
+		long contentLength;
+		try {
+			contentLength = Long.parseLong(req.getHeader("Content-Length"));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		int maxSize = getMaxUploadSize(UserObjectProxy.getFilemanagerUserConfig(req));
+		// #getParameter can't be used, because it would read the body
+		String mode = StringUtils.divideAndDecodeQueryString(req.getQueryString()).get("mode");
+		int maxFiles = (FilemanagerAction.UPLOADBATCH.getParameterName().equalsIgnoreCase(mode)) ? Math.max(batchMaxFiles, 1) : 1;
+		if(contentLength <= maxFiles * toBytes(maxSize) + multipartOverhead)
+			return null;
+		logger.warn("Upload rejected, the content length {} exceeds the max. upload size of {} MB.", contentLength, maxSize);
+		FilemanagerException e = new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.UploadFilesSmallerThan,
+				String.valueOf(maxSize));
+		return ErrorResponseFactory.buildErrorResponseForUpload(e.getMessage());
+	}
+
+	/**
+	 * Receives an uploaded file in a single pass and writes it just once into the temporary directory: The header of an image is
+	 * sniffed before anything is written to reject faked images early, and the EXIF data is removed while writing. The returned file
+	 * is handed over to the connector, which may move it to its destination.
+	 * 
+	 * @param source
+	 *            the uploaded file
+	 * @param sanitizedName
+	 *            the name of the file
+	 * @param conf
+	 *            the current configuration of the filemanager
+	 * @return the received file, it has to be deleted by the caller
+	 */
+	private Path receive(UploadSource source, String sanitizedName, FilemanagerConfig conf) throws C5CException, IOException {
+		int maxSize = getMaxUploadSize(conf);
+		if(source.getSize() > toBytes(maxSize))
 			throw new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.UploadFilesSmallerThan,
 					String.valueOf(maxSize));
 		String extension = FilenameUtils.getExtension(sanitizedName);
 
 		// check image only
 		boolean isImageExt = checkImageExtension(sanitizedName, conf.getUpload().isImagesOnly(), conf.getImages().getExtensions());
-		if(!isImageExt)
+		// a staged file hasn't to be processed, it can be handed over as it is
+		if(!isImageExt && source.getFile() != null)
+			return source.getFile();
+
+		Path tempPath = buildTempPath(sanitizedName);
+		try {
+			Dimension dim = null;
+			// the size of a part isn't reliable in all containers, so the transfer is aborted as soon as the limit is crossed
+			try (InputStream in = new BufferedInputStream(new SizeLimitInputStream(source.open(), toBytes(maxSize)))) {
+				// check if the file is really an image, JPEG, PNG and GIF are identified by their header
+				if(isImageExt)
+					dim = UserObjectProxy.sniffDimension(in);
+				writeTemp(source, in, tempPath, (isImageExt) ? extension : null, toBytes(maxSize));
+			} catch (SizeLimitInputStream.SizeLimitExceededException e) {
+				throw new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.UploadFilesSmallerThan,
+						String.valueOf(maxSize));
+			}
+			if(!isImageExt)
+				return tempPath;
+
+			// other image types have to be analyzed by a DimensionProvider
+			if(dim == null)
+				dim = getDimension(tempPath);
+			if(dim == null)
+				throw new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.UploadImagesOnly);
+
+			// check if resize is enabled and fix it, if necessary
+			Resize resize = conf.getImages().getResize();
+			if(resize.isEnabled() && (dim.getHeight() > resize.getMaxHeight() || dim.getWidth() > resize.getMaxWidth())) {
+				logger.debug("process resize");
+				StreamContent sc;
+				try (InputStream in = new BufferedInputStream(Files.newInputStream(tempPath))) {
+					sc = connector.resize(in, extension, new Dimension(resize.getMaxWidth(), resize.getMaxHeight()));
+				}
+				try {
+					Files.copy(sc.getInputStream(), tempPath, StandardCopyOption.REPLACE_EXISTING);
+				} finally {
+					IOUtils.closeQuietly(sc.getInputStream());
+				}
+			}
+			return tempPath;
+		} catch (C5CException | IOException | RuntimeException e) {
+			deleteQuietly(tempPath);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the uploaded file. If 'imageExtension' is set, the EXIF data is removed on the fly. If this fails, the upload is read
+	 * again from its source and written as it is.
+	 */
+	private void writeTemp(UploadSource source, InputStream in, Path tempPath, String imageExtension, long maxSize) throws IOException {
+		try (OutputStream out = Files.newOutputStream(tempPath, StandardOpenOption.CREATE_NEW)) {
+			if(imageExtension == null || !UserObjectProxy.removeExif(in, out, imageExtension)) {
+				IOUtils.copyLarge(in, out);
+			}
 			return;
-		
-		// remove exif data
-		Path woExifPath = UserObjectProxy.removeExif(tempPath);
-		if(!tempPath.equals(woExifPath)) {
-			Files.move(woExifPath, tempPath, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			if(imageExtension == null || e instanceof FileAlreadyExistsException || e instanceof SizeLimitInputStream.SizeLimitExceededException)
+				throw e;
+			logger.warn("Error while removing EXIF data.", e);
 		}
-		
-		// check if the file is really an image
-		InputStream in = new BufferedInputStream(Files.newInputStream(tempPath, StandardOpenOption.READ));
-		Dimension dim = getDimension(in);
-		if(isImageExt && dim == null)
-				throw new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.UploadImagesOnly);
-		IOUtils.closeQuietly(in);
-		
-		// check if resize is enabled and fix it, if necessary 
-		Resize resize = conf.getImages().getResize();
-		if(resize.isEnabled() && (dim.getHeight() > resize.getMaxHeight() || dim.getWidth() > resize.getMaxWidth())) {
-			logger.debug("process resize");
-			StreamContent sc = connector.resize(new BufferedInputStream(Files.newInputStream(tempPath)), extension, new Dimension(resize.getMaxWidth(), resize.getMaxHeight()));
-			Files.copy(sc.getInputStream(), tempPath, StandardCopyOption.REPLACE_EXISTING);
-			IOUtils.closeQuietly(sc.getInputStream());
+		try (InputStream rawIn = new SizeLimitInputStream(source.open(), maxSize)) {
+			Files.copy(rawIn, tempPath, StandardCopyOption.REPLACE_EXISTING);
 		}
 	}
-	
-	private Path saveTemp(InputStream in, String name) throws IOException {
+
+	/**
+	 * @return the max. size of an upload in MB, it's taken from the properties, if the filemanager config is set to 'auto'
+	 */
+	private static int getMaxUploadSize(FilemanagerConfig conf) {
+		Integer maxSize = (conf.getUpload().isFileSizeLimitAuto()) ? PropertiesLoader.getMaxUploadSize() : conf.getUpload().getFileSizeLimit();
+		return maxSize.intValue();
+	}
+
+	private static long toBytes(int megaBytes) {
+		return megaBytes * 1024L * 1024L;
+	}
+
+	/**
+	 * Builds a unique path inside of the temporary directory. The file isn't created by {@link Files#createTempFile(Path, String,
+	 * String, java.nio.file.attribute.FileAttribute...)}, because it would be restricted to the owner, and it should get the default
+	 * permissions if the connector moves it to its destination.
+	 */
+	private Path buildTempPath(String name) {
 		String baseName = FilenameUtils.getBaseName(name);
 		String ext = FilenameUtils.getExtension(name);
+		return UserObjectProxy.getTempDirectory().resolve(String.format("%s-%s.%s", baseName, UUID.randomUUID(), ext));
+	}
+
+	private Dimension getDimension(Path file) {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+			return getDimension(in);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		if(file == null)
+			return;
 		try {
-			Path tempPath = Files.createTempFile(UserObjectProxy.getTempDirectory(), baseName, "."+ext);
-			Files.copy(in, tempPath, StandardCopyOption.REPLACE_EXISTING);
-			return tempPath;
+			Files.deleteIfExists(file);
 		} catch (IOException e) {
-			throw e;
-		} finally {
-			IOUtils.closeQuietly(in);
+			logger.warn("Couldn't delete the temporary file {}", file);
 		}
-		
 	}
 	
 	private Dimension getDimension(InputStream imageIn) {
@@ -235,13 +618,64 @@ final class DispatcherPUT extends GenericDispatcher {
 		return isImgExt;
 	}
 	
-	private String getUniqueName(String backendPath, String name) throws C5CException {
-		Set<GenericConnector.FileProperties> props = connector.getFolder(backendPath, false);
-		Set<String> existingNames = new HashSet<>();
-		for(GenericConnector.FileProperties fp : props) {
-			existingNames.add(fp.getName());
-		}
-		return StringUtils.getUniqueName(existingNames, name);
+	/**
+	 * The source of an uploaded file, it could be read more than once.
+	 */
+	private interface UploadSource {
+		/**
+		 * @return the size of the file, or -1 if it's unknown
+		 */
+		long getSize();
+
+		/**
+		 * @return a new {@link InputStream} of the file
+		 */
+		InputStream open() throws IOException;
+
+		/**
+		 * @return the file, if the upload is already stored completely, otherwise <code>null</code>
+		 */
+		Path getFile();
+	}
+
+	private static UploadSource buildSource(final Part part) {
+		return new UploadSource() {
+			@Override
+			public long getSize() {
+				return part.getSize();
+			}
+
+			@Override
+			public InputStream open() throws IOException {
+				// the container stores the part, so it could be read again
+				return part.getInputStream();
+			}
+
+			@Override
+			public Path getFile() {
+				return null;
+			}
+		};
+	}
+
+	private static UploadSource buildSource(final Path file) throws IOException {
+		final long size = Files.size(file);
+		return new UploadSource() {
+			@Override
+			public long getSize() {
+				return size;
+			}
+
+			@Override
+			public InputStream open() throws IOException {
+				return Files.newInputStream(file);
+			}
+
+			@Override
+			public Path getFile() {
+				return file;
+			}
+		};
 	}
 
 	private String getFileName(final Part part) {
@@ -22,8 +22,14 @@ public enum FilemanagerAction {
 	
 	RENAME(FilemanagerAction.CONTENTTYPE_JSON, "rename"),
 	
+	COPY(FilemanagerAction.CONTENTTYPE_JSON, "copy"),
+	
+	MOVE(FilemanagerAction.CONTENTTYPE_JSON, "move"),
+	
 	DELETE(FilemanagerAction.CONTENTTYPE_JSON, "delete"),
 	
+	RESTORE(FilemanagerAction.CONTENTTYPE_JSON, "restore"),
+	
 	CREATEFOLDER(FilemanagerAction.CONTENTTYPE_JSON, "addfolder"),
 	
 	UPLOAD(FilemanagerAction.CONTENTTYPE_HTML, "add"),
@@ -32,13 +38,31 @@ public enum FilemanagerAction {
 
 	DOWNLOAD(null, "download"),
 	
+	DOWNLOADZIP(null, "downloadzip"),
+	
 	THUMBNAIL(null, "thumbnail"),
 	
 	PREVIEW(null, "preview"),
 	
 	EDITFILE(FilemanagerAction.CONTENTTYPE_JSON, "editfile"),
 	
-	SAVEFILE(FilemanagerAction.CONTENTTYPE_JSON, "savefile");
+	SAVEFILE(FilemanagerAction.CONTENTTYPE_JSON, "savefile"),
+	
+	DIMENSIONS(FilemanagerAction.CONTENTTYPE_JSON, "getdimensions"),
+	
+	SEARCH(FilemanagerAction.CONTENTTYPE_JSON, "search"),
+	
+	SEARCHCONTENT(FilemanagerAction.CONTENTTYPE_JSON, "searchcontent"),
+	
+	UPLOADINIT(FilemanagerAction.CONTENTTYPE_JSON, "uploadinit"),
+	
+	UPLOADCHUNK(FilemanagerAction.CONTENTTYPE_JSON, "uploadchunk"),
+	
+	UPLOADSTATUS(FilemanagerAction.CONTENTTYPE_JSON, "uploadstatus"),
+	
+	UPLOADCOMMIT(FilemanagerAction.CONTENTTYPE_JSON, "uploadcommit"),
+	
+	UPLOADBATCH(FilemanagerAction.CONTENTTYPE_JSON, "addbatch");
 	
 	private String contentType;
 	
@@ -0,0 +1,588 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.util.PathBuilder;
+
+/**
+ * In-memory index of the names of files and folders for the mode 'search'. The names are searched case-insensitive for a substring.
+ * <br/>
+ * An index is built for the searched folder by a parallel crawl over {@link Connector#getFolder(String, boolean)}: Each sub-folder is
+ * listed by its own fork/join task. So the exclusions of the configuration are respected in the same way as by a folder listing. A
+ * later search inside of an indexed folder reuses its index. The names are registered with the trigrams they contain, so just the
+ * names, which contain all trigrams of the search string, have to be checked.<br/>
+ * The index is kept current by {@link #update(Connector, String, String)}, if the dispatchers change something: The parent folder of
+ * the changed path and the path itself are listed again, removed entries are dropped and new folders are crawled.<br/>
+ * Sub-folders, which are symbolic links, are indexed without their content, because a link to a parent would make the crawl
+ * endless.<br/>
+ * The number of indexes is limited, the least recently used indexes will be evicted first.
+ */
+final class FilenameIndex {
+	private static final Logger logger = LoggerFactory.getLogger(FilenameIndex.class);
+
+	/** The length of the n-grams, which are registered for each name. */
+	private static final int gram_length = 3;
+
+	private final int maxIndexes;
+
+	private final ForkJoinPool pool;
+
+	/** The indexes in access order, that's the base for the LRU eviction. The key is built by the configuration and the root path. */
+	private final LinkedHashMap<String, Index> indexes = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * A file or folder found by a search.
+	 */
+	static final class Hit {
+		private final String parentPath;
+		private final FileProperties fileProperties;
+
+		private Hit(String parentPath, FileProperties fileProperties) {
+			this.parentPath = parentPath;
+			this.fileProperties = fileProperties;
+		}
+
+		/**
+		 * @return the path of the parent folder relative to the searched folder, separated by '/' and with a trailing '/', or an empty
+		 *         string if the hit is located directly in the searched folder
+		 */
+		String getParentPath() {
+			return parentPath;
+		}
+
+		FileProperties getFileProperties() {
+			return fileProperties;
+		}
+	}
+
+	/**
+	 * Instantiates the index. If 'maxIndexes' isn't greater than 0, the indexes aren't kept, so each search crawls the folder.
+	 *
+	 * @param maxIndexes
+	 *            the max. number of indexed folders
+	 */
+	FilenameIndex(int maxIndexes) {
+		this.maxIndexes = maxIndexes;
+		this.pool = new ForkJoinPool();
+	}
+
+	/**
+	 * Searches inside of a folder for files and folders, whose name contains the search string. The hits are ordered by their path.
+	 *
+	 * @param connector
+	 *            the connector to crawl the folder
+	 * @param backendPath
+	 *            the backend path of the searched folder
+	 * @param query
+	 *            the search string, it's compared case-insensitive
+	 * @param offset
+	 *            the number of hits to skip
+	 * @param limit
+	 *            the max. number of hits to return
+	 * @param configKey
+	 *            identifies the configuration, which affects the result of the connector
+	 * @return the hits
+	 * @throws C5CException
+	 *             if the searched folder couldn't be crawled
+	 */
+	List<Hit> search(Connector connector, String backendPath, String query, int offset, int limit, String configKey) throws C5CException {
+		Index index = getIndex(backendPath, configKey);
+		try {
+			index.build(connector);
+		} catch (RuntimeException e) {
+			remove(index);
+			if(e.getCause() instanceof C5CException)
+				throw (C5CException) e.getCause();
+			throw e;
+		}
+		return index.search(backendPath, query.toLowerCase(Locale.ROOT), offset, limit);
+	}
+
+	/**
+	 * Updates the indexes, which contain the desired backend path. Indexes built with another configuration can't be updated, they are
+	 * dropped.
+	 *
+	 * @param connector
+	 *            the connector to list the changed folders
+	 * @param backendPath
+	 *            the changed backend path
+	 * @param configKey
+	 *            identifies the configuration of the current request
+	 */
+	void update(Connector connector, String backendPath, String configKey) {
+		if(backendPath == null)
+			return;
+		List<Index> affected = new ArrayList<>();
+		synchronized (this) {
+			for(Iterator<Index> iter = indexes.values().iterator(); iter.hasNext();) {
+				Index index = iter.next();
+				if(!RenditionCache.isSameOrChild(index.rootPath, backendPath)) {
+					// a parent of the indexed folder is changed
+					if(RenditionCache.isSameOrChild(backendPath, index.rootPath))
+						iter.remove();
+				} else if(index.configKey.equals(configKey)) {
+					affected.add(index);
+				} else {
+					iter.remove();
+				}
+			}
+		}
+		for(Index index : affected) {
+			try {
+				index.update(connector, backendPath);
+			} catch (RuntimeException e) {
+				logger.debug("The index of {} couldn't be updated, it's dropped: {}", index.rootPath, e.getMessage());
+				remove(index);
+			}
+		}
+	}
+
+	/**
+	 * Stops the threads of the crawls and drops all indexes.
+	 */
+	void close() {
+		pool.shutdownNow();
+		synchronized (this) {
+			indexes.clear();
+		}
+	}
+
+	/**
+	 * Retrieves an index, which contains the folder, or registers a new one. A new index replaces the indexes of its sub-folders.
+	 */
+	private synchronized Index getIndex(String backendPath, String configKey) {
+		for(Index index : indexes.values()) {
+			if(index.configKey.equals(configKey) && RenditionCache.isSameOrChild(index.rootPath, backendPath)) {
+				indexes.get(buildKey(index.rootPath, configKey));
+				return index;
+			}
+		}
+		Index index = new Index(backendPath, configKey);
+		if(maxIndexes <= 0)
+			return index;
+		for(Iterator<Index> iter = indexes.values().iterator(); iter.hasNext();) {
+			Index sub = iter.next();
+			if(sub.configKey.equals(configKey) && RenditionCache.isSameOrChild(backendPath, sub.rootPath))
+				iter.remove();
+		}
+		indexes.put(buildKey(backendPath, configKey), index);
+		for(Iterator<Index> iter = indexes.values().iterator(); indexes.size() > maxIndexes && iter.hasNext();) {
+			iter.next();
+			iter.remove();
+		}
+		return index;
+	}
+
+	private synchronized void remove(Index index) {
+		String key = buildKey(index.rootPath, index.configKey);
+		if(indexes.get(key) == index)
+			indexes.remove(key);
+	}
+
+	private static String buildKey(String rootPath, String configKey) {
+		return configKey.concat("|").concat(rootPath);
+	}
+
+	/**
+	 * Splits the path relative to the root path into its names.
+	 */
+	private static List<String> splitRelative(String rootPath, String backendPath) {
+		String cleanRoot = rootPath;
+		while(cleanRoot.length() > 1 && (cleanRoot.endsWith("/") || cleanRoot.endsWith("\\")))
+			cleanRoot = cleanRoot.substring(0, cleanRoot.length() - 1);
+		List<String> names = new ArrayList<>();
+		for(String name : backendPath.substring(cleanRoot.length()).split("[/\\\\]")) {
+			if(!name.isEmpty())
+				names.add(name);
+		}
+		return names;
+	}
+
+	/**
+	 * Adds the trigrams of a name to 'grams'. The trigram is packed into a long, 16 bits for each char.
+	 */
+	private static void addGrams(String lowerName, List<Long> grams) {
+		for(int i = 0; i + gram_length <= lowerName.length(); i++) {
+			long gram = 0;
+			for(int j = 0; j < gram_length; j++)
+				gram = (gram << 16) | lowerName.charAt(i + j);
+			grams.add(gram);
+		}
+	}
+
+	/**
+	 * A file or folder of an index.
+	 */
+	private static class Node {
+		private int id;
+		private final Node parent;
+		private final String name;
+		private final String lowerName;
+		private FileProperties fileProperties;
+		/** Is <code>null</code> for files. */
+		private final Map<String, Node> children;
+		private boolean removed = false;
+
+		Node(Node parent, FileProperties fileProperties, boolean isDir) {
+			this.parent = parent;
+			this.fileProperties = fileProperties;
+			this.name = (fileProperties == null) ? null : fileProperties.getName();
+			this.lowerName = (name == null) ? null : name.toLowerCase(Locale.ROOT);
+			this.children = (isDir) ? new HashMap<String, Node>() : null;
+		}
+
+		boolean isDir() {
+			return children != null;
+		}
+	}
+
+	/**
+	 * The result of the crawl of a file or folder.
+	 */
+	private static class Crawled {
+		private final FileProperties fileProperties;
+		/** Is <code>null</code> for files. */
+		private final List<Crawled> children;
+
+		Crawled(FileProperties fileProperties, List<Crawled> children) {
+			this.fileProperties = fileProperties;
+			this.children = children;
+		}
+	}
+
+	/**
+	 * A growable list of the ids of the nodes, which contain a trigram.
+	 */
+	private static class Postings {
+		private int[] ids = new int[4];
+		private int size = 0;
+
+		void add(int id) {
+			// a trigram, which occurs multiple times in a name, is registered once
+			if(size > 0 && ids[size - 1] == id)
+				return;
+			if(size == ids.length) {
+				int[] grown = new int[size * 2];
+				System.arraycopy(ids, 0, grown, 0, size);
+				ids = grown;
+			}
+			ids[size++] = id;
+		}
+	}
+
+	/**
+	 * Crawls a folder, each sub-folder is crawled by its own task.
+	 */
+	private static final class CrawlTask extends FolderSizes.WrappingTask<List<Crawled>> {
+		private static final long serialVersionUID = 1L;
+
+		CrawlTask(final Connector connector, final String backendPath) {
+			super(new Callable<List<Crawled>>() {
+				@Override
+				public List<Crawled> call() throws Exception {
+					return crawl(connector, backendPath);
+				}
+			});
+		}
+
+		private static List<Crawled> crawl(Connector connector, String backendPath) throws C5CException {
+			Set<FileProperties> props = connector.getFolder(backendPath, false);
+			List<FileProperties> dirs = new ArrayList<>();
+			List<CrawlTask> tasks = new ArrayList<>();
+			List<Crawled> result = new ArrayList<>();
+			for(FileProperties fp : props) {
+				String folderPath = (fp.isDir()) ? new PathBuilder(backendPath).addFolder(fp.getName()).toString() : null;
+				if(fp.isDir() && GenericConnector.isLinkedFolder(connector, folderPath)) {
+					result.add(new Crawled(fp, new ArrayList<Crawled>()));
+				} else if(fp.isDir()) {
+					dirs.add(fp);
+					tasks.add(new CrawlTask(connector, folderPath));
+				} else {
+					result.add(new Crawled(fp, null));
+				}
+			}
+			for(CrawlTask task : tasks)
+				task.fork();
+			for(int i = 0; i < tasks.size(); i++) {
+				List<Crawled> children;
+				try {
+					children = tasks.get(i).join();
+				} catch (RuntimeException e) {
+					// the folder was removed meanwhile or isn't readable
+					logger.debug("Folder couldn't be crawled: {}", dirs.get(i).getName());
+					children = new ArrayList<>();
+				}
+				result.add(new Crawled(dirs.get(i), children));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The index of a folder.
+	 */
+	private final class Index {
+		private final String rootPath;
+		private final String configKey;
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		private final Node root = new Node(null, null, true);
+		private final List<Node> nodes = new ArrayList<>();
+		private final Map<Long, Postings> postings = new HashMap<>();
+		private int removedNodes = 0;
+		private volatile boolean built = false;
+
+		Index(String rootPath, String configKey) {
+			this.rootPath = rootPath;
+			this.configKey = configKey;
+		}
+
+		/**
+		 * Crawls the root folder, if it isn't done yet. The crawl and the updates are serialized by the monitor of the index.
+		 */
+		void build(Connector connector) {
+			if(built)
+				return;
+			synchronized (this) {
+				if(built)
+					return;
+				long start = System.currentTimeMillis();
+				List<Crawled> crawled = pool.invoke(new CrawlTask(connector, rootPath));
+				lock.writeLock().lock();
+				try {
+					for(Crawled c : crawled)
+						insert(root, c);
+				} finally {
+					lock.writeLock().unlock();
+				}
+				built = true;
+				logger.debug("Index of {} built with {} entries in {} ms.", rootPath, nodes.size(), System.currentTimeMillis() - start);
+			}
+		}
+
+		synchronized void update(Connector connector, String backendPath) {
+			if(!built)
+				return;
+			List<String> names = splitRelative(rootPath, backendPath);
+			Node parent = root;
+			int i = 0;
+			for(; i < names.size() - 1; i++) {
+				Node child = parent.children.get(names.get(i));
+				if(child == null || !child.isDir())
+					break;
+				parent = child;
+			}
+			lock.writeLock().lock();
+			try {
+				resync(connector, parent);
+				if(!names.isEmpty() && i == names.size() - 1) {
+					// the content of a changed folder could be changed too, e.g. by a copy into it
+					Node node = parent.children.get(names.get(i));
+					if(node != null && node.isDir() && !GenericConnector.isLinkedFolder(connector, buildPath(node)))
+						resync(connector, node);
+				}
+				if(removedNodes > nodes.size() / 2)
+					compact();
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		List<Hit> search(String backendPath, String lowerQuery, int offset, int limit) {
+			lock.readLock().lock();
+			try {
+				Node scope = root;
+				for(String name : splitRelative(rootPath, backendPath)) {
+					scope = (scope.isDir()) ? scope.children.get(name) : null;
+					if(scope == null)
+						return new ArrayList<>();
+				}
+
+				final Map<Node, String> matches = new HashMap<>();
+				if(lowerQuery.length() < gram_length) {
+					for(Node node : nodes)
+						match(node, scope, lowerQuery, matches);
+				} else {
+					List<Long> grams = new ArrayList<>();
+					addGrams(lowerQuery, grams);
+					Postings smallest = null;
+					for(Long gram : grams) {
+						Postings p = postings.get(gram);
+						if(p == null)
+							return new ArrayList<>();
+						if(smallest == null || p.size < smallest.size)
+							smallest = p;
+					}
+					for(int i = 0; i < smallest.size; i++)
+						match(nodes.get(smallest.ids[i]), scope, lowerQuery, matches);
+				}
+
+				List<Node> sorted = new ArrayList<>(matches.keySet());
+				Collections.sort(sorted, new Comparator<Node>() {
+					@Override
+					public int compare(Node n1, Node n2) {
+						return (matches.get(n1) + n1.name).compareToIgnoreCase(matches.get(n2) + n2.name);
+					}
+				});
+				List<Hit> hits = new ArrayList<>();
+				for(int i = Math.max(offset, 0); i < sorted.size() && hits.size() < limit; i++) {
+					Node node = sorted.get(i);
+					hits.add(new Hit(matches.get(node), node.fileProperties));
+				}
+				return hits;
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Adds the node with its path relative to the scope to 'matches', if its name contains the query and if it's inside of the scope.
+		 */
+		private void match(Node node, Node scope, String lowerQuery, Map<Node, String> matches) {
+			if(node.removed || !node.lowerName.contains(lowerQuery))
+				return;
+			StringBuilder parentPath = new StringBuilder();
+			for(Node parent = node.parent; parent != scope; parent = parent.parent) {
+				if(parent == null)
+					return;
+				parentPath.insert(0, '/').insert(0, parent.name);
+			}
+			matches.put(node, parentPath.toString());
+		}
+
+		private void insert(Node parent, Crawled crawled) {
+			Node node = new Node(parent, crawled.fileProperties, crawled.children != null);
+			parent.children.put(node.name, node);
+			register(node);
+			if(crawled.children != null) {
+				for(Crawled child : crawled.children)
+					insert(node, child);
+			}
+		}
+
+		private void register(Node node) {
+			node.id = nodes.size();
+			nodes.add(node);
+			List<Long> grams = new ArrayList<>();
+			addGrams(node.lowerName, grams);
+			for(Long gram : grams) {
+				Postings p = postings.get(gram);
+				if(p == null) {
+					p = new Postings();
+					postings.put(gram, p);
+				}
+				p.add(node.id);
+			}
+		}
+
+		/**
+		 * Lists a folder again and aligns its children. The postings of removed nodes are kept until the next compaction.
+		 */
+		private void resync(Connector connector, Node folder) {
+			String backendPath = buildPath(folder);
+			Set<FileProperties> props;
+			try {
+				props = connector.getFolder(backendPath, false);
+			} catch (C5CException e) {
+				if(folder == root)
+					throw new RuntimeException(e);
+				remove(folder);
+				return;
+			}
+			Map<String, FileProperties> current = new HashMap<>();
+			for(FileProperties fp : props)
+				current.put(fp.getName(), fp);
+			for(Node child : new ArrayList<>(folder.children.values())) {
+				FileProperties fp = current.get(child.name);
+				if(fp != null && fp.isDir() == child.isDir()) {
+					child.fileProperties = fp;
+					current.remove(child.name);
+				} else {
+					remove(child);
+				}
+			}
+			for(FileProperties fp : current.values()) {
+				List<Crawled> children = null;
+				if(fp.isDir()) {
+					String folderPath = new PathBuilder(backendPath).addFolder(fp.getName()).toString();
+					children = (GenericConnector.isLinkedFolder(connector, folderPath)) ? new ArrayList<Crawled>() : pool.invoke(
+							new CrawlTask(connector, folderPath));
+				}
+				insert(folder, new Crawled(fp, children));
+			}
+		}
+
+		private void remove(Node node) {
+			if(node.parent != null && node.parent.children.get(node.name) == node)
+				node.parent.children.remove(node.name);
+			markRemoved(node);
+		}
+
+		private void markRemoved(Node node) {
+			node.removed = true;
+			node.fileProperties = null;
+			removedNodes++;
+			if(node.isDir()) {
+				for(Node child : node.children.values())
+					markRemoved(child);
+			}
+		}
+
+		/**
+		 * Renumbers the nodes and rebuilds the postings without the removed nodes.
+		 */
+		private void compact() {
+			List<Node> alive = new ArrayList<>();
+			collect(root, alive);
+			nodes.clear();
+			postings.clear();
+			removedNodes = 0;
+			for(Node node : alive)
+				register(node);
+		}
+
+		private void collect(Node folder, List<Node> alive) {
+			for(Node child : folder.children.values()) {
+				alive.add(child);
+				if(child.isDir())
+					collect(child, alive);
+			}
+		}
+
+		private String buildPath(Node node) {
+			List<String> names = new ArrayList<>();
+			for(Node n = node; n != root; n = n.parent)
+				names.add(0, n.name);
+			PathBuilder path = new PathBuilder(rootPath);
+			for(String name : names)
+				path.addFolder(name);
+			return path.toString();
+		}
+	}
+}
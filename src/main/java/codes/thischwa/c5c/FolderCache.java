@@ -0,0 +1,325 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.exception.C5CException;
+
+/**
+ * Cache for the results of {@link Connector#getFolder(String, boolean)} and {@link Connector#getInfo(String, boolean)}.<br/>
+ * Just folders of the local file system are cached, see {@link GenericConnector#getLocalPath(String)}, because the cached data is
+ * invalidated by a {@link WatchService}, which is registered on each cached folder. The results of <code>getInfo</code> are cached
+ * within the parent folder. Additionally the dispatchers drop the cached data explicitly by {@link #invalidate(String)}, if they
+ * change a file or folder.<br/>
+ * The number of watched folders is limited to preserve the watches of the os, the least recently used folders will be evicted
+ * first.
+ */
+final class FolderCache {
+	private static final Logger logger = LoggerFactory.getLogger(FolderCache.class);
+
+	private static final String prefix_folder = "folder|";
+
+	private static final String prefix_info = "info|";
+
+	private final int maxFolders;
+
+	private final WatchService watchService;
+
+	/** The watched folders in access order, that's the base for the LRU eviction. */
+	private final LinkedHashMap<Path, WatchedFolder> folders = new LinkedHashMap<>(64, 0.75f, true);
+
+	private final Map<WatchKey, WatchedFolder> foldersByKey = new HashMap<>();
+
+	/**
+	 * Holds the cached data of a watched folder.
+	 */
+	private static class WatchedFolder {
+		private final Path path;
+		/** Is <code>null</code>, if the folder is just watched for the properties of its content. */
+		private String backendPath;
+		private final WatchKey key;
+		private final Map<String, Object> entries = new HashMap<>();
+		/** Will be increased by each change, so a result built during a change won't be cached. */
+		private long generation = 0;
+
+		WatchedFolder(Path path, String backendPath, WatchKey key) {
+			this.path = path;
+			this.backendPath = backendPath;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Instantiates the cache and starts the watcher thread. If 'maxFolders' isn't greater than 0, the cache is disabled.
+	 *
+	 * @param maxFolders
+	 *            the max. number of watched folders
+	 * @throws IOException
+	 *             if the {@link WatchService} couldn't be created
+	 */
+	FolderCache(int maxFolders) throws IOException {
+		this.maxFolders = maxFolders;
+		if(!isEnabled()) {
+			watchService = null;
+			return;
+		}
+		watchService = FileSystems.getDefault().newWatchService();
+		Thread watcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "c5c-folder-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+		logger.info("Folder cache initialized with max. {} watched folders.", maxFolders);
+	}
+
+	/**
+	 * Builds a disabled cache.
+	 *
+	 * @return a cache that doesn't store anything
+	 */
+	static FolderCache disabled() {
+		try {
+			return new FolderCache(0);
+		} catch (IOException e) {
+			// can't happen because a disabled cache doesn't touch the file system
+			throw new RuntimeException(e);
+		}
+	}
+
+	boolean isEnabled() {
+		return maxFolders > 0;
+	}
+
+	/**
+	 * Retrieves the content of a folder from the cache or from the connector.
+	 *
+	 * @param connector
+	 *            the connector to use on a cache miss
+	 * @param backendPath
+	 *            the backend path of the folder
+	 * @param needSize
+	 *            the 'needSize' parameter of the connector
+	 * @param configKey
+	 *            identifies the configuration, which affects the result of the connector
+	 * @return the content of the folder
+	 * @throws C5CException
+	 *             if the connector fails
+	 */
+	@SuppressWarnings("unchecked")
+	Set<FileProperties> getFolder(Connector connector, String backendPath, boolean needSize, String configKey) throws C5CException {
+		Path path = getLocalPath(connector, backendPath);
+		if(path == null)
+			return connector.getFolder(backendPath, needSize);
+		String entryKey = String.format("%s%b|%s", prefix_folder, needSize, configKey);
+		Object cached = getEntry(path, entryKey);
+		if(cached != null)
+			return (Set<FileProperties>) cached;
+		long generation = watch(path, backendPath);
+		Set<FileProperties> props = connector.getFolder(backendPath, needSize);
+		if(props != null)
+			props = Collections.unmodifiableSet(props);
+		putEntry(path, entryKey, props, generation);
+		return props;
+	}
+
+	/**
+	 * Retrieves the properties of a file or folder from the cache or from the connector. They are cached within the parent folder.
+	 *
+	 * @param connector
+	 *            the connector to use on a cache miss
+	 * @param backendPath
+	 *            the backend path of the file or folder
+	 * @param needSize
+	 *            the 'needSize' parameter of the connector
+	 * @param configKey
+	 *            identifies the configuration, which affects the result of the connector
+	 * @return the properties of the file or folder
+	 * @throws C5CException
+	 *             if the connector fails
+	 */
+	FileProperties getInfo(Connector connector, String backendPath, boolean needSize, String configKey) throws C5CException {
+		Path path = getLocalPath(connector, backendPath);
+		Path parent = (path == null) ? null : path.getParent();
+		if(parent == null || path.getFileName() == null)
+			return connector.getInfo(backendPath, needSize);
+		String entryKey = String.format("%s%s|%b|%s", prefix_info, path.getFileName().toString(), needSize, configKey);
+		Object cached = getEntry(parent, entryKey);
+		if(cached != null)
+			return (FileProperties) cached;
+		long generation = watch(parent, null);
+		FileProperties fp = connector.getInfo(backendPath, needSize);
+		putEntry(parent, entryKey, fp, generation);
+		return fp;
+	}
+
+	/**
+	 * Drops the cached data of the desired backend path. The cached data of all folders inside and of all parent folders is dropped
+	 * too, because their content or properties are changed.
+	 *
+	 * @param backendPath
+	 *            the changed backend path
+	 */
+	void invalidate(String backendPath) {
+		if(!isEnabled() || backendPath == null)
+			return;
+		List<WatchKey> keysToCancel = new ArrayList<>();
+		synchronized (this) {
+			for(Iterator<WatchedFolder> iter = folders.values().iterator(); iter.hasNext();) {
+				WatchedFolder folder = iter.next();
+				if(folder.backendPath == null) {
+					folder.entries.clear();
+					folder.generation++;
+				} else if(RenditionCache.isSameOrChild(backendPath, folder.backendPath)) {
+					// the folder is probably gone
+					iter.remove();
+					foldersByKey.remove(folder.key);
+					keysToCancel.add(folder.key);
+				} else if(RenditionCache.isSameOrChild(folder.backendPath, backendPath)) {
+					folder.entries.clear();
+					folder.generation++;
+				}
+			}
+		}
+		for(WatchKey key : keysToCancel)
+			key.cancel();
+	}
+
+	/**
+	 * Stops the watcher thread and drops all cached data.
+	 */
+	void close() {
+		if(!isEnabled())
+			return;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			logger.warn("Error while closing the WatchService.", e);
+		}
+		synchronized (this) {
+			folders.clear();
+			foldersByKey.clear();
+		}
+	}
+
+	private Path getLocalPath(Connector connector, String backendPath) {
+		if(!isEnabled() || !(connector instanceof GenericConnector))
+			return null;
+		Path path = ((GenericConnector) connector).getLocalPath(backendPath);
+		return (path == null) ? null : path.toAbsolutePath().normalize();
+	}
+
+	private synchronized Object getEntry(Path folderPath, String entryKey) {
+		WatchedFolder folder = folders.get(folderPath);
+		return (folder == null) ? null : folder.entries.get(entryKey);
+	}
+
+	private synchronized void putEntry(Path folderPath, String entryKey, Object value, long generation) {
+		WatchedFolder folder = folders.get(folderPath);
+		if(value == null || folder == null || folder.generation != generation)
+			return;
+		folder.entries.put(entryKey, value);
+	}
+
+	/**
+	 * Registers the folder at the {@link WatchService}, if it isn't watched yet.
+	 *
+	 * @return the current generation of the folder, or -1 if the folder couldn't be watched
+	 */
+	private long watch(Path folderPath, String backendPath) {
+		synchronized (this) {
+			WatchedFolder folder = folders.get(folderPath);
+			if(folder != null) {
+				if(folder.backendPath == null)
+					folder.backendPath = backendPath;
+				return folder.generation;
+			}
+		}
+		WatchKey key;
+		try {
+			key = folderPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException | ClosedWatchServiceException | UnsupportedOperationException e) {
+			logger.debug("Folder can't be watched: {}", folderPath);
+			return -1;
+		}
+		List<WatchKey> keysToCancel = new ArrayList<>();
+		long generation;
+		synchronized (this) {
+			WatchedFolder folder = folders.get(folderPath);
+			if(folder == null) {
+				folder = new WatchedFolder(folderPath, backendPath, key);
+				folders.put(folderPath, folder);
+				foldersByKey.put(key, folder);
+			}
+			generation = folder.generation;
+			for(Iterator<WatchedFolder> iter = folders.values().iterator(); folders.size() > maxFolders && iter.hasNext();) {
+				WatchedFolder eldest = iter.next();
+				iter.remove();
+				foldersByKey.remove(eldest.key);
+				keysToCancel.add(eldest.key);
+			}
+		}
+		for(WatchKey k : keysToCancel)
+			k.cancel();
+		return generation;
+	}
+
+	/**
+	 * The loop of the watcher thread. Each event of a folder drops its cached data.
+	 */
+	private void watch() {
+		while(true) {
+			WatchKey key;
+			try {
+				key = watchService.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				logger.debug("Folder watcher stopped.");
+				return;
+			}
+			// the kind of events isn't relevant, each one makes the cached data invalid
+			key.pollEvents();
+			boolean valid = key.reset();
+			synchronized (this) {
+				WatchedFolder folder = foldersByKey.get(key);
+				if(folder == null)
+					continue;
+				folder.entries.clear();
+				folder.generation++;
+				if(!valid) {
+					foldersByKey.remove(key);
+					folders.remove(folder.path);
+				}
+			}
+		}
+	}
+}
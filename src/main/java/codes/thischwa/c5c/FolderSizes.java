@@ -0,0 +1,260 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.util.PathBuilder;
+
+/**
+ * Computes the total size of folders by a parallel walk over the {@link Connector}: Each sub-folder is summed by its own fork/join task.
+ * The result of each folder is cached, so a repeated request or a request of a parent folder reuses the sums of the unchanged
+ * branches.<br/>
+ * A cached size is dropped by {@link #invalidate(String)}, if the dispatchers change something inside of the folder. Then the
+ * folder, its parents and its sub-folders are dropped, the siblings are kept. So just the changes made through the connector are
+ * reliably noticed. Changes made by others directly on the backend aren't checked, the children aren't walked for a cached size. The
+ * time of the last modification of the folder itself is compared only, that catches files and folders added, removed or renamed
+ * directly inside of it, but neither changed file sizes nor changes in nested folders. Those are visible after the next change
+ * through the connector or the eviction of the folder.<br/>
+ * Sub-folders, which are symbolic links, aren't summed, because a link to a parent would make the walk endless.<br/>
+ * The size of the cache is limited, the least recently used folders will be evicted first.
+ */
+final class FolderSizes {
+	private static final Logger logger = LoggerFactory.getLogger(FolderSizes.class);
+
+	private final int maxFolders;
+
+	private final ForkJoinPool pool;
+
+	/** The sizes in access order, that's the base for the LRU eviction. The key is built by the configuration and the backend path. */
+	private final LinkedHashMap<String, Entry> sizes = new LinkedHashMap<>(64, 0.75f, true);
+
+	/** Will be increased by each invalidation, so a size summed during a change won't be cached. */
+	private long generation = 0;
+
+	/**
+	 * Holds the cached size of a folder.
+	 */
+	private static class Entry {
+		private final String backendPath;
+		private final long modified;
+		private final long size;
+
+		Entry(String backendPath, long modified, long size) {
+			this.backendPath = backendPath;
+			this.modified = modified;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Instantiates the cache. If 'maxFolders' isn't greater than 0, the sizes are summed, but they aren't cached.
+	 * 
+	 * @param maxFolders
+	 *            the max. number of cached folders
+	 */
+	FolderSizes(int maxFolders) {
+		this.maxFolders = maxFolders;
+		this.pool = new ForkJoinPool();
+	}
+
+	/**
+	 * Replaces the properties of the directories by copies with their total size. The directories are summed in parallel.
+	 * 
+	 * @param connector
+	 *            the connector to walk the folders
+	 * @param backendPath
+	 *            the backend path of the folder, which contains the properties
+	 * @param props
+	 *            the properties of files and directories, they aren't changed
+	 * @param configKey
+	 *            identifies the configuration, which affects the result of the connector
+	 * @return the properties with sized directories
+	 */
+	List<FileProperties> withSizes(final Connector connector, final String backendPath, final Collection<FileProperties> props,
+			final String configKey) {
+		try {
+			return pool.invoke(new WrappingTask<>(new Callable<List<FileProperties>>() {
+				@Override
+				public List<FileProperties> call() throws Exception {
+					List<SizeTask> tasks = new ArrayList<>();
+					for(FileProperties fp : props) {
+						if(fp.isDir())
+							tasks.add(new SizeTask(connector, buildFolderPath(backendPath, fp.getName()), fp.getRawModified(), configKey));
+					}
+					for(SizeTask task : tasks)
+						task.fork();
+					List<FileProperties> result = new ArrayList<>(props.size());
+					Iterator<SizeTask> iter = tasks.iterator();
+					for(FileProperties fp : props)
+						result.add((fp.isDir()) ? fp.copyWithSize(iter.next().join()) : fp);
+					return result;
+				}
+			}));
+		} catch (RuntimeException e) {
+			logger.warn(String.format("The sizes of the folders inside of %s couldn't be computed.", backendPath), e);
+			return new ArrayList<>(props);
+		}
+	}
+
+	/**
+	 * Builds a copy of the properties of a directory with its total size.
+	 * 
+	 * @param connector
+	 *            the connector to walk the folders
+	 * @param backendPath
+	 *            the backend path of the directory
+	 * @param fp
+	 *            the properties of the directory, they aren't changed
+	 * @param configKey
+	 *            identifies the configuration, which affects the result of the connector
+	 * @return the properties with the total size
+	 */
+	FileProperties withSize(Connector connector, String backendPath, FileProperties fp, String configKey) {
+		if(!fp.isDir())
+			return fp;
+		try {
+			return fp.copyWithSize(pool.invoke(new SizeTask(connector, backendPath, fp.getRawModified(), configKey)));
+		} catch (RuntimeException e) {
+			logger.warn(String.format("The size of the folder %s couldn't be computed.", backendPath), e);
+			return fp;
+		}
+	}
+
+	/**
+	 * Drops the cached sizes of the desired backend path, of its parent folders and of its sub-folders.
+	 * 
+	 * @param backendPath
+	 *            the changed backend path
+	 */
+	synchronized void invalidate(String backendPath) {
+		if(backendPath == null)
+			return;
+		generation++;
+		for(Iterator<Entry> iter = sizes.values().iterator(); iter.hasNext();) {
+			Entry entry = iter.next();
+			if(RenditionCache.isSameOrChild(backendPath, entry.backendPath) || RenditionCache.isSameOrChild(entry.backendPath, backendPath))
+				iter.remove();
+		}
+	}
+
+	/**
+	 * Stops the threads of the walks.
+	 */
+	void close() {
+		pool.shutdownNow();
+	}
+
+	private synchronized Long getCached(String key, long modified) {
+		Entry entry = sizes.get(key);
+		return (entry == null || entry.modified != modified) ? null : entry.size;
+	}
+
+	private synchronized long getGeneration() {
+		return generation;
+	}
+
+	private synchronized void putCached(String key, Entry entry, long startGeneration) {
+		if(maxFolders <= 0 || generation != startGeneration)
+			return;
+		sizes.put(key, entry);
+		for(Iterator<Entry> iter = sizes.values().iterator(); sizes.size() > maxFolders && iter.hasNext();) {
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	private static String buildFolderPath(String parentBackendPath, String name) {
+		return new PathBuilder(parentBackendPath).addFolder(name).toString();
+	}
+
+	/**
+	 * Sums the size of a folder.
+	 */
+	private final class SizeTask extends WrappingTask<Long> {
+		private static final long serialVersionUID = 1L;
+
+		SizeTask(final Connector connector, final String backendPath, final Date modifiedDate, final String configKey) {
+			super(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					return sum(connector, backendPath, modifiedDate, configKey);
+				}
+			});
+		}
+	}
+
+	private long sum(Connector connector, String backendPath, Date modifiedDate, String configKey) throws C5CException {
+		long modified = (modifiedDate == null) ? -1 : modifiedDate.getTime();
+		String key = configKey.concat("|").concat(backendPath);
+		Long cached = getCached(key, modified);
+		if(cached != null)
+			return cached;
+
+		long startGeneration = getGeneration();
+		long size = 0;
+		List<SizeTask> tasks = new ArrayList<>();
+		for(FileProperties fp : connector.getFolder(backendPath, false)) {
+			if(fp.isDir()) {
+				String folderPath = buildFolderPath(backendPath, fp.getName());
+				if(!GenericConnector.isLinkedFolder(connector, folderPath))
+					tasks.add(new SizeTask(connector, folderPath, fp.getRawModified(), configKey));
+			} else if(fp.getRawSize() != null)
+				size += fp.getRawSize();
+		}
+		for(SizeTask task : tasks)
+			task.fork();
+		for(SizeTask task : tasks)
+			size += task.join();
+		putCached(key, new Entry(backendPath, modified, size), startGeneration);
+		return size;
+	}
+
+	/**
+	 * Executes a {@link Callable} within the request cycle, in which the task was built. It's required, because the results of the
+	 * connector depend on the configuration of the request.
+	 */
+	static class WrappingTask<T> extends RecursiveTask<T> {
+		private static final long serialVersionUID = 1L;
+
+		private final Callable<T> callable;
+
+		WrappingTask(Callable<T> callable) {
+			this.callable = RequestData.propagate(callable);
+		}
+
+		@Override
+		protected T compute() {
+			try {
+				return callable.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
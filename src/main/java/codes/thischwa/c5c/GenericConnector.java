@@ -10,10 +10,21 @@
  */
 package codes.thischwa.c5c;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +34,7 @@ import codes.thischwa.c5c.filemanager.Exclude;
 import codes.thischwa.c5c.impl.LocalConnector;
 import codes.thischwa.c5c.requestcycle.BackendPathBuilder;
 import codes.thischwa.c5c.requestcycle.response.mode.FileInfoProperties;
+import codes.thischwa.c5c.util.PathBuilder;
 import codes.thischwa.c5c.util.StringUtils;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -51,12 +63,18 @@ public abstract class GenericConnector implements Connector {
 
 		private InputStream in;
 		private long size;
+		private Path file;
 
 		StreamContent(InputStream in, long size) {
 			this.in = in;
 			this.size = size;
 		}
 
+		StreamContent(InputStream in, long size, Path file) {
+			this(in, size);
+			this.file = file;
+		}
+
 		public InputStream getInputStream() {
 			return in;
 		}
@@ -64,6 +82,16 @@ public abstract class GenericConnector implements Connector {
 		public long getSize() {
 			return size;
 		}
+
+		/**
+		 * Optional: The file of the local file system with the content. If it's set, the response can send the file without copying
+		 * the content through the heap. The {@link InputStream} has to be provided nevertheless.
+		 * 
+		 * @return the file or <code>null</code>, if the content isn't a file of the local file system
+		 */
+		public Path getFile() {
+			return file;
+		}
 	}
 
 	/**
@@ -93,6 +121,19 @@ public abstract class GenericConnector implements Connector {
 		public boolean isDir() {
 			return isDir;
 		}
+
+		/**
+		 * Builds a copy of the properties of a directory with its total size, so a cached instance isn't changed.
+		 * 
+		 * @param size
+		 *            the total size of the directory
+		 * @return the copy
+		 */
+		FileProperties copyWithSize(long size) {
+			FileProperties copy = new FileProperties(getName(), isProtected(), getRawModified());
+			copy.setSize(size);
+			return copy;
+		}
 		
 		@JsonIgnore
 		@Override
@@ -111,6 +152,14 @@ public abstract class GenericConnector implements Connector {
 	public void init() throws RuntimeException {
 		logger.info("*** {} sucessful initialized.", this.getClass().getName());
 	}
+
+	/**
+	 * Releases the resources of the connector. Can be overridden by the inherited object, the generic connector hasn't anything to
+	 * release.
+	 */
+	@Override
+	public void destroy() {
+	}
 	
 	@Override
 	public void setImageExtensions(Set<String> imageExtensions) {
@@ -126,6 +175,84 @@ public abstract class GenericConnector implements Connector {
 	@Override
 	public abstract boolean rename(String oldBackendPath, String sanitizedNewName) throws C5CException;
 
+	/**
+	 * Copies by the other methods of the connector: The files are downloaded and uploaded again and the directories are listed and
+	 * created. It should be overridden, if the backend could copy by itself.
+	 */
+	@Override
+	public boolean copy(String sourceBackendPath, String targetBackendDirectory) throws C5CException {
+		checkTransferTarget(FilemanagerAction.COPY, sourceBackendPath, targetBackendDirectory);
+		FileProperties fp = getInfo(sourceBackendPath, false);
+		for(FileProperties existing : getFolder(targetBackendDirectory, false)) {
+			if(existing.getName().equals(fp.getName())) {
+				FilemanagerException.Key key = (existing.isDir()) ? FilemanagerException.Key.DirectoryAlreadyExists
+						: FilemanagerException.Key.FileAlreadyExists;
+				throw new FilemanagerException(FilemanagerAction.COPY, key, fp.getName());
+			}
+		}
+		copy(sourceBackendPath, fp, targetBackendDirectory);
+		return fp.isDir();
+	}
+
+	private void copy(String sourceBackendPath, FileProperties fp, String targetBackendDirectory) throws C5CException {
+		if(!fp.isDir()) {
+			StreamContent sc = download(sourceBackendPath);
+			try {
+				upload(targetBackendDirectory, fp.getName(), sc.getInputStream());
+			} finally {
+				IOUtils.closeQuietly(sc.getInputStream());
+			}
+			return;
+		}
+		createFolder(targetBackendDirectory, fp.getName());
+		String newDirectory = new PathBuilder(targetBackendDirectory).addFolder(fp.getName()).toString();
+		for(FileProperties child : getFolder(sourceBackendPath, false)) {
+			PathBuilder childPath = new PathBuilder(sourceBackendPath);
+			copy((child.isDir()) ? childPath.addFolder(child.getName()).toString() : childPath.addFile(child.getName()), child,
+					newDirectory);
+		}
+	}
+
+	/**
+	 * Moves by {@link #copy(String, String)} and {@link #delete(String)}. It should be overridden, if the backend could move by
+	 * itself.
+	 */
+	@Override
+	public boolean move(String sourceBackendPath, String targetBackendDirectory) throws C5CException {
+		checkTransferTarget(FilemanagerAction.MOVE, sourceBackendPath, targetBackendDirectory);
+		boolean isDirectory = copy(sourceBackendPath, targetBackendDirectory);
+		delete(sourceBackendPath);
+		return isDirectory;
+	}
+
+	/**
+	 * Checks if the target directory of a copy or move is located inside of the source. A directory can't be copied or moved into
+	 * itself, the copy would find its own copy again and again.
+	 * 
+	 * @param mode
+	 *            {@link FilemanagerAction#COPY} or {@link FilemanagerAction#MOVE}
+	 * @param sourceBackendPath
+	 *            the backend path of the file or directory to copy or move
+	 * @param targetBackendDirectory
+	 *            the backend path of the target directory
+	 * @throws FilemanagerException
+	 *             if the target directory is the source or is located inside of it
+	 */
+	static void checkTransferTarget(FilemanagerAction mode, String sourceBackendPath, String targetBackendDirectory)
+			throws FilemanagerException {
+		if(RenditionCache.isSameOrChild(sourceBackendPath, targetBackendDirectory))
+			throw new FilemanagerException(mode, FilemanagerException.Key.InvalidDirectoryOrFile, FilenameUtils.getName(
+					FilenameUtils.normalizeNoEndSeparator(sourceBackendPath)));
+	}
+
+	/**
+	 * The generic connector hasn't a trash, so nothing could be restored.
+	 */
+	@Override
+	public boolean restore(String backendPath) throws C5CException {
+		throw new FilemanagerException(FilemanagerAction.RESTORE, FilemanagerException.Key.FileNotExists, FilenameUtils.getName(backendPath));
+	}
+
 	@Override
 	public abstract void createFolder(String backendDirectory, String sanitizedName) throws C5CException;
 
@@ -135,8 +262,88 @@ public abstract class GenericConnector implements Connector {
 	@Override
 	public abstract void upload(String backendDirectory, String sanitizedName, InputStream in) throws C5CException;
 
+	/**
+	 * Determines a unique name by listing the directory, so the name isn't reserved atomically. It should be overridden, if the backend
+	 * can create a file exclusively.
+	 */
+	@Override
+	public String reserveName(String backendDirectory, String sanitizedName) throws C5CException {
+		return reserveNames(backendDirectory, Collections.singletonList(sanitizedName)).get(0);
+	}
+
+	/**
+	 * Determines unique names by one listing of the directory, so the names aren't reserved atomically. It should be overridden, if
+	 * the backend can create a file exclusively.
+	 */
+	@Override
+	public List<String> reserveNames(String backendDirectory, List<String> sanitizedNames) throws C5CException {
+		Set<FileProperties> props = getFolder(backendDirectory, false);
+		Set<String> existingNames = new HashSet<>();
+		for(FileProperties fp : props) {
+			existingNames.add(fp.getName());
+		}
+		List<String> names = new ArrayList<>(sanitizedNames.size());
+		for(String sanitizedName : sanitizedNames) {
+			String name = StringUtils.getUniqueName(existingNames, sanitizedName);
+			existingNames.add(name);
+			names.add(name);
+		}
+		return names;
+	}
+
+	/**
+	 * Does nothing, because {@link #reserveName(String, String)} doesn't create anything.
+	 */
+	@Override
+	public void releaseName(String backendDirectory, String reservedName) throws C5CException {
+	}
+
+	/**
+	 * Delegates to {@link #upload(String, String, InputStream)}. It should be overridden, if the backend can take over the file
+	 * without copying it.
+	 */
+	@Override
+	public void upload(String backendDirectory, String sanitizedName, Path file) throws C5CException {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+			upload(backendDirectory, sanitizedName, in);
+		} catch (IOException e) {
+			throw new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.InvalidFileUpload, sanitizedName);
+		}
+	}
+
+	/**
+	 * Delegates to {@link #replace(String, InputStream)}. It should be overridden, if the backend can take over the file without
+	 * copying it.
+	 */
+	@Override
+	public void replace(String backendPath, Path file) throws C5CException {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+			replace(backendPath, in);
+		} catch (IOException e) {
+			throw new FilemanagerException(FilemanagerAction.REPLACE, FilemanagerException.Key.InvalidFileUpload, backendPath);
+		}
+	}
+
 	@Override
 	public abstract GenericConnector.StreamContent download(String backendPath) throws C5CException;
+
+	/**
+	 * Emulates the reading of a range by skipping the leading bytes of {@link #download(String)}. It should be overridden, if the
+	 * backend supports positioned reads.
+	 */
+	@Override
+	public GenericConnector.StreamContent downloadRange(String backendPath, long offset, long length) throws C5CException {
+		GenericConnector.StreamContent sc = download(backendPath);
+		InputStream in = sc.getInputStream();
+		try {
+			IOUtils.skipFully(in, offset);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(in);
+			throw new C5CException(FilemanagerAction.DOWNLOAD, e.getMessage());
+		}
+		long rangeLength = Math.max(0, Math.min(length, sc.getSize() - offset));
+		return buildStreamContent(new BoundedInputStream(in, rangeLength), rangeLength);
+	}
 	
 	@Override
 	public abstract String editFile(String backendPath) throws C5CException;
@@ -233,6 +440,52 @@ public abstract class GenericConnector implements Connector {
 		return new GenericConnector.StreamContent(in, fileSize);
 	}
 
+	/**
+	 * Builds the {@link GenericConnector.StreamContent} for a file of the local file system. So the response can send the file
+	 * without copying its content through the heap, e.g. for the download action.
+	 * 
+	 * @param in
+	 *            {@link InputStream} of the file
+	 * @param fileSize
+	 *            size of the file
+	 * @param file
+	 *            the file of the local file system
+	 * @return The initialized {@link GenericConnector.StreamContent}.
+	 */
+	protected GenericConnector.StreamContent buildStreamContent(InputStream in, long fileSize, Path file) {
+		return new GenericConnector.StreamContent(in, fileSize, file);
+	}
+
+	/**
+	 * Returns the path of the local file system, which is represented by the backend path. It's used to watch folders for
+	 * changes, e.g. by the folder cache. Connectors which don't work on the local file system have to return <code>null</code>,
+	 * that's the default.
+	 * 
+	 * @param backendPath
+	 *            the backend path
+	 * @return the local path or <code>null</code>, if the backend path doesn't represent a path of the local file system
+	 */
+	public Path getLocalPath(String backendPath) {
+		return null;
+	}
+
+	/**
+	 * Checks if the folder is a symbolic link of the local file system. The walks over the sub-folders don't descend into linked
+	 * folders, because a link to a parent folder would make them endless.
+	 * 
+	 * @param connector
+	 *            the connector
+	 * @param backendPath
+	 *            the backend path of the folder
+	 * @return <code>true</code>, if the folder is a symbolic link
+	 */
+	static boolean isLinkedFolder(Connector connector, String backendPath) {
+		if(!(connector instanceof GenericConnector))
+			return false;
+		Path path = ((GenericConnector) connector).getLocalPath(backendPath);
+		return path != null && Files.isSymbolicLink(path);
+	}
+
 	protected boolean isImageExtension(String ext) {
 		if(StringUtils.isNullOrEmpty(ext) || imageExtensions == null)
 			return false;
@@ -16,8 +16,14 @@ import java.util.Comparator;
 import java.util.List;
 
 import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.Tracing.Kind;
+import codes.thischwa.c5c.Tracing.Span;
+import codes.thischwa.c5c.filemanager.Exclude;
+import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.filemanager.Options;
 import codes.thischwa.c5c.filemanager.Options.FILE_SORTING;
+import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.requestcycle.ServerTiming.Phase;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
 
 
@@ -26,15 +32,63 @@ import codes.thischwa.c5c.requestcycle.response.GenericResponse;
  */
 abstract class GenericDispatcher {
 	protected Connector connector;
+	
+	protected RenditionCache renditionCache;
+
+	protected FolderCache folderCache;
+
+	protected FolderSizes folderSizes;
+
+	protected FilenameIndex filenameIndex;
 
-	GenericDispatcher(Connector connector) {
+	protected ContentIndex contentIndex;
+
+	GenericDispatcher(Connector connector, RenditionCache renditionCache, FolderCache folderCache, FolderSizes folderSizes,
+			FilenameIndex filenameIndex, ContentIndex contentIndex) {
 		this.connector = connector;
+		this.renditionCache = renditionCache;
+		this.folderCache = folderCache;
+		this.folderSizes = folderSizes;
+		this.filenameIndex = filenameIndex;
+		this.contentIndex = contentIndex;
 	}
 	
 	abstract GenericResponse doRequest();
 	
 	protected String buildBackendPath(String urlPath) {
-		return UserObjectProxy.getBackendPath(urlPath);
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.PHASE);
+		try {
+			return UserObjectProxy.getBackendPath(urlPath);
+		} finally {
+			RequestData.getServerTiming().add(Phase.PATH, start);
+			span.end("backendPath", urlPath, -1);
+		}
+	}
+	
+	/**
+	 * Drops all cached data of the desired backend path and updates the search indexes. It has to be called for each action which
+	 * changes a file or folder.
+	 * 
+	 * @param backendPath
+	 *            the changed file or folder
+	 */
+	protected void invalidateCaches(String backendPath) {
+		renditionCache.invalidate(backendPath);
+		folderCache.invalidate(backendPath);
+		folderSizes.invalidate(backendPath);
+		filenameIndex.update(connector, backendPath, buildConfigKey());
+		contentIndex.update(connector, backendPath);
+	}
+
+	/**
+	 * Builds the key of the configuration, which affects the results of the connector for folder listings.
+	 */
+	protected String buildConfigKey() {
+		FilemanagerConfig fConfig = UserObjectProxy.getFilemanagerConfig();
+		Exclude exclude = fConfig.getExclude();
+		return String.format("%d|%d|%d", fConfig.getImages().getExtensions().hashCode(), exclude.getDisallowedFiles().hashCode(),
+				exclude.getDisallowedDirs().hashCode());
 	}
 	
 
@@ -0,0 +1,517 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import codes.thischwa.c5c.Metrics.Timer;
+import codes.thischwa.c5c.Tracing.Kind;
+import codes.thischwa.c5c.Tracing.Span;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.requestcycle.ServerTiming.Phase;
+
+/**
+ * A decorator of the {@link Connector}, which times each method by a {@link Metrics.Timer}, adds it to the <code>Server-Timing</code>
+ * header of the request and emits an event of {@link Tracing} for it. It's installed by the {@link ConnectorServlet}, if the
+ * metrics, the header or the JFR events are enabled.<br/>
+ * It extends the {@link GenericConnector}, so the caches and indexes, which need the local path of a backend path, work with the
+ * decorated connector as before. The checks of the names and the local paths are delegated without timing, if the decorated
+ * connector is a {@link GenericConnector} too.<br/>
+ * Methods which return a {@link StreamContent} are timed until the content is opened, not until it's sent.
+ */
+final class InstrumentedConnector extends GenericConnector {
+
+	private final Connector connector;
+
+	private final Timer getFolderTimer;
+	private final Timer getInfoTimer;
+	private final Timer renameTimer;
+	private final Timer copyTimer;
+	private final Timer moveTimer;
+	private final Timer createFolderTimer;
+	private final Timer deleteTimer;
+	private final Timer restoreTimer;
+	private final Timer uploadTimer;
+	private final Timer reserveNameTimer;
+	private final Timer reserveNamesTimer;
+	private final Timer releaseNameTimer;
+	private final Timer downloadTimer;
+	private final Timer downloadRangeTimer;
+	private final Timer buildThumbnailTimer;
+	private final Timer resizeTimer;
+	private final Timer previewTimer;
+	private final Timer editFileTimer;
+	private final Timer saveFileTimer;
+	private final Timer replaceTimer;
+	private final Timer isProtectedTimer;
+
+	/**
+	 * @param connector
+	 *            the decorated connector
+	 * @param metrics
+	 *            the metrics, which hold the timers of the methods
+	 */
+	InstrumentedConnector(Connector connector, Metrics metrics) {
+		this.connector = connector;
+		getFolderTimer = metrics.getConnectorTimer("getFolder");
+		getInfoTimer = metrics.getConnectorTimer("getInfo");
+		renameTimer = metrics.getConnectorTimer("rename");
+		copyTimer = metrics.getConnectorTimer("copy");
+		moveTimer = metrics.getConnectorTimer("move");
+		createFolderTimer = metrics.getConnectorTimer("createFolder");
+		deleteTimer = metrics.getConnectorTimer("delete");
+		restoreTimer = metrics.getConnectorTimer("restore");
+		uploadTimer = metrics.getConnectorTimer("upload");
+		reserveNameTimer = metrics.getConnectorTimer("reserveName");
+		reserveNamesTimer = metrics.getConnectorTimer("reserveNames");
+		releaseNameTimer = metrics.getConnectorTimer("releaseName");
+		downloadTimer = metrics.getConnectorTimer("download");
+		downloadRangeTimer = metrics.getConnectorTimer("downloadRange");
+		buildThumbnailTimer = metrics.getConnectorTimer("buildThumbnail");
+		resizeTimer = metrics.getConnectorTimer("resize");
+		previewTimer = metrics.getConnectorTimer("preview");
+		editFileTimer = metrics.getConnectorTimer("editFile");
+		saveFileTimer = metrics.getConnectorTimer("saveFile");
+		replaceTimer = metrics.getConnectorTimer("replace");
+		isProtectedTimer = metrics.getConnectorTimer("isProtected");
+	}
+
+	@Override
+	public void init() throws RuntimeException {
+		connector.init();
+	}
+
+	@Override
+	public void destroy() {
+		connector.destroy();
+	}
+
+	@Override
+	public void setImageExtensions(Set<String> imageExtensions) {
+		connector.setImageExtensions(imageExtensions);
+	}
+
+	@Override
+	public Set<FileProperties> getFolder(String backendPath, boolean needSize) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			Set<FileProperties> result = connector.getFolder(backendPath, needSize);
+			getFolderTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			getFolderTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("getFolder", backendPath, -1);
+		}
+	}
+
+	@Override
+	public FileProperties getInfo(String backendPath, boolean needSize) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			FileProperties result = connector.getInfo(backendPath, needSize);
+			getInfoTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			getInfoTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("getInfo", backendPath, -1);
+		}
+	}
+
+	@Override
+	public boolean rename(String oldBackendPath, String sanitizedNewName) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			boolean result = connector.rename(oldBackendPath, sanitizedNewName);
+			renameTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			renameTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("rename", oldBackendPath, -1);
+		}
+	}
+
+	@Override
+	public boolean copy(String sourceBackendPath, String targetBackendDirectory) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			boolean result = connector.copy(sourceBackendPath, targetBackendDirectory);
+			copyTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			copyTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("copy", sourceBackendPath, -1);
+		}
+	}
+
+	@Override
+	public boolean move(String sourceBackendPath, String targetBackendDirectory) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			boolean result = connector.move(sourceBackendPath, targetBackendDirectory);
+			moveTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			moveTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("move", sourceBackendPath, -1);
+		}
+	}
+
+	@Override
+	public void createFolder(String backendDirectory, String sanitizedName) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			connector.createFolder(backendDirectory, sanitizedName);
+			createFolderTimer.recordSuccess(start);
+		} catch (Throwable e) {
+			createFolderTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("createFolder", backendDirectory, -1);
+		}
+	}
+
+	@Override
+	public boolean delete(String backendPath) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			boolean result = connector.delete(backendPath);
+			deleteTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			deleteTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("delete", backendPath, -1);
+		}
+	}
+
+	@Override
+	public boolean restore(String backendPath) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			boolean result = connector.restore(backendPath);
+			restoreTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			restoreTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("restore", backendPath, -1);
+		}
+	}
+
+	@Override
+	public void upload(String backendDirectory, String sanitizedName, InputStream in) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			connector.upload(backendDirectory, sanitizedName, in);
+			uploadTimer.recordSuccess(start);
+		} catch (Throwable e) {
+			uploadTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("upload", backendDirectory, -1);
+		}
+	}
+
+	@Override
+	public String reserveName(String backendDirectory, String sanitizedName) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			String result = connector.reserveName(backendDirectory, sanitizedName);
+			reserveNameTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			reserveNameTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("reserveName", backendDirectory, -1);
+		}
+	}
+
+	@Override
+	public List<String> reserveNames(String backendDirectory, List<String> sanitizedNames) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			List<String> result = connector.reserveNames(backendDirectory, sanitizedNames);
+			reserveNamesTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			reserveNamesTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("reserveNames", backendDirectory, -1);
+		}
+	}
+
+	@Override
+	public void releaseName(String backendDirectory, String reservedName) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			connector.releaseName(backendDirectory, reservedName);
+			releaseNameTimer.recordSuccess(start);
+		} catch (Throwable e) {
+			releaseNameTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("releaseName", backendDirectory, -1);
+		}
+	}
+
+	@Override
+	public void upload(String backendDirectory, String sanitizedName, Path file) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			connector.upload(backendDirectory, sanitizedName, file);
+			uploadTimer.recordSuccess(start);
+		} catch (Throwable e) {
+			uploadTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("upload", backendDirectory, -1);
+		}
+	}
+
+	@Override
+	public StreamContent download(String backendPath) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		long bytes = -1;
+		try {
+			StreamContent result = connector.download(backendPath);
+			downloadTimer.recordSuccess(start);
+			bytes = (result == null) ? -1 : result.getSize();
+			return result;
+		} catch (Throwable e) {
+			downloadTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("download", backendPath, bytes);
+		}
+	}
+
+	@Override
+	public StreamContent downloadRange(String backendPath, long offset, long length) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		long bytes = -1;
+		try {
+			StreamContent result = connector.downloadRange(backendPath, offset, length);
+			downloadRangeTimer.recordSuccess(start);
+			bytes = (result == null) ? -1 : result.getSize();
+			return result;
+		} catch (Throwable e) {
+			downloadRangeTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("downloadRange", backendPath, bytes);
+		}
+	}
+
+	@Override
+	public StreamContent buildThumbnail(String backendPath, Dimension dim) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		long bytes = -1;
+		try {
+			StreamContent result = connector.buildThumbnail(backendPath, dim);
+			buildThumbnailTimer.recordSuccess(start);
+			bytes = (result == null) ? -1 : result.getSize();
+			return result;
+		} catch (Throwable e) {
+			buildThumbnailTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("buildThumbnail", backendPath, bytes);
+		}
+	}
+
+	@Override
+	public StreamContent resize(InputStream imageIn, String imageExt, Dimension dim) throws IOException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		long bytes = -1;
+		try {
+			StreamContent result = connector.resize(imageIn, imageExt, dim);
+			resizeTimer.recordSuccess(start);
+			bytes = (result == null) ? -1 : result.getSize();
+			return result;
+		} catch (Throwable e) {
+			resizeTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("resize", null, bytes);
+		}
+	}
+
+	@Override
+	public StreamContent preview(String backendPath, Dimension maxDim) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		long bytes = -1;
+		try {
+			StreamContent result = connector.preview(backendPath, maxDim);
+			previewTimer.recordSuccess(start);
+			bytes = (result == null) ? -1 : result.getSize();
+			return result;
+		} catch (Throwable e) {
+			previewTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("preview", backendPath, bytes);
+		}
+	}
+
+	@Override
+	public String editFile(String backendPath) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			String result = connector.editFile(backendPath);
+			editFileTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			editFileTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("editFile", backendPath, -1);
+		}
+	}
+
+	@Override
+	public void saveFile(String backendPath, String content) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			connector.saveFile(backendPath, content);
+			saveFileTimer.recordSuccess(start);
+		} catch (Throwable e) {
+			saveFileTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("saveFile", backendPath, -1);
+		}
+	}
+
+	@Override
+	public void replace(String backendPath, InputStream in) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			connector.replace(backendPath, in);
+			replaceTimer.recordSuccess(start);
+		} catch (Throwable e) {
+			replaceTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("replace", backendPath, -1);
+		}
+	}
+
+	@Override
+	public void replace(String backendPath, Path file) throws C5CException {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			connector.replace(backendPath, file);
+			replaceTimer.recordSuccess(start);
+		} catch (Throwable e) {
+			replaceTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("replace", backendPath, -1);
+		}
+	}
+
+	@Override
+	public boolean isProtected(String backendPath) {
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.CONNECTOR);
+		try {
+			boolean result = connector.isProtected(backendPath);
+			isProtectedTimer.recordSuccess(start);
+			return result;
+		} catch (Throwable e) {
+			isProtectedTimer.recordFailure(start);
+			throw e;
+		} finally {
+			RequestData.getServerTiming().add(Phase.CONNECTOR, start);
+			span.end("isProtected", backendPath, -1);
+		}
+	}
+
+	@Override
+	public Path getLocalPath(String backendPath) {
+		return (connector instanceof GenericConnector) ? ((GenericConnector) connector).getLocalPath(backendPath) : null;
+	}
+
+	@Override
+	protected boolean checkFilename(String name) {
+		return (connector instanceof GenericConnector) ? ((GenericConnector) connector).checkFilename(name) : super.checkFilename(name);
+	}
+
+	@Override
+	protected boolean checkFolderName(String name) {
+		return (connector instanceof GenericConnector) ? ((GenericConnector) connector).checkFolderName(name) : super
+				.checkFolderName(name);
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import codes.thischwa.c5c.Tracing.Kind;
+import codes.thischwa.c5c.Tracing.Span;
+import codes.thischwa.c5c.requestcycle.Context;
+import codes.thischwa.c5c.requestcycle.RequestData;
+
+/**
+ * Builds the spans of {@link Tracing} as events of the JDK Flight Recorder. This class references the JFR API, so it must be loaded
+ * just by {@link Tracing}, after the API was found.
+ */
+final class JfrTracer implements Tracing.Tracer {
+
+	@Override
+	public Span begin(Kind kind) {
+		C5CEvent event;
+		switch(kind) {
+			case REQUEST:
+				event = new RequestEvent();
+				break;
+			case PHASE:
+				event = new PhaseEvent();
+				break;
+			case CONNECTOR:
+				event = new ConnectorEvent();
+				break;
+			case IMAGE:
+				event = new ImageEvent();
+				break;
+			default:
+				event = new ResponseEvent();
+				break;
+		}
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * The base of the events, it holds the common fields.
+	 */
+	@Category("C5Connector")
+	@StackTrace(false)
+	@Threshold("1 ms")
+	abstract static class C5CEvent extends Event implements Span {
+		@Label("Name")
+		String name;
+
+		@Label("Mode")
+		@Description("The mode of the request of the filemanager")
+		String mode;
+
+		@Label("Path")
+		String path;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Override
+		public void end(String name, String path, long bytes) {
+			end();
+			if(!shouldCommit())
+				return;
+			this.name = name;
+			this.path = path;
+			this.bytes = bytes;
+			Context ctx = RequestData.getContext();
+			if(ctx != null && ctx.getMode() != null)
+				this.mode = ctx.getMode().getParameterName();
+			commit();
+		}
+	}
+
+	@Name("codes.thischwa.c5c.Request")
+	@Label("Request")
+	@Description("A request of the filemanager, the name is the http method")
+	static final class RequestEvent extends C5CEvent {
+	}
+
+	@Name("codes.thischwa.c5c.Phase")
+	@Label("Request Phase")
+	@Description("A phase of a request of the filemanager")
+	static final class PhaseEvent extends C5CEvent {
+	}
+
+	@Name("codes.thischwa.c5c.ConnectorCall")
+	@Label("Connector Call")
+	@Description("A call of the connector, the name is the method")
+	static final class ConnectorEvent extends C5CEvent {
+	}
+
+	@Name("codes.thischwa.c5c.Image")
+	@Label("Image Processing")
+	@Description("The decoding or resizing of an image")
+	static final class ImageEvent extends C5CEvent {
+	}
+
+	@Name("codes.thischwa.c5c.ResponseWrite")
+	@Label("Response Serialization")
+	@Description("The serialization of a JSON response, the name is the class of the response")
+	static final class ResponseEvent extends C5CEvent {
+	}
+}
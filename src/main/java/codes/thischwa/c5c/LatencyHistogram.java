@@ -0,0 +1,190 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in the manner of the HdrHistogram: The latencies are recorded in microseconds into buckets with a
+ * logarithmic scale, each power of two is divided into 64 linear sub-buckets. So the relative error of a recorded value is less than
+ * 1/64, regardless of its magnitude. The values up to 127 µs are recorded exactly, values above about 19 hours are recorded as the
+ * max. trackable value.<br/>
+ * The recording is lock-free, it just increments atomic counters. The statistics are calculated from a {@link Snapshot}.
+ */
+final class LatencyHistogram {
+
+	private static final int sub_bucket_bits = 6;
+
+	private static final int sub_bucket_half = 1 << sub_bucket_bits;
+
+	/** The exponent of the max. trackable value in µs, 2^36 µs are about 19 hours. */
+	private static final int max_exponent = 36;
+
+	private static final long max_value = (1L << max_exponent) - 1;
+
+	private static final int bucket_count = indexOf(max_value) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(bucket_count);
+
+	private final AtomicLong totalCount = new AtomicLong();
+
+	private final AtomicLong totalSum = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 * 
+	 * @param nanos
+	 *            the latency in ns, negative values are recorded as 0
+	 */
+	void record(long nanos) {
+		long micros = Math.min(Math.max(nanos / 1000, 0), max_value);
+		counts.incrementAndGet(indexOf(micros));
+		totalCount.incrementAndGet();
+		totalSum.addAndGet(micros);
+	}
+
+	/**
+	 * Copies the current counts. The values recorded during the copy may be partially contained, so the total count of the snapshot is
+	 * summed from its buckets.
+	 * 
+	 * @return the snapshot
+	 */
+	Snapshot snapshot() {
+		long[] copy = new long[bucket_count];
+		for(int i = 0; i < bucket_count; i++)
+			copy[i] = counts.get(i);
+		return new Snapshot(copy, totalSum.get());
+	}
+
+	long getCount() {
+		return totalCount.get();
+	}
+
+	static int indexOf(long micros) {
+		if(micros < sub_bucket_half * 2)
+			return (int) micros;
+		int shift = 63 - Long.numberOfLeadingZeros(micros) - sub_bucket_bits;
+		return sub_bucket_half * (shift + 1) + (int) ((micros >>> shift) - sub_bucket_half);
+	}
+
+	/**
+	 * @return the lowest value in µs, which is recorded in the bucket
+	 */
+	static long lowestValueAt(int index) {
+		if(index < sub_bucket_half * 2)
+			return index;
+		int shift = index / sub_bucket_half - 1;
+		long subBucket = sub_bucket_half + index % sub_bucket_half;
+		return subBucket << shift;
+	}
+
+	/**
+	 * @return the highest value in µs, which is recorded in the bucket
+	 */
+	static long highestValueAt(int index) {
+		return (index + 1 < bucket_count) ? lowestValueAt(index + 1) - 1 : max_value;
+	}
+
+	/**
+	 * The counts of a {@link LatencyHistogram} at a point in time. The statistics of an interval are calculated from the difference
+	 * of two snapshots, see {@link #minus(Snapshot)}.
+	 */
+	static final class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+
+		private Snapshot(long[] counts, long sum) {
+			this.counts = counts;
+			long total = 0;
+			for(long c : counts)
+				total += c;
+			this.count = total;
+			this.sum = sum;
+		}
+
+		/**
+		 * Builds the snapshot of the values, which were recorded after an older snapshot.
+		 * 
+		 * @param older
+		 *            an older snapshot of the same histogram, can be <code>null</code>
+		 * @return the difference
+		 */
+		Snapshot minus(Snapshot older) {
+			if(older == null)
+				return this;
+			long[] diff = new long[counts.length];
+			for(int i = 0; i < counts.length; i++)
+				diff[i] = counts[i] - older.counts[i];
+			return new Snapshot(diff, sum - older.sum);
+		}
+
+		long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the sum of the values in µs
+		 */
+		long getSum() {
+			return sum;
+		}
+
+		/**
+		 * @return the mean in µs, or 0 if nothing was recorded
+		 */
+		double getMean() {
+			return (count == 0) ? 0 : (double) sum / count;
+		}
+
+		/**
+		 * @param percentile
+		 *            the percentile, e.g. 99.9
+		 * @return the value in µs, below or equal to which the desired percentage of the values is, or 0 if nothing was recorded
+		 */
+		long getValueAtPercentile(double percentile) {
+			if(count == 0)
+				return 0;
+			long rank = Math.max((long) Math.ceil(percentile / 100.0 * count), 1);
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= rank)
+					return highestValueAt(i);
+			}
+			return max_value;
+		}
+
+		/**
+		 * @return the highest recorded value in µs, or 0 if nothing was recorded
+		 */
+		long getMax() {
+			for(int i = counts.length - 1; i >= 0; i--) {
+				if(counts[i] > 0)
+					return highestValueAt(i);
+			}
+			return 0;
+		}
+
+		/**
+		 * @param micros
+		 *            the upper bound in µs
+		 * @return the number of values, which are lower than or equal to the upper bound
+		 */
+		long getCountAtOrBelow(long micros) {
+			long result = 0;
+			for(int i = 0; i < counts.length && lowestValueAt(i) <= micros; i++)
+				result += counts[i];
+			return result;
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the metrics of the connector: a {@link Timer} for each {@link FilemanagerAction}, which is fed by the {@link ConnectorServlet},
+ * and a {@link Timer} for each method of the {@link Connector}, which is fed by the {@link InstrumentedConnector}.<br/>
+ * The timers are published as MXBeans with the names
+ * <code>codes.thischwa.c5c:type=Requests,context=&lt;context path&gt;,name=&lt;mode&gt;</code> and
+ * <code>codes.thischwa.c5c:type=Connector,context=&lt;context path&gt;,name=&lt;method&gt;</code>. Additionally they can be scraped by
+ * Prometheus from the {@link MetricsServlet}, which finds the metrics as attribute of the servlet context.
+ */
+final class Metrics {
+	private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+	/** The name of the servlet context attribute, which holds the metrics. */
+	static final String attribute_name = Metrics.class.getName();
+
+	private static final String domain = "codes.thischwa.c5c";
+
+	private final long windowNanos;
+
+	private final Map<FilemanagerAction, Timer> requestTimers = new EnumMap<>(FilemanagerAction.class);
+
+	private final Map<String, Timer> connectorTimers = Collections.synchronizedMap(new LinkedHashMap<String, Timer>());
+
+	private final List<ObjectName> registeredNames = new ArrayList<>();
+
+	private String contextPath;
+
+	/**
+	 * Times an operation. The latencies are recorded by a {@link LatencyHistogram}. The latencies of the current window are the
+	 * difference to a snapshot taken one or two windows ago, so the window is rolled lazily by the readers and the recording doesn't
+	 * need any lock.
+	 */
+	final class Timer implements TimerMXBean {
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private final AtomicLong errors = new AtomicLong();
+		private LatencyHistogram.Snapshot windowStart = null;
+		private LatencyHistogram.Snapshot nextWindowStart = null;
+		private long nextWindowTime = System.nanoTime() + windowNanos;
+
+		/**
+		 * Records a successful call.
+		 * 
+		 * @param start
+		 *            the start of the call by {@link System#nanoTime()}
+		 */
+		void recordSuccess(long start) {
+			if(!isEnabled())
+				return;
+			histogram.record(System.nanoTime() - start);
+		}
+
+		/**
+		 * Records a failed call. Its latency is recorded too, because failed calls are expensive often.
+		 * 
+		 * @param start
+		 *            the start of the call by {@link System#nanoTime()}
+		 */
+		void recordFailure(long start) {
+			if(!isEnabled())
+				return;
+			histogram.record(System.nanoTime() - start);
+			errors.incrementAndGet();
+		}
+
+		/**
+		 * @return a snapshot of all latencies recorded since the start
+		 */
+		LatencyHistogram.Snapshot snapshot() {
+			return histogram.snapshot();
+		}
+
+		/**
+		 * @return the latencies of the current window, it covers at least one window
+		 */
+		synchronized LatencyHistogram.Snapshot windowSnapshot() {
+			LatencyHistogram.Snapshot current = histogram.snapshot();
+			long now = System.nanoTime();
+			if(now - nextWindowTime >= 0) {
+				// the start of the window is moved forward, it's older than one window now, and the current values start the next
+				windowStart = nextWindowStart;
+				nextWindowStart = current;
+				nextWindowTime = now + windowNanos;
+			}
+			return current.minus(windowStart);
+		}
+
+		@Override
+		public long getCount() {
+			return histogram.getCount();
+		}
+
+		@Override
+		public long getErrorCount() {
+			return errors.get();
+		}
+
+		@Override
+		public long getWindowCount() {
+			return windowSnapshot().getCount();
+		}
+
+		@Override
+		public double getMeanMillis() {
+			return toMillis(windowSnapshot().getMean());
+		}
+
+		@Override
+		public double getP50Millis() {
+			return toMillis(windowSnapshot().getValueAtPercentile(50));
+		}
+
+		@Override
+		public double getP99Millis() {
+			return toMillis(windowSnapshot().getValueAtPercentile(99));
+		}
+
+		@Override
+		public double getP999Millis() {
+			return toMillis(windowSnapshot().getValueAtPercentile(99.9));
+		}
+
+		@Override
+		public double getMaxMillis() {
+			return toMillis(windowSnapshot().getMax());
+		}
+
+		private double toMillis(double micros) {
+			return micros / 1000.0;
+		}
+	}
+
+	/**
+	 * Instantiates the metrics. If 'windowSeconds' isn't greater than 0, the metrics are disabled.
+	 * 
+	 * @param windowSeconds
+	 *            the time in seconds, over which the latencies are reported by JMX
+	 */
+	Metrics(int windowSeconds) {
+		this.windowNanos = TimeUnit.SECONDS.toNanos(Math.max(windowSeconds, 0));
+		if(!isEnabled())
+			return;
+		for(FilemanagerAction mode : FilemanagerAction.values())
+			requestTimers.put(mode, new Timer());
+	}
+
+	/**
+	 * Builds disabled metrics.
+	 * 
+	 * @return metrics, which don't record anything
+	 */
+	static Metrics disabled() {
+		return new Metrics(0);
+	}
+
+	boolean isEnabled() {
+		return windowNanos > 0;
+	}
+
+	/**
+	 * Records a request of the filemanager.
+	 * 
+	 * @param mode
+	 *            the mode of the request, can be <code>null</code> if it couldn't be resolved, then nothing is recorded
+	 * @param start
+	 *            the start of the request by {@link System#nanoTime()}
+	 * @param failed
+	 *            <code>true</code>, if the request failed
+	 */
+	void recordRequest(FilemanagerAction mode, long start, boolean failed) {
+		if(!isEnabled() || mode == null)
+			return;
+		Timer timer = requestTimers.get(mode);
+		if(failed)
+			timer.recordFailure(start);
+		else
+			timer.recordSuccess(start);
+	}
+
+	/**
+	 * Gets the timer of a method of the {@link Connector}, it's created and published if it doesn't exist yet. The timers of disabled
+	 * metrics don't record anything.
+	 * 
+	 * @param method
+	 *            the name of the method
+	 * @return the timer
+	 */
+	Timer getConnectorTimer(String method) {
+		synchronized (connectorTimers) {
+			Timer timer = connectorTimers.get(method);
+			if(timer == null) {
+				timer = new Timer();
+				connectorTimers.put(method, timer);
+				if(contextPath != null)
+					register("Connector", method, timer);
+			}
+			return timer;
+		}
+	}
+
+	/**
+	 * @return the timers of the modes of the filemanager
+	 */
+	Map<FilemanagerAction, Timer> getRequestTimers() {
+		return Collections.unmodifiableMap(requestTimers);
+	}
+
+	/**
+	 * @return a copy of the timers of the methods of the connector
+	 */
+	Map<String, Timer> getConnectorTimers() {
+		synchronized (connectorTimers) {
+			return new LinkedHashMap<>(connectorTimers);
+		}
+	}
+
+	/**
+	 * Publishes the timers as MXBeans at the platform {@link MBeanServer}. A name, which is already registered, e.g. by another
+	 * servlet of the same context, is skipped.
+	 * 
+	 * @param contextPath
+	 *            the context path of the servlet, it distinguishes the webapps of a container
+	 */
+	void register(String contextPath) {
+		if(!isEnabled())
+			return;
+		synchronized (connectorTimers) {
+			this.contextPath = (contextPath == null || contextPath.isEmpty()) ? "/" : contextPath;
+			for(Map.Entry<FilemanagerAction, Timer> entry : requestTimers.entrySet())
+				register("Requests", entry.getKey().getParameterName(), entry.getValue());
+			for(Map.Entry<String, Timer> entry : connectorTimers.entrySet())
+				register("Connector", entry.getKey(), entry.getValue());
+		}
+		logger.info("Metrics registered at JMX for the context {}", this.contextPath);
+	}
+
+	/**
+	 * Removes the published MXBeans.
+	 */
+	void unregister() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		synchronized (connectorTimers) {
+			for(ObjectName name : registeredNames) {
+				try {
+					server.unregisterMBean(name);
+				} catch (JMException e) {
+					logger.debug("MXBean couldn't be unregistered: {}", name);
+				}
+			}
+			registeredNames.clear();
+			contextPath = null;
+		}
+	}
+
+	/**
+	 * Must be called with the lock of 'connectorTimers' held.
+	 */
+	private void register(String type, String name, Timer timer) {
+		try {
+			ObjectName objectName = new ObjectName(String.format("%s:type=%s,context=%s,name=%s", domain, type,
+					ObjectName.quote(contextPath), ObjectName.quote(name)));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(timer, objectName);
+			registeredNames.add(objectName);
+		} catch (JMException e) {
+			logger.warn("Metrics {} of {} couldn't be registered at JMX: {}", type, name, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Optional servlet, which exposes the metrics of the {@link ConnectorServlet} in the text format of Prometheus. It has to be
+ * registered in the same webapp like the {@link ConnectorServlet}:
+ * 
+ * <pre>
+ * {@code
+ * <servlet>
+ * 	<servlet-name>MetricsServlet</servlet-name>
+ * 	<servlet-class>codes.thischwa.c5c.MetricsServlet</servlet-class>
+ * </servlet>
+ * 
+ * <servlet-mapping>
+ * 	<servlet-name>MetricsServlet</servlet-name>
+ * 	<url-pattern>/metrics</url-pattern> 	
+ * </servlet-mapping>
+ * }
+ * </pre>
+ * 
+ * The latencies are exported as cumulative histograms, so the percentiles of any interval can be calculated by Prometheus, e.g.
+ * <code>histogram_quantile(0.99, rate(c5c_request_duration_seconds_bucket[5m]))</code>. The url should be protected like any other
+ * url of the server, which isn't meant to be public.
+ */
+public class MetricsServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The upper bounds of the buckets in µs. */
+	private static final long[] bucket_bounds = { 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000, 2500000,
+			5000000, 10000000 };
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		Metrics metrics = (Metrics) getServletContext().getAttribute(Metrics.attribute_name);
+		if(metrics == null) {
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND, "The metrics of the connector are disabled or not initialized.");
+			return;
+		}
+		resp.setHeader("Cache-Control", "no-cache");
+		resp.setContentType("text/plain; version=0.0.4");
+		resp.setCharacterEncoding("UTF-8");
+		PrintWriter out = resp.getWriter();
+
+		writeHeader(out, "c5c_requests_total", "counter", "Requests of the filemanager by mode.");
+		for(Map.Entry<FilemanagerAction, Metrics.Timer> entry : metrics.getRequestTimers().entrySet())
+			writeValue(out, "c5c_requests_total", "mode", entry.getKey().getParameterName(), entry.getValue().getCount());
+		writeHeader(out, "c5c_request_errors_total", "counter", "Failed requests of the filemanager by mode.");
+		for(Map.Entry<FilemanagerAction, Metrics.Timer> entry : metrics.getRequestTimers().entrySet())
+			writeValue(out, "c5c_request_errors_total", "mode", entry.getKey().getParameterName(), entry.getValue().getErrorCount());
+		writeHeader(out, "c5c_request_duration_seconds", "histogram", "Latency of the requests of the filemanager by mode.");
+		for(Map.Entry<FilemanagerAction, Metrics.Timer> entry : metrics.getRequestTimers().entrySet())
+			writeHistogram(out, "c5c_request_duration_seconds", "mode", entry.getKey().getParameterName(), entry.getValue().snapshot());
+
+		Map<String, Metrics.Timer> connectorTimers = metrics.getConnectorTimers();
+		writeHeader(out, "c5c_connector_calls_total", "counter", "Calls of the connector by method.");
+		for(Map.Entry<String, Metrics.Timer> entry : connectorTimers.entrySet())
+			writeValue(out, "c5c_connector_calls_total", "method", entry.getKey(), entry.getValue().getCount());
+		writeHeader(out, "c5c_connector_errors_total", "counter", "Failed calls of the connector by method.");
+		for(Map.Entry<String, Metrics.Timer> entry : connectorTimers.entrySet())
+			writeValue(out, "c5c_connector_errors_total", "method", entry.getKey(), entry.getValue().getErrorCount());
+		writeHeader(out, "c5c_connector_duration_seconds", "histogram", "Latency of the calls of the connector by method.");
+		for(Map.Entry<String, Metrics.Timer> entry : connectorTimers.entrySet())
+			writeHistogram(out, "c5c_connector_duration_seconds", "method", entry.getKey(), entry.getValue().snapshot());
+		out.flush();
+	}
+
+	private static void writeHeader(PrintWriter out, String name, String type, String help) {
+		out.printf("# HELP %s %s\n", name, help);
+		out.printf("# TYPE %s %s\n", name, type);
+	}
+
+	private static void writeValue(PrintWriter out, String name, String label, String labelValue, long value) {
+		out.printf("%s{%s=\"%s\"} %d\n", name, label, labelValue, value);
+	}
+
+	private static void writeHistogram(PrintWriter out, String name, String label, String labelValue, LatencyHistogram.Snapshot snapshot) {
+		for(long bound : bucket_bounds)
+			out.printf("%s_bucket{%s=\"%s\",le=\"%s\"} %d\n", name, label, labelValue, toSeconds(bound), snapshot.getCountAtOrBelow(bound));
+		out.printf("%s_bucket{%s=\"%s\",le=\"+Inf\"} %d\n", name, label, labelValue, snapshot.getCount());
+		out.printf("%s_sum{%s=\"%s\"} %s\n", name, label, labelValue, toSeconds(snapshot.getSum()));
+		out.printf("%s_count{%s=\"%s\"} %d\n", name, label, labelValue, snapshot.getCount());
+	}
+
+	private static String toSeconds(long micros) {
+		return String.format(Locale.ENGLISH, "%.6f", micros / 1000000.0).replaceAll("0+$", "").replaceAll("\\.$", ".0");
+	}
+}
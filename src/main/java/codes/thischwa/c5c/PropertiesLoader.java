@@ -147,6 +147,41 @@ public class PropertiesLoader {
 		return Boolean.valueOf(properties.getProperty("connector.forceSingleExtension"));
 	}
 	
+	/**
+	 * Returns <code>connector.trash.enabled</code> property
+	 *
+	 * @return true, if deleted files and folders are moved into the trash
+	 */
+	public static boolean isTrashEnabled() {
+		return Boolean.valueOf(properties.getProperty("connector.trash.enabled"));
+	}
+
+	/**
+	 * Gets the time in minutes, in which a deleted file or folder could be restored from the trash.
+	 *
+	 * @return <code>connector.trash.restoreWindow</code> property, or 0 if not set
+	 */
+	public static int getTrashRestoreWindow() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.trash.restoreWindow").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the max. number of files and folders, which are purged from the trash per second.
+	 *
+	 * @return <code>connector.trash.purgeRate</code> property, or 0 if not set
+	 */
+	public static int getTrashPurgeRate() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.trash.purgeRate").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
 	/**
 	 * Returns <code>connector.filemanagerPath</code> property
 	 *
@@ -179,6 +214,154 @@ public class PropertiesLoader {
 		}
 	}
 
+	/**
+	 * Gets the maximum size in MB of the cache for thumbnails and previews.
+	 *
+	 * @return <code>connector.renditionCache.maxSize</code> property, or 0 if not set
+	 */
+	static long getRenditionCacheMaxSize() {
+		try {
+			return Long.parseLong(properties.getProperty("connector.renditionCache.maxSize").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the maximum number of folders, which are watched by the folder cache.
+	 *
+	 * @return <code>connector.folderCache.maxFolders</code> property, or 0 if not set
+	 */
+	static int getFolderCacheMaxFolders() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.folderCache.maxFolders").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the maximum number of folders, whose sizes are cached.
+	 *
+	 * @return <code>connector.folderSizes.maxFolders</code> property, or 0 if not set
+	 */
+	static int getFolderSizesMaxFolders() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.folderSizes.maxFolders").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the maximum number of folders, whose file names are indexed for the mode 'search'.
+	 *
+	 * @return <code>connector.search.maxIndexes</code> property, or 0 if not set
+	 */
+	static int getSearchMaxIndexes() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.search.maxIndexes").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the maximum size in KB of a file, whose content is indexed for the mode 'searchcontent'.
+	 *
+	 * @return <code>connector.contentSearch.maxFileSize</code> property, or 0 if not set
+	 */
+	static long getContentSearchMaxFileSize() {
+		try {
+			return Long.parseLong(properties.getProperty("connector.contentSearch.maxFileSize").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the maximum number of hits, which are returned by one search.
+	 *
+	 * @return <code>connector.search.limit</code> property, or 100 if not set
+	 */
+	static int getSearchLimit() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.search.limit").trim());
+		} catch(Exception e) {
+			return 100;
+		}
+	}
+
+	/**
+	 * Returns <code>connector.jfr.enabled</code> property
+	 *
+	 * @return true, if events of the JDK Flight Recorder are emitted for the phases of a request
+	 */
+	static boolean isJfrEnabled() {
+		return Boolean.valueOf(properties.getProperty("connector.jfr.enabled"));
+	}
+
+	/**
+	 * Returns <code>connector.serverTiming.enabled</code> property
+	 *
+	 * @return true, if each response gets a <code>Server-Timing</code> header with the durations of the phases of the request
+	 */
+	public static boolean isServerTimingEnabled() {
+		return Boolean.valueOf(properties.getProperty("connector.serverTiming.enabled"));
+	}
+
+	/**
+	 * Gets the time in seconds, over which the latency percentiles of the metrics are reported.
+	 *
+	 * @return <code>connector.metrics.window</code> property, or 0 if not set
+	 */
+	static int getMetricsWindow() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.metrics.window").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the time in hours after which an untouched chunked upload is removed.
+	 *
+	 * @return <code>connector.chunkedUpload.maxAge</code> property, or 0 if not set
+	 */
+	static int getChunkedUploadMaxAge() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.chunkedUpload.maxAge").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the number of threads, which process the files of a batch upload.
+	 *
+	 * @return <code>connector.batchUpload.threads</code> property, or 0 if not set
+	 */
+	static int getBatchUploadThreads() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.batchUpload.threads").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the maximum number of files of a batch upload.
+	 *
+	 * @return <code>connector.batchUpload.maxFiles</code> property, or 0 if not set
+	 */
+	static int getBatchUploadMaxFiles() {
+		try {
+			return Integer.parseInt(properties.getProperty("connector.batchUpload.maxFiles").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
 	/**
 	 * Gets the dimension for thumbnails.
 	 *
@@ -233,6 +416,19 @@ public class PropertiesLoader {
 		return properties.getProperty("jii.impl");
 	}
 
+	/**
+	 * Gets the max. number of dimension provider instances.
+	 *
+	 * @return <code>jii.poolSize</code> property, or 0 if not set
+	 */
+	static int getDimensionProviderPoolSize() {
+		try {
+			return Integer.parseInt(properties.getProperty("jii.poolSize").trim());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
 	/**
 	 * Returns <code>connector.userPathBuilderImpl</code> property
 	 *
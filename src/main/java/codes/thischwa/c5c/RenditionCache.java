@@ -0,0 +1,373 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.GenericConnector.StreamContent;
+
+/**
+ * On-disk cache for the encoded thumbnails and previews (renditions) built by the {@link Connector}, see issue#27.<br/>
+ * A rendition is identified by the backend path, the last modification time and the size of the source file and by the requested
+ * {@link Dimension}. So a changed source file never hits an old rendition. Additionally the renditions of a backend path are dropped
+ * explicitly by {@link #invalidate(String)}, if the dispatchers change it.<br/>
+ * The size of the cache is limited, the least recently used renditions will be evicted first. The cache files survive a restart. The
+ * backend path of a rendition is stored in a sidecar file next to it, so the restored renditions can be invalidated too.
+ */
+final class RenditionCache {
+	private static final Logger logger = LoggerFactory.getLogger(RenditionCache.class);
+
+	private static final String suffix_temp = ".tmp";
+
+	/** The suffix of the sidecar file, which holds the backend path of a rendition. */
+	static final String suffix_path = ".path";
+
+	private final Path cacheDir;
+
+	private final long maxSize;
+
+	private long currentSize = 0;
+
+	/** The entries in access order, that's the base for the LRU eviction. */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+	/**
+	 * Holds the data of a cached rendition.
+	 */
+	private static class Entry {
+		private final String backendPath;
+		private final Path file;
+		private final long size;
+
+		Entry(String backendPath, Path file, long size) {
+			this.backendPath = backendPath;
+			this.file = file;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Instantiates the cache. If 'maxSize' isn't greater than 0, the cache is disabled.
+	 *
+	 * @param cacheDir
+	 *            the directory in which the renditions will be stored
+	 * @param maxSize
+	 *            the max. size of all renditions in bytes
+	 * @throws IOException
+	 *             if the cache directory couldn't be created or read
+	 */
+	RenditionCache(Path cacheDir, long maxSize) throws IOException {
+		this.cacheDir = cacheDir;
+		this.maxSize = maxSize;
+		if(!isEnabled())
+			return;
+		Files.createDirectories(cacheDir);
+		restore();
+		logger.info("Rendition cache initialized in {} with {} renditions.", cacheDir, entries.size());
+	}
+
+	/**
+	 * Builds a disabled cache.
+	 *
+	 * @return a cache that doesn't store anything
+	 */
+	static RenditionCache disabled() {
+		try {
+			return new RenditionCache(null, 0);
+		} catch (IOException e) {
+			// can't happen because a disabled cache doesn't touch the file system
+			throw new RuntimeException(e);
+		}
+	}
+
+	boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	/**
+	 * Retrieves a cached rendition.
+	 *
+	 * @param mode
+	 *            the kind of the rendition, {@link FilemanagerAction#THUMBNAIL} or {@link FilemanagerAction#PREVIEW}
+	 * @param backendPath
+	 *            the backend path of the source file
+	 * @param fp
+	 *            the current properties of the source file
+	 * @param dim
+	 *            the requested dimension, can be null
+	 * @return the cached rendition or <code>null</code>, if there isn't any
+	 */
+	StreamContent get(FilemanagerAction mode, String backendPath, FileProperties fp, Dimension dim) {
+		if(!isEnabled())
+			return null;
+		String key = buildKey(mode, backendPath, fp, dim);
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		if(entry == null)
+			return null;
+		try {
+			InputStream in = Files.newInputStream(entry.file);
+			logger.debug("Rendition cache hit for {}", backendPath);
+			return new StreamContent(in, entry.size, entry.file);
+		} catch (NoSuchFileException e) {
+			logger.debug("Cached rendition was removed outside of the cache: {}", entry.file);
+			remove(key);
+		} catch (IOException e) {
+			logger.warn(String.format("Error while reading the cached rendition %s", entry.file), e);
+			remove(key);
+		}
+		return null;
+	}
+
+	/**
+	 * Stores a rendition. The content of 'sc' will be consumed, so the returned {@link StreamContent} has to be used instead.
+	 *
+	 * @param mode
+	 *            the kind of the rendition, {@link FilemanagerAction#THUMBNAIL} or {@link FilemanagerAction#PREVIEW}
+	 * @param backendPath
+	 *            the backend path of the source file
+	 * @param fp
+	 *            the current properties of the source file
+	 * @param dim
+	 *            the requested dimension, can be null
+	 * @param sc
+	 *            the rendition built by the connector
+	 * @return the stored rendition or <code>null</code>, if 'sc' was consumed but couldn't be stored
+	 */
+	StreamContent put(FilemanagerAction mode, String backendPath, FileProperties fp, Dimension dim, StreamContent sc) {
+		if(!isEnabled() || sc.getSize() > maxSize)
+			return sc;
+		String key = buildKey(mode, backendPath, fp, dim);
+		Path file = cacheDir.resolve(key);
+		Path tempFile = null;
+		try {
+			tempFile = Files.createTempFile(cacheDir, key, suffix_temp);
+			long size = Files.copy(sc.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+			// the sidecar is written first, so each rendition on disk has its backend path
+			Files.write(getPathFile(file), backendPath.getBytes(StandardCharsets.UTF_8));
+			try {
+				Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			List<Entry> evicted;
+			synchronized (this) {
+				add(key, new Entry(backendPath, file, size));
+				evicted = evict();
+			}
+			deleteRenditions(evicted);
+			return new StreamContent(Files.newInputStream(file), size, file);
+		} catch (IOException e) {
+			logger.warn(String.format("Error while caching the rendition of %s", backendPath), e);
+			deleteQuietly(tempFile);
+			remove(key);
+			deleteRendition(file);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(sc.getInputStream());
+		}
+	}
+
+	/**
+	 * Drops all renditions of the desired backend path. If it's a directory, the renditions of all files inside will be dropped too.
+	 *
+	 * @param backendPath
+	 *            the changed backend path
+	 */
+	void invalidate(String backendPath) {
+		if(!isEnabled() || backendPath == null)
+			return;
+		List<Path> filesToDelete = new ArrayList<>();
+		synchronized (this) {
+			for(Iterator<Entry> iter = entries.values().iterator(); iter.hasNext();) {
+				Entry entry = iter.next();
+				if(isSameOrChild(backendPath, entry.backendPath)) {
+					iter.remove();
+					currentSize -= entry.size;
+					filesToDelete.add(entry.file);
+				}
+			}
+		}
+		for(Path file : filesToDelete) {
+			deleteRendition(file);
+		}
+		if(!filesToDelete.isEmpty())
+			logger.debug("{} renditions invalidated for {}", filesToDelete.size(), backendPath);
+	}
+
+	private void add(String key, Entry entry) {
+		Entry old = entries.put(key, entry);
+		if(old != null)
+			currentSize -= old.size;
+		currentSize += entry.size;
+	}
+
+	private void remove(String key) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.remove(key);
+			if(entry != null)
+				currentSize -= entry.size;
+		}
+		if(entry != null)
+			deleteRendition(entry.file);
+	}
+
+	/**
+	 * Removes the least recently used entries until the max. size is respected. Must be called with the lock held, the files of the
+	 * returned entries have to be deleted after releasing it.
+	 * 
+	 * @return the removed entries
+	 */
+	private List<Entry> evict() {
+		List<Entry> evicted = new ArrayList<>();
+		for(Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator(); currentSize > maxSize && iter.hasNext();) {
+			Entry entry = iter.next().getValue();
+			iter.remove();
+			currentSize -= entry.size;
+			evicted.add(entry);
+		}
+		return evicted;
+	}
+
+	/**
+	 * Reads the renditions of a previous run. They are ordered by their last modification time to get a reasonable LRU order.
+	 * Renditions without a readable sidecar file couldn't be invalidated, so they are dropped like the orphaned sidecar files.
+	 */
+	private void restore() throws IOException {
+		final Map<Path, Long> lastModified = new LinkedHashMap<>();
+		Map<Path, String> backendPaths = new HashMap<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+			for(Path file : stream) {
+				String name = file.getFileName().toString();
+				if(name.endsWith(suffix_temp)) {
+					deleteQuietly(file);
+				} else if(name.endsWith(suffix_path)) {
+					if(!Files.exists(cacheDir.resolve(name.substring(0, name.length() - suffix_path.length()))))
+						deleteQuietly(file);
+				} else if(Files.isRegularFile(file)) {
+					String backendPath = readBackendPath(file);
+					if(backendPath == null) {
+						deleteRendition(file);
+					} else {
+						backendPaths.put(file, backendPath);
+						lastModified.put(file, Files.getLastModifiedTime(file).toMillis());
+					}
+				}
+			}
+		}
+		List<Path> files = new ArrayList<>(lastModified.keySet());
+		Collections.sort(files, new Comparator<Path>() {
+			@Override
+			public int compare(Path p1, Path p2) {
+				return lastModified.get(p1).compareTo(lastModified.get(p2));
+			}
+		});
+		for(Path file : files) {
+			add(file.getFileName().toString(), new Entry(backendPaths.get(file), file, Files.size(file)));
+		}
+		deleteRenditions(evict());
+	}
+
+	private static String readBackendPath(Path file) {
+		try {
+			return new String(Files.readAllBytes(getPathFile(file)), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			logger.debug("Couldn't read the backend path of the rendition {}", file);
+			return null;
+		}
+	}
+
+	private static Path getPathFile(Path file) {
+		return file.resolveSibling(file.getFileName().toString() + suffix_path);
+	}
+
+	private static String buildKey(FilemanagerAction mode, String backendPath, FileProperties fp, Dimension dim) {
+		String dimStr = (dim == null) ? "orig" : String.format("%dx%d", dim.width, dim.height);
+		long modified = (fp.getRawModified() == null) ? 0 : fp.getRawModified().getTime();
+		long size = (fp.getRawSize() == null) ? -1 : fp.getRawSize();
+		String rawKey = String.format("%s|%s|%d|%d|%s", mode.getParameterName(), backendPath, modified, size, dimStr);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(rawKey.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(hash.length * 2);
+			for(byte b : hash) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Checks if 'path' is equal to 'parent' or if it's located inside of 'parent'.
+	 */
+	static boolean isSameOrChild(String parent, String path) {
+		if(path == null)
+			return false;
+		String cleanParent = parent;
+		while(cleanParent.length() > 1 && (cleanParent.endsWith("/") || cleanParent.endsWith("\\")))
+			cleanParent = cleanParent.substring(0, cleanParent.length() - 1);
+		if(!path.startsWith(cleanParent))
+			return false;
+		if(path.length() == cleanParent.length())
+			return true;
+		char next = path.charAt(cleanParent.length());
+		return next == '/' || next == '\\';
+	}
+
+	private static void deleteRenditions(List<Entry> entries) {
+		for(Entry entry : entries)
+			deleteRendition(entry.file);
+	}
+
+	private static void deleteRendition(Path file) {
+		deleteQuietly(file);
+		deleteQuietly(getPathFile(file));
+	}
+
+	private static void deleteQuietly(Path file) {
+		if(file == null)
+			return;
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			logger.debug("Couldn't delete {}", file);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+/**
+ * The JMX view of a timed operation of the connector: a mode of the filemanager or a method of the {@link Connector}. The counts are
+ * totals since the start. The latencies are calculated over the last window, see <code>connector.metrics.window</code>, so they
+ * reflect the current behavior and are suitable for alerting.
+ */
+public interface TimerMXBean {
+
+	/**
+	 * @return the total number of calls
+	 */
+	long getCount();
+
+	/**
+	 * @return the total number of failed calls
+	 */
+	long getErrorCount();
+
+	/**
+	 * @return the number of calls in the current window
+	 */
+	long getWindowCount();
+
+	/**
+	 * @return the mean latency in ms in the current window
+	 */
+	double getMeanMillis();
+
+	/**
+	 * @return the median latency in ms in the current window
+	 */
+	double getP50Millis();
+
+	/**
+	 * @return the 99th percentile of the latency in ms in the current window
+	 */
+	double getP99Millis();
+
+	/**
+	 * @return the 99.9th percentile of the latency in ms in the current window
+	 */
+	double getP999Millis();
+
+	/**
+	 * @return the max. latency in ms in the current window
+	 */
+	double getMaxMillis();
+}
@@ -0,0 +1,125 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits events of the JDK Flight Recorder (JFR) for the phases of a request, so a recording shows where the time of a slow request
+ * went: the initialization of the request cycle, the lookup of the configuration, the building of the backend path, the calls of
+ * the {@link Connector}, the decoding and resizing of images and the serialization of the response.<br/>
+ * The events are defined by {@link JfrTracer}, which is just loaded, if the running JVM provides the JFR API (<code>jdk.jfr</code>) and
+ * if the property <code>connector.jfr.enabled</code> is set. Otherwise {@link #begin(Kind)} returns a shared span, which does
+ * nothing, so the callers don't need any checks.<br/>
+ * The events are emitted just while a recording is running. By default just events of at least 1 ms are recorded, that's low enough
+ * for always-on recordings, e.g.: <code>-XX:StartFlightRecording=settings=default,maxage=1h</code>
+ */
+public final class Tracing {
+	private static final Logger logger = LoggerFactory.getLogger(Tracing.class);
+
+	private static final String jfr_tracer_class = "codes.thischwa.c5c.JfrTracer";
+
+	/**
+	 * The kinds of the events, each one has its own event type.
+	 */
+	public enum Kind {
+		/** The whole request, the name is the http method. */
+		REQUEST,
+		/** A phase of the request, e.g. 'beginRequest', 'config', 'backendPath', 'dispatch' or 'write'. */
+		PHASE,
+		/** A call of the {@link Connector}, the name is the method. */
+		CONNECTOR,
+		/** The processing of an image, e.g. 'dimension' or 'resize'. */
+		IMAGE,
+		/** The serialization of a JSON response, the name is the class of the response. */
+		RESPONSE
+	}
+
+	/**
+	 * A started event, which has to be ended by the caller.
+	 */
+	public interface Span {
+		/**
+		 * Ends the event and commits it, if it's enabled and longer than the threshold of the recording. The mode of the current
+		 * request is added.
+		 * 
+		 * @param name
+		 *            the name of the phase, method or operation
+		 * @param path
+		 *            the url or backend path, can be <code>null</code>
+		 * @param bytes
+		 *            the number of bytes, which were processed, or -1 if unknown
+		 */
+		void end(String name, String path, long bytes);
+	}
+
+	/**
+	 * Builds the spans.
+	 */
+	interface Tracer {
+		Span begin(Kind kind);
+	}
+
+	private static final Span noopSpan = new Span() {
+		@Override
+		public void end(String name, String path, long bytes) {
+		}
+	};
+
+	private static final Tracer tracer = initTracer();
+
+	private Tracing() {
+	}
+
+	/**
+	 * Starts an event.
+	 * 
+	 * @param kind
+	 *            the kind of the event
+	 * @return the started event
+	 */
+	public static Span begin(Kind kind) {
+		return tracer.begin(kind);
+	}
+
+	/**
+	 * @return <code>true</code>, if the events are emitted to the JFR
+	 */
+	public static boolean isEnabled() {
+		return tracer != null && !(tracer instanceof NoopTracer);
+	}
+
+	private static final class NoopTracer implements Tracer {
+		@Override
+		public Span begin(Kind kind) {
+			return noopSpan;
+		}
+	}
+
+	private static Tracer initTracer() {
+		if(!PropertiesLoader.isJfrEnabled()) {
+			logger.info("JFR events are disabled.");
+			return new NoopTracer();
+		}
+		try {
+			Class.forName("jdk.jfr.Event");
+			Tracer jfrTracer = (Tracer) Class.forName(jfr_tracer_class).getDeclaredConstructor().newInstance();
+			logger.info("JFR events are enabled.");
+			return jfrTracer;
+		} catch (ClassNotFoundException e) {
+			logger.info("JFR isn't provided by the JVM, no events will be emitted.");
+		} catch (Throwable e) {
+			logger.warn("JFR events couldn't be initialized, no events will be emitted.", e);
+		}
+		return new NoopTracer();
+	}
+}
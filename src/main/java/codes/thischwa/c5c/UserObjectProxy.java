@@ -15,6 +15,7 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
@@ -29,6 +30,8 @@ import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import codes.thischwa.c5c.Tracing.Kind;
+import codes.thischwa.c5c.Tracing.Span;
 import codes.thischwa.c5c.exception.FilemanagerException;
 import codes.thischwa.c5c.filemanager.FilemanagerConfig;
 import codes.thischwa.c5c.filemanager.Icons;
@@ -40,13 +43,14 @@ import codes.thischwa.c5c.requestcycle.FilemanagerConfigBuilder;
 import codes.thischwa.c5c.requestcycle.IconRequestResolver;
 import codes.thischwa.c5c.requestcycle.IconResolver;
 import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.requestcycle.ServerTiming.Phase;
 import codes.thischwa.c5c.requestcycle.response.mode.FileInfo;
+import codes.thischwa.c5c.util.ImageUtils;
 import codes.thischwa.c5c.util.PathBuilder;
 import codes.thischwa.c5c.util.StringUtils;
 import codes.thischwa.c5c.util.VirtualFile;
 import codes.thischwa.c5c.util.VirtualFile.Type;
 import codes.thischwa.jii.IDimensionProvider;
-import codes.thischwa.jii.exception.ReadException;
 
 /**
  * This object serves as proxy for configurable implementations of the following interfaces (user-objects):
@@ -68,6 +72,9 @@ public class UserObjectProxy {
 
 	private static Pattern dimensionPattern = Pattern.compile("(\\d+)x(\\d+)");
 
+	/** The max. number of bytes to read for getting the dimension from the header of an image. */
+	private static final int maxHeaderSize = 256 * 1024;
+
 	private static ServletContext servletContext;
 
 	private static java.nio.file.Path tempDirectory;
@@ -82,7 +89,7 @@ public class UserObjectProxy {
 
 	private static FilemanagerConfigBuilder configBuilder;
 
-	private static IDimensionProvider imageDimensionProvider;
+	private static DimensionProviderPool dimensionProviderPool;
 
 	private static Dimension thumbnailDimension;
 
@@ -184,9 +191,14 @@ public class UserObjectProxy {
 		if(StringUtils.isNullOrEmptyOrBlank(className))
 			throw new RuntimeException("Empty DimensionProvider implementation class name! Depending property must be set!");
 		try {
-			Class<?> clazz = Class.forName(className);
-			imageDimensionProvider = (IDimensionProvider) clazz.newInstance();
-			logger.info("DimensionProvider initialized to {}", className);
+			Class<? extends IDimensionProvider> clazz = Class.forName(className).asSubclass(IDimensionProvider.class);
+			// instantiate one provider to fail early
+			clazz.newInstance();
+			int poolSize = PropertiesLoader.getDimensionProviderPoolSize();
+			if(poolSize < 1)
+				poolSize = Runtime.getRuntime().availableProcessors();
+			dimensionProviderPool = new DimensionProviderPool(clazz, poolSize);
+			logger.info("DimensionProvider initialized to {} with a pool size of {}", className, poolSize);
 		} catch (Throwable e) {
 			String msg = String.format("DimensionProvider implementation [%s] couldn't be instantiated.", className);
 			logger.error(msg);
@@ -344,7 +356,12 @@ public class UserObjectProxy {
 	 */
 	public static FilemanagerConfig getFilemanagerUserConfig(HttpServletRequest req) {
 		// we need the HttpServletRequest here because this breaks the request-cycle, see ConnctorServlet#doGet
-		return configBuilder.getConfig(req, servletContext);
+		Span span = Tracing.begin(Kind.PHASE);
+		try {
+			return configBuilder.getConfig(req, servletContext);
+		} finally {
+			span.end("config", null, -1);
+		}
 	}
 
 	/**
@@ -368,7 +385,9 @@ public class UserObjectProxy {
 	}
 
 	/**
-	 * Retrieves the {@link Dimension} of the image based on the committed 'imageIn'.
+	 * Retrieves the {@link Dimension} of the image based on the committed 'imageIn'.<br/>
+	 * For JPEG, PNG and GIF the dimension is read from the header of the image. For all other formats, or if the header couldn't be read,
+	 * a provider of the {@link DimensionProviderPool} is used.
 	 *
 	 * @param imageIn
 	 *            the {@link InputStream} of an image
@@ -376,19 +395,51 @@ public class UserObjectProxy {
 	 * @throws IOException
 	 *             if the image data couldn't be analyzed
 	 */
-	public static synchronized Dimension getDimension(final InputStream imageIn) throws IOException {
-		InputStream tmpImageIn = null;
+	public static Dimension getDimension(final InputStream imageIn) throws IOException {
+		// we have to use a copy of the inputstream, because we need #mark and same dimensionProviders uses #mark too
+		long start = System.nanoTime();
+		Span span = Tracing.begin(Kind.IMAGE);
 		try {
-			// we have to use a copy of the inputstream, because same dimensionProviders uses #mark
-			tmpImageIn = new BufferedInputStream(imageIn);
-			imageDimensionProvider.set(tmpImageIn);
-			Dimension dim = imageDimensionProvider.getDimension();
-			return dim;
-		} catch (UnsupportedOperationException | ReadException e) {
-			throw new IOException(e);
+			InputStream tmpImageIn = new BufferedInputStream(imageIn);
+			Dimension dim = sniffDimension(tmpImageIn);
+			return (dim != null) ? dim : dimensionProviderPool.getDimension(tmpImageIn);
+		} finally {
+			RequestData.getServerTiming().add(Phase.DIMENSION, start);
+			span.end("dimension", null, -1);
 		}
 	}
 
+	/**
+	 * Reads the {@link Dimension} of a JPEG, PNG or GIF from the header of the image. The stream is reset afterwards, so it can be
+	 * consumed from its beginning.
+	 *
+	 * @param imageIn
+	 *            the {@link InputStream} of an image, it must support {@link InputStream#mark(int)}
+	 * @return the {@link Dimension} of the image or <code>null</code>, if it couldn't be read from the header
+	 * @throws IOException
+	 *             if the stream couldn't be reset
+	 */
+	static Dimension sniffDimension(final InputStream imageIn) throws IOException {
+		imageIn.mark(maxHeaderSize);
+		Dimension dim = null;
+		try {
+			dim = ImageUtils.readDimension(imageIn, maxHeaderSize);
+		} catch (IOException e) {
+			logger.debug("Couldn't read the dimension from the image header: {}", e.getMessage());
+		}
+		imageIn.reset();
+		return dim;
+	}
+
+	/**
+	 * Getter for the pool of the {@link IDimensionProvider}s, e.g. to monitor its waiting times.
+	 *
+	 * @return the pool of the dimension providers
+	 */
+	public static DimensionProviderPool getDimensionProviderPool() {
+		return dimensionProviderPool;
+	}
+
 	/**
 	 * Getter for the adjusted thumbnail dimension.
 	 * 
@@ -446,6 +497,37 @@ public class UserObjectProxy {
 		return tempDirectory;
 	}
 
+	/**
+	 * Removes the EXIF data while copying an image. If the {@link ExifRemover} isn't set or doesn't support the image type, nothing
+	 * will be read or written.
+	 *
+	 * @param in
+	 *            the {@link InputStream} of the image
+	 * @param out
+	 *            the {@link OutputStream} for the image without EXIF data
+	 * @param extension
+	 *            the extension of the image file
+	 * @return <code>true</code>, if the image was written to 'out'
+	 * @throws IOException
+	 *             if the image couldn't be processed, the streams could be consumed partially in this case
+	 */
+	public static boolean removeExif(InputStream in, OutputStream out, String extension) throws IOException {
+		if(exifRemover == null)
+			return false;
+		boolean removed = exifRemover.removeExif(in, out, extension);
+		logger.debug("potential exif data removed: {}", removed);
+		return removed;
+	}
+
+	/**
+	 * Removes the EXIF data of an image file by writing a new file next to it.
+	 *
+	 * @param tempPath
+	 *            the image file
+	 * @return the file without EXIF data or 'tempPath', if nothing was removed
+	 * @deprecated the upload removes the EXIF data on the fly, use {@link #removeExif(InputStream, OutputStream, String)}
+	 */
+	@Deprecated
 	public static java.nio.file.Path removeExif(java.nio.file.Path tempPath) {
 		if(exifRemover == null)
 			return tempPath;
@@ -0,0 +1,130 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.GenericConnector.StreamContent;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.requestcycle.response.mode.ZipDownload;
+import codes.thischwa.c5c.util.PathBuilder;
+import codes.thischwa.c5c.util.StringUtils;
+
+/**
+ * Walks the requested files and folders through the {@link Connector} for a {@link ZipDownload}. The folders are walked depth-first
+ * and lazily, so just the pending siblings are held in memory. The content of the folders is retrieved by the {@link FolderCache}, so
+ * the files excluded by the configuration are omitted like in a folder listing.<br/>
+ * Sub-folders, which are symbolic links, are added as empty folders, because a link to a parent would never end the archive.
+ */
+final class ZipEntries implements ZipDownload.Entries {
+
+	private final Connector connector;
+
+	private final FolderCache folderCache;
+
+	private final String configKey;
+
+	private final Deque<Pending> pending = new ArrayDeque<>();
+
+	private final Set<String> rootNames = new HashSet<>();
+
+	/**
+	 * A file or folder, which wasn't passed to the archive yet.
+	 */
+	private static class Pending {
+		private final String backendPath;
+		private final String entryName;
+		private final FileProperties fp;
+		private final boolean walk;
+
+		Pending(String backendPath, String entryName, FileProperties fp, boolean walk) {
+			this.backendPath = backendPath;
+			this.entryName = entryName;
+			this.fp = fp;
+			this.walk = walk;
+		}
+	}
+
+	/**
+	 * @param connector
+	 *            the connector to read the files and folders
+	 * @param folderCache
+	 *            the cache for folder listings
+	 * @param configKey
+	 *            identifies the configuration, which affects the folder listings
+	 */
+	ZipEntries(Connector connector, FolderCache folderCache, String configKey) {
+		this.connector = connector;
+		this.folderCache = folderCache;
+		this.configKey = configKey;
+	}
+
+	/**
+	 * Adds a file or folder to the root of the archive. It's checked immediately, so an error can be reported before the archive is
+	 * started. The names of the root are made unique, if files with the same name of different folders are requested.
+	 * 
+	 * @param backendPath
+	 *            the file or folder
+	 * @throws C5CException
+	 *             if the file or folder doesn't exist
+	 */
+	void add(String backendPath) throws C5CException {
+		FileProperties fp = folderCache.getInfo(connector, backendPath, false, configKey);
+		String name = StringUtils.getUniqueName(rootNames, fp.getName());
+		rootNames.add(name);
+		pending.addLast(new Pending(backendPath, buildEntryName(null, name, fp), fp, true));
+	}
+
+	@Override
+	public ZipDownload.Entry next() throws IOException {
+		Pending next = pending.pollFirst();
+		if(next == null)
+			return null;
+		long lastModified = (next.fp.getRawModified() == null) ? -1 : next.fp.getRawModified().getTime();
+		try {
+			if(next.fp.isDir()) {
+				if(next.walk)
+					addChildren(next);
+				return new ZipDownload.Entry(next.entryName, null, lastModified);
+			}
+			StreamContent sc = connector.download(next.backendPath);
+			return new ZipDownload.Entry(next.entryName, sc.getInputStream(), lastModified);
+		} catch (C5CException e) {
+			throw new IOException(String.format("%s couldn't be read: %s", next.backendPath, e.getMessage()), e);
+		}
+	}
+
+	private void addChildren(Pending folder) throws C5CException {
+		List<Pending> children = new ArrayList<>();
+		PathBuilder parent = new PathBuilder(folder.backendPath);
+		for(FileProperties child : folderCache.getFolder(connector, folder.backendPath, false, configKey)) {
+			String childPath = (child.isDir()) ? new PathBuilder(folder.backendPath).addFolder(child.getName()).toString() : parent
+					.addFile(child.getName());
+			boolean walk = child.isDir() && !GenericConnector.isLinkedFolder(connector, childPath);
+			children.add(new Pending(childPath, buildEntryName(folder.entryName, child.getName(), child), child, walk));
+		}
+		// depth-first: the children are passed before the siblings of the folder
+		for(int i = children.size() - 1; i >= 0; i--)
+			pending.addFirst(children.get(i));
+	}
+
+	private static String buildEntryName(String parentEntryName, String name, FileProperties fp) {
+		String entryName = (parentEntryName == null) ? name : parentEntryName.concat(name);
+		return (fp.isDir()) ? entryName.concat("/") : entryName;
+	}
+}
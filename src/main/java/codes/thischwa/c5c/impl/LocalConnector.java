@@ -21,31 +21,56 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.imgscalr.Scalr;
 
 import codes.thischwa.c5c.FilemanagerAction;
 import codes.thischwa.c5c.GenericConnector;
 import codes.thischwa.c5c.PropertiesLoader;
+import codes.thischwa.c5c.Tracing;
+import codes.thischwa.c5c.Tracing.Kind;
+import codes.thischwa.c5c.Tracing.Span;
 import codes.thischwa.c5c.UserObjectProxy;
 import codes.thischwa.c5c.exception.C5CException;
 import codes.thischwa.c5c.exception.FilemanagerException;
 import codes.thischwa.c5c.exception.FilemanagerException.Key;
+import codes.thischwa.c5c.util.StringUtils;
 
 /**
  * The default implementation of the connector servlet.
@@ -56,7 +81,55 @@ import codes.thischwa.c5c.exception.FilemanagerException.Key;
  * <a href="http://www.thebuzzmedia.com/software/imgscalr-java-image-scaling-library/">imgscalr – Java Image Scaling Library</a> is used.
  */
 public class LocalConnector extends GenericConnector {
+
+	private static final boolean unixSupported = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+	/** The attributes of the 'unix' view, which are read for an entry. The names of the owner and group aren't read, they cost a lookup. */
+	private static final String unixAttributes = "unix:uid,mode,size,lastModifiedTime,isDirectory,isRegularFile";
+
+	/** The read and write permission of the owner in the 'mode' attribute. */
+	private static final int mode_owner_read_write = 0600;
+
+	private static final int maxNameSuffixes = 1024;
+
+	/** The highest suffix reserved for a name, so the probing of {@link #reserveName(String, String)} can start there. */
+	private final Map<Path, Integer> nameSuffixes = new LinkedHashMap<Path, Integer>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Path, Integer> eldest) {
+			return size() > maxNameSuffixes;
+		}
+	};
 	
+	/** Is <code>null</code>, if the trash is disabled. */
+	private Trash trash;
+
+	/**
+	 * Starts the {@link Trash}, if it's enabled.
+	 */
+	@Override
+	public void init() throws RuntimeException {
+		if(PropertiesLoader.isTrashEnabled()) {
+			long restoreWindow = TimeUnit.MINUTES.toMillis(Math.max(PropertiesLoader.getTrashRestoreWindow(), 0));
+			trash = new Trash(restoreWindow, PropertiesLoader.getTrashPurgeRate(), 2);
+			logger.info("Trash is enabled with a restore window of {} minutes.", TimeUnit.MILLISECONDS.toMinutes(restoreWindow));
+		}
+		super.init();
+	}
+
+	/**
+	 * Stops the {@link Trash}, if it's enabled.
+	 */
+	@Override
+	public void destroy() {
+		if(trash != null) {
+			trash.close();
+			trash = null;
+		}
+		super.destroy();
+	}
+
 	@Override
 	public Set<FileProperties> getFolder(String backendPath, boolean needSize) throws C5CException {
 		Path folder = buildRealPathAndCheck(backendPath);
@@ -98,6 +171,128 @@ public class LocalConnector extends GenericConnector {
 		return isDirectory;
 	}
 	
+	/**
+	 * Copies a file by {@link Files#copy(Path, Path, java.nio.file.CopyOption...)}, which lets the os copy the data, and a directory by a
+	 * parallel {@link TreeCopy}. A partial copy is removed, if an error occurs.
+	 */
+	@Override
+	public boolean copy(String sourceBackendPath, String targetBackendDirectory) throws C5CException {
+		Path src = buildRealPath(sourceBackendPath);
+		Path dest = buildTransferTarget(src, targetBackendDirectory, FilemanagerAction.COPY);
+		boolean isDirectory = Files.isDirectory(src, LinkOption.NOFOLLOW_LINKS);
+		try {
+			if(isDirectory)
+				TreeCopy.copy(src, dest);
+			else
+				Files.copy(src, dest, LinkOption.NOFOLLOW_LINKS);
+		} catch (FileAlreadyExistsException e) {
+			throw buildAlreadyExistsException(dest, FilemanagerAction.COPY);
+		} catch (SecurityException | IOException e) {
+			logger.warn(String.format("Error while copying [%s] to [%s]", src, dest), e);
+			deleteTree(dest);
+			throw new C5CException(FilemanagerAction.COPY, e.getMessage());
+		}
+		return isDirectory;
+	}
+
+	/**
+	 * Moves a file or directory by renaming it. If the target is located on another file system, a directory is copied by a parallel
+	 * {@link TreeCopy} and deleted afterwards. If the source can't be deleted completely, both trees are kept, because the target is the
+	 * only complete one.<br/>
+	 * {@link StandardCopyOption#ATOMIC_MOVE} isn't used, because it could replace an existing target. Without it, it's an atomic
+	 * rename on the same file system anyway.
+	 */
+	@Override
+	public boolean move(String sourceBackendPath, String targetBackendDirectory) throws C5CException {
+		Path src = buildRealPath(sourceBackendPath);
+		Path dest = buildTransferTarget(src, targetBackendDirectory, FilemanagerAction.MOVE);
+		boolean isDirectory = Files.isDirectory(src, LinkOption.NOFOLLOW_LINKS);
+		try {
+			renamePath(src, dest);
+			return isDirectory;
+		} catch (DirectoryNotEmptyException e) {
+			// another file system
+			logger.debug("The directory [{}] can't be renamed to [{}], it will be copied.", src, dest);
+		} catch (FileAlreadyExistsException e) {
+			throw buildAlreadyExistsException(dest, FilemanagerAction.MOVE);
+		} catch (SecurityException | IOException e) {
+			logger.warn(String.format("Error while moving [%s] to [%s]", src, dest), e);
+			throw new C5CException(FilemanagerAction.MOVE, e.getMessage());
+		}
+
+		try {
+			TreeCopy.copy(src, dest);
+		} catch (FileAlreadyExistsException e) {
+			throw buildAlreadyExistsException(dest, FilemanagerAction.MOVE);
+		} catch (SecurityException | IOException e) {
+			logger.warn(String.format("Error while copying [%s] to [%s] for a move", src, dest), e);
+			deleteTree(dest);
+			throw new C5CException(FilemanagerAction.MOVE, e.getMessage());
+		}
+		try {
+			deleteMovedSource(src);
+		} catch (SecurityException | IOException e) {
+			logger.error(String.format("[%s] was copied to [%s], but couldn't be removed. Both are kept.", src, dest), e);
+			throw new C5CException(FilemanagerAction.MOVE, String.format(
+					"%s was copied, but the source couldn't be removed completely.", src.getFileName()));
+		}
+		return isDirectory;
+	}
+
+	/**
+	 * Renames a file or directory, it's separated for testing.
+	 */
+	void renamePath(Path src, Path dest) throws IOException {
+		Files.move(src, dest);
+	}
+
+	/**
+	 * Deletes the source of a move, after it was copied to another file system. It's separated for testing.
+	 */
+	void deleteMovedSource(Path src) throws IOException {
+		FileUtils.deleteDirectory(src.toFile());
+	}
+
+	/**
+	 * Checks the source and the target directory of a copy or move, and builds the target.
+	 */
+	private Path buildTransferTarget(Path src, String targetBackendDirectory, FilemanagerAction mode) throws C5CException {
+		if(!Files.exists(src, LinkOption.NOFOLLOW_LINKS)) {
+			logger.error("Source file not found: {}", src);
+			throw new FilemanagerException(mode, FilemanagerException.Key.FileNotExists, src.getFileName().toString());
+		}
+		Path targetDir = buildRealPath(targetBackendDirectory);
+		if(!Files.isDirectory(targetDir)) {
+			logger.error("Target directory not found: {}", targetDir);
+			throw new FilemanagerException(mode, FilemanagerException.Key.DirectoryNotExist, targetBackendDirectory);
+		}
+		Path dest = targetDir.resolve(src.getFileName().toString());
+		if(Files.exists(dest, LinkOption.NOFOLLOW_LINKS))
+			throw buildAlreadyExistsException(dest, mode);
+		// a directory can't be copied or moved into itself
+		if(dest.toAbsolutePath().normalize().startsWith(src.toAbsolutePath().normalize()))
+			throw new FilemanagerException(mode, FilemanagerException.Key.InvalidDirectoryOrFile, src.getFileName().toString());
+		return dest;
+	}
+
+	private FilemanagerException buildAlreadyExistsException(Path dest, FilemanagerAction mode) {
+		logger.warn("Destination file already exists: {}", dest.toAbsolutePath());
+		FilemanagerException.Key key = (Files.isDirectory(dest)) ? FilemanagerException.Key.DirectoryAlreadyExists
+				: FilemanagerException.Key.FileAlreadyExists;
+		return new FilemanagerException(mode, key, dest.getFileName().toString());
+	}
+
+	private void deleteTree(Path path) {
+		try {
+			if(Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+				FileUtils.deleteDirectory(path.toFile());
+			else
+				Files.deleteIfExists(path);
+		} catch (IOException e) {
+			logger.warn("Couldn't remove the partial copy {}", path);
+		}
+	}
+
 	@Override
 	public void createFolder(String backendDirectory, String sanitizedFolderName) throws C5CException {
 		Path parentFolder = buildRealPathAndCheck(backendDirectory);
@@ -129,6 +324,9 @@ public class LocalConnector extends GenericConnector {
 		return parentFolder;
 	}
 
+	/**
+	 * Moves the file or folder into the {@link Trash}, if it's enabled. Otherwise or if it fails, it's deleted immediately.
+	 */
 	@Override
 	public boolean delete(String backendPath) throws C5CException {
 		Path file = buildRealPath(backendPath);
@@ -139,7 +337,9 @@ public class LocalConnector extends GenericConnector {
 			throw new FilemanagerException(FilemanagerAction.DELETE, key, file.getFileName().toString());
 		}
 		boolean success = false;
-		if(isDir) {
+		if(trash != null && trash.moveToTrash(file)) {
+			success = true;
+		} else if(isDir) {
 			try {
 				FileUtils.deleteDirectory(file.toFile());
 				success = true;
@@ -157,6 +357,36 @@ public class LocalConnector extends GenericConnector {
 		return isDir;
 	}
 
+	@Override
+	public boolean restore(String backendPath) throws C5CException {
+		Path file = buildRealPath(backendPath);
+		boolean restored;
+		try {
+			restored = (trash != null && trash.restore(file));
+		} catch (FileAlreadyExistsException e) {
+			throw buildAlreadyExistsException(file, FilemanagerAction.RESTORE);
+		} catch (IOException e) {
+			logger.warn(String.format("Error while restoring %s", file), e);
+			throw new C5CException(FilemanagerAction.RESTORE, e.getMessage());
+		}
+		if(!restored)
+			throw new FilemanagerException(FilemanagerAction.RESTORE, FilemanagerException.Key.FileNotExists, file.getFileName().toString());
+		return Files.isDirectory(file);
+	}
+
+	/**
+	 * The folders of the {@link Trash} are always hidden.
+	 */
+	@Override
+	protected boolean checkFolderName(String name) {
+		return !Trash.folderName.equals(name) && super.checkFolderName(name);
+	}
+
+	@Override
+	public Path getLocalPath(String backendPath) {
+		return buildRealPath(backendPath);
+	}
+
 	/**
 	 * Builds the real file.
 	 *
@@ -176,36 +406,52 @@ public class LocalConnector extends GenericConnector {
 	 * @throws C5CException the connector exception
 	 */
 	private FileProperties constructFileInfo(Path path, boolean needSize) throws C5CException {
-		InputStream imageIn = null;
 		try {
-			FileProperties fileProperties;
-			Date lastModified = new Date(Files.getLastModifiedTime(path).toMillis());
-			// 'needsize' isn't implemented in the filemanager yet, so the dimension is set if we have an image.
-			String fileName = path.getFileName().toString();
-			String ext = FilenameUtils.getExtension(fileName.toString());
-			long size = Files.size(path);
-			boolean isProtected = isProtected(path);
-			if(isImageExtension(ext)) {
-				imageIn = new BufferedInputStream(Files.newInputStream(path));
-				Dimension dim = UserObjectProxy.getDimension(imageIn);
-				fileProperties = buildForImage(fileName, isProtected, dim.width, dim.height, size, lastModified);
-			} else {
-				 fileProperties = (Files.isDirectory(path)) ? buildForDirectory(fileName, isProtected, lastModified)
-						 : buildForFile(fileName, isProtected, size, lastModified);
-			}
-			return fileProperties;
-		} catch (FileNotFoundException e) {
+			return constructFileInfo(path, readAttributes(path), needSize);
+		} catch (NoSuchFileException e) {
 			throw new C5CException(String.format("File not found: %s", path.getFileName().toString()));
+		} catch (SecurityException | IOException e) {
+			throw new C5CException(String.format("Error while reading the attributes of %s: %s", path.getFileName().toString(), e.getMessage()));
+		}
+	}
+
+	/**
+	 * Construct file info based on already read attributes.
+	 * 
+	 * @param path the file
+	 * @param attrs the attributes of the file
+	 * @param needSize the need size
+	 * @return the file info
+	 * @throws C5CException the connector exception
+	 */
+	private FileProperties constructFileInfo(Path path, EntryAttributes attrs, boolean needSize) throws C5CException {
+		String fileName = path.getFileName().toString();
+		Date lastModified = new Date(attrs.lastModified);
+		boolean isProtected = isProtected(path, attrs);
+		if(attrs.directory)
+			return buildForDirectory(fileName, isProtected, lastModified);
+
+		// the dimension is just read, if it's requested, because the image has to be opened for it
+		String ext = FilenameUtils.getExtension(fileName);
+		if(!needSize || !isImageExtension(ext))
+			return buildForFile(fileName, isProtected, attrs.size, lastModified);
+		InputStream imageIn = null;
+		try {
+			imageIn = new BufferedInputStream(Files.newInputStream(path));
+			Dimension dim = UserObjectProxy.getDimension(imageIn);
+			return buildForImage(fileName, isProtected, dim.width, dim.height, attrs.size, lastModified);
+		} catch (NoSuchFileException e) {
+			throw new C5CException(String.format("File not found: %s", fileName));
 		} catch (SecurityException | IOException e) {
 			logger.warn("Error while analyzing an image!", e);
-			throw new C5CException(String.format("Error while getting the dimension of the image %s: %s", path.getFileName().toString(), e.getMessage()));			
+			throw new C5CException(String.format("Error while getting the dimension of the image %s: %s", fileName, e.getMessage()));			
 		} finally {
 			IOUtils.closeQuietly(imageIn);
 		}
 	}
 
 	/**
-	 * Construct from dir request.
+	 * Construct from dir request. The directory is read just once and the attributes of each entry are read by one call.
 	 * @param dir the dir
 	 * @param needSize the need size
 	 * @return the folder info
@@ -213,38 +459,70 @@ public class LocalConnector extends GenericConnector {
 	 */
 	private Set<FileProperties> constructFromDirRequest(Path dir, boolean needSize) throws C5CException {
 		Set<FileProperties> props = new HashSet<>();
-		
-		// add dirs
-		try {
-			for(Path d : Files.newDirectoryStream(dir, new DirectoryStream.Filter<Path>() {
-				@Override
-				public boolean accept(Path entry) throws IOException {
-					return Files.isDirectory(entry) && checkFolderName(entry.getFileName().toString());
-				}})) {
-				boolean isProtected =  isProtected(d);
-				FileProperties fp = buildForDirectory(d.getFileName().toString(), isProtected, new Date(Files.getLastModifiedTime(d).toMillis()));
-				props.add(fp);
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for(Path entry : stream) {
+				String name = entry.getFileName().toString();
+				EntryAttributes attrs;
+				try {
+					attrs = readAttributes(entry);
+				} catch (NoSuchFileException e) {
+					// deleted or a broken link while listing
+					continue;
+				}
+				if(attrs.directory) {
+					// registers the trash folders of a previous run for the purger
+					if(trash != null && Trash.folderName.equals(name))
+						trash.register(entry);
+					if(checkFolderName(name))
+						props.add(constructFileInfo(entry, attrs, needSize));
+				} else if(attrs.regularFile) {
+					if(checkFilename(name))
+						props.add(constructFileInfo(entry, attrs, needSize));
+				}
 			}
-		} catch (IOException | SecurityException e) {
-			throw new C5CException(String.format("Error while fetching sub-directories from [%s]: %s", dir.toAbsolutePath().toString(), e.getMessage()));
+		} catch (IOException | SecurityException | DirectoryIteratorException e) {
+			throw new C5CException(String.format("Error while fetching the content of [%s]: %s", dir.toAbsolutePath().toString(), e.getMessage()));
+		}
+		return props;
+	}
+
+	/**
+	 * Reads the attributes of a file by one call. The attributes of the 'unix' view are preferred, because the uid and the mode are
+	 * needed to determine the protected flag.
+	 * 
+	 * @param path the file
+	 * @return the attributes
+	 * @throws IOException if the attributes couldn't be read
+	 */
+	private EntryAttributes readAttributes(Path path) throws IOException {
+		if(unixSupported) {
+			Map<String, Object> attrs = Files.readAttributes(path, unixAttributes);
+			return new EntryAttributes((Boolean) attrs.get("isDirectory"), (Boolean) attrs.get("isRegularFile"), (Long) attrs.get("size"),
+					((FileTime) attrs.get("lastModifiedTime")).toMillis(), (Integer) attrs.get("uid"), (Integer) attrs.get("mode"));
 		}
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		return new EntryAttributes(attrs.isDirectory(), attrs.isRegularFile(), attrs.size(), attrs.lastModifiedTime().toMillis(), -1, -1);
+	}
 
-		// add files
-		try {
-			for(Path f : Files.newDirectoryStream(dir, new DirectoryStream.Filter<Path>() {
-				@Override
-				public boolean accept(Path entry) throws IOException {
-					return Files.isRegularFile(entry) && checkFilename(entry.getFileName().toString());
-				}})) {
-				props.add(constructFileInfo(f, needSize));
+	/**
+	 * Holds the uid of the process, or -1 if it's unknown. It's read lazily by the first check of the protected flag. The owner of
+	 * <code>/proc/self</code> is the uid of the process, so nothing has to be created. Without procfs, e.g. on Mac OS, it's unknown.
+	 */
+	private static final class ProcessUid {
+		private static final int value = read();
+
+		private static int read() {
+			if(!unixSupported)
+				return -1;
+			try {
+				return (Integer) Files.getAttribute(Paths.get("/proc/self"), "unix:uid");
+			} catch (IOException | SecurityException | UnsupportedOperationException e) {
+				logger.info("The uid of the process couldn't be determined, the protected flag is determined by the os.");
+				return -1;
 			}
-		} catch (IOException | SecurityException e) {
-			throw new C5CException(String.format("Error while fetching files from [%s]: %s", dir.toAbsolutePath().toString(), e.getMessage()));
 		}
-		
-		return props;
 	}
-	
+
 	@Override
 	public void upload(String urlDirectory, String sanitizedName, InputStream in) throws C5CException {
 		Path parentFolder = buildRealPathAndCheck(urlDirectory);
@@ -257,12 +535,98 @@ public class LocalConnector extends GenericConnector {
 		}
 	}
 
+	/**
+	 * Reserves the name by creating an empty file exclusively. If the name is used, the suffixes are probed starting behind the highest
+	 * one reserved before, so the directory doesn't have to be listed.
+	 */
+	@Override
+	public String reserveName(String backendDirectory, String sanitizedName) throws C5CException {
+		Path parentFolder = buildRealPathAndCheck(backendDirectory);
+		Path file = parentFolder.resolve(sanitizedName);
+		if(createExclusive(file))
+			return sanitizedName;
+		int suffix;
+		synchronized (nameSuffixes) {
+			Integer lastSuffix = nameSuffixes.get(file);
+			suffix = (lastSuffix == null) ? 1 : lastSuffix + 1;
+		}
+		String name;
+		do {
+			name = StringUtils.buildSuffixedName(sanitizedName, suffix++);
+		} while(!createExclusive(parentFolder.resolve(name)));
+		synchronized (nameSuffixes) {
+			Integer lastSuffix = nameSuffixes.get(file);
+			if(lastSuffix == null || lastSuffix < suffix - 1)
+				nameSuffixes.put(file, suffix - 1);
+		}
+		return name;
+	}
+
+	@Override
+	public List<String> reserveNames(String backendDirectory, List<String> sanitizedNames) throws C5CException {
+		List<String> names = new ArrayList<>(sanitizedNames.size());
+		boolean reserved = false;
+		try {
+			for(String sanitizedName : sanitizedNames) {
+				names.add(reserveName(backendDirectory, sanitizedName));
+			}
+			reserved = true;
+		} finally {
+			if(!reserved) {
+				for(String name : names)
+					releaseName(backendDirectory, name);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Deletes the empty file created by {@link #reserveName(String, String)}.
+	 */
+	@Override
+	public void releaseName(String backendDirectory, String reservedName) throws C5CException {
+		Path file = buildRealPath(backendDirectory).resolve(reservedName);
+		try {
+			if(Files.size(file) == 0)
+				Files.delete(file);
+		} catch (NoSuchFileException e) {
+			// nothing to release
+		} catch (IOException e) {
+			logger.warn("Couldn't release the reserved file: {}", file);
+		}
+	}
+
+	/**
+	 * @return <code>false</code>, if the file already exists
+	 */
+	private boolean createExclusive(Path file) throws C5CException {
+		try {
+			Files.createFile(file);
+			return true;
+		} catch (FileAlreadyExistsException e) {
+			return false;
+		} catch (IOException e) {
+			throw new FilemanagerException(FilemanagerAction.UPLOAD, FilemanagerException.Key.InvalidFileUpload, file.getFileName().toString());
+		}
+	}
+
+	/**
+	 * Moves the received file to its destination, if the temporary directory is located on the same file system. Otherwise it's
+	 * copied.
+	 */
+	@Override
+	public void upload(String urlDirectory, String sanitizedName, Path file) throws C5CException {
+		Path parentFolder = buildRealPathAndCheck(urlDirectory);
+		if(!moveAtomic(file, parentFolder.resolve(sanitizedName), FilemanagerAction.UPLOAD))
+			super.upload(urlDirectory, sanitizedName, file);
+	}
+
 	@Override
 	public StreamContent download(String backendPath) throws C5CException {
 		Path file = buildRealPath(backendPath);
 		try {
 			InputStream in = new BufferedInputStream(Files.newInputStream(file, StandardOpenOption.READ));
-			return buildStreamContent(in, Files.size(file));
+			return buildStreamContent(in, Files.size(file), file);
 		} catch (FileNotFoundException e) {
 			logger.error("Requested file not exits: {}", file.toAbsolutePath());
 			throw new FilemanagerException(FilemanagerAction.DOWNLOAD, FilemanagerException.Key.FileNotExists, backendPath);
@@ -273,6 +637,28 @@ public class LocalConnector extends GenericConnector {
 		}
 	}	
 	
+	@Override
+	public StreamContent downloadRange(String backendPath, long offset, long length) throws C5CException {
+		Path file = buildRealPath(backendPath);
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			long rangeLength = Math.max(0, Math.min(length, channel.size() - offset));
+			channel.position(offset);
+			InputStream in = new BoundedInputStream(Channels.newInputStream(channel), rangeLength);
+			return buildStreamContent(in, rangeLength);
+		} catch (NoSuchFileException e) {
+			IOUtils.closeQuietly(channel);
+			logger.error("Requested file not exits: {}", file.toAbsolutePath());
+			throw new FilemanagerException(FilemanagerAction.DOWNLOAD, FilemanagerException.Key.FileNotExists, backendPath);
+		} catch (IOException | SecurityException e) {
+			IOUtils.closeQuietly(channel);
+			String msg = String.format("Error while reading a range of %s: %s", file.getFileName().toString(), e.getMessage());
+			logger.error(msg, e);
+			throw new C5CException(FilemanagerAction.DOWNLOAD, msg);
+		}
+	}
+	
 	@Override
 	public StreamContent buildThumbnail(String backendPath, Dimension dim) throws C5CException {
 		Path file = buildRealPath(backendPath);
@@ -280,8 +666,8 @@ public class LocalConnector extends GenericConnector {
 
 		InputStream in = null;
 		try {
-			in = Files.newInputStream(file);
-			return resize(in, ext, dim);
+			in = new BufferedInputStream(Files.newInputStream(file));
+			return resize(in, ext, dim, true);
 		} catch (IllegalArgumentException | ImagingOpException | IOException e) {
 			throw new C5CException(FilemanagerAction.THUMBNAIL, e.getMessage());
 		} finally { 
@@ -293,9 +679,12 @@ public class LocalConnector extends GenericConnector {
 	public StreamContent preview(String backendPath, Dimension maxPreviewDim) throws C5CException {
 		Path file = buildRealPath(backendPath);
 		try {
-			Dimension currentDim = UserObjectProxy.getDimension(Files.newInputStream(file));
+			Dimension currentDim;
+			try (InputStream in = Files.newInputStream(file)) {
+				currentDim = UserObjectProxy.getDimension(in);
+			}
 			if(maxPreviewDim != null && (currentDim.width > maxPreviewDim.width || currentDim.height > maxPreviewDim.height)) {
-				return resize(new BufferedInputStream(Files.newInputStream(file)), FilenameUtils.getExtension(backendPath), maxPreviewDim);
+				return resize(new BufferedInputStream(Files.newInputStream(file)), FilenameUtils.getExtension(backendPath), maxPreviewDim, true);
 			}
 			return buildStreamContent(Files.newInputStream(file), Files.size(file));
 		} catch (IOException e) {
@@ -305,14 +694,38 @@ public class LocalConnector extends GenericConnector {
 
 	@Override
 	public StreamContent resize(InputStream imageIn, String imageExt, Dimension dim) throws IOException {
+		return resize(imageIn, imageExt, dim, false);
+	}
+
+	/**
+	 * Resizes an image and writes it to the returned {@link StreamContent}.
+	 * 
+	 * @param imageIn
+	 *            {@link InputStream} of the image
+	 * @param imageExt
+	 *            file extension of the image
+	 * @param dim
+	 *            the dimension of an image
+	 * @param subsampling
+	 *            if <code>true</code>, just the pixels needed for 'dim' will be decoded, see {@link #readImage(InputStream, Dimension)}.
+	 *            It's much faster for thumbnails and previews of large images, but the quality is a bit lower.
+	 * @return {@link GenericConnector.StreamContent} which holds the required data of the image
+	 * @throws IOException
+	 */
+	private StreamContent resize(InputStream imageIn, String imageExt, Dimension dim, boolean subsampling) throws IOException {
 		BufferedImage img = null;
 		BufferedImage newImg = null;
+		Span span = Tracing.begin(Kind.IMAGE);
+		long bytes = -1;
 		try {
-			img = ImageIO.read(imageIn);
+			img = (subsampling) ? readImage(imageIn, dim) : ImageIO.read(imageIn);
+			if(img == null)
+				throw new IOException("Unsupported image format: " + imageExt);
 			newImg = Scalr.resize(img, Scalr.Method.BALANCED, Scalr.Mode.AUTOMATIC, dim.width, dim.height);
 			ByteArrayOutputStream baos = new ByteArrayOutputStream();
 			ImageIO.write(newImg, imageExt, baos);
 			baos.flush();
+			bytes = baos.size();
 			return buildStreamContent(new ByteArrayInputStream(baos.toByteArray()), baos.size());
 		} catch (IllegalArgumentException | ImagingOpException e) {
 			throw new IOException(e);
@@ -321,6 +734,47 @@ public class LocalConnector extends GenericConnector {
 				img.flush();
 			if(newImg != null)
 				newImg.flush();
+			span.end("resize", null, bytes);
+		}
+	}
+
+	/**
+	 * Reads an image with source subsampling. At first the dimension is read from the header, then just every n-th pixel will be
+	 * decoded, so that the image is still greater than or equal to 'targetDim'. The full image is never held in memory, e.g. for a
+	 * 24-megapixel photo and a thumbnail it's about 1/100 of the pixels.
+	 * 
+	 * @param imageIn
+	 *            {@link InputStream} of the image
+	 * @param targetDim
+	 *            the dimension the image will be resized to
+	 * @return the (subsampled) image or <code>null</code>, if there isn't any reader for the image format
+	 * @throws IOException
+	 */
+	private BufferedImage readImage(InputStream imageIn, Dimension targetDim) throws IOException {
+		ImageInputStream iis = ImageIO.createImageInputStream(imageIn);
+		if(iis == null)
+			return null;
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			if(!readers.hasNext())
+				return null;
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(iis, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				int subsampling = Math.max(1, Math.min(width / targetDim.width, height / targetDim.height));
+				ImageReadParam param = reader.getDefaultReadParam();
+				if(subsampling > 1) {
+					param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+					logger.debug("Read image {}x{} with subsampling {}", width, height, subsampling);
+				}
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			iis.close();
 		}
 	}
 
@@ -363,6 +817,34 @@ public class LocalConnector extends GenericConnector {
 		}
 	}
 	
+	/**
+	 * Moves the received file to its destination, if the temporary directory is located on the same file system. Otherwise it's
+	 * copied.
+	 */
+	@Override
+	public void replace(String backendPath, Path file) throws C5CException {
+		if(!moveAtomic(file, buildRealPath(backendPath), FilemanagerAction.REPLACE))
+			super.replace(backendPath, file);
+	}
+
+	/**
+	 * Moves a received file atomically to its destination, an existing file will be replaced.
+	 * 
+	 * @return <code>false</code>, if the file couldn't be moved atomically, e.g. because the destination is located on another file
+	 *         system
+	 */
+	private boolean moveAtomic(Path source, Path target, FilemanagerAction mode) throws C5CException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		} catch (AtomicMoveNotSupportedException e) {
+			logger.debug("The received file can't be moved atomically to {}, it will be copied.", target);
+			return false;
+		} catch (IOException e) {
+			throw new FilemanagerException(mode, FilemanagerException.Key.InvalidFileUpload, target.getFileName().toString());
+		}
+	}
+
 	@Override
 	public boolean isProtected(String backendPath) {
 		return isProtected(buildRealPath(backendPath));
@@ -372,4 +854,37 @@ public class LocalConnector extends GenericConnector {
 		File file = path.toFile();
 		return !(file.canRead() && file.canWrite());
 	}
+
+	/**
+	 * Determines the protected flag by the permissions of the owner, if the process is the owner of the file. The uids are compared,
+	 * so no names have to be looked up. Otherwise, e.g. for root, the access check of the os is used.
+	 */
+	private boolean isProtected(Path path, EntryAttributes attrs) {
+		if(attrs.uid > 0 && attrs.uid == ProcessUid.value)
+			return (attrs.mode & mode_owner_read_write) != mode_owner_read_write;
+		return isProtected(path);
+	}
+
+	/**
+	 * Holds the attributes of a file, which are read by one call.
+	 */
+	private static final class EntryAttributes {
+		private final boolean directory;
+		private final boolean regularFile;
+		private final long size;
+		private final long lastModified;
+		/** Is -1, if it's unknown. */
+		private final int uid;
+		/** Is -1, if it's unknown. */
+		private final int mode;
+
+		EntryAttributes(boolean directory, boolean regularFile, long size, long lastModified, int uid, int mode) {
+			this.directory = directory;
+			this.regularFile = regularFile;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.uid = uid;
+			this.mode = mode;
+		}
+	}
 }
@@ -0,0 +1,331 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The trash of the {@link LocalConnector}: A deleted file or folder is renamed into the trash folder of its parent folder, so the delete
+ * returns immediately, also for huge folders. A background purger deletes the content of the trash folders by parallel walks with a
+ * throttled rate, to preserve the I/O for the requests.<br/>
+ * The deleted items are purged after the restore window, until then they could be restored. Each item is stored in its own entry
+ * folder <code>&lt;time of deletion&gt;_&lt;uuid&gt;</code> to keep its name.<br/>
+ * The trash folders are hidden by {@link LocalConnector#checkFolderName(String)}. They are registered for the purger, if something is
+ * deleted or if they are seen by a folder listing, e.g. after a restart.
+ */
+final class Trash {
+	private static final Logger logger = LoggerFactory.getLogger(Trash.class);
+
+	static final String folderName = ".c5c-trash";
+
+	private static final char entrySeparator = '_';
+
+	private static final long purgeInterval = TimeUnit.MINUTES.toMillis(1);
+
+	private final long restoreWindow;
+
+	/** The min. time between two deletions of the purger, 0 means unthrottled. */
+	private final long nanosPerDelete;
+
+	private long nextDelete = 0;
+
+	private final Set<Path> trashFolders = Collections.synchronizedSet(new HashSet<Path>());
+
+	/** The entries, which are purged currently. */
+	private final Set<Path> purging = Collections.synchronizedSet(new HashSet<Path>());
+
+	private final ScheduledExecutorService scheduler;
+
+	private final ExecutorService purgers;
+
+	/**
+	 * Instantiates the trash and starts the purger.
+	 * 
+	 * @param restoreWindow
+	 *            the time in milliseconds, in which a deleted item could be restored
+	 * @param maxDeletesPerSecond
+	 *            the max. number of files and folders the purger deletes per second, 0 means unthrottled
+	 * @param threads
+	 *            the number of parallel walks of the purger
+	 */
+	Trash(long restoreWindow, int maxDeletesPerSecond, int threads) {
+		this.restoreWindow = restoreWindow;
+		this.nanosPerDelete = (maxDeletesPerSecond > 0) ? TimeUnit.SECONDS.toNanos(1) / maxDeletesPerSecond : 0;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(buildThreadFactory("c5c-trash-scheduler"));
+		this.purgers = Executors.newFixedThreadPool(threads, buildThreadFactory("c5c-trash-purger"));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				purge();
+			}
+		}, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Moves a file or folder into the trash folder of its parent folder.
+	 * 
+	 * @param path
+	 *            the file or folder to delete
+	 * @return <code>false</code>, if it couldn't be renamed into the trash, e.g. because the trash is located on another file system
+	 */
+	boolean moveToTrash(Path path) {
+		Path trashFolder = path.getParent().resolve(folderName);
+		Path entry = trashFolder.resolve(String.format("%d%c%s", System.currentTimeMillis(), entrySeparator, UUID.randomUUID()));
+		try {
+			Files.createDirectories(entry);
+			Files.move(path, entry.resolve(path.getFileName().toString()), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			logger.debug("{} can't be moved into the trash.", path);
+			deleteQuietly(entry);
+			return false;
+		} catch (IOException e) {
+			logger.warn(String.format("Error while moving %s into the trash.", path), e);
+			deleteQuietly(entry);
+			return false;
+		}
+		register(trashFolder);
+		if(restoreWindow == 0)
+			schedulePurge();
+		return true;
+	}
+
+	/**
+	 * Restores the latest deleted item with the path, if it's still in the trash.
+	 * 
+	 * @param path
+	 *            the former path of the item
+	 * @return <code>false</code>, if there isn't any item with the path in the trash
+	 * @throws IOException
+	 *             if the item couldn't be moved back, e.g. because a new file with its name exists
+	 */
+	boolean restore(Path path) throws IOException {
+		Path trashFolder = path.getParent().resolve(folderName);
+		String name = path.getFileName().toString();
+		if(!Files.isDirectory(trashFolder))
+			return false;
+		Path latest = null;
+		long latestTime = -1;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(trashFolder)) {
+			for(Path entry : stream) {
+				long time = getDeletionTime(entry);
+				if(time > latestTime && Files.exists(entry.resolve(name)) && !purging.contains(entry)) {
+					latest = entry;
+					latestTime = time;
+				}
+			}
+		}
+		// blocks the purger
+		if(latest == null || !purging.add(latest))
+			return false;
+		try {
+			Files.move(latest.resolve(name), path);
+			deleteQuietly(latest);
+		} finally {
+			purging.remove(latest);
+		}
+		logger.debug("{} restored from the trash.", path);
+		return true;
+	}
+
+	/**
+	 * Registers a trash folder for the purger.
+	 * 
+	 * @param trashFolder
+	 *            the trash folder
+	 */
+	void register(Path trashFolder) {
+		if(trashFolders.add(trashFolder.toAbsolutePath().normalize()))
+			logger.debug("Trash folder registered: {}", trashFolder);
+	}
+
+	/**
+	 * Stops the purger, the remaining content of the trash will be purged after the next start.
+	 */
+	void close() {
+		scheduler.shutdownNow();
+		purgers.shutdownNow();
+	}
+
+	private void schedulePurge() {
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				purge();
+			}
+		});
+	}
+
+	/**
+	 * Hands over the expired entries of all trash folders to the purgers.
+	 */
+	private void purge() {
+		Set<Path> folders;
+		synchronized (trashFolders) {
+			folders = new HashSet<>(trashFolders);
+		}
+		long expired = System.currentTimeMillis() - restoreWindow;
+		for(Path trashFolder : folders) {
+			boolean empty = true;
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(trashFolder)) {
+				for(final Path entry : stream) {
+					empty = false;
+					long time = getDeletionTime(entry);
+					if(time > expired || !purging.add(entry))
+						continue;
+					purgers.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								delete(entry);
+							} finally {
+								purging.remove(entry);
+							}
+						}
+					});
+				}
+			} catch (NoSuchFileException e) {
+				// the parent folder was deleted or moved
+				trashFolders.remove(trashFolder);
+				continue;
+			} catch (IOException e) {
+				logger.warn(String.format("Error while reading the trash folder %s", trashFolder), e);
+				continue;
+			}
+			if(empty) {
+				trashFolders.remove(trashFolder);
+				deleteQuietly(trashFolder);
+			}
+		}
+	}
+
+	/**
+	 * Deletes an entry of the trash with a throttled rate.
+	 */
+	private void delete(Path entry) {
+		final int[] count = new int[1];
+		try {
+			Files.walkFileTree(entry, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					deleteThrottled(file);
+					count[0]++;
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					logger.debug("Couldn't read {} in the trash: {}", file, e.getMessage());
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+					deleteThrottled(dir);
+					count[0]++;
+					return FileVisitResult.CONTINUE;
+				}
+			});
+			logger.debug("{} files and folders purged from the trash: {}", count[0], entry);
+		} catch (IOException e) {
+			logger.warn(String.format("Error while purging %s from the trash", entry), e);
+		} catch (InterruptedRuntimeException e) {
+			logger.debug("Purging of {} interrupted.", entry);
+		}
+	}
+
+	private void deleteThrottled(Path path) throws IOException {
+		if(nanosPerDelete > 0) {
+			try {
+				acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedRuntimeException();
+			}
+		}
+		Files.deleteIfExists(path);
+	}
+
+	/**
+	 * Waits until the next deletion is allowed. The lock is held while waiting, so the rate is respected by all purgers together.
+	 */
+	private synchronized void acquire() throws InterruptedException {
+		long now = System.nanoTime();
+		if(nextDelete > now) {
+			TimeUnit.NANOSECONDS.sleep(nextDelete - now);
+			now = nextDelete;
+		}
+		nextDelete = now + nanosPerDelete;
+	}
+
+	/**
+	 * @return the time of the deletion from the name of an entry folder, or {@link Long#MAX_VALUE} if it's unknown, so it isn't
+	 *         purged
+	 */
+	static long getDeletionTime(Path entry) {
+		String name = entry.getFileName().toString();
+		int pos = name.indexOf(entrySeparator);
+		try {
+			return Long.parseLong((pos < 0) ? name : name.substring(0, pos));
+		} catch (NumberFormatException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	private static void deleteQuietly(Path folder) {
+		try {
+			Files.deleteIfExists(folder);
+		} catch (IOException e) {
+			logger.debug("Couldn't delete {}", folder);
+		}
+	}
+
+	private static ThreadFactory buildThreadFactory(final String name) {
+		return new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Aborts a walk, if the purger is interrupted.
+	 */
+	private static final class InterruptedRuntimeException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Copies a directory tree in parallel by the fork/join framework: Each directory is copied by its own task, so the sub-directories are
+ * copied concurrently while the task copies the files of its directory. Symbolic links are copied as links, they aren't followed. The
+ * folders of the {@link Trash} are omitted.
+ */
+final class TreeCopy extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	/** The threads are created on demand and they are daemons, so the pool doesn't have to be shut down. */
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private final Path source;
+
+	private final Path target;
+
+	private TreeCopy(Path source, Path target) {
+		this.source = source;
+		this.target = target;
+	}
+
+	/**
+	 * Copies the directory 'source' with its whole content to 'target'.
+	 * 
+	 * @param source
+	 *            the directory to copy
+	 * @param target
+	 *            the new directory, it mustn't exist
+	 * @throws IOException
+	 *             if a file or directory couldn't be copied, the partial copy isn't removed
+	 */
+	static void copy(Path source, Path target) throws IOException {
+		try {
+			pool.invoke(new TreeCopy(source, target));
+		} catch (CopyException e) {
+			// the fork/join framework may wrap the exception of another thread
+			Throwable cause = e;
+			while(cause instanceof CopyException)
+				cause = cause.getCause();
+			throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+		}
+	}
+
+	@Override
+	protected void compute() {
+		List<Path> files = new ArrayList<>();
+		List<TreeCopy> subTasks = new ArrayList<>();
+		try {
+			Files.createDirectory(target);
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
+				for(Path child : stream) {
+					if(Trash.folderName.equals(child.getFileName().toString()))
+						continue;
+					if(Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))
+						subTasks.add(new TreeCopy(child, target.resolve(child.getFileName().toString())));
+					else
+						files.add(child);
+				}
+			}
+		} catch (IOException e) {
+			throw new CopyException(e);
+		}
+
+		for(TreeCopy task : subTasks)
+			task.fork();
+		RuntimeException failure = null;
+		try {
+			for(Path file : files)
+				Files.copy(file, target.resolve(file.getFileName().toString()), LinkOption.NOFOLLOW_LINKS);
+		} catch (IOException e) {
+			failure = new CopyException(e);
+		}
+		// all sub-tasks have to be finished, before the caller could clean up
+		for(TreeCopy task : subTasks) {
+			try {
+				task.join();
+			} catch (RuntimeException e) {
+				if(failure == null)
+					failure = e;
+			}
+		}
+		if(failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Transports an {@link IOException} out of a task.
+	 */
+	static final class CopyException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public CopyException(Throwable cause) {
+			super(cause);
+		}
+	}
+}
@@ -13,6 +13,7 @@ package codes.thischwa.c5c.requestcycle;
 import java.net.URL;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -30,8 +31,8 @@ import codes.thischwa.jii.IDimensionProvider;
  * <li>The {@link Locale}: It is grabbed from the query string of the referrer. That's the location set by the filemanager.</li>
  * <li> The {@link Context}.</li>
  * </ul>
- * <i>Hint:</i> The implementation of the {@link IDimensionProvider} will be initialized 
- * and provided for each request because there isn't any thread-save one.
+ * <i>Hint:</i> The implementations of the {@link IDimensionProvider} aren't thread-safe, so they are 
+ * provided by a pool, see <code>DimensionProviderPool</code>.
  */
 public class RequestData {
 	private static Logger logger = LoggerFactory.getLogger(RequestData.class);
@@ -40,6 +41,8 @@ public class RequestData {
 
 	private static ThreadLocal<Locale> locale = new ThreadLocal<>();
 
+	private static ThreadLocal<ServerTiming> serverTiming = new ThreadLocal<>();
+
 	/**
 	 * Initializes the current request cycle.
 	 * 
@@ -49,6 +52,8 @@ public class RequestData {
 	public static void beginRequest(final HttpServletRequest req) {
 		if (req == null)
 			throw new NullPointerException("the request cannot be null");
+		ServerTiming timing = (PropertiesLoader.isServerTimingEnabled()) ? new ServerTiming(System.nanoTime()) : ServerTiming.disabled;
+		serverTiming.set(timing);
 		
 		// init the context
 		try {
@@ -56,7 +61,24 @@ public class RequestData {
 		} catch (C5CException e) {
 			throw new RuntimeException("Couldn't initialize the context.", e);
 		}		
+		initLocale(req);
+		timing.add(ServerTiming.Phase.CONTEXT, timing.getStart());
+	}
+
+	/**
+	 * Initializes the current request cycle without the {@link Context}, so the body of the request won't be touched. Just the
+	 * {@link Locale} is provided, e.g. to reject an oversized upload with a localized message before the container reads it.
+	 * 
+	 * @param req
+	 *            current user request instance
+	 */
+	public static void beginRequestWithoutContext(final HttpServletRequest req) {
+		if (req == null)
+			throw new NullPointerException("the request cannot be null");
+		initLocale(req);
+	}
 
+	private static void initLocale(final HttpServletRequest req) {
 		String referer = req.getHeader("referer");
 		if(StringUtils.isNullOrEmptyOrBlank(referer))
 			locale.set(req.getLocale());
@@ -85,6 +107,16 @@ public class RequestData {
 		return context.get();
 	}
 		
+	/**
+	 * Gets the collector of the <code>Server-Timing</code> header of the current request.
+	 * 
+	 * @return the collector, outside of a request cycle one, which doesn't collect anything
+	 */
+	public static ServerTiming getServerTiming() {
+		ServerTiming timing = serverTiming.get();
+		return (timing == null) ? ServerTiming.disabled : timing;
+	}
+
 	/**
 	 * Gets the locale.
 	 *
@@ -94,6 +126,43 @@ public class RequestData {
 		return locale.get();
 	}
 
+	/**
+	 * Wraps a task, so it could be executed by another thread within the current request cycle. The {@link Context} and the
+	 * {@link Locale} of the current thread are provided to the task while it's running. Afterwards the former values of the executing
+	 * thread are restored, so the wrapped task could also be executed inline, e.g. by a fork/join worker, which helps to join another
+	 * task.
+	 * 
+	 * @param task
+	 *            the task to wrap
+	 * @return the wrapped task
+	 */
+	public static <T> Callable<T> propagate(final Callable<T> task) {
+		final Context currentContext = context.get();
+		final Locale currentLocale = locale.get();
+		return new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				Context previousContext = context.get();
+				Locale previousLocale = locale.get();
+				context.set(currentContext);
+				locale.set(currentLocale);
+				try {
+					return task.call();
+				} finally {
+					restore(context, previousContext);
+					restore(locale, previousLocale);
+				}
+			}
+		};
+	}
+
+	private static <T> void restore(ThreadLocal<T> threadLocal, T previous) {
+		if(previous == null)
+			threadLocal.remove();
+		else
+			threadLocal.set(previous);
+	}
+
 	/**
 	 * Terminates the current request cycle. <br />
 	 * <strong>Important: To prevent memory leaks, make sure that this method is called at the end of the current request cycle!</strong>
@@ -101,5 +170,6 @@ public class RequestData {
 	public static void endRequest() {
 		context.remove();
 		locale.remove();
+		serverTiming.remove();
 	}
 }
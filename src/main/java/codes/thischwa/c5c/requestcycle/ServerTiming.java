@@ -0,0 +1,125 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle;
+
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Collects the durations of the phases of a request and writes them as <code>Server-Timing</code> header (W3C), so the developer
+ * tools of the browsers show where the time of a request went. It's provided by {@link RequestData#getServerTiming()}.<br/>
+ * The durations of a phase are summed, if it occurs multiple times, e.g. each call of the connector. The phases may overlap, e.g. the
+ * dimensions are read within a call of the connector. Just the time of the thread of the request is collected.<br/>
+ * The header has to be written before the body of the response is committed, so the time of streaming the content of a file can't
+ * be part of it. The serialization of a JSON response is added, if the response fits into the buffer of the servlet container.
+ */
+public final class ServerTiming {
+
+	/** The name of the header. */
+	public static final String header_name = "Server-Timing";
+
+	/**
+	 * The phases of a request.
+	 */
+	public enum Phase {
+		CONTEXT("ctx", "context setup"),
+		PATH("path", "path resolution"),
+		CONNECTOR("conn", "connector"),
+		DIMENSION("dim", "dimension reads"),
+		SORT("sort", "sorting"),
+		SERIALIZATION("ser", "serialization");
+
+		private final String metricName;
+
+		private final String description;
+
+		private Phase(String metricName, String description) {
+			this.metricName = metricName;
+			this.description = description;
+		}
+	}
+
+	/** Doesn't collect anything, it's provided outside of a request cycle or if the header is disabled. */
+	static final ServerTiming disabled = new ServerTiming(0);
+
+	private final long start;
+
+	private final long[] durations = new long[Phase.values().length];
+
+	private final int[] counts = new int[Phase.values().length];
+
+	/**
+	 * @param start
+	 *            the start of the request by {@link System#nanoTime()}
+	 */
+	ServerTiming(long start) {
+		this.start = start;
+	}
+
+	boolean isEnabled() {
+		return this != disabled;
+	}
+
+	long getStart() {
+		return start;
+	}
+
+	/**
+	 * Adds the duration of a phase.
+	 * 
+	 * @param phase
+	 *            the phase
+	 * @param phaseStart
+	 *            the start of the phase by {@link System#nanoTime()}, its end is now
+	 */
+	public void add(Phase phase, long phaseStart) {
+		if(!isEnabled())
+			return;
+		durations[phase.ordinal()] += System.nanoTime() - phaseStart;
+		counts[phase.ordinal()]++;
+	}
+
+	/**
+	 * Sets the header with the phases collected so far and with the total time since the start of the request. It can be called
+	 * multiple times, each call replaces the header, until the response is committed.
+	 * 
+	 * @param resp
+	 *            the response of the current request
+	 */
+	public void writeHeader(HttpServletResponse resp) {
+		if(!isEnabled() || resp.isCommitted())
+			return;
+		resp.setHeader(header_name, buildHeaderValue(System.nanoTime()));
+	}
+
+	/**
+	 * Builds the value of the header, e.g.: <code>ctx;dur=0.12;desc="context setup", total;dur=4.56;desc="total"</code>
+	 */
+	String buildHeaderValue(long end) {
+		StringBuilder sb = new StringBuilder(256);
+		for(Phase phase : Phase.values()) {
+			int i = phase.ordinal();
+			if(counts[i] == 0)
+				continue;
+			appendMetric(sb, phase.metricName, durations[i], (counts[i] == 1) ? phase.description : String.format("%s (%d)",
+					phase.description, counts[i]));
+			sb.append(", ");
+		}
+		appendMetric(sb, "total", end - start, "total");
+		return sb.toString();
+	}
+
+	private static void appendMetric(StringBuilder sb, String name, long nanos, String description) {
+		sb.append(name).append(";dur=").append(String.format(Locale.ENGLISH, "%.2f", nanos / 1000000.0));
+		sb.append(";desc=\"").append(description).append('"');
+	}
+}
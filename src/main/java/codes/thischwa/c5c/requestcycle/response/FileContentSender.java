@@ -0,0 +1,152 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.requestcycle.Context;
+import codes.thischwa.c5c.requestcycle.RequestData;
+
+/**
+ * Sends the content of a file of the local file system to the {@link HttpServletResponse} with as few copies as possible. The
+ * following ways are tried in this order:
+ * <ol>
+ * <li>The sendfile support of Tomcat, the container transfers the file by itself.</li>
+ * <li>The method <code>sendContent(ByteBuffer)</code> of the output stream, e.g. of Jetty 9. The file is mapped to memory and written
+ * by the container without a copy in the heap.</li>
+ * <li>Positioned reads of a {@link FileChannel} into a large buffer, which is written to the output stream.</li>
+ * </ol>
+ * The header 'Content-Length' has to be set by the caller.
+ */
+public class FileContentSender {
+	private static final Logger logger = LoggerFactory.getLogger(FileContentSender.class);
+
+	private static final String tomcat_sendfile_support = "org.apache.tomcat.sendfile.support";
+
+	private static final String tomcat_sendfile_filename = "org.apache.tomcat.sendfile.filename";
+
+	private static final String tomcat_sendfile_start = "org.apache.tomcat.sendfile.start";
+
+	private static final String tomcat_sendfile_end = "org.apache.tomcat.sendfile.end";
+
+	private static final int bufferSize = 64 * 1024;
+
+	/** Marks output stream classes without a method 'sendContent(ByteBuffer)'. */
+	private static final Object noMethod = new Object();
+
+	private static final ConcurrentMap<Class<?>, Object> sendContentMethods = new ConcurrentHashMap<>();
+
+	/**
+	 * Sends the content of a file.
+	 * 
+	 * @param resp
+	 *            the response
+	 * @param file
+	 *            the file to send
+	 * @param length
+	 *            the length of the file
+	 * @return <code>false</code>, if the file doesn't exist anymore, e.g. an evicted cache file. Nothing was written in this case.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static boolean send(HttpServletResponse resp, Path file, long length) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(sendByTomcat(file, length))
+				return true;
+			OutputStream out = resp.getOutputStream();
+			Method sendContent = getSendContentMethod(out.getClass());
+			if(sendContent == null || length > Integer.MAX_VALUE || !sendMapped(out, sendContent, channel, length))
+				sendBuffered(out, channel, length);
+			return true;
+		} catch (NoSuchFileException e) {
+			logger.debug("File to send doesn't exist anymore: {}", file);
+			return false;
+		}
+	}
+
+	private static boolean sendByTomcat(Path file, long length) throws IOException {
+		Context ctx = RequestData.getContext();
+		HttpServletRequest req = (ctx == null) ? null : ctx.getServletRequest();
+		if(req == null || !Boolean.TRUE.equals(req.getAttribute(tomcat_sendfile_support)))
+			return false;
+		req.setAttribute(tomcat_sendfile_filename, file.toRealPath().toString());
+		req.setAttribute(tomcat_sendfile_start, Long.valueOf(0));
+		req.setAttribute(tomcat_sendfile_end, Long.valueOf(length));
+		return true;
+	}
+
+	/**
+	 * @return <code>false</code>, if 'sendContent' isn't accessible, so nothing was written
+	 */
+	private static boolean sendMapped(OutputStream out, Method sendContent, FileChannel channel, long length) throws IOException {
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			sendContent.invoke(out, buffer);
+			return true;
+		} catch (IllegalAccessException e) {
+			logger.debug("sendContent(ByteBuffer) of {} isn't accessible.", out.getClass().getName());
+			sendContentMethods.put(out.getClass(), noMethod);
+			return false;
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	private static void sendBuffered(OutputStream out, FileChannel channel, long length) throws IOException {
+		byte[] bytes = new byte[(int) Math.min(bufferSize, Math.max(length, 1))];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		long position = 0;
+		while(position < length) {
+			buffer.clear();
+			if(length - position < bytes.length)
+				buffer.limit((int) (length - position));
+			int read = channel.read(buffer, position);
+			if(read < 0)
+				break;
+			out.write(bytes, 0, read);
+			position += read;
+		}
+	}
+
+	private static Method getSendContentMethod(Class<?> outClass) {
+		Object method = sendContentMethods.get(outClass);
+		if(method == null) {
+			try {
+				method = outClass.getMethod("sendContent", ByteBuffer.class);
+				logger.debug("{} supports sendContent(ByteBuffer)", outClass.getName());
+			} catch (NoSuchMethodException | SecurityException e) {
+				method = noMethod;
+			}
+			sendContentMethods.putIfAbsent(outClass, method);
+		}
+		return (method == noMethod) ? null : (Method) method;
+	}
+}
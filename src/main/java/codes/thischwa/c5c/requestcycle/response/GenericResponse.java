@@ -11,18 +11,32 @@
 package codes.thischwa.c5c.requestcycle.response;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 
-import codes.thischwa.c5c.Constants;
 import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.Tracing;
+import codes.thischwa.c5c.Tracing.Kind;
+import codes.thischwa.c5c.Tracing.Span;
+import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.requestcycle.ServerTiming;
+import codes.thischwa.c5c.requestcycle.ServerTiming.Phase;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
  * Base class for each response objects.
@@ -35,6 +49,11 @@ public class GenericResponse {
 	/** Default error code. */
 	public final static int DEFAULT_ERROR_CODE = -1;
 
+	/** The shared mapper, it's thread-safe after the configuration. */
+	private static final ObjectMapper mapper = buildMapper();
+
+	private static final ObjectWriter objectWriter = mapper.writer();
+
 	/** The error message. */
 	private String error = "";
 
@@ -79,8 +98,8 @@ public class GenericResponse {
 
 	/**
 	 * Write the response to the {@link HttpServletResponse} (The character encoding of the {@link HttpServletResponse} will
-	 * be used. Inherited object could overwrite this to write 
-	 * special content or headers.
+	 * be used. The JSON is streamed directly to the response by {@link #serialize(Writer)}. Inherited object could overwrite 
+	 * this to write special content or headers.
 	 * 
 	 * @param resp
 	 *            the resp
@@ -91,26 +110,94 @@ public class GenericResponse {
 	public void write(HttpServletResponse resp) throws IOException {
 		if (mode != null && mode.getContentType() != null)
 			resp.setContentType(mode.getContentType());
-		OutputStream out = resp.getOutputStream();
-		String json = toString();
-		IOUtils.write(json, out, resp.getCharacterEncoding());
-		IOUtils.closeQuietly(out);
-	}
-	
-	protected String serialize(Object obj) {
-		ObjectMapper mapper = new ObjectMapper();
+		Span span = Tracing.begin(Kind.RESPONSE);
+		CountingOutputStream out = new CountingOutputStream(resp.getOutputStream());
 		try {
-			String jsonStr = mapper.writeValueAsString(obj);
-			// escaping the slashes to use JSON in textareas
-			jsonStr = jsonStr.replace(Constants.defaultSeparator, "\\".concat(Constants.defaultSeparator));
-			return jsonStr;
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+			Writer writer = new OutputStreamWriter(out, resp.getCharacterEncoding());
+			long start = System.nanoTime();
+			serialize(writer);
+			ServerTiming timing = RequestData.getServerTiming();
+			timing.add(Phase.SERIALIZATION, start);
+			// just possible, if the serialized response fits into the buffer of the container
+			timing.writeHeader(resp);
+			writer.flush();
+		} finally {
+			IOUtils.closeQuietly(out);
+			span.end(getClass().getSimpleName(), null, out.getByteCount());
 		}
 	}
 
+	/**
+	 * Serializes this object as JSON to 'out'. The slashes are escaped to use JSON in textareas. 'out' won't be closed.
+	 * Inherited object could overwrite this to write special content.
+	 * 
+	 * @param out
+	 *            the {@link Writer} to write in
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected void serialize(Writer out) throws IOException {
+		objectWriter.writeValue(out, this);
+	}
+
+	/**
+	 * Creates a {@link JsonGenerator} based on the shared configuration, e.g. to stream large responses.
+	 * The generator doesn't close 'out'.
+	 * 
+	 * @param out
+	 *            the {@link Writer} to write in
+	 * @return the generator
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected static JsonGenerator createGenerator(Writer out) throws IOException {
+		return mapper.getFactory().createGenerator(out);
+	}
+
 	@Override
 	public String toString() {
-		return serialize(this);
+		StringWriter out = new StringWriter();
+		try {
+			serialize(out);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return out.toString();
+	}
+
+	private static ObjectMapper buildMapper() {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.getFactory().setCharacterEscapes(new SlashEscapes());
+		mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+		// #write flushes at the end, a flush before would commit the response and prevent the Server-Timing header
+		mapper.configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false);
+		mapper.configure(SerializationFeature.FLUSH_AFTER_WRITE_VALUE, false);
+		return mapper;
+	}
+
+	/**
+	 * Escapes the slashes in addition to the standard escapes of JSON.
+	 */
+	private static class SlashEscapes extends CharacterEscapes {
+		private static final long serialVersionUID = 1L;
+
+		private static final SerializableString escapedSlash = new SerializedString("\\/");
+
+		private final int[] asciiEscapes;
+
+		SlashEscapes() {
+			asciiEscapes = CharacterEscapes.standardAsciiEscapesForJSON();
+			asciiEscapes['/'] = CharacterEscapes.ESCAPE_CUSTOM;
+		}
+
+		@Override
+		public int[] getEscapeCodesForAscii() {
+			return asciiEscapes;
+		}
+
+		@Override
+		public SerializableString getEscapeSequence(int ch) {
+			return (ch == '/') ? escapedSlash : null;
+		}
 	}
 }
@@ -0,0 +1,140 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+
+import codes.thischwa.c5c.util.ByteRange;
+
+/**
+ * Writes the response of a HTTP range request: a single range as '206 Partial Content', multiple ranges as
+ * 'multipart/byteranges' and '416 Range Not Satisfiable', if none of the requested ranges is satisfiable.<br/>
+ * The parts are read lazily by a {@link PartReader}.
+ */
+public class PartialContent {
+
+	/** Status code for 'Range Not Satisfiable', it isn't defined in the servlet api 3.0. */
+	public static final int SC_RANGE_NOT_SATISFIABLE = 416;
+
+	private static final String crlf = "\r\n";
+
+	/**
+	 * Reads a part of the content.
+	 */
+	public interface PartReader {
+
+		/**
+		 * Reads a part of the content.
+		 * 
+		 * @param offset
+		 *            the position of the first byte
+		 * @param length
+		 *            the number of bytes to read
+		 * @return the {@link InputStream} of the part, it will be closed by the caller
+		 * @throws IOException
+		 *             if the part couldn't be read
+		 */
+		InputStream read(long offset, long length) throws IOException;
+	}
+
+	private final long totalLength;
+
+	private final List<ByteRange> ranges;
+
+	private final PartReader reader;
+
+	/**
+	 * Instantiates the partial content.
+	 * 
+	 * @param totalLength
+	 *            the length of the whole content
+	 * @param ranges
+	 *            the satisfiable ranges, if it's empty the range isn't satisfiable
+	 * @param reader
+	 *            reads the parts of the content
+	 */
+	public PartialContent(long totalLength, List<ByteRange> ranges, PartReader reader) {
+		this.totalLength = totalLength;
+		this.ranges = ranges;
+		this.reader = reader;
+	}
+
+	/**
+	 * Writes the headers and the parts to the {@link HttpServletResponse}.
+	 * 
+	 * @param resp
+	 *            the response
+	 * @param contentType
+	 *            the content type of the whole content
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(HttpServletResponse resp, String contentType) throws IOException {
+		resp.setHeader("Accept-Ranges", "bytes");
+		if(ranges.isEmpty()) {
+			resp.setStatus(SC_RANGE_NOT_SATISFIABLE);
+			resp.setHeader("Content-Range", String.format("bytes */%d", totalLength));
+			resp.setHeader("Content-Length", "0");
+			return;
+		}
+
+		resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		OutputStream out = resp.getOutputStream();
+		if(ranges.size() == 1) {
+			ByteRange range = ranges.get(0);
+			resp.setHeader("Content-Type", contentType);
+			resp.setHeader("Content-Range", range.toContentRange(totalLength));
+			resp.setHeader("Content-Length", String.valueOf(range.getLength()));
+			copyPart(range, out);
+			return;
+		}
+
+		String boundary = UUID.randomUUID().toString().replace("-", "");
+		List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+		long length = 0;
+		for(ByteRange range : ranges) {
+			String partHeader = String.format("%s--%s%sContent-Type: %s%sContent-Range: %s%s%s", crlf, boundary, crlf, contentType, crlf,
+					range.toContentRange(totalLength), crlf, crlf);
+			byte[] partHeaderBytes = partHeader.getBytes(StandardCharsets.ISO_8859_1);
+			partHeaders.add(partHeaderBytes);
+			length += partHeaderBytes.length + range.getLength();
+		}
+		byte[] end = String.format("%s--%s--%s", crlf, boundary, crlf).getBytes(StandardCharsets.ISO_8859_1);
+		length += end.length;
+
+		resp.setHeader("Content-Type", String.format("multipart/byteranges; boundary=%s", boundary));
+		resp.setHeader("Content-Length", String.valueOf(length));
+		for(int i = 0; i < ranges.size(); i++) {
+			out.write(partHeaders.get(i));
+			copyPart(ranges.get(i), out);
+		}
+		out.write(end);
+	}
+
+	private void copyPart(ByteRange range, OutputStream out) throws IOException {
+		InputStream in = reader.read(range.getStart(), range.getLength());
+		try {
+			IOUtils.copyLarge(in, out, 0, range.getLength());
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+}
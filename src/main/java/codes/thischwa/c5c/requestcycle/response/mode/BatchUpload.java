@@ -0,0 +1,115 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Holds the data of the response of a batch upload. It contains a result for each uploaded file, so a failed file doesn't fail the
+ * whole batch.
+ */
+@JsonPropertyOrder(alphabetic=true)
+public final class BatchUpload extends GenericResponse {
+
+	private String path;
+
+	private List<Result> files = new ArrayList<>();
+
+	public BatchUpload(String path) {
+		super(FilemanagerAction.UPLOADBATCH);
+		this.path = path;
+	}
+
+	@JsonProperty("Path")
+	public String getPath() {
+		return path;
+	}
+
+	@JsonProperty("Files")
+	public List<Result> getFiles() {
+		return files;
+	}
+
+	public void add(Result result) {
+		files.add(result);
+	}
+
+	/**
+	 * The result of one file of the batch.
+	 */
+	@JsonPropertyOrder(alphabetic=true)
+	public static final class Result {
+
+		private String originalName;
+
+		private String name;
+
+		private String error = "";
+
+		private int errorCode = DEFAULT_NO_ERROR_CODE;
+
+		/**
+		 * Builds the result of a successful stored file.
+		 * 
+		 * @param originalName
+		 *            the name of the file sent by the client
+		 * @param name
+		 *            the name of the stored file
+		 */
+		public Result(String originalName, String name) {
+			this.originalName = originalName;
+			this.name = name;
+		}
+
+		/**
+		 * Builds the result of a failed file.
+		 * 
+		 * @param originalName
+		 *            the name of the file sent by the client
+		 * @param error
+		 *            the error message
+		 * @param errorCode
+		 *            the error code
+		 */
+		public Result(String originalName, String error, int errorCode) {
+			this.originalName = originalName;
+			this.error = error;
+			this.errorCode = errorCode;
+		}
+
+		@JsonProperty("Original")
+		public String getOriginalName() {
+			return originalName;
+		}
+
+		@JsonProperty("Name")
+		public String getName() {
+			return name;
+		}
+
+		@JsonProperty("Error")
+		public String getError() {
+			return error;
+		}
+
+		@JsonProperty("Code")
+		public int getErrorCode() {
+			return errorCode;
+		}
+	}
+}
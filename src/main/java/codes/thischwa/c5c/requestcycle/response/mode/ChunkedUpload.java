@@ -0,0 +1,84 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+import codes.thischwa.c5c.util.ByteRange;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Holds the data of the responses of a chunked upload. It contains the id and the received ranges of the upload, so the client could
+ * resume it by sending the missing ranges. The response of the commit contains the path and the name of the stored file additionally.
+ */
+@JsonPropertyOrder(alphabetic=true)
+public final class ChunkedUpload extends GenericResponse {
+
+	private String id;
+
+	private long size;
+
+	private List<long[]> received = new ArrayList<>();
+
+	private String path;
+
+	private String name;
+
+	public ChunkedUpload(FilemanagerAction mode, String id, long size, List<ByteRange> received) {
+		super(mode);
+		this.id = id;
+		this.size = size;
+		for(ByteRange range : received) {
+			this.received.add(new long[] { range.getStart(), range.getEnd() });
+		}
+	}
+
+	@JsonProperty("Id")
+	public String getId() {
+		return id;
+	}
+
+	@JsonProperty("Size")
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the received ranges as pairs of the first and the last position (inclusive)
+	 */
+	@JsonProperty("Received")
+	public List<long[]> getReceived() {
+		return received;
+	}
+
+	@JsonProperty("Path")
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	@JsonProperty("Name")
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+}
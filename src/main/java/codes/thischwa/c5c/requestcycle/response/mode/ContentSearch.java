@@ -0,0 +1,94 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Holds the data of the response of a full-text search. The hits are ordered by their relevance, the best first.
+ */
+@JsonPropertyOrder(alphabetic=true)
+public final class ContentSearch extends GenericResponse {
+
+	private String path;
+
+	private List<Hit> hits = new ArrayList<>();
+
+	public ContentSearch(String path) {
+		super(FilemanagerAction.SEARCHCONTENT);
+		this.path = path;
+	}
+
+	@JsonProperty("Path")
+	public String getPath() {
+		return path;
+	}
+
+	@JsonProperty("Hits")
+	public List<Hit> getHits() {
+		return hits;
+	}
+
+	public void add(Hit hit) {
+		hits.add(hit);
+	}
+
+	/**
+	 * A file, which contains the search string.
+	 */
+	@JsonPropertyOrder(alphabetic=true)
+	public static final class Hit {
+
+		private String path;
+
+		private double score;
+
+		private String snippet;
+
+		/**
+		 * Builds a hit.
+		 * 
+		 * @param path
+		 *            the url path of the file
+		 * @param score
+		 *            the relevance of the file
+		 * @param snippet
+		 *            the text around the search string
+		 */
+		public Hit(String path, double score, String snippet) {
+			this.path = path;
+			this.score = score;
+			this.snippet = snippet;
+		}
+
+		@JsonProperty("Path")
+		public String getPath() {
+			return path;
+		}
+
+		@JsonProperty("Score")
+		public double getScore() {
+			return score;
+		}
+
+		@JsonProperty("Snippet")
+		public String getSnippet() {
+			return snippet;
+		}
+	}
+}
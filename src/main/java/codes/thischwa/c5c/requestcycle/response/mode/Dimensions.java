@@ -0,0 +1,58 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Holds the data of a Dimensions response. It contains the dimensions of a list of images, so they could be requested lazily
+ * because <code>getfolder</code> doesn't provide them without 'getsize'.
+ */
+@JsonPropertyOrder(alphabetic=true)
+public final class Dimensions extends GenericResponse {
+
+	private Map<String, Map<String, Integer>> dimensions = new LinkedHashMap<>();
+
+	public Dimensions() {
+		super(FilemanagerAction.DIMENSIONS);
+	}
+
+	/**
+	 * Adds the dimension of an image.
+	 * 
+	 * @param urlPath
+	 *            the url path of the image
+	 * @param props
+	 *            the properties of the image, if it's <code>null</code> or hasn't any dimension, <code>null</code> is added
+	 */
+	public void add(String urlPath, FileInfoProperties props) {
+		if(props == null || props.getWidth() == null || props.getHeight() == null) {
+			dimensions.put(urlPath, null);
+			return;
+		}
+		Map<String, Integer> dim = new LinkedHashMap<>();
+		dim.put("Height", props.getHeight());
+		dim.put("Width", props.getWidth());
+		dimensions.put(urlPath, dim);
+	}
+
+	@JsonProperty("Dimensions")
+	public Map<String, Map<String, Integer>> getDimensions() {
+		return dimensions;
+	}
+}
@@ -12,6 +12,7 @@ package codes.thischwa.c5c.requestcycle.response.mode;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -19,42 +20,91 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 
 import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.FileContentSender;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+import codes.thischwa.c5c.requestcycle.response.PartialContent;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
- * Holds the data for a Download GenericResponse.
+ * Holds the data for a Download GenericResponse. It could be the whole file or the requested ranges of it.
  */
 public final class Download extends GenericResponse {
 
+	private static final String contentType = "application/x-download";
+
 	private String fullPath;
 	
 	private long contentLength;
 	
 	private InputStream in;
 
+	private PartialContent partialContent;
+
+	private Path file;
+
+	private long lastModified = -1;
+
 	public Download(String fullPath, long contentLength, InputStream in) {
 		super(FilemanagerAction.DOWNLOAD);
 		this.fullPath = fullPath;
 		this.contentLength = contentLength;
 		this.in = in;
 	}
+
+	public Download(String fullPath, PartialContent partialContent) {
+		super(FilemanagerAction.DOWNLOAD);
+		this.fullPath = fullPath;
+		this.partialContent = partialContent;
+	}
 	
 	@JsonProperty("Path")
 	public String getFullPath() {
 		return fullPath;
 	}
+
+	/**
+	 * Sets the file of the local file system with the content. If it's set, the content is sent by the {@link FileContentSender}
+	 * instead of copying the {@link InputStream}.
+	 * 
+	 * @param file
+	 *            the file of the local file system, can be <code>null</code>
+	 */
+	public void setFile(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Sets the time of the last modification, it's used as validator for range requests.
+	 * 
+	 * @param lastModified
+	 *            the time in milliseconds
+	 */
+	public void setLastModified(long lastModified) {
+		this.lastModified = lastModified;
+	}
 	
 	@Override
 	@JsonIgnore
 	public void write(HttpServletResponse resp) throws IOException {
-		resp.setHeader("Content-Type", "application/x-download");
 		resp.setHeader("Content-Transfer-Encoding", "Binary");
-		resp.setHeader("Content-Length", String.valueOf(contentLength));
 		resp.setHeader("Content-Disposition", 
 				String.format("attachment; filename=\"%s\"", FilenameUtils.getName(fullPath)));
-		IOUtils.copy(in, resp.getOutputStream());
+		if(lastModified > 0)
+			resp.setDateHeader("Last-Modified", lastModified);
+		if(partialContent != null) {
+			partialContent.write(resp, contentType);
+			return;
+		}
+		resp.setHeader("Content-Type", contentType);
+		resp.setHeader("Content-Length", String.valueOf(contentLength));
+		resp.setHeader("Accept-Ranges", "bytes");
+		try {
+			if(file == null || !FileContentSender.send(resp, file, contentLength))
+				IOUtils.copyLarge(in, resp.getOutputStream());
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
 	}
 }
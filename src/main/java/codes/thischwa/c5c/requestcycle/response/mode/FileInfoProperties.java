@@ -102,6 +102,11 @@ public class FileInfoProperties {
 		return modified;
 	}
 
+	@JsonIgnore
+	public Long getRawSize() {
+		return size;
+	}
+
 	public void setSize(int width, int height) {
 		this.width = width;
 		this.height = height;
@@ -122,7 +127,7 @@ public class FileInfoProperties {
 		return size;
 	}
 
-	void setSize(long size) {
+	protected void setSize(long size) {
 		this.size = size;
 	}
 
@@ -10,34 +10,61 @@
  */
 package codes.thischwa.c5c.requestcycle.response.mode;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 
 import codes.thischwa.c5c.Constants;
 import codes.thischwa.c5c.FilemanagerAction;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 /**
- * Holds the data of a FolderInfo response.
+ * Holds the data of a FolderInfo response.<br/>
+ * The {@link FileInfo}s are streamed while serialization, so they could be built lazily by the committed {@link Iterable}.
  */
 public final class FolderInfo extends GenericResponse {
 
-	private Map<String, FileInfo> folderItems;
+	private final List<FileInfo> addedItems = new ArrayList<>();
+
+	private final Iterable<FileInfo> folderItems;
 
 	public FolderInfo() {
 		super(FilemanagerAction.FOLDER);
-		folderItems = new LinkedHashMap<>();
+		folderItems = addedItems;
+	}
+
+	/**
+	 * Instantiates the response with items, which are iterated while serialization.
+	 * 
+	 * @param folderItems
+	 *            the items of the folder, can be built lazily
+	 */
+	public FolderInfo(Iterable<FileInfo> folderItems) {
+		super(FilemanagerAction.FOLDER);
+		this.folderItems = folderItems;
 	}
 
 	public void add(final FileInfo fileInfo) {
-		String path = fileInfo.getPath();
-		if(fileInfo.isDir() && !path.endsWith(Constants.defaultSeparator))
-			path += Constants.defaultSeparator;
-		folderItems.put(path, fileInfo);
+		if(folderItems != addedItems)
+			throw new IllegalStateException("Items can't be added, if the FolderInfo is built with an Iterable.");
+		addedItems.add(fileInfo);
 	}
 
 	@Override
-	public String toString() {
-		return serialize(folderItems);
+	protected void serialize(Writer out) throws IOException {
+		JsonGenerator gen = createGenerator(out);
+		gen.writeStartObject();
+		for(FileInfo fileInfo : folderItems) {
+			String path = fileInfo.getPath();
+			if(fileInfo.isDir() && !path.endsWith(Constants.defaultSeparator))
+				path += Constants.defaultSeparator;
+			gen.writeFieldName(path);
+			gen.writeObject(fileInfo);
+		}
+		gen.writeEndObject();
+		gen.close();
 	}
 }
@@ -14,18 +14,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.FileNameMap;
 import java.net.URLConnection;
+import java.nio.file.Path;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
 
 import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.FileContentSender;
 import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+import codes.thischwa.c5c.requestcycle.response.PartialContent;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
- * Holds the data of a Preview response.
+ * Holds the data of a Preview response. For files other than images, e.g. videos, it could be the requested ranges of the file.
  */
 public final class Prieview extends GenericResponse {
 
@@ -35,6 +38,14 @@ public final class Prieview extends GenericResponse {
 	
 	private InputStream in;
 
+	private PartialContent partialContent;
+
+	private Path file;
+
+	private boolean acceptRanges = false;
+
+	private long lastModified = -1;
+
 	private static FileNameMap contentTypes = URLConnection.getFileNameMap();
 
 	public Prieview(String fullPath, long contentLength, InputStream in) {
@@ -43,13 +54,65 @@ public final class Prieview extends GenericResponse {
 		this.contentLength = contentLength;
 		this.in = in;
 	}
+
+	public Prieview(String fullPath, PartialContent partialContent) {
+		super(FilemanagerAction.PREVIEW);
+		this.fullPath = fullPath;
+		this.partialContent = partialContent;
+	}
+
+	/**
+	 * Signals that the content is the original file, so ranges of it could be requested.
+	 * 
+	 * @param acceptRanges
+	 *            <code>true</code> if ranges could be requested
+	 */
+	public void setAcceptRanges(boolean acceptRanges) {
+		this.acceptRanges = acceptRanges;
+	}
+
+	/**
+	 * Sets the file of the local file system with the content. If it's set, the content is sent by the {@link FileContentSender}
+	 * instead of copying the {@link InputStream}.
+	 * 
+	 * @param file
+	 *            the file of the local file system, can be <code>null</code>
+	 */
+	public void setFile(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Sets the time of the last modification, it's used as validator for range requests.
+	 * 
+	 * @param lastModified
+	 *            the time in milliseconds
+	 */
+	public void setLastModified(long lastModified) {
+		this.lastModified = lastModified;
+	}
 	
 	@Override
 	@JsonIgnore
 	public void write(HttpServletResponse resp) throws IOException {
 		String contentType = contentTypes.getContentTypeFor(fullPath);
+		if(contentType == null)
+			contentType = "application/octet-stream";
+		if(lastModified > 0)
+			resp.setDateHeader("Last-Modified", lastModified);
+		if(partialContent != null) {
+			partialContent.write(resp, contentType);
+			return;
+		}
 		resp.setHeader("Content-Type", contentType);
 		resp.setHeader("Content-Length", String.valueOf(contentLength));
-		IOUtils.copy(in, resp.getOutputStream());
+		if(acceptRanges)
+			resp.setHeader("Accept-Ranges", "bytes");
+		try {
+			if(file == null || !FileContentSender.send(resp, file, contentLength))
+				IOUtils.copyLarge(in, resp.getOutputStream());
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
 	}
 }
@@ -10,6 +10,9 @@
  */
 package codes.thischwa.c5c.requestcycle.response.mode;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import codes.thischwa.c5c.Constants;
 import codes.thischwa.c5c.FilemanagerAction;
 
@@ -39,8 +42,9 @@ public final class Replace extends GenericPost {
 	}
 	
 	@Override
-	public String toString() {
-		String jsonStr = super.toString();
-		return String.format("<textarea>%s</textarea>", jsonStr);
+	protected void serialize(Writer out) throws IOException {
+		out.write("<textarea>");
+		super.serialize(out);
+		out.write("</textarea>");
 	}
 }
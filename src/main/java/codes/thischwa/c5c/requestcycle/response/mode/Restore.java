@@ -0,0 +1,34 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Holds the data for a Restore response.
+ */
+public final class Restore extends GenericResponse {
+
+	private String fullPath;
+
+	public Restore(String fullPath) {
+		super(FilemanagerAction.RESTORE);
+		this.fullPath = fullPath;
+	}
+
+	@JsonProperty("Path")
+	public String getFullPath() {
+		return fullPath;
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import codes.thischwa.c5c.Constants;
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+import codes.thischwa.c5c.util.PathBuilder;
+import codes.thischwa.c5c.util.VirtualFile;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Holds the data of a Copy or Move response.
+ */
+public final class Transfer extends GenericResponse {
+
+	private String oldFullPath;
+
+	private String newFullPath;
+
+	private String name;
+
+	/**
+	 * @param mode
+	 *            {@link FilemanagerAction#COPY} or {@link FilemanagerAction#MOVE}
+	 * @param oldFullPath
+	 *            the url path of the source
+	 * @param newFolder
+	 *            the url path of the target folder
+	 * @param isDirectory
+	 *            signals that the source is a directory
+	 */
+	public Transfer(FilemanagerAction mode, String oldFullPath, String newFolder, boolean isDirectory) {
+		super(mode);
+		this.oldFullPath = oldFullPath;
+		name = new VirtualFile(oldFullPath, false).getName();
+		newFullPath = new PathBuilder(newFolder).addFile(name);
+		if(isDirectory && !newFullPath.endsWith(Constants.defaultSeparator))
+			this.newFullPath += Constants.defaultSeparator;
+		if(isDirectory && !this.oldFullPath.endsWith(Constants.defaultSeparator))
+			this.oldFullPath += Constants.defaultSeparator;
+	}
+
+	@JsonProperty("Old Path")
+	public String getOldFullPath() {
+		return oldFullPath;
+	}
+
+	@JsonProperty("New Path")
+	public String getNewFullPath() {
+		return newFullPath;
+	}
+
+	@JsonProperty("Name")
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.requestcycle.response.mode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.requestcycle.RequestData;
+import codes.thischwa.c5c.requestcycle.response.GenericResponse;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Streams files and folders as ZIP archive to the response. The entries are read by a separate thread, so reading the next entry
+ * overlaps with compressing the current one. Both threads exchange a bounded number of buffers, so the memory usage is constant
+ * regardless of the size of the archive.<br/>
+ * Files, which are compressed already (e.g. jpg, png, mp4, zip), are stored without compression. They are deflated with the level
+ * {@link Deflater#NO_COMPRESSION}, because the method {@link ZipEntry#STORED} requires the size and the CRC before the content.
+ */
+public final class ZipDownload extends GenericResponse {
+	private static final Logger logger = LoggerFactory.getLogger(ZipDownload.class);
+
+	private static final String contentType = "application/zip";
+
+	private static final int bufferSize = 64 * 1024;
+
+	/** The max. number of buffers, which are read ahead. */
+	private static final int maxBuffers = 16;
+
+	private static final Set<String> compressedExtensions = new HashSet<>(Arrays.asList("jpg", "jpeg", "png", "gif", "webp", "mp3",
+			"mp4", "m4a", "m4v", "mov", "ogg", "ogv", "webm", "zip", "gz", "bz2", "7z", "rar", "docx", "xlsx", "pptx", "odt", "ods"));
+
+	private static final ExecutorService readers = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "c5c-zip-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final String fileName;
+
+	private final Entries entries;
+
+	/**
+	 * Provides the entries of the archive. It's called by the reading thread within the request cycle.
+	 */
+	public interface Entries {
+
+		/**
+		 * @return the next entry, or <code>null</code> if there are no more entries
+		 * @throws IOException
+		 *             if the entry couldn't be read, the archive will be aborted
+		 */
+		Entry next() throws IOException;
+	}
+
+	/**
+	 * An entry of the archive.
+	 */
+	public static final class Entry {
+		private final String name;
+
+		private final InputStream in;
+
+		private final long lastModified;
+
+		/**
+		 * @param name
+		 *            the path of the entry inside the archive, directories have to end with a slash
+		 * @param in
+		 *            the content of a file, it will be closed; <code>null</code> for directories
+		 * @param lastModified
+		 *            the time of the last modification in milliseconds, or -1 if it's unknown
+		 */
+		public Entry(String name, InputStream in, long lastModified) {
+			this.name = name;
+			this.in = in;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * Holds a buffer or an event, which is passed from the reading thread to the writing one.
+	 */
+	private static final class Chunk {
+		private Entry entry;
+		private byte[] buffer;
+		private int length;
+		private IOException error;
+		private boolean end;
+	}
+
+	public ZipDownload(String fileName, Entries entries) {
+		super(FilemanagerAction.DOWNLOADZIP);
+		this.fileName = fileName;
+		this.entries = entries;
+	}
+
+	@Override
+	@JsonIgnore
+	public void write(HttpServletResponse resp) throws IOException {
+		resp.setHeader("Content-Type", contentType);
+		resp.setHeader("Content-Transfer-Encoding", "Binary");
+		resp.setHeader("Content-Disposition", String.format("attachment; filename=\"%s\"", fileName));
+
+		final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(maxBuffers + 2);
+		final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(maxBuffers);
+		for(int i = 0; i < maxBuffers; i++)
+			free.add(new byte[bufferSize]);
+		Future<Void> reader = readers.submit(RequestData.propagate(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				read(filled, free);
+				return null;
+			}
+		}));
+
+		ZipOutputStream zipOut = new ZipOutputStream(resp.getOutputStream());
+		try {
+			while(true) {
+				Chunk chunk = take(filled);
+				if(chunk.error != null)
+					throw chunk.error;
+				if(chunk.end)
+					break;
+				if(chunk.entry != null) {
+					zipOut.setLevel(isCompressed(chunk.entry.name) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+					ZipEntry zipEntry = new ZipEntry(chunk.entry.name);
+					if(chunk.entry.lastModified > 0)
+						zipEntry.setTime(chunk.entry.lastModified);
+					zipOut.putNextEntry(zipEntry);
+				} else {
+					zipOut.write(chunk.buffer, 0, chunk.length);
+					free.offer(chunk.buffer);
+				}
+			}
+			zipOut.finish();
+		} finally {
+			// stops the reader, if the client has gone
+			reader.cancel(true);
+			IOUtils.closeQuietly(zipOut);
+		}
+	}
+
+	/**
+	 * The loop of the reading thread.
+	 */
+	private void read(BlockingQueue<Chunk> filled, BlockingQueue<byte[]> free) throws InterruptedException {
+		Chunk event = new Chunk();
+		try {
+			Entry entry;
+			while((entry = entries.next()) != null) {
+				Chunk start = new Chunk();
+				start.entry = entry;
+				filled.put(start);
+				if(entry.in == null)
+					continue;
+				try {
+					while(true) {
+						byte[] buffer = free.take();
+						int length = IOUtils.read(entry.in, buffer);
+						if(length == 0) {
+							free.put(buffer);
+							break;
+						}
+						Chunk data = new Chunk();
+						data.buffer = buffer;
+						data.length = length;
+						filled.put(data);
+					}
+				} finally {
+					IOUtils.closeQuietly(entry.in);
+				}
+			}
+			event.end = true;
+		} catch (IOException e) {
+			logger.error("Error while reading an entry of the zip archive: " + e.getMessage(), e);
+			event.error = e;
+		} catch (RuntimeException e) {
+			logger.error("Error while reading an entry of the zip archive: " + e.getMessage(), e);
+			event.error = new IOException(e);
+		}
+		filled.put(event);
+	}
+
+	private static Chunk take(BlockingQueue<Chunk> filled) throws IOException {
+		try {
+			return filled.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the content of the zip archive.", e);
+		}
+	}
+
+	private static boolean isCompressed(String name) {
+		return compressedExtensions.contains(FilenameUtils.getExtension(name).toLowerCase());
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Represents a range of bytes of the HTTP header 'Range', see RFC 7233. The positions are zero-based and inclusive.
+ */
+public class ByteRange {
+
+	private static final String unit_bytes = "bytes=";
+
+	/** If more ranges are requested, the header is ignored to prevent abuse. */
+	private static final int maxRanges = 16;
+
+	private final long start;
+
+	private final long end;
+
+	public ByteRange(long start, long end) {
+		if(start < 0 || end < start)
+			throw new IllegalArgumentException(String.format("Invalid range: %d-%d", start, end));
+		this.start = start;
+		this.end = end;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	/**
+	 * Builds the value of the HTTP header 'Content-Range' for this range.
+	 * 
+	 * @param totalLength
+	 *            the length of the whole content
+	 * @return the value of the 'Content-Range' header, e.g. <code>bytes 0-499/1234</code>
+	 */
+	public String toContentRange(long totalLength) {
+		return String.format("bytes %d-%d/%d", start, end, totalLength);
+	}
+
+	/**
+	 * Parses the value of the HTTP header 'Range'. The ranges are sorted and overlapping or adjacent ranges are merged.
+	 * 
+	 * @param header
+	 *            the value of the 'Range' header, e.g. <code>bytes=0-499,1000-</code>
+	 * @param totalLength
+	 *            the length of the whole content
+	 * @return the satisfiable ranges, an empty list if none of the ranges is satisfiable or <code>null</code>, if the header has to be
+	 *         ignored, because it's invalid or it contains too many ranges
+	 */
+	public static List<ByteRange> parse(String header, long totalLength) {
+		if(header == null || !header.trim().startsWith(unit_bytes))
+			return null;
+		String[] specs = header.trim().substring(unit_bytes.length()).split(",");
+		if(specs.length > maxRanges)
+			return null;
+		List<ByteRange> ranges = new ArrayList<>(specs.length);
+		try {
+			for(String spec : specs) {
+				spec = spec.trim();
+				int dashPos = spec.indexOf('-');
+				if(dashPos < 0)
+					return null;
+				String startStr = spec.substring(0, dashPos).trim();
+				String endStr = spec.substring(dashPos + 1).trim();
+				if(startStr.isEmpty()) {
+					// suffix range: the last n bytes
+					long suffixLength = Long.parseLong(endStr);
+					if(suffixLength < 0)
+						return null;
+					if(suffixLength > 0 && totalLength > 0)
+						ranges.add(new ByteRange(Math.max(0, totalLength - suffixLength), totalLength - 1));
+					continue;
+				}
+				long start = Long.parseLong(startStr);
+				long end = (endStr.isEmpty()) ? Long.MAX_VALUE : Long.parseLong(endStr);
+				if(start < 0 || end < start)
+					return null;
+				if(start >= totalLength)
+					continue; // not satisfiable
+				ranges.add(new ByteRange(start, Math.min(end, totalLength - 1)));
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return merge(ranges);
+	}
+
+	/**
+	 * Sorts the ranges and merges the overlapping and adjacent ones.
+	 * 
+	 * @param ranges
+	 *            the ranges to merge, the list will be sorted
+	 * @return the merged ranges in ascending order
+	 */
+	public static List<ByteRange> merge(List<ByteRange> ranges) {
+		if(ranges.size() < 2)
+			return ranges;
+		Collections.sort(ranges, new Comparator<ByteRange>() {
+			@Override
+			public int compare(ByteRange r1, ByteRange r2) {
+				return Long.compare(r1.start, r2.start);
+			}
+		});
+		List<ByteRange> merged = new ArrayList<>(ranges.size());
+		ByteRange current = ranges.get(0);
+		for(int i = 1; i < ranges.size(); i++) {
+			ByteRange next = ranges.get(i);
+			if(next.start <= current.end + 1) {
+				current = new ByteRange(current.start, Math.max(current.end, next.end));
+			} else {
+				merged.add(current);
+				current = next;
+			}
+		}
+		merged.add(current);
+		return merged;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(obj == null || getClass() != obj.getClass())
+			return false;
+		ByteRange other = (ByteRange) obj;
+		return start == other.start && end == other.end;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (31 * start + end);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d-%d", start, end);
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Some static image helper methods.
+ */
+public class ImageUtils {
+
+	private static final int[] signature_png = { 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A };
+
+	/**
+	 * Reads the {@link Dimension} of an image from its header without decoding the image. Supported formats are JPEG (SOF segment), PNG
+	 * (IHDR chunk) and GIF (logical screen descriptor).<br/>
+	 * The caller should use {@link InputStream#mark(int)} with 'maxBytes' before, because the stream will be consumed, also if the format
+	 * isn't supported.
+	 *
+	 * @param in
+	 *            the {@link InputStream} of the image
+	 * @param maxBytes
+	 *            the max. number of bytes to read
+	 * @return the dimension of the image or <code>null</code>, if the format isn't supported or the dimension couldn't be found within
+	 *         'maxBytes'
+	 * @throws IOException
+	 *             if the stream couldn't be read
+	 */
+	public static Dimension readDimension(InputStream in, int maxBytes) throws IOException {
+		LimitedReader reader = new LimitedReader(in, maxBytes);
+		int b1 = reader.read();
+		int b2 = reader.read();
+		if(b1 == 0xFF && b2 == 0xD8)
+			return readJpegDimension(reader);
+		if(b1 == signature_png[0] && b2 == signature_png[1])
+			return readPngDimension(reader);
+		if(b1 == 'G' && b2 == 'I')
+			return readGifDimension(reader);
+		return null;
+	}
+
+	private static Dimension readPngDimension(LimitedReader reader) throws IOException {
+		for(int i = 2; i < signature_png.length; i++) {
+			if(reader.read() != signature_png[i])
+				return null;
+		}
+		// length of the 1st chunk, it must be the IHDR chunk
+		reader.skip(4);
+		if(reader.read() != 'I' || reader.read() != 'H' || reader.read() != 'D' || reader.read() != 'R')
+			return null;
+		int width = reader.readInt();
+		int height = reader.readInt();
+		return buildDimension(width, height);
+	}
+
+	private static Dimension readGifDimension(LimitedReader reader) throws IOException {
+		if(reader.read() != 'F' || reader.read() != '8')
+			return null;
+		int version = reader.read();
+		if((version != '7' && version != '9') || reader.read() != 'a')
+			return null;
+		int width = reader.read() | (reader.read() << 8);
+		int height = reader.read() | (reader.read() << 8);
+		return buildDimension(width, height);
+	}
+
+	private static Dimension readJpegDimension(LimitedReader reader) throws IOException {
+		while(true) {
+			int marker = reader.read();
+			if(marker != 0xFF)
+				return null;
+			// skip fill bytes
+			while(marker == 0xFF)
+				marker = reader.read();
+			if(marker == 0xD8 || marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7))
+				continue; // markers without a segment
+			if(marker == 0xD9 || marker == 0xDA)
+				return null; // end of image or start of scan: no frame header found
+			int length = reader.readShort();
+			if(length < 2)
+				return null;
+			if(isStartOfFrame(marker)) {
+				reader.skip(1); // sample precision
+				int height = reader.readShort();
+				int width = reader.readShort();
+				return buildDimension(width, height);
+			}
+			reader.skip(length - 2);
+		}
+	}
+
+	private static boolean isStartOfFrame(int marker) {
+		// SOF0 - SOF15 without DHT (C4), JPG (C8) and DAC (CC)
+		return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+	}
+
+	private static Dimension buildDimension(int width, int height) {
+		if(width <= 0 || height <= 0)
+			return null;
+		return new Dimension(width, height);
+	}
+
+	/**
+	 * Reads an {@link InputStream} up to a limit. If the limit or the end of the stream is reached, a {@link HeaderNotFoundException} is
+	 * thrown.
+	 */
+	private static class LimitedReader {
+		private final InputStream in;
+		private final int maxBytes;
+		private int count = 0;
+
+		LimitedReader(InputStream in, int maxBytes) {
+			this.in = in;
+			this.maxBytes = maxBytes;
+		}
+
+		int read() throws IOException {
+			if(count >= maxBytes)
+				throw new HeaderNotFoundException();
+			int b = in.read();
+			if(b == -1)
+				throw new HeaderNotFoundException();
+			count++;
+			return b;
+		}
+
+		int readShort() throws IOException {
+			return (read() << 8) | read();
+		}
+
+		int readInt() throws IOException {
+			return (read() << 24) | (read() << 16) | (read() << 8) | read();
+		}
+
+		void skip(int n) throws IOException {
+			if(count + n > maxBytes)
+				throw new HeaderNotFoundException();
+			int remaining = n;
+			while(remaining > 0) {
+				long skipped = in.skip(remaining);
+				if(skipped <= 0) {
+					// skip isn't supported or the end is reached
+					read();
+					skipped = 1;
+				} else {
+					count += skipped;
+				}
+				remaining -= skipped;
+			}
+		}
+	}
+
+	/**
+	 * Signals that the dimension couldn't be found within the allowed bytes.
+	 */
+	private static class HeaderNotFoundException extends IOException {
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.input.ProxyInputStream;
+
+/**
+ * Counts the bytes read from the underlying {@link InputStream} and aborts the reading by a {@link SizeLimitExceededException} as
+ * soon as the limit is crossed. So an oversized upload isn't read completely.
+ */
+public class SizeLimitInputStream extends ProxyInputStream {
+
+	private final long maxSize;
+
+	private long count = 0;
+
+	/**
+	 * Instantiates a new {@link SizeLimitInputStream}.
+	 * 
+	 * @param in
+	 *            the {@link InputStream} to count
+	 * @param maxSize
+	 *            the max. number of bytes, which are allowed to read
+	 */
+	public SizeLimitInputStream(InputStream in, long maxSize) {
+		super(in);
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	protected synchronized void afterRead(int n) throws IOException {
+		if(n != -1)
+			count += n;
+		if(count > maxSize)
+			throw new SizeLimitExceededException(maxSize);
+	}
+
+	@Override
+	public synchronized long skip(long length) throws IOException {
+		long skipped = super.skip(length);
+		afterRead((int) Math.min(skipped, Integer.MAX_VALUE));
+		return skipped;
+	}
+
+	/**
+	 * @return the number of bytes read so far
+	 */
+	public synchronized long getByteCount() {
+		return count;
+	}
+
+	/**
+	 * @return the max. number of bytes, which are allowed to read
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Signals that more bytes were read than allowed.
+	 */
+	public static class SizeLimitExceededException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		SizeLimitExceededException(long maxSize) {
+			super(String.format("The max. size of %d bytes is exceeded.", maxSize));
+		}
+	}
+}
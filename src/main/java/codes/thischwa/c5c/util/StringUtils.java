@@ -86,15 +86,29 @@ public class StringUtils {
 			return name;
 		
 		int count = 1;
-		String ext = FilenameUtils.getExtension(name);
-		String baseName = FilenameUtils.getBaseName(name);
 		String tmpName;
 		do {
-			tmpName = String.format("%s_%d", baseName, count);
-			if(!_isNullOrEmpty(ext))
-				tmpName = String.format("%s.%s", tmpName, ext);
+			tmpName = buildSuffixedName(name, count);
 			count ++;
 		} while(existingNames.contains(tmpName));
 		return tmpName;
 	}
+
+	/**
+	 * Builds the name with a numeric suffix in front of the extension, e.g. <code>name_2.ext</code> for <code>name.ext</code>.
+	 * 
+	 * @param name
+	 *            the name of a file
+	 * @param suffix
+	 *            the number to append
+	 * @return the suffixed name
+	 */
+	public static String buildSuffixedName(String name, int suffix) {
+		String ext = FilenameUtils.getExtension(name);
+		String baseName = FilenameUtils.getBaseName(name);
+		String tmpName = String.format("%s_%d", baseName, suffix);
+		if(!_isNullOrEmpty(ext))
+			tmpName = String.format("%s.%s", tmpName, ext);
+		return tmpName;
+	}
 }
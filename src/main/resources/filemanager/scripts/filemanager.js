@@ -1224,6 +1224,7 @@ function getContextMenuOptions(elem) {
 // Binds contextual menus to items in list and grid views.
 var setMenus = function(action, path) {
 	var d = new Date(); // to prevent IE cache issues
+	// without getsize, the actions don't need the size of a folder or the dimensions of an image
 	$.getJSON(fileConnector + '?mode=getinfo&path=' + encodeURIComponent(path) + '&config=' + userconfig + '&time=' + d.getMilliseconds(), function(data){
 		if($('#fileinfo').data('view') == 'grid'){
 			var item = $('#fileinfo').find('img[data-path="' + data['Path'] + '"]').parent();
@@ -1301,7 +1302,7 @@ var getFileInfo = function(file) {
 	
 	// Retrieve the data & populate the template.
 	var d = new Date(); // to prevent IE cache issues
-	$.getJSON(fileConnector + '?mode=getinfo&path=' + encodeURIComponent(file)  + '&config=' + userconfig + '&time=' + d.getMilliseconds(), function(data){
+	$.getJSON(fileConnector + '?mode=getinfo&getsize=true&path=' + encodeURIComponent(file)  + '&config=' + userconfig + '&time=' + d.getMilliseconds(), function(data){
 		if(data['Code'] == 0){
 			$('#fileinfo').find('h1').text(data['Filename']).attr('title', file);
 			
@@ -1537,9 +1538,47 @@ var getFolderInfo = function(path) {
 			var timer = setInterval(function() {display_icons(timer)}, 300);
 
 		}
+		
+		// the listing doesn't contain the dimensions of the images, they are loaded afterwards
+		loadDimensions(data);
 	});
 };
 
+// Requests the dimensions of the images of a folder listing by batches of 'getdimensions'
+// and adds them to the grid or list view.
+var loadDimensions = function(data) {
+	var paths = [];
+	for(key in data) {
+		if(data[key]['File Type'] != 'dir' && $.inArray(getExtension(data[key]['Filename']), config.images.imagesExt) != -1 && !data[key]['Properties']['Width'])
+			paths.push(data[key]['Path']);
+	}
+	var batchSize = 30;
+	for(var i = 0; i < paths.length; i += batchSize) {
+		var d = new Date(); // to prevent IE cache issues
+		var url = fileConnector + '?mode=getdimensions&config=' + userconfig + '&time=' + d.getMilliseconds();
+		$.each(paths.slice(i, i + batchSize), function(index, path) {
+			url += '&path=' + encodeURIComponent(path);
+		});
+		$.getJSON(url, function(result){
+			if(result.Code == '-1') return;
+			for(path in result['Dimensions']) {
+				var dim = result['Dimensions'][path];
+				if(!dim || !data[path]) continue;
+				data[path]['Properties']['Width'] = dim['Width'];
+				data[path]['Properties']['Height'] = dim['Height'];
+				if($('#fileinfo').data('view') == 'grid') {
+					var img = $('#fileinfo').find('img[data-path="' + path + '"]');
+					if(dim['Width'] > 1 && dim['Width'] < 64) img.attr('width', dim['Width']);
+					img.parent().next('p').after('<span class="meta dimensions">' + dim['Width'] + 'x' + dim['Height'] + '</span>');
+				} else {
+					$('#fileinfo').find('td[data-path="' + path + '"]').next('td').text(dim['Width'] + 'x' + dim['Height']);
+				}
+			}
+			$('#fileinfo').find('table').trigger('update');
+		});
+	}
+};
+
 // Retrieve data (file/folder listing) for jqueryFileTree and pass the data back
 // to the callback function in jqueryFileTree
 var populateFileTree = function(path, callback) {
@@ -40,7 +40,7 @@ b+'"]').parent().parent().fadeOut("slow",function(){a(this).remove()}):a("table#
 encodeURIComponent(d)+"&config="+userconfig+"&time="+f.getMilliseconds(),function(e){"grid"==a("#fileinfo").data("view")?a("#fileinfo").find('img[data-path="'+e.Path+'"]').parent():a("#fileinfo").find('td[data-path="'+e.Path+'"]').parent();switch(b){case "select":w(e);break;case "download":window.location=k+"?mode=download&path="+e.Path+"&config="+userconfig+"&time="+f.getMilliseconds();break;case "rename":L(e);break;case "replace":N(e);break;case "move":M(e);break;case "delete":O(e)}})},E=function(b){a(".contextMenu").hide();
 var c=b.substr(0,b.lastIndexOf("/")+1);D(c);var g;g='<div id="preview"><img /><div id="main-title"><h1></h1><div id="tools"></div></div><dl></dl></div><form id="toolbar">'+('<button id="parentfolder">'+f.parentfolder+"</button>");-1!=a.inArray("select",l)&&(a.urlParam("CKEditor")||window.opener||window.tinyMCEPopup||a.urlParam("field_name"))&&(g+='<button id="select" name="select" type="button" value="Select">'+f.select+"</button>");-1!=a.inArray("download",l)&&(g+='<button id="download" name="download" type="button" value="Download">'+
 f.download+"</button>");-1!=a.inArray("rename",l)&&1!=d.options.browseOnly&&(g+='<button id="rename" name="rename" type="button" value="Rename">'+f.rename+"</button>");-1!=a.inArray("move",l)&&1!=d.options.browseOnly&&(g+='<button id="move" name="move" type="button" value="Move">'+f.move+"</button>");-1!=a.inArray("delete",l)&&1!=d.options.browseOnly&&(g+='<button id="delete" name="delete" type="button" value="Delete">'+f.del+"</button>");-1!=a.inArray("replace",l)&&1!=d.options.browseOnly&&(g+='<button id="replace" name="replace" type="button" value="Replace">'+
-f.replace+"</button>",g+='<div class="hidden-file-input"><input id="fileR" name="fileR" type="file" /></div><input id="mode" name="mode" type="hidden" value="replace" /> <input id="newfilepath" name="newfilepath" type="hidden" />');g+="</form>";0<a("#fileinfo .mCSB_container").length?a("#fileinfo .mCSB_container").html(g):a("#fileinfo").html(g);a("#parentfolder").click(function(){m(c)});g=new Date;a.getJSON(k+"?mode=getinfo&path="+encodeURIComponent(b)+"&config="+userconfig+"&time="+g.getMilliseconds(),
+f.replace+"</button>",g+='<div class="hidden-file-input"><input id="fileR" name="fileR" type="file" /></div><input id="mode" name="mode" type="hidden" value="replace" /> <input id="newfilepath" name="newfilepath" type="hidden" />');g+="</form>";0<a("#fileinfo .mCSB_container").length?a("#fileinfo .mCSB_container").html(g):a("#fileinfo").html(g);a("#parentfolder").click(function(){m(c)});g=new Date;a.getJSON(k+"?mode=getinfo&getsize=true&path="+encodeURIComponent(b)+"&config="+userconfig+"&time="+g.getMilliseconds(),
 function(e){if(0==e.Code){a("#fileinfo").find("h1").text(e.Filename).attr("title",b);a("#fileinfo").find("img").attr("src",e.Preview);var c;c=-1!=a.inArray(p(e.Filename),d.videos.videosExt)?!0:!1;c&&1==d.videos.showVideoPlayer&&U(e);c=-1!=a.inArray(p(e.Filename),d.audios.audiosExt)?!0:!1;c&&1==d.audios.showAudioPlayer&&V(e);c=-1!=a.inArray(p(e.Filename),d.pdfs.pdfsExt)?!0:!1;c&&1==d.pdfs.showPdfReader&&W(e);c=-1!=a.inArray(p(e.Filename),d.edit.editExt)?!0:!1;c&&1==d.edit.enabled&&0==e.Protected&&
 ba(e);c=new Date;var g=!1!==d.options.baseUrl?smartPath(baseUrl,e.Path.replace(fileRoot,"")):baseUrl+e.Path;0==e.Protected&&(a("#fileinfo").find("div#tools").append(' <a id="copy-button" data-clipboard-text="'+g+'" title="'+f.copy_to_clipboard+'" href="#"><span>'+f.copy_to_clipboard+"</span></a>"),loadJS("./scripts/zeroclipboard/copy.js?d"+c.getMilliseconds()),a("#copy-button").click(function(){a("#fileinfo").find("div#tools").append('<span id="copied">'+f.copied+"</span>");a("#copied").delay(500).fadeOut(1E3,
 function(){a(this).remove()})}));c="";e.Properties.Width&&""!=e.Properties.Width&&(c+="<dt>"+f.dimensions+"</dt><dd>"+e.Properties.Width+"x"+e.Properties.Height+"</dd>");e.Properties["Date Created"]&&""!=e.Properties["Date Created"]&&(c+="<dt>"+f.created+"</dt><dd>"+e.Properties["Date Created"]+"</dd>");e.Properties["Date Modified"]&&""!=e.Properties["Date Modified"]&&(c+="<dt>"+f.modified+"</dt><dd>"+e.Properties["Date Modified"]+"</dd>");if(e.Properties.Size||0==parseInt(e.Properties.Size))c+="<dt>"+
@@ -50,7 +50,7 @@ c.getMilliseconds();a.urlParam("type")&&(b+="&type="+a.urlParam("type"));a.getJS
 e+="</li>"}e+="</ul>"}else{e=e+'<table id="contents" class="list">'+('<thead><tr><th class="headerSortDown"><span>'+f.name+"</span></th><th><span>"+f.dimensions+"</span></th><th><span>"+f.size+"</span></th><th><span>"+f.modified+"</span></th></tr></thead>");e+="<tbody>";for(key in b){c++;h=b[key].Properties;n="";d.options.showTitleAttr?title=' title="'+b[key].Path+'"':title="";for(cap in l)q(b[key],l[cap])&&(n+=" cap_"+l[cap]);e+='<tr class="'+n+'">';e+='<td data-path="'+b[key].Path+'"'+title+'">'+
 b[key].Filename+"</td>";e=h.Width&&""!=h.Width?e+("<td>"+h.Width+"x"+h.Height+"</td>"):e+"<td></td>";h.Size&&""!=h.Size?(e+='<td><abbr title="'+h.Size+'">'+I(h.Size)+"</abbr></td>",r+=h.Size):e+="<td></td>";e=h["Date Modified"]&&""!=h["Date Modified"]?e+("<td>"+h["Date Modified"]+"</td>"):e+"<td></td>";e+="</tr>"}e+="</tbody></table>"}}else e+="<h1>"+f.could_not_retrieve_folder+"</h1>";0<a("#fileinfo .mCSB_container").length?a("#fileinfo .mCSB_container").html(e):a("#fileinfo").html(e);a("#items-counter").text(c);
 a("#items-size").text(Math.round(r/1024/1024*100)/100);if("grid"==a("#fileinfo").data("view"))a("#fileinfo").find("#contents li").click(function(){var e=a(this).find("img").attr("data-path");d.options.quickSelect&&"dir"!=b[e]["File Type"]&&a(this).hasClass("cap_select")?w(b[e]):G(e)}).each(function(){a(this).contextMenu({menu:x(a(this))},function(b,e,c){e=a(e).find("img").attr("data-path");A(b,e)})});else{a("#fileinfo tbody tr").click(function(){var e=a("td:first-child",this).attr("data-path");d.options.quickSelect&&
-"dir"!=b[e]["File Type"]&&a(this).hasClass("cap_select")?w(b[e]):G(e)}).each(function(){a(this).contextMenu({menu:x(a(this))},function(b,e,c){e=a("td:first-child",e).attr("data-path");A(b,e)})});a("#fileinfo").find("table").tablesorter({textExtraction:function(b){return a(b).find("abbr").size()?a(b).find("abbr").attr("title"):b.innerHTML}});var m=setInterval(function(){X(m)},300)}}})},Z=function(b,c){var g=new Date,g=k+"?path="+encodeURIComponent(b)+"&config="+userconfig+"&mode=getfolder&showThumbs="+
+"dir"!=b[e]["File Type"]&&a(this).hasClass("cap_select")?w(b[e]):G(e)}).each(function(){a(this).contextMenu({menu:x(a(this))},function(b,e,c){e=a("td:first-child",e).attr("data-path");A(b,e)})});a("#fileinfo").find("table").tablesorter({textExtraction:function(b){return a(b).find("abbr").size()?a(b).find("abbr").attr("title"):b.innerHTML}});var m=setInterval(function(){X(m)},300)}ka(b)}})},ka=function(b){var c=[];for(key in b)"dir"!=b[key]["File Type"]&&-1!=a.inArray(p(b[key].Filename),d.images.imagesExt)&&!b[key].Properties.Width&&c.push(b[key].Path);for(var g=0;g<c.length;g+=30){var e=new Date,e=k+"?mode=getdimensions&config="+userconfig+"&time="+e.getMilliseconds();a.each(c.slice(g,g+30),function(a,b){e+="&path="+encodeURIComponent(b)});a.getJSON(e,function(c){if("-1"!=c.Code){for(path in c.Dimensions){var e=c.Dimensions[path];if(e&&b[path]){b[path].Properties.Width=e.Width;b[path].Properties.Height=e.Height;if("grid"==a("#fileinfo").data("view")){var g=a("#fileinfo").find('img[data-path="'+path+'"]');1<e.Width&&64>e.Width&&g.attr("width",e.Width);g.parent().next("p").after('<span class="meta dimensions">'+e.Width+"x"+e.Height+"</span>")}else a("#fileinfo").find('td[data-path="'+path+'"]').next("td").text(e.Width+"x"+e.Height)}}a("#fileinfo").find("table").trigger("update")}})}},Z=function(b,c){var g=new Date,g=k+"?path="+encodeURIComponent(b)+"&config="+userconfig+"&mode=getfolder&showThumbs="+
 d.options.showThumbs+"&time="+g.getMilliseconds();a.urlParam("type")&&(g+="&type="+a.urlParam("type"));a.getJSON(g,function(a){var b="";if("-1"==a.Code)J(a.Error);else{if(a){b+='<ul class="jqueryFileTree" style="display: none;">';for(key in a){var g="";for(cap in l)q(a[key],l[cap])&&(g+=" cap_"+l[cap]);if("dir"==a[key]["File Type"])var h=0==a[key].Protected?"":" directory-locked",b=b+('<li class="directory collapsed'+h+'"><a href="#" class="'+g+'" data-path="'+a[key].Path+'">'+a[key].Filename+"</a></li>");
 else d.options.listFiles&&(h=0==a[key].Protected?"":" file-locked",b+='<li class="file ext_'+a[key]["File Type"].toLowerCase()+h+'"><a href="#" class="'+g+'" data-path="'+a[key].Path+'">'+a[key].Filename+"</a></li>")}b+="</ul>"}else b+="<h1>"+f.could_not_retrieve_folder+"</h1>";c(b)}})};a(function(){if(d.extras.extra_js)for(var b=0;b<d.extras.extra_js.length;b++)a.ajax({url:d.extras.extra_js[b],dataType:"script",async:d.extras.extra_js_async});a("#link-to-project").attr("href",d.url).attr("target",
 "_blank").attr("title",f.support_fm+" ["+f.version+" : "+d.version+"]");a("div.version").html(d.version);loadCSS("./themes/"+d.options.theme+"/styles/filemanager.css");a.ajax({url:"./themes/"+d.options.theme+"/styles/ie.css",async:!1,success:function(b){a("head").append(b)}});loadJS("./scripts/zeroclipboard/dist/ZeroClipboard.js");d.edit.enabled&&(loadCSS("./scripts/CodeMirror/lib/codemirror.css"),loadCSS("./scripts/CodeMirror/theme/"+d.edit.theme+".css"),loadJS("./scripts/CodeMirror/lib/codemirror.js"),
@@ -0,0 +1,153 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codes.thischwa.c5c.ChunkedUploadStore.Upload;
+import codes.thischwa.c5c.util.ByteRange;
+import codes.thischwa.c5c.util.SizeLimitInputStream;
+
+public class ChunkedUploadStoreTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path stagingDir;
+
+	private ChunkedUploadStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		stagingDir = tempFolder.getRoot().toPath().resolve("uploads");
+		store = new ChunkedUploadStore(stagingDir, TimeUnit.HOURS.toMillis(1));
+	}
+
+	@Test
+	public void testOutOfOrderChunks() throws Exception {
+		byte[] content = buildContent(250);
+		Upload upload = store.init("/UserFiles/", "file.bin", content.length);
+		assertFalse(store.isComplete(upload));
+
+		writeChunk(upload, content, 200, 50);
+		writeChunk(upload, content, 0, 100);
+		assertEquals(Arrays.asList(new ByteRange(0, 99), new ByteRange(200, 249)), store.getReceived(upload));
+		assertFalse(store.isComplete(upload));
+
+		writeChunk(upload, content, 100, 100);
+		assertTrue(store.isComplete(upload));
+		assertArrayEquals(content, Files.readAllBytes(upload.getDataFile()));
+	}
+
+	@Test
+	public void testParallelChunks() throws Exception {
+		final byte[] content = buildContent(64 * 1024);
+		final Upload upload = store.init("/UserFiles/", "file.bin", content.length);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Long>> futures = new ArrayList<>();
+			for(int i = 0; i < 16; i++) {
+				final int offset = i * 4096;
+				futures.add(executor.submit(new Callable<Long>() {
+					@Override
+					public Long call() throws Exception {
+						return writeChunk(upload, content, offset, 4096);
+					}
+				}));
+			}
+			for(Future<Long> future : futures)
+				assertEquals(4096, future.get().longValue());
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(store.isComplete(upload));
+		assertArrayEquals(content, Files.readAllBytes(upload.getDataFile()));
+	}
+
+	@Test
+	public void testResumeAfterRestart() throws Exception {
+		byte[] content = buildContent(100);
+		Upload upload = store.init("/UserFiles/sub/", "file.bin", content.length);
+		writeChunk(upload, content, 0, 60);
+
+		ChunkedUploadStore restartedStore = new ChunkedUploadStore(stagingDir, TimeUnit.HOURS.toMillis(1));
+		Upload resumed = restartedStore.get(upload.getId());
+		assertEquals("/UserFiles/sub/", resumed.getUrlPath());
+		assertEquals("file.bin", resumed.getName());
+		assertEquals(100, resumed.getSize());
+		assertEquals(Arrays.asList(new ByteRange(0, 59)), restartedStore.getReceived(resumed));
+
+		writeChunk(resumed, content, 60, 40);
+		assertTrue(restartedStore.isComplete(resumed));
+		assertArrayEquals(content, Files.readAllBytes(resumed.getDataFile()));
+	}
+
+	@Test
+	public void testChunkExceedsSize() throws Exception {
+		byte[] content = buildContent(100);
+		Upload upload = store.init("/UserFiles/", "file.bin", 50);
+		try {
+			writeChunk(upload, content, 10, 90);
+			fail("SizeLimitExceededException expected");
+		} catch (SizeLimitInputStream.SizeLimitExceededException e) {
+			// expected
+		}
+		assertTrue(store.getReceived(upload).isEmpty());
+	}
+
+	@Test
+	public void testGetAndRemove() throws Exception {
+		assertNull(store.get(null));
+		assertNull(store.get("../../etc"));
+		assertNull(store.get("00000000-0000-0000-0000-000000000000"));
+
+		Upload upload = store.init("/UserFiles/", "empty.txt", 0);
+		assertTrue(store.isComplete(upload));
+		assertNotNull(store.get(upload.getId()));
+		store.remove(upload);
+		assertNull(store.get(upload.getId()));
+	}
+
+	@Test
+	public void testExpiredUploadsArePurged() throws Exception {
+		Upload upload = store.init("/UserFiles/", "file.bin", 10);
+		new ChunkedUploadStore(stagingDir, -1);
+		assertNull(store.get(upload.getId()));
+	}
+
+	private long writeChunk(Upload upload, byte[] content, int offset, int length) throws Exception {
+		return store.writeChunk(upload, offset, new ByteArrayInputStream(content, offset, length));
+	}
+
+	private static byte[] buildContent(int size) {
+		byte[] content = new byte[size];
+		for(int i = 0; i < size; i++)
+			content[i] = (byte) (i % 251);
+		return content;
+	}
+}
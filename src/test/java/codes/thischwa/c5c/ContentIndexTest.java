@@ -0,0 +1,151 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codes.thischwa.c5c.impl.LocalConnector;
+
+public class ContentIndexTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Connector connector = new LocalConnector();
+
+	private Set<String> extensions = new HashSet<>(Arrays.asList("txt", "html"));
+
+	private ContentIndex.Filter acceptAll = new ContentIndex.Filter() {
+		@Override
+		public boolean accept(String relativePath) {
+			return true;
+		}
+	};
+
+	private Path indexFile;
+
+	private ContentIndex contentIndex;
+
+	private File root;
+
+	@Before
+	public void setUp() throws Exception {
+		root = tempFolder.newFolder("root");
+		write("a.txt", "The quick brown fox jumps over the lazy dog.");
+		write("sub/b.txt", "A brown dog and a quick fox. The fox is quick, the fox is brown, the fox is everywhere.");
+		write("sub/c.html", "<p>Nothing to see here, just a dog.</p>");
+		write("sub/d.bin", "brown fox, but not editable");
+		write(".hidden/e.txt", "brown fox in a hidden folder");
+		indexFile = tempFolder.getRoot().toPath().resolve("index/index.bin");
+		contentIndex = new ContentIndex(indexFile, 1024);
+	}
+
+	@After
+	public void tearDown() {
+		contentIndex.close();
+	}
+
+	@Test
+	public void testSearch() throws Exception {
+		List<ContentIndex.Hit> hits = awaitHits("Brown FOX", 2);
+		// the phrase ranks higher
+		assertEquals("a.txt", hits.get(0).getRelativePath());
+		assertEquals("sub/b.txt", hits.get(1).getRelativePath());
+		assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+		assertEquals("The quick brown fox jumps over the lazy dog.", hits.get(0).getSnippet());
+		assertTrue(hits.get(1).getSnippet().contains("brown dog"));
+
+		assertEquals(3, search("dog", 10).size());
+		assertEquals(1, search("dog", 1).size());
+		assertTrue(search("cat", 10).isEmpty());
+
+		ContentIndex.Filter noSub = new ContentIndex.Filter() {
+			@Override
+			public boolean accept(String relativePath) {
+				return !relativePath.startsWith("sub/");
+			}
+		};
+		assertEquals(1, contentIndex.search(connector, root.getAbsolutePath(), extensions, "dog", 10, noSub).size());
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		awaitHits("fox", 2);
+
+		write("sub/new.txt", "A fox in a new file.");
+		contentIndex.update(connector, new File(root, "sub/new.txt").getAbsolutePath());
+		awaitHits("fox", 3);
+
+		Files.delete(new File(root, "a.txt").toPath());
+		contentIndex.update(connector, new File(root, "a.txt").getAbsolutePath());
+		awaitHits("fox", 2);
+
+		write("sub/b.txt", "Just a cat.");
+		contentIndex.update(connector, new File(root, "sub").getAbsolutePath());
+		awaitHits("fox", 1);
+		awaitHits("cat", 1);
+	}
+
+	@Test
+	public void testStore() throws Exception {
+		awaitHits("lazy", 1);
+		contentIndex.close();
+		assertTrue(Files.exists(indexFile));
+
+		// the stored index is loaded, so the unchanged files are found without reading them again
+		contentIndex = new ContentIndex(indexFile, 1024);
+		List<ContentIndex.Hit> hits = search("lazy", 10);
+		assertEquals(1, hits.size());
+		assertEquals("The quick brown fox jumps over the lazy dog.", hits.get(0).getSnippet());
+		assertEquals(2, search("brown fox", 10).size());
+	}
+
+	private List<ContentIndex.Hit> search(String query, int limit) {
+		return contentIndex.search(connector, root.getAbsolutePath(), extensions, query, limit, acceptAll);
+	}
+
+	/**
+	 * Searches until the expected number of hits is found, because the crawler works in the background.
+	 */
+	private List<ContentIndex.Hit> awaitHits(String query, int expected) throws Exception {
+		List<ContentIndex.Hit> hits = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			hits = search(query, 10);
+			if(hits.size() == expected)
+				return hits;
+			Thread.sleep(50);
+		}
+		fail(String.format("Expected %d hits for '%s', but found %d.", expected, query, hits.size()));
+		return hits;
+	}
+
+	private void write(String relativePath, String content) throws Exception {
+		File file = new File(root, relativePath);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
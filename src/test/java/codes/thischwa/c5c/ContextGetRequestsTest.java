@@ -12,7 +12,15 @@ package codes.thischwa.c5c;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
 import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.ByteArrayBuffer;
 import org.eclipse.jetty.testing.HttpTester;
 import org.junit.Test;
 
@@ -26,7 +34,7 @@ public class ContextGetRequestsTest extends GenericRequestTest {
 	@Test
 	public void testGetInfoFile() throws Exception {
 		HttpTester request = buildInitialRequest(); 
-		request.setURI("/context/filemanager/connectors/java/filemanager.java?mode=getinfo&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png&time=244");
+		request.setURI("/context/filemanager/connectors/java/filemanager.java?mode=getinfo&getsize=true&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png&time=244");
 		String requestStr = request.generate();
 		
 		String responseStr = servletTester.getResponses(requestStr);
@@ -58,7 +66,7 @@ public class ContextGetRequestsTest extends GenericRequestTest {
 	@Test
 	public void testGetInfo() throws Exception {
 		HttpTester request = buildInitialRequest(); 
-		request.setURI("/context/filemanager/connectors/java/filemanager.java?mode=getinfo&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png&time=244");
+		request.setURI("/context/filemanager/connectors/java/filemanager.java?mode=getinfo&getsize=true&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png&time=244");
 		String requestStr = request.generate();
 		
 		String responseStr = servletTester.getResponses(requestStr);
@@ -70,4 +78,55 @@ public class ContextGetRequestsTest extends GenericRequestTest {
 		String expected = cleanResponse("{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"png\",\"Filename\":\"pic01.png\",\"Path\":\"\\/filemanager\\/userfiles\\/pic01.png\",\"Preview\":\"\\/context\\/filemanager\\/connectors\\/java?mode=preview&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png\",\"Properties\":{\"Date Created\":null,\"Height\":70,\"Size\":2250,\"Width\":110},\"Protected\":0}");
 		assertEquals(expected, actual);
 	}
+
+	@Test
+	public void testSearch() throws Exception {
+		HttpTester request = buildInitialRequest(); 
+		request.setURI("/context/filemanager/connectors/java/filemanager.java?mode=search&string=PIC01&path=%2Ffilemanager%2Fuserfiles%2F");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(HttpStatus.OK_200, response.getStatus());
+		String content = response.getContent();
+		int posSub = content.indexOf("\"\\/filemanager\\/userfiles\\/folder\\/sub\\/pic01.png\":{");
+		int posRoot = content.indexOf("\"\\/filemanager\\/userfiles\\/pic01.png\":{");
+		assertTrue(posSub > 0);
+		assertTrue(posRoot > posSub);
+		assertFalse(content.contains("pic-h-01.png"));
+
+		request.setURI("/context/filemanager/connectors/java/filemanager.java?mode=search&string=pic01&offset=1&limit=1&path=%2Ffilemanager%2Fuserfiles%2F");
+		response.parse(servletTester.getResponses(request.generate()));
+		assertEquals(HttpStatus.OK_200, response.getStatus());
+		content = response.getContent();
+		assertTrue(content.contains("\"\\/filemanager\\/userfiles\\/pic01.png\":{"));
+		assertFalse(content.contains("sub"));
+	}
+
+	@Test
+	public void testDownloadZip() throws Exception {
+		HttpTester request = buildInitialRequest(); 
+		request.setURI("/context/filemanager/connectors/java/filemanager.java?mode=downloadzip&path=%2Ffilemanager%2Fuserfiles%2F");
+		ByteArrayBuffer requestBuffer = new ByteArrayBuffer(request.generate());
+		
+		// the binary content mustn't be decoded as string
+		ByteArrayBuffer responseBuffer = servletTester.getResponses(requestBuffer);
+		HttpTester response = new HttpTester();
+		response.parse(responseBuffer.asArray());
+		
+		assertEquals(HttpStatus.OK_200, response.getStatus());
+		assertTrue(response.getHeader("Content-Type").startsWith("application/zip"));
+		assertEquals("attachment; filename=\"userfiles.zip\"", response.getHeader("Content-Disposition"));
+		Map<String, Long> entries = new HashMap<>();
+		try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(response.getContentBytes()))) {
+			ZipEntry entry;
+			while((entry = zipIn.getNextEntry()) != null)
+				entries.put(entry.getName(), IOUtils.skip(zipIn, Long.MAX_VALUE));
+		}
+		assertEquals(Long.valueOf(0), entries.get("userfiles/"));
+		assertEquals(Long.valueOf(2250), entries.get("userfiles/pic01.png"));
+		assertEquals(Long.valueOf(2664), entries.get("userfiles/folder/pic_h_01.png"));
+	}
 }
@@ -0,0 +1,130 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codes.thischwa.c5c.impl.LocalConnector;
+
+public class FilenameIndexTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	/** Excludes the names starting with '_', but doesn't need a request. */
+	private Connector connector = new LocalConnector() {
+		@Override
+		protected boolean checkFilename(String name) {
+			return !name.startsWith("_");
+		}
+
+		@Override
+		protected boolean checkFolderName(String name) {
+			return !name.startsWith("_");
+		}
+	};
+
+	private FilenameIndex filenameIndex = new FilenameIndex(4);
+
+	private File root;
+
+	@Before
+	public void setUp() throws Exception {
+		root = tempFolder.newFolder("root");
+		for(int i = 0; i < 3; i++) {
+			File dir = new File(root, "dir" + i + "/deep");
+			assertTrue(dir.mkdirs());
+			Files.write(new File(dir, "Report-" + i + ".pdf").toPath(), new byte[1]);
+		}
+		assertTrue(new File(root, "_hidden").mkdirs());
+		Files.write(new File(root, "_hidden/report-x.pdf").toPath(), new byte[1]);
+		Files.write(new File(root, "_report.pdf").toPath(), new byte[1]);
+		Files.write(new File(root, "notes.txt").toPath(), new byte[1]);
+	}
+
+	@After
+	public void tearDown() {
+		filenameIndex.close();
+	}
+
+	@Test
+	public void testSearch() throws Exception {
+		assertEquals("[dir0/deep/Report-0.pdf, dir1/deep/Report-1.pdf, dir2/deep/Report-2.pdf]", search(root, "REPORT", 0, 10));
+		assertEquals("[dir1/deep/Report-1.pdf]", search(root, "report", 1, 1));
+		assertEquals("[dir0/deep/, dir1/deep/, dir2/deep/]", search(root, "ee", 0, 10));
+		assertEquals("[]", search(root, "nothing", 0, 10));
+		// a search inside of the indexed folder
+		assertEquals("[deep/Report-2.pdf]", search(new File(root, "dir2"), "port", 0, 10));
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		assertEquals("[notes.txt]", search(root, "notes", 0, 10));
+
+		File newFile = new File(root, "dir1/deep/notes-1.txt");
+		Files.write(newFile.toPath(), new byte[1]);
+		filenameIndex.update(connector, newFile.getAbsolutePath(), "test");
+		assertEquals("[dir1/deep/notes-1.txt, notes.txt]", search(root, "notes", 0, 10));
+
+		// a new folder is crawled
+		File newDir = new File(root, "dir0/new/sub");
+		assertTrue(newDir.mkdirs());
+		Files.write(new File(newDir, "notes-2.txt").toPath(), new byte[1]);
+		filenameIndex.update(connector, new File(root, "dir0").getAbsolutePath(), "test");
+		assertEquals("[dir0/new/sub/notes-2.txt, dir1/deep/notes-1.txt, notes.txt]", search(root, "notes", 0, 10));
+
+		// rename
+		File renamed = new File(root, "dir3");
+		assertTrue(new File(root, "dir1").renameTo(renamed));
+		filenameIndex.update(connector, new File(root, "dir1").getAbsolutePath(), "test");
+		assertEquals("[dir0/new/sub/notes-2.txt, dir3/deep/notes-1.txt, notes.txt]", search(root, "notes", 0, 10));
+
+		// delete
+		FileUtils.deleteDirectory(new File(root, "dir0/new"));
+		filenameIndex.update(connector, new File(root, "dir0/new").getAbsolutePath(), "test");
+		assertEquals("[dir3/deep/notes-1.txt, notes.txt]", search(root, "notes", 0, 10));
+		assertEquals("[dir0/deep/Report-0.pdf, dir2/deep/Report-2.pdf, dir3/deep/Report-1.pdf]", search(root, "report", 0, 10));
+	}
+
+	@Test
+	public void testSymlinkCycle() throws Exception {
+		Files.createSymbolicLink(new File(root, "dir0/deep/loop").toPath(), root.toPath());
+		assertEquals("[dir0/deep/Report-0.pdf, dir1/deep/Report-1.pdf, dir2/deep/Report-2.pdf]", search(root, "REPORT", 0, 10));
+		assertEquals("[dir0/deep/loop/]", search(root, "loop", 0, 10));
+
+		// a new link is indexed without its content too
+		Files.createSymbolicLink(new File(root, "dir1/loop2").toPath(), root.toPath());
+		filenameIndex.update(connector, new File(root, "dir1/loop2").getAbsolutePath(), "test");
+		assertEquals("[dir0/deep/loop/, dir1/loop2/]", search(root, "loop", 0, 10));
+		assertEquals("[notes.txt]", search(root, "notes", 0, 10));
+	}
+
+	private String search(File folder, String query, int offset, int limit) throws Exception {
+		List<String> paths = new ArrayList<>();
+		for(FilenameIndex.Hit hit : filenameIndex.search(connector, folder.getAbsolutePath(), query, offset, limit, "test")) {
+			String name = hit.getFileProperties().getName();
+			paths.add(hit.getParentPath() + name + (hit.getFileProperties().isDir() ? "/" : ""));
+		}
+		return paths.toString();
+	}
+}
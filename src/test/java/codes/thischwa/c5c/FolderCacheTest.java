@@ -0,0 +1,134 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.exception.C5CException;
+import codes.thischwa.c5c.impl.LocalConnector;
+
+public class FolderCacheTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private CountingConnector connector = new CountingConnector();
+
+	private FolderCache cache;
+
+	@After
+	public void tearDown() {
+		if(cache != null)
+			cache.close();
+	}
+
+	@Test
+	public void testGetFolder() throws Exception {
+		cache = new FolderCache(10);
+		String dir = tempFolder.getRoot().getAbsolutePath();
+		cache.getFolder(connector, dir, false, "cfg");
+		cache.getFolder(connector, dir, false, "cfg");
+		assertEquals(1, connector.folderCalls);
+
+		// other parameters or configurations mustn't hit
+		cache.getFolder(connector, dir, true, "cfg");
+		cache.getFolder(connector, dir, false, "cfg2");
+		assertEquals(3, connector.folderCalls);
+	}
+
+	@Test
+	public void testGetInfo() throws Exception {
+		cache = new FolderCache(10);
+		File file = tempFolder.newFile("file.txt");
+		cache.getInfo(connector, file.getAbsolutePath(), false, "cfg");
+		cache.getInfo(connector, file.getAbsolutePath(), false, "cfg");
+		assertEquals(1, connector.infoCalls);
+	}
+
+	@Test
+	public void testWatchInvalidation() throws Exception {
+		cache = new FolderCache(10);
+		String dir = tempFolder.getRoot().getAbsolutePath();
+		cache.getFolder(connector, dir, false, "cfg");
+		tempFolder.newFile("new.txt");
+		long timeout = System.currentTimeMillis() + 10000;
+		while(connector.folderCalls < 2 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(50);
+			cache.getFolder(connector, dir, false, "cfg");
+		}
+		assertEquals(2, connector.folderCalls);
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		cache = new FolderCache(10);
+		File sub = tempFolder.newFolder("sub");
+		String dir = tempFolder.getRoot().getAbsolutePath();
+		cache.getFolder(connector, dir, false, "cfg");
+		cache.getFolder(connector, sub.getAbsolutePath(), false, "cfg");
+
+		// the parent folder and the folder itself are invalid
+		cache.invalidate(sub.getAbsolutePath());
+		cache.getFolder(connector, dir, false, "cfg");
+		cache.getFolder(connector, sub.getAbsolutePath(), false, "cfg");
+		assertEquals(4, connector.folderCalls);
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		cache = new FolderCache(1);
+		File sub = tempFolder.newFolder("sub");
+		String dir = tempFolder.getRoot().getAbsolutePath();
+		cache.getFolder(connector, dir, false, "cfg");
+		cache.getFolder(connector, sub.getAbsolutePath(), false, "cfg");
+		cache.getFolder(connector, dir, false, "cfg");
+		assertEquals(3, connector.folderCalls);
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		cache = FolderCache.disabled();
+		String dir = tempFolder.getRoot().getAbsolutePath();
+		cache.getFolder(connector, dir, false, "cfg");
+		cache.getFolder(connector, dir, false, "cfg");
+		assertEquals(2, connector.folderCalls);
+	}
+
+	private static class CountingConnector extends LocalConnector {
+		private int folderCalls = 0;
+		private int infoCalls = 0;
+
+		@Override
+		public Set<FileProperties> getFolder(String backendPath, boolean needSize) throws C5CException {
+			folderCalls++;
+			Set<FileProperties> props = new HashSet<>();
+			props.add(buildForFile("file.txt", false, 10, new Date()));
+			return props;
+		}
+
+		@Override
+		public FileProperties getInfo(String backendPath, boolean needSize) throws C5CException {
+			infoCalls++;
+			return buildForFile("file.txt", false, 10, new Date());
+		}
+	}
+}
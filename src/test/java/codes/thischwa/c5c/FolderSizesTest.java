@@ -0,0 +1,117 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.impl.LocalConnector;
+
+public class FolderSizesTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	/** Doesn't exclude anything, so it works without a request. */
+	private Connector connector = new LocalConnector() {
+		@Override
+		protected boolean checkFilename(String name) {
+			return true;
+		}
+
+		@Override
+		protected boolean checkFolderName(String name) {
+			return true;
+		}
+	};
+
+	private FolderSizes folderSizes = new FolderSizes(100);
+
+	@After
+	public void tearDown() {
+		folderSizes.close();
+	}
+
+	@Test
+	public void testWithSize() throws Exception {
+		File root = tempFolder.newFolder("root");
+		for(int i = 0; i < 4; i++) {
+			File deep = new File(root, "sub" + i + "/deep");
+			assertTrue(deep.mkdirs());
+			write(new File(deep, "file.bin"), 100);
+		}
+		write(new File(root, "file.bin"), 10);
+		String rootPath = root.getAbsolutePath();
+
+		FileProperties fp = folderSizes.withSize(connector, rootPath, connector.getInfo(rootPath, false), "test");
+		assertEquals(Long.valueOf(410), fp.getRawSize());
+		// the cached properties aren't changed
+		assertNull(connector.getInfo(rootPath, false).getRawSize());
+
+		// a change in a deep branch is summed after the invalidation
+		File changed = new File(root, "sub2/deep/file.bin");
+		write(changed, 200);
+		assertEquals(Long.valueOf(410), folderSizes.withSize(connector, rootPath, connector.getInfo(rootPath, false), "test")
+				.getRawSize());
+		folderSizes.invalidate(changed.getAbsolutePath());
+		assertEquals(Long.valueOf(510), folderSizes.withSize(connector, rootPath, connector.getInfo(rootPath, false), "test")
+				.getRawSize());
+	}
+
+	@Test
+	public void testWithSizes() throws Exception {
+		File root = tempFolder.newFolder("root");
+		write(new File(root, "file.bin"), 10);
+		File sub = new File(root, "sub");
+		assertTrue(sub.mkdirs());
+		write(new File(sub, "a.bin"), 20);
+		write(new File(sub, "b.bin"), 30);
+		String rootPath = root.getAbsolutePath();
+
+		List<FileProperties> props = folderSizes.withSizes(connector, rootPath, new ArrayList<>(connector.getFolder(rootPath, false)),
+				"test");
+		assertEquals(2, props.size());
+		for(FileProperties fp : props) {
+			if(fp.isDir())
+				assertEquals(Long.valueOf(50), fp.getRawSize());
+			else
+				assertEquals(Long.valueOf(10), fp.getRawSize());
+		}
+	}
+
+	@Test
+	public void testSymlinkCycle() throws Exception {
+		File root = tempFolder.newFolder("root");
+		write(new File(root, "file.bin"), 10);
+		File sub = new File(root, "sub");
+		assertTrue(sub.mkdirs());
+		write(new File(sub, "a.bin"), 20);
+		Files.createSymbolicLink(new File(sub, "loop").toPath(), root.toPath());
+		String rootPath = root.getAbsolutePath();
+
+		FileProperties fp = folderSizes.withSize(connector, rootPath, connector.getInfo(rootPath, false), "test");
+		assertEquals(Long.valueOf(30), fp.getRawSize());
+	}
+
+	private static void write(File file, int size) throws Exception {
+		Files.write(file.toPath(), new byte[size]);
+	}
+}
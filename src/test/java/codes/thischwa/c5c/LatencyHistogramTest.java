@@ -0,0 +1,64 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() {
+		for(long micros : new long[] { 0, 1, 127, 128, 129, 1000, 123456, 98765432L }) {
+			int index = LatencyHistogram.indexOf(micros);
+			assertTrue(LatencyHistogram.lowestValueAt(index) <= micros);
+			assertTrue(LatencyHistogram.highestValueAt(index) >= micros);
+			assertEquals(index + 1, LatencyHistogram.indexOf(LatencyHistogram.highestValueAt(index) + 1));
+		}
+		// the small values are exact
+		assertEquals(127, LatencyHistogram.highestValueAt(LatencyHistogram.indexOf(127)));
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		// 1 to 10000 µs
+		for(int i = 1; i <= 10000; i++)
+			histogram.record(i * 1000L);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(10000, snapshot.getCount());
+		assertEquals(5000.5, snapshot.getMean(), 0.001);
+		assertEquals(5000, snapshot.getValueAtPercentile(50), 5000 / 64);
+		assertEquals(9900, snapshot.getValueAtPercentile(99), 9900 / 64);
+		assertEquals(9990, snapshot.getValueAtPercentile(99.9), 9990 / 64);
+		assertEquals(10000, snapshot.getMax(), 10000 / 64);
+		assertEquals(1000, snapshot.getCountAtOrBelow(1000), 1000 / 64);
+	}
+
+	@Test
+	public void testMinus() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random random = new Random(42);
+		for(int i = 0; i < 1000; i++)
+			histogram.record(random.nextInt(1000000));
+		LatencyHistogram.Snapshot older = histogram.snapshot();
+		for(int i = 0; i < 100; i++)
+			histogram.record(50000000L);
+		LatencyHistogram.Snapshot diff = histogram.snapshot().minus(older);
+		assertEquals(100, diff.getCount());
+		assertEquals(50000, diff.getValueAtPercentile(50), 50000 / 64);
+		assertEquals(50000.0, diff.getMean(), 0.001);
+		assertEquals(1100, histogram.getCount());
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.jetty.testing.HttpTester;
+import org.junit.Test;
+
+public class MetricsRequestTest extends GenericRequestTest {
+
+	@Override
+	protected void initTester() {
+		servletTester.setContextPath("/");
+		servletTester.addServlet(MetricsServlet.class, "/metrics");
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2F&mode=getfolder");
+		HttpTester response = new HttpTester();
+		response.parse(servletTester.getResponses(request.generate()));
+		assertEquals(200, response.getStatus());
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("codes.thischwa.c5c:type=Requests,context=\"/\",name=\"getfolder\"");
+		assertEquals(1L, server.getAttribute(name, "Count"));
+		assertEquals(0L, server.getAttribute(name, "ErrorCount"));
+		assertTrue((Double) server.getAttribute(name, "P99Millis") > 0);
+		name = new ObjectName("codes.thischwa.c5c:type=Connector,context=\"/\",name=\"getFolder\"");
+		assertTrue((Long) server.getAttribute(name, "Count") >= 1);
+
+		request = buildInitialRequest();
+		request.setURI("/metrics");
+		response = new HttpTester();
+		response.parse(servletTester.getResponses(request.generate()));
+		assertEquals(200, response.getStatus());
+		String content = response.getContent();
+		assertTrue(content.contains("c5c_requests_total{mode=\"getfolder\"} 1\n"));
+		assertTrue(content.contains("c5c_request_duration_seconds_count{mode=\"getfolder\"} 1\n"));
+		assertTrue(content.contains("c5c_request_duration_seconds_bucket{mode=\"getfolder\",le=\"+Inf\"} 1\n"));
+		assertTrue(content.contains("# TYPE c5c_connector_duration_seconds histogram\n"));
+		assertTrue(content.contains("c5c_connector_calls_total{method=\"getFolder\"}"));
+	}
+
+	@Test
+	public void testUnregister() throws Exception {
+		servletTester.stop();
+		ObjectName name = new ObjectName("codes.thischwa.c5c:type=Requests,context=\"/\",name=\"getfolder\"");
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+		servletTester.start();
+	}
+}
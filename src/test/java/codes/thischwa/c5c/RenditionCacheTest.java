@@ -0,0 +1,165 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Date;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codes.thischwa.c5c.GenericConnector.FileProperties;
+import codes.thischwa.c5c.GenericConnector.StreamContent;
+
+public class RenditionCacheTest {
+	
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+	
+	private Dimension dim = new Dimension(64, 64);
+	
+	private Date modified = new Date(1429912800000l);
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		RenditionCache cache = new RenditionCache(tempFolder.getRoot().toPath(), 1024);
+		FileProperties fp = new FileProperties("pic.png", false, 100, modified);
+		assertNull(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, dim));
+
+		StreamContent sc = cache.put(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, dim, buildContent(10));
+		assertEquals(10, sc.getSize());
+		IOUtils.closeQuietly(sc.getInputStream());
+
+		sc = cache.get(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, dim);
+		assertNotNull(sc);
+		assertEquals(10, IOUtils.toByteArray(sc.getInputStream()).length);
+		IOUtils.closeQuietly(sc.getInputStream());
+		
+		// other kind, dimension or source properties mustn't hit
+		assertNull(cache.get(FilemanagerAction.PREVIEW, "/files/pic.png", fp, dim));
+		assertNull(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, new Dimension(32, 32)));
+		assertNull(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic.png", new FileProperties("pic.png", false, 101, modified), dim));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		RenditionCache cache = new RenditionCache(tempFolder.getRoot().toPath(), 25);
+		FileProperties fp = new FileProperties("pic.png", false, 100, modified);
+		close(cache.put(FilemanagerAction.THUMBNAIL, "/files/pic01.png", fp, dim, buildContent(10)));
+		close(cache.put(FilemanagerAction.THUMBNAIL, "/files/pic02.png", fp, dim, buildContent(10)));
+		// touch the 1st one, so the 2nd one is the least recently used 
+		close(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic01.png", fp, dim));
+		close(cache.put(FilemanagerAction.THUMBNAIL, "/files/pic03.png", fp, dim, buildContent(10)));
+		
+		assertNotNull(close(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic01.png", fp, dim)));
+		assertNull(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic02.png", fp, dim));
+		assertNotNull(close(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic03.png", fp, dim)));
+		assertEquals(2, countRenditions());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		RenditionCache cache = new RenditionCache(tempFolder.getRoot().toPath(), 1024);
+		FileProperties fp = new FileProperties("pic.png", false, 100, modified);
+		close(cache.put(FilemanagerAction.THUMBNAIL, "/files/sub/pic.png", fp, dim, buildContent(10)));
+		close(cache.put(FilemanagerAction.THUMBNAIL, "/files/sub2/pic.png", fp, dim, buildContent(10)));
+		
+		cache.invalidate("/files/sub/");
+		assertNull(cache.get(FilemanagerAction.THUMBNAIL, "/files/sub/pic.png", fp, dim));
+		assertNotNull(close(cache.get(FilemanagerAction.THUMBNAIL, "/files/sub2/pic.png", fp, dim)));
+		assertEquals(1, countRenditions());
+	}
+
+	@Test
+	public void testRestore() throws Exception {
+		File root = tempFolder.getRoot();
+		FileProperties fp = new FileProperties("pic.png", false, 100, modified);
+		RenditionCache cache = new RenditionCache(root.toPath(), 1024);
+		close(cache.put(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, dim, buildContent(10)));
+		
+		cache = new RenditionCache(root.toPath(), 1024);
+		assertNotNull(close(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, dim)));
+	}
+
+	@Test
+	public void testInvalidateRestored() throws Exception {
+		File root = tempFolder.getRoot();
+		FileProperties fp = new FileProperties("pic.png", false, 100, modified);
+		RenditionCache cache = new RenditionCache(root.toPath(), 1024);
+		close(cache.put(FilemanagerAction.THUMBNAIL, "/files/sub/pic.png", fp, dim, buildContent(10)));
+		close(cache.put(FilemanagerAction.THUMBNAIL, "/files/sub2/pic.png", fp, dim, buildContent(10)));
+		
+		cache = new RenditionCache(root.toPath(), 1024);
+		cache.invalidate("/files/sub");
+		assertNull(cache.get(FilemanagerAction.THUMBNAIL, "/files/sub/pic.png", fp, dim));
+		assertNotNull(close(cache.get(FilemanagerAction.THUMBNAIL, "/files/sub2/pic.png", fp, dim)));
+		assertEquals(2, root.list().length);
+	}
+
+	@Test
+	public void testRestoreWithoutSidecar() throws Exception {
+		File root = tempFolder.getRoot();
+		FileProperties fp = new FileProperties("pic.png", false, 100, modified);
+		RenditionCache cache = new RenditionCache(root.toPath(), 1024);
+		close(cache.put(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, dim, buildContent(10)));
+		for(File file : root.listFiles()) {
+			if(file.getName().endsWith(RenditionCache.suffix_path))
+				assertTrue(file.delete());
+		}
+		
+		// a rendition, which couldn't be invalidated, is dropped
+		cache = new RenditionCache(root.toPath(), 1024);
+		assertNull(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, dim));
+		assertEquals(0, root.list().length);
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		RenditionCache cache = RenditionCache.disabled();
+		FileProperties fp = new FileProperties("pic.png", false, 100, modified);
+		StreamContent sc = buildContent(10);
+		assertSame(sc, cache.put(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, dim, sc));
+		assertNull(cache.get(FilemanagerAction.THUMBNAIL, "/files/pic.png", fp, dim));
+	}
+
+	@Test
+	public void testIsSameOrChild() {
+		assertTrue(RenditionCache.isSameOrChild("/files/sub", "/files/sub"));
+		assertTrue(RenditionCache.isSameOrChild("/files/sub/", "/files/sub/pic.png"));
+		assertFalse(RenditionCache.isSameOrChild("/files/sub", "/files/sub2/pic.png"));
+		assertFalse(RenditionCache.isSameOrChild("/files/sub", null));
+	}
+	
+	private int countRenditions() {
+		int count = 0;
+		for(String name : tempFolder.getRoot().list()) {
+			if(!name.endsWith(RenditionCache.suffix_path))
+				count++;
+		}
+		return count;
+	}
+
+	private StreamContent buildContent(int size) {
+		return new StreamContent(new ByteArrayInputStream(new byte[size]), size);
+	}
+	
+	private StreamContent close(StreamContent sc) {
+		if(sc != null)
+			IOUtils.closeQuietly(sc.getInputStream());
+		return sc;
+	}
+}
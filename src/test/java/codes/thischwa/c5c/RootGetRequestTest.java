@@ -12,6 +12,8 @@ package codes.thischwa.c5c;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+
 import org.eclipse.jetty.testing.HttpTester;
 import org.junit.Test;
 
@@ -26,7 +28,7 @@ public class RootGetRequestTest extends GenericRequestTest {
 	@Test
 	public void testGetInfoFile() throws Exception {
 		HttpTester request = buildInitialRequest(); 
-		request.setURI("/filemanager/connectors/java/filemanager.java?mode=getinfo&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png&time=244");
+		request.setURI("/filemanager/connectors/java/filemanager.java?mode=getinfo&getsize=true&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png&time=244");
 		String requestStr = request.generate();
 		
 		String responseStr = servletTester.getResponses(requestStr);
@@ -57,6 +59,22 @@ public class RootGetRequestTest extends GenericRequestTest {
 
 	@Test
 	public void testGetFolder() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2F&mode=getfolder&getsize=true&showThumbs=true&time=241");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(200, response.getStatus());
+		String actual = cleanResponse(response.getContent());
+		String expected = cleanResponse("{\"\\/filemanager\\/userfiles\\/pic01.png\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"png\",\"Filename\":\"pic01.png\",\"Path\":\"\\/filemanager\\/userfiles\\/pic01.png\",\"Preview\":\"\\/filemanager\\/connectors\\/java?mode=preview&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png\",\"Properties\":{\"Date Created\":null,\"Height\":70,\"Size\":2250,\"Width\":110},\"Protected\":0},\"\\/filemanager\\/userfiles\\/folder\\/\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"dir\",\"Filename\":\"folder\",\"Path\":\"\\/filemanager\\/userfiles\\/folder\\/\",\"Preview\":\"\\/filemanager\\/images\\/fileicons\\/_Open.png\",\"Properties\":{\"Date Created\":null,\"Height\":null,\"Size\":7164,\"Width\":null},\"Protected\":0}}");
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testGetFolderWithoutSize() throws Exception {
 		HttpTester request = buildInitialRequest();
 		request.setURI("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2F&mode=getfolder&showThumbs=true&time=241");
 		String requestStr = request.generate();
@@ -67,8 +85,99 @@ public class RootGetRequestTest extends GenericRequestTest {
 		
 		assertEquals(200, response.getStatus());
 		String actual = cleanResponse(response.getContent());
-		String expected = cleanResponse("{\"\\/filemanager\\/userfiles\\/pic01.png\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"png\",\"Filename\":\"pic01.png\",\"Path\":\"\\/filemanager\\/userfiles\\/pic01.png\",\"Preview\":\"\\/filemanager\\/connectors\\/java?mode=preview&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png\",\"Properties\":{\"Date Created\":null,\"Height\":70,\"Size\":2250,\"Width\":110},\"Protected\":0},\"\\/filemanager\\/userfiles\\/folder\\/\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"dir\",\"Filename\":\"folder\",\"Path\":\"\\/filemanager\\/userfiles\\/folder\\/\",\"Preview\":\"\\/filemanager\\/images\\/fileicons\\/_Open.png\",\"Properties\":{\"Date Created\":null,\"Height\":null,\"Size\":null,\"Width\":null},\"Protected\":0}}");
+		String expected = cleanResponse("{\"\\/filemanager\\/userfiles\\/pic01.png\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"png\",\"Filename\":\"pic01.png\",\"Path\":\"\\/filemanager\\/userfiles\\/pic01.png\",\"Preview\":\"\\/filemanager\\/connectors\\/java?mode=preview&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png\",\"Properties\":{\"Date Created\":null,\"Height\":null,\"Size\":2250,\"Width\":null},\"Protected\":0},\"\\/filemanager\\/userfiles\\/folder\\/\":{\"Capabilities\":[\"select\",\"delete\",\"rename\",\"download\",\"replace\"],\"Code\":0,\"Error\":\"\",\"File Type\":\"dir\",\"Filename\":\"folder\",\"Path\":\"\\/filemanager\\/userfiles\\/folder\\/\",\"Preview\":\"\\/filemanager\\/images\\/fileicons\\/_Open.png\",\"Properties\":{\"Date Created\":null,\"Height\":null,\"Size\":null,\"Width\":null},\"Protected\":0}}");
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void testGetDimensions() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?mode=getdimensions&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png&path=%2Ffilemanager%2Fuserfiles%2Ffolder%2F");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(200, response.getStatus());
+		String expected = "{\"Code\":0,\"Dimensions\":{\"\\/filemanager\\/userfiles\\/pic01.png\":{\"Height\":70,\"Width\":110},\"\\/filemanager\\/userfiles\\/folder\\/\":null},\"Error\":\"\"}";
+		assertEquals(expected, response.getContent());
+	}
+
+	@Test
+	public void testDownloadRange() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?mode=download&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png");
+		request.setHeader("Range", "bytes=0-9");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(206, response.getStatus());
+		assertEquals("bytes 0-9/2250", response.getHeader("Content-Range"));
+		assertEquals("10", response.getHeader("Content-Length"));
+	}
+
+	@Test
+	public void testDownloadRangeNotSatisfiable() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?mode=download&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png");
+		request.setHeader("Range", "bytes=5000-");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(416, response.getStatus());
+		assertEquals("bytes */2250", response.getHeader("Content-Range"));
+	}
+
+	@Test
+	public void testDownloadMultipleRanges() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?mode=download&path=%2Ffilemanager%2Fuserfiles%2Fpic01.png");
+		request.setHeader("Range", "bytes=0-9,100-109");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(206, response.getStatus());
+		assertTrue(response.getHeader("Content-Type").startsWith("multipart/byteranges; boundary="));
+		assertTrue(response.getContent().contains("Content-Range: bytes 100-109/2250"));
+	}
+
+	@Test
+	public void testCopyIntoItself() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?mode=copy&old=%2Ffilemanager%2Fuserfiles%2Ffolder%2F&new=%2Ffilemanager%2Fuserfiles%2Ffolder%2Fsub%2F");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(200, response.getStatus());
+		assertTrue(response.getContent().contains("\"Code\":-1"));
+		assertFalse(new File("src/test/resources/filemanager/userfiles/folder/sub/folder").exists());
+	}
+
+	@Test
+	public void testMoveIntoItself() throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI("/filemanager/connectors/java/filemanager.java?mode=move&old=%2Ffilemanager%2Fuserfiles%2Ffolder%2F&new=%2Ffilemanager%2Fuserfiles%2Ffolder%2F");
+		String requestStr = request.generate();
+		
+		String responseStr = servletTester.getResponses(requestStr);
+		HttpTester response = new HttpTester();
+		response.parse(responseStr);
+		
+		assertEquals(200, response.getStatus());
+		assertTrue(response.getContent().contains("\"Code\":-1"));
+		assertTrue(new File("src/test/resources/filemanager/userfiles/folder/sub/pic01.png").exists());
+	}
 }
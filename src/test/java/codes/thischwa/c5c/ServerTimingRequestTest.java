@@ -0,0 +1,65 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import org.eclipse.jetty.testing.HttpTester;
+import org.junit.After;
+import org.junit.Test;
+
+import codes.thischwa.c5c.requestcycle.ServerTiming;
+
+public class ServerTimingRequestTest extends GenericRequestTest {
+
+	private static final String property_enabled = "connector.serverTiming.enabled";
+
+	@Override
+	protected void initTester() {
+		servletTester.setContextPath("/");
+		PropertiesLoader.setProperty(property_enabled, "true");
+	}
+
+	@After
+	public void disableServerTiming() {
+		PropertiesLoader.setProperty(property_enabled, "false");
+	}
+
+	@Test
+	public void testGetFolder() throws Exception {
+		String header = sendRequest("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2F&mode=getfolder");
+		assertTrue(header.matches("([a-z]+;dur=\\d+\\.\\d{2};desc=\"[^\"]+\", )+total;dur=\\d+\\.\\d{2};desc=\"total\""));
+		assertTrue(header.startsWith("ctx;dur="));
+		assertTrue(header.contains("path;dur="));
+		assertTrue(header.contains("conn;dur="));
+		assertTrue(header.contains("sort;dur="));
+		assertTrue(header.contains("ser;dur="));
+	}
+
+	@Test
+	public void testThumbnail() throws Exception {
+		String header = sendRequest("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2Fpic01.png&mode=thumbnail");
+		assertTrue(header.contains("conn;dur="));
+		assertFalse(header.contains("ser;dur="));
+		assertTrue(header.contains("total;dur="));
+	}
+
+	private String sendRequest(String uri) throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI(uri);
+		HttpTester response = new HttpTester();
+		response.parse(servletTester.getResponses(request.generate()));
+		assertEquals(200, response.getStatus());
+		String header = response.getHeader(ServerTiming.header_name);
+		assertNotNull(header);
+		return header;
+	}
+}
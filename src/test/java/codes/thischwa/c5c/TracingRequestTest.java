@@ -0,0 +1,95 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.servlet.ServletContext;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.eclipse.jetty.testing.HttpTester;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TracingRequestTest extends GenericRequestTest {
+
+	private static final String[] eventNames = { "codes.thischwa.c5c.Request", "codes.thischwa.c5c.Phase",
+			"codes.thischwa.c5c.ConnectorCall", "codes.thischwa.c5c.Image", "codes.thischwa.c5c.ResponseWrite" };
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Override
+	protected void initTester() {
+		servletTester.setContextPath("/");
+		// an own temp directory, a thumbnail cached by a previous run wouldn't be built by the connector
+		servletTester.getContext().setAttribute(ServletContext.TEMPDIR, tempFolder.getRoot());
+	}
+
+	@Test
+	public void testEvents() throws Exception {
+		assertTrue(Tracing.isEnabled());
+		Path file = Files.createTempFile("c5c", ".jfr");
+		try (Recording recording = new Recording()) {
+			for(String name : eventNames)
+				recording.enable(name).withoutThreshold();
+			recording.start();
+			sendRequest("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2F&mode=getfolder");
+			sendRequest("/filemanager/connectors/java/filemanager.java?path=%2Ffilemanager%2Fuserfiles%2Fpic01.png&mode=thumbnail");
+			recording.stop();
+			recording.dump(file);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			Set<String> found = new HashSet<>();
+			for(RecordedEvent event : events) {
+				String name = event.getEventType().getName();
+				String key = name + "|" + event.getString("name");
+				found.add(key);
+				if(name.equals("codes.thischwa.c5c.Request"))
+					assertTrue(event.getString("mode").equals("getfolder") || event.getString("mode").equals("thumbnail"));
+				if(key.equals("codes.thischwa.c5c.ConnectorCall|getFolder"))
+					assertEquals("getfolder", event.getString("mode"));
+				if(name.equals("codes.thischwa.c5c.ResponseWrite"))
+					assertTrue(event.getLong("bytes") > 0);
+			}
+			assertTrue(found.contains("codes.thischwa.c5c.Request|GET"));
+			assertTrue(found.contains("codes.thischwa.c5c.Phase|beginRequest"));
+			assertTrue(found.contains("codes.thischwa.c5c.Phase|config"));
+			assertTrue(found.contains("codes.thischwa.c5c.Phase|backendPath"));
+			assertTrue(found.contains("codes.thischwa.c5c.Phase|dispatch"));
+			assertTrue(found.contains("codes.thischwa.c5c.Phase|write"));
+			assertTrue(found.contains("codes.thischwa.c5c.ConnectorCall|getFolder"));
+			assertTrue(found.contains("codes.thischwa.c5c.ConnectorCall|buildThumbnail"));
+			assertTrue(found.contains("codes.thischwa.c5c.Image|resize"));
+			assertTrue(found.contains("codes.thischwa.c5c.ResponseWrite|FolderInfo"));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private void sendRequest(String uri) throws Exception {
+		HttpTester request = buildInitialRequest();
+		request.setURI(uri);
+		HttpTester response = new HttpTester();
+		response.parse(servletTester.getResponses(request.generate()));
+		assertEquals(200, response.getStatus());
+	}
+}
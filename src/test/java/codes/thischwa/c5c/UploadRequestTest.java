@@ -0,0 +1,375 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.Part;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jetty.io.ByteArrayBuffer;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.testing.HttpTester;
+import org.junit.After;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class UploadRequestTest extends GenericRequestTest {
+
+	private static final String boundary = "----c5c-test-boundary";
+
+	private static final String connectorUri = "/filemanager/connectors/java/filemanager.java";
+
+	private static final String uploadUrlPath = "/filemanager/userfiles/upload/";
+
+	/** The header, which tells the {@link HidePartSizeFilter} to hide the size of the parts. */
+	private static final String header_hide_size = "X-Hide-Part-Size";
+
+	private final Path uploadFolder = Paths.get("src/test/resources/filemanager/userfiles/upload");
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Override
+	protected void initTester() {
+		servletTester.setContextPath("/");
+		// the servlet tester doesn't scan the annotation @MultipartConfig
+		ServletHolder holder = servletTester.getContext().getServletHandler().getServlets()[0];
+		holder.getRegistration().setMultipartConfig(new MultipartConfigElement(System.getProperty("java.io.tmpdir")));
+		servletTester.addFilter(HidePartSizeFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST));
+		try {
+			Files.createDirectories(uploadFolder);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@After
+	public void cleanUp() {
+		FileUtils.deleteQuietly(uploadFolder.toFile());
+	}
+
+	@Test
+	public void testUploadImage() throws Exception {
+		byte[] image = Files.readAllBytes(Paths.get("src/test/resources/filemanager/userfiles/pic01.png"));
+		Multipart body = new Multipart().addField("mode", "add").addField("currentpath", uploadUrlPath).addFile("newfile", "pic.png", image);
+		JsonNode resp = readTextarea(post(connectorUri, body, false));
+		assertEquals(0, resp.get("Code").asInt());
+		assertEquals("pic.png", resp.get("Name").asText());
+		assertEquals(uploadUrlPath, resp.get("Path").asText());
+		assertArrayEquals(image, Files.readAllBytes(uploadFolder.resolve("pic.png")));
+	}
+
+	@Test
+	public void testUploadImageWithExif() throws Exception {
+		byte[] image = Files.readAllBytes(Paths.get("src/test/resources/exif.jpg"));
+		Multipart body = new Multipart().addField("currentpath", uploadUrlPath).addFile("newfile", "exif.jpg", image);
+		JsonNode resp = readTextarea(post(connectorUri + "?mode=add", body, false));
+		assertEquals(0, resp.get("Code").asInt());
+		byte[] stored = Files.readAllBytes(uploadFolder.resolve("exif.jpg"));
+		assertTrue(stored.length > 0);
+		assertFalse(new String(stored, StandardCharsets.ISO_8859_1).contains("Exif"));
+	}
+
+	@Test
+	public void testUploadFakedImage() throws Exception {
+		Multipart body = new Multipart().addField("currentpath", uploadUrlPath).addFile("newfile", "fake.png",
+				"just some text".getBytes(StandardCharsets.UTF_8));
+		JsonNode resp = readTextarea(post(connectorUri + "?mode=add", body, false));
+		assertEquals(-1, resp.get("Code").asInt());
+		assertEquals(0, uploadFolder.toFile().list().length);
+		assertFalse(hasTempFile("fake-"));
+	}
+
+	@Test
+	public void testUploadOversized() throws Exception {
+		// the content length is within the tolerated overhead, so the early check of ConnectorServlet doesn't reject it
+		byte[] content = new byte[16 * 1024 * 1024 + 16];
+		Multipart body = new Multipart().addField("currentpath", uploadUrlPath).addFile("newfile", "big.bin", content);
+		JsonNode resp = readTextarea(post(connectorUri + "?mode=add", body, true));
+		assertEquals(-1, resp.get("Code").asInt());
+		// the message of the max. upload size
+		assertTrue(resp.get("Error").asText().contains("16"));
+		assertEquals(0, uploadFolder.toFile().list().length);
+		assertFalse(hasTempFile("big-"));
+	}
+
+	@Test
+	public void testUploadNameCollision() throws Exception {
+		for(int i = 0; i < 3; i++) {
+			Multipart body = new Multipart().addField("currentpath", uploadUrlPath).addFile("newfile", "file.txt",
+					String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+			JsonNode resp = readTextarea(post(connectorUri + "?mode=add", body, false));
+			assertEquals(0, resp.get("Code").asInt());
+		}
+		// the response contains the original name, so the stored files are checked
+		assertEquals(3, uploadFolder.toFile().list().length);
+		assertEquals("0", new String(Files.readAllBytes(uploadFolder.resolve("file.txt")), StandardCharsets.UTF_8));
+		assertEquals("1", new String(Files.readAllBytes(uploadFolder.resolve("file_1.txt")), StandardCharsets.UTF_8));
+		assertEquals("2", new String(Files.readAllBytes(uploadFolder.resolve("file_2.txt")), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testBatchUpload() throws Exception {
+		Files.write(uploadFolder.resolve("file.txt"), "existing".getBytes(StandardCharsets.UTF_8));
+		byte[] image = Files.readAllBytes(Paths.get("src/test/resources/filemanager/userfiles/pic01.png"));
+		Multipart body = new Multipart().addField("currentpath", uploadUrlPath).addFile("newfile", "pic.png", image)
+				.addFile("newfile", "file.txt", "new".getBytes(StandardCharsets.UTF_8))
+				.addFile("newfile", "fake.png", "just some text".getBytes(StandardCharsets.UTF_8));
+		JsonNode resp = mapper.readTree(post(connectorUri + "?mode=addbatch", body, false));
+		assertEquals(0, resp.get("Code").asInt());
+		JsonNode files = resp.get("Files");
+		assertEquals(3, files.size());
+		assertEquals("pic.png", files.get(0).get("Name").asText());
+		assertEquals(0, files.get(0).get("Code").asInt());
+		assertEquals("file_1.txt", files.get(1).get("Name").asText());
+		assertEquals(0, files.get(1).get("Code").asInt());
+		assertEquals("fake.png", files.get(2).get("Original").asText());
+		assertEquals(-1, files.get(2).get("Code").asInt());
+
+		assertArrayEquals(image, Files.readAllBytes(uploadFolder.resolve("pic.png")));
+		assertEquals("new", new String(Files.readAllBytes(uploadFolder.resolve("file_1.txt")), StandardCharsets.UTF_8));
+		assertFalse(Files.exists(uploadFolder.resolve("fake.png")));
+	}
+
+	@Test
+	public void testChunkedUpload() throws Exception {
+		Files.write(uploadFolder.resolve("pic.png"), "existing".getBytes(StandardCharsets.UTF_8));
+		byte[] image = Files.readAllBytes(Paths.get("src/test/resources/filemanager/userfiles/pic01.png"));
+		JsonNode resp = mapper.readTree(post(String.format("%s?mode=uploadinit&currentpath=%s&name=pic.png&size=%d", connectorUri,
+				encode(uploadUrlPath), image.length), new byte[0], null));
+		assertEquals(0, resp.get("Code").asInt());
+		String id = resp.get("Id").asText();
+
+		// the chunks are sent out of order
+		int half = image.length / 2;
+		byte[] second = new byte[image.length - half];
+		System.arraycopy(image, half, second, 0, second.length);
+		byte[] first = new byte[half];
+		System.arraycopy(image, 0, first, 0, half);
+		resp = mapper.readTree(post(String.format("%s?mode=uploadchunk&id=%s&offset=%d", connectorUri, id, half), second,
+				"application/octet-stream"));
+		assertEquals(0, resp.get("Code").asInt());
+		resp = mapper.readTree(post(String.format("%s?mode=uploadcommit&id=%s", connectorUri, id), new byte[0], null));
+		assertEquals(-1, resp.get("Code").asInt());
+		resp = mapper.readTree(post(String.format("%s?mode=uploadchunk&id=%s&offset=0", connectorUri, id), first,
+				"application/octet-stream"));
+		assertEquals(0, resp.get("Code").asInt());
+
+		resp = mapper.readTree(post(String.format("%s?mode=uploadcommit&id=%s", connectorUri, id), new byte[0], null));
+		assertEquals(0, resp.get("Code").asInt());
+		assertEquals("pic_1.png", resp.get("Name").asText());
+		assertArrayEquals(image, Files.readAllBytes(uploadFolder.resolve("pic_1.png")));
+	}
+
+	private String post(String uri, Multipart body, boolean hidePartSize) throws Exception {
+		byte[] content = body.toByteArray();
+		StringBuilder head = new StringBuilder();
+		head.append("POST ").append(uri).append(" HTTP/1.0\r\n");
+		head.append("Host: localhost\r\n");
+		head.append("Content-Type: multipart/form-data; boundary=").append(boundary).append("\r\n");
+		if(hidePartSize)
+			head.append(header_hide_size).append(": true\r\n");
+		head.append("Content-Length: ").append(content.length).append("\r\n\r\n");
+		return send(head.toString(), content);
+	}
+
+	private String post(String uri, byte[] content, String contentType) throws Exception {
+		StringBuilder head = new StringBuilder();
+		head.append("POST ").append(uri).append(" HTTP/1.0\r\n");
+		head.append("Host: localhost\r\n");
+		if(contentType != null)
+			head.append("Content-Type: ").append(contentType).append("\r\n");
+		head.append("Content-Length: ").append(content.length).append("\r\n\r\n");
+		return send(head.toString(), content);
+	}
+
+	private String send(String head, byte[] content) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(head.length() + content.length);
+		out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+		out.write(content);
+		ByteArrayBuffer responseBuffer = servletTester.getResponses(new ByteArrayBuffer(out.toByteArray()));
+		HttpTester response = new HttpTester(PropertiesLoader.getDefaultEncoding());
+		response.parse(new String(responseBuffer.asArray(), StandardCharsets.ISO_8859_1));
+		assertEquals(200, response.getStatus());
+		return response.getContent();
+	}
+
+	private JsonNode readTextarea(String content) throws IOException {
+		assertTrue(content.startsWith("<textarea>") && content.endsWith("</textarea>"));
+		return mapper.readTree(content.substring("<textarea>".length(), content.length() - "</textarea>".length()));
+	}
+
+	private static String encode(String value) throws IOException {
+		return java.net.URLEncoder.encode(value, "UTF-8");
+	}
+
+	private static boolean hasTempFile(String prefix) {
+		String[] names = new File(System.getProperty("java.io.tmpdir")).list();
+		for(String name : names) {
+			if(name.startsWith(prefix))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Builds the body of a multipart request.
+	 */
+	private static class Multipart {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		Multipart addField(String name, String value) throws IOException {
+			writeHead(String.format("Content-Disposition: form-data; name=\"%s\"\r\n", name));
+			out.write(value.getBytes(StandardCharsets.UTF_8));
+			out.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+			return this;
+		}
+
+		Multipart addFile(String name, String fileName, byte[] content) throws IOException {
+			writeHead(String.format("Content-Disposition: form-data; name=\"%s\"; filename=\"%s\"\r\n"
+					+ "Content-Type: application/octet-stream\r\n", name, fileName));
+			out.write(content);
+			out.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+			return this;
+		}
+
+		byte[] toByteArray() throws IOException {
+			out.write(String.format("--%s--\r\n", boundary).getBytes(StandardCharsets.ISO_8859_1));
+			return out.toByteArray();
+		}
+
+		private void writeHead(String headers) throws IOException {
+			out.write(String.format("--%s\r\n%s\r\n", boundary, headers).getBytes(StandardCharsets.ISO_8859_1));
+		}
+	}
+
+	/**
+	 * Hides the size of the parts, if the request has the header {@link UploadRequestTest#header_hide_size}, like containers whose size
+	 * of a part isn't reliable. So the limit is just enforced while the upload is read.
+	 */
+	public static class HidePartSizeFilter implements Filter {
+
+		@Override
+		public void init(FilterConfig filterConfig) {
+		}
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+			HttpServletRequest req = (HttpServletRequest) request;
+			if(req.getHeader(header_hide_size) == null) {
+				chain.doFilter(request, response);
+				return;
+			}
+			chain.doFilter(new HttpServletRequestWrapper(req) {
+				@Override
+				public Part getPart(String name) throws IOException, ServletException {
+					Part part = super.getPart(name);
+					return (part == null) ? null : new SizelessPart(part);
+				}
+
+				@Override
+				public Collection<Part> getParts() throws IOException, ServletException {
+					List<Part> parts = new ArrayList<>();
+					for(Part part : super.getParts())
+						parts.add(new SizelessPart(part));
+					return parts;
+				}
+			}, response);
+		}
+
+		@Override
+		public void destroy() {
+		}
+	}
+
+	private static class SizelessPart implements Part {
+		private final Part part;
+
+		SizelessPart(Part part) {
+			this.part = part;
+		}
+
+		@Override
+		public long getSize() {
+			return -1;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			return part.getInputStream();
+		}
+
+		@Override
+		public String getContentType() {
+			return part.getContentType();
+		}
+
+		@Override
+		public String getName() {
+			return part.getName();
+		}
+
+		// part of Servlet 3.1, so it can't be delegated
+		public String getSubmittedFileName() {
+			return null;
+		}
+
+		@Override
+		public void write(String fileName) throws IOException {
+			part.write(fileName);
+		}
+
+		@Override
+		public void delete() throws IOException {
+			part.delete();
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return part.getHeader(name);
+		}
+
+		@Override
+		public Collection<String> getHeaders(String name) {
+			return part.getHeaders(name);
+		}
+
+		@Override
+		public Collection<String> getHeaderNames() {
+			return part.getHeaderNames();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codes.thischwa.c5c.impl.LocalConnector;
+import codes.thischwa.c5c.requestcycle.response.mode.ZipDownload;
+
+public class ZipEntriesTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	/** Doesn't exclude anything, so it works without a request. */
+	private Connector connector = new LocalConnector() {
+		@Override
+		protected boolean checkFilename(String name) {
+			return true;
+		}
+
+		@Override
+		protected boolean checkFolderName(String name) {
+			return true;
+		}
+	};
+
+	@Test
+	public void testSymlinkCycle() throws Exception {
+		File root = tempFolder.newFolder("root");
+		Files.write(new File(root, "a.txt").toPath(), new byte[10]);
+		File sub = new File(root, "sub");
+		assertTrue(sub.mkdirs());
+		Files.write(new File(sub, "b.txt").toPath(), new byte[20]);
+		Files.createSymbolicLink(new File(sub, "loop").toPath(), root.toPath());
+
+		ZipEntries entries = new ZipEntries(connector, FolderCache.disabled(), "test");
+		entries.add(root.getAbsolutePath() + "/");
+		// root/, a.txt, sub/, b.txt and the linked folder without its content
+		int count = 0;
+		for(ZipDownload.Entry entry = entries.next(); entry != null; entry = entries.next()) {
+			count++;
+			assertTrue("The walk doesn't end.", count <= 5);
+		}
+		assertEquals(5, count);
+	}
+}
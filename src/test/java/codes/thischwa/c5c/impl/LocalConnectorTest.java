@@ -0,0 +1,168 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codes.thischwa.c5c.FilemanagerAction;
+import codes.thischwa.c5c.exception.C5CException;
+
+public class LocalConnectorTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private LocalConnector connector = new LocalConnector();
+
+	@Test
+	public void testReserveName() throws Exception {
+		String dir = tempFolder.getRoot().getAbsolutePath();
+		assertEquals("logo.png", connector.reserveName(dir, "logo.png"));
+		assertTrue(new File(tempFolder.getRoot(), "logo.png").exists());
+		assertEquals("logo_1.png", connector.reserveName(dir, "logo.png"));
+		assertEquals("logo_2.png", connector.reserveName(dir, "logo.png"));
+
+		// a name reserved outside of the connector is respected
+		tempFolder.newFile("logo_3.png");
+		assertEquals("logo_4.png", connector.reserveName(dir, "logo.png"));
+	}
+
+	@Test
+	public void testReleaseName() throws Exception {
+		String dir = tempFolder.getRoot().getAbsolutePath();
+		String name = connector.reserveName(dir, "file.txt");
+		connector.releaseName(dir, name);
+		assertFalse(new File(tempFolder.getRoot(), name).exists());
+		assertEquals("file.txt", connector.reserveName(dir, "file.txt"));
+	}
+
+	@Test
+	public void testReserveNames() throws Exception {
+		String dir = tempFolder.getRoot().getAbsolutePath();
+		tempFolder.newFile("a.txt");
+		List<String> names = connector.reserveNames(dir, Arrays.asList("a.txt", "b.txt", "a.txt", "b.txt"));
+		assertEquals(Arrays.asList("a_1.txt", "b.txt", "a_2.txt", "b_1.txt"), names);
+		assertEquals(5, tempFolder.getRoot().list().length);
+	}
+
+	@Test
+	public void testReserveNameConcurrently() throws Exception {
+		final String dir = tempFolder.getRoot().getAbsolutePath();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for(int i = 0; i < 50; i++) {
+				futures.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return connector.reserveName(dir, "doc.pdf");
+					}
+				}));
+			}
+			Set<String> names = new HashSet<>();
+			for(Future<String> future : futures) {
+				assertTrue(names.add(future.get()));
+			}
+			assertEquals(50, tempFolder.getRoot().list().length);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testCopyDirectory() throws Exception {
+		File src = tempFolder.newFolder("src");
+		File target = tempFolder.newFolder("target");
+		for(int i = 0; i < 3; i++) {
+			File sub = new File(src, "sub" + i + "/deep");
+			assertTrue(sub.mkdirs());
+			Files.write(new File(sub, "file.txt").toPath(), ("content" + i).getBytes(StandardCharsets.UTF_8));
+		}
+		Files.write(new File(src, "root.txt").toPath(), "root".getBytes(StandardCharsets.UTF_8));
+
+		assertTrue(connector.copy(src.getAbsolutePath(), target.getAbsolutePath()));
+		File copy = new File(target, "src");
+		assertEquals("root", new String(Files.readAllBytes(new File(copy, "root.txt").toPath()), StandardCharsets.UTF_8));
+		for(int i = 0; i < 3; i++) {
+			File file = new File(copy, "sub" + i + "/deep/file.txt");
+			assertEquals("content" + i, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		}
+		assertTrue(new File(src, "root.txt").exists());
+	}
+
+	@Test
+	public void testMove() throws Exception {
+		File src = tempFolder.newFolder("src");
+		File target = tempFolder.newFolder("target");
+		File file = new File(src, "file.txt");
+		Files.write(file.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+
+		assertFalse(connector.move(file.getAbsolutePath(), target.getAbsolutePath()));
+		assertFalse(file.exists());
+		assertTrue(new File(target, "file.txt").exists());
+
+		assertTrue(connector.move(src.getAbsolutePath(), target.getAbsolutePath()));
+		assertFalse(src.exists());
+		assertTrue(new File(target, "src").isDirectory());
+	}
+
+	@Test
+	public void testMoveKeepsBothTreesIfTheSourceCantBeRemoved() throws Exception {
+		File src = tempFolder.newFolder("src");
+		File target = tempFolder.newFolder("target");
+		Files.write(new File(src, "a.txt").toPath(), "a".getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(src, "b.txt").toPath(), "b".getBytes(StandardCharsets.UTF_8));
+
+		// simulates a move to another file system, where the source is removed partially only
+		LocalConnector failingConnector = new LocalConnector() {
+			@Override
+			void renamePath(Path src, Path dest) throws IOException {
+				throw new DirectoryNotEmptyException(src.toString());
+			}
+
+			@Override
+			void deleteMovedSource(Path src) throws IOException {
+				Files.delete(src.resolve("a.txt"));
+				throw new IOException("b.txt is locked");
+			}
+		};
+		try {
+			failingConnector.move(src.getAbsolutePath(), target.getAbsolutePath());
+			fail("The partial move should be reported.");
+		} catch (C5CException e) {
+			assertEquals(FilemanagerAction.MOVE, e.getMode());
+		}
+		File copy = new File(target, "src");
+		assertEquals("a", new String(Files.readAllBytes(new File(copy, "a.txt").toPath()), StandardCharsets.UTF_8));
+		assertEquals("b", new String(Files.readAllBytes(new File(copy, "b.txt").toPath()), StandardCharsets.UTF_8));
+		assertTrue(new File(src, "b.txt").exists());
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TrashTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Trash trash;
+
+	@After
+	public void tearDown() {
+		if(trash != null)
+			trash.close();
+	}
+
+	@Test
+	public void testMoveToTrashAndRestore() throws Exception {
+		trash = new Trash(TimeUnit.HOURS.toMillis(1), 0, 1);
+		File folder = tempFolder.newFolder("folder");
+		assertTrue(new File(folder, "sub").mkdirs());
+		Path path = folder.toPath();
+
+		assertTrue(trash.moveToTrash(path));
+		assertFalse(Files.exists(path));
+		assertTrue(Files.isDirectory(tempFolder.getRoot().toPath().resolve(Trash.folderName)));
+
+		assertTrue(trash.restore(path));
+		assertTrue(new File(folder, "sub").isDirectory());
+		assertFalse(trash.restore(path));
+	}
+
+	@Test
+	public void testPurge() throws Exception {
+		trash = new Trash(0, 0, 2);
+		File folder = tempFolder.newFolder("folder");
+		for(int i = 0; i < 10; i++) {
+			File sub = new File(folder, "sub" + i);
+			assertTrue(sub.mkdirs());
+			assertTrue(new File(sub, "file.txt").createNewFile());
+		}
+		assertTrue(trash.moveToTrash(folder.toPath()));
+
+		File trashFolder = new File(tempFolder.getRoot(), Trash.folderName);
+		long timeout = System.currentTimeMillis() + 5000;
+		while(trashFolder.list().length > 0 && System.currentTimeMillis() < timeout)
+			Thread.sleep(20);
+		assertEquals(0, trashFolder.list().length);
+		assertFalse(trash.restore(folder.toPath()));
+	}
+
+	@Test
+	public void testGetDeletionTime() {
+		assertEquals(1234L, Trash.getDeletionTime(new File("1234_abc").toPath()));
+		assertEquals(Long.MAX_VALUE, Trash.getDeletionTime(new File("foreign").toPath()));
+	}
+}
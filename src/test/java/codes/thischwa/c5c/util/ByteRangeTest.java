@@ -0,0 +1,64 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ByteRangeTest {
+
+	@Test
+	public void testParseSingle() {
+		assertEquals(Arrays.asList(new ByteRange(0, 499)), ByteRange.parse("bytes=0-499", 1000));
+		assertEquals(Arrays.asList(new ByteRange(500, 999)), ByteRange.parse("bytes=500-", 1000));
+		assertEquals(Arrays.asList(new ByteRange(900, 999)), ByteRange.parse("bytes=-100", 1000));
+		assertEquals(Arrays.asList(new ByteRange(0, 999)), ByteRange.parse("bytes=-2000", 1000));
+		assertEquals(Arrays.asList(new ByteRange(990, 999)), ByteRange.parse("bytes=990-2000", 1000));
+	}
+
+	@Test
+	public void testParseMultiple() {
+		List<ByteRange> ranges = ByteRange.parse("bytes=500-599, 0-99", 1000);
+		assertEquals(Arrays.asList(new ByteRange(0, 99), new ByteRange(500, 599)), ranges);
+		
+		// overlapping and adjacent ranges are merged
+		ranges = ByteRange.parse("bytes=0-99,50-199,200-299,500-", 1000);
+		assertEquals(Arrays.asList(new ByteRange(0, 299), new ByteRange(500, 999)), ranges);
+	}
+
+	@Test
+	public void testParseNotSatisfiable() {
+		assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+		assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+		assertTrue(ByteRange.parse("bytes=0-10", 0).isEmpty());
+		assertEquals(Arrays.asList(new ByteRange(0, 9)), ByteRange.parse("bytes=2000-3000,0-9", 1000));
+	}
+
+	@Test
+	public void testParseInvalid() {
+		assertNull(ByteRange.parse(null, 1000));
+		assertNull(ByteRange.parse("items=0-10", 1000));
+		assertNull(ByteRange.parse("bytes=10-5", 1000));
+		assertNull(ByteRange.parse("bytes=abc", 1000));
+		assertNull(ByteRange.parse("bytes=1-a", 1000));
+		assertNull(ByteRange.parse("bytes=0-1,2-3,4-5,6-7,8-9,10-11,12-13,14-15,16-17,18-19,20-21,22-23,24-25,26-27,28-29,30-31,32-33", 1000));
+	}
+
+	@Test
+	public void testToContentRange() {
+		assertEquals("bytes 0-499/1234", new ByteRange(0, 499).toContentRange(1234));
+		assertEquals(500, new ByteRange(0, 499).getLength());
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class ImageUtilsTest {
+
+	private static final int maxBytes = 64 * 1024;
+
+	@Test
+	public void testReadDimensionJpeg() throws IOException {
+		assertEquals(new Dimension(120, 80), ImageUtils.readDimension(buildImage("jpg", 120, 80), maxBytes));
+	}
+
+	@Test
+	public void testReadDimensionJpegWithExif() throws IOException {
+		Dimension expected;
+		try (InputStream in = ImageUtilsTest.class.getResourceAsStream("/exif.jpg")) {
+			BufferedImage img = ImageIO.read(in);
+			expected = new Dimension(img.getWidth(), img.getHeight());
+		}
+		try (InputStream in = ImageUtilsTest.class.getResourceAsStream("/exif.jpg")) {
+			assertEquals(expected, ImageUtils.readDimension(in, maxBytes));
+		}
+	}
+
+	@Test
+	public void testReadDimensionPng() throws IOException {
+		assertEquals(new Dimension(33, 701), ImageUtils.readDimension(buildImage("png", 33, 701), maxBytes));
+	}
+
+	@Test
+	public void testReadDimensionGif() throws IOException {
+		assertEquals(new Dimension(300, 2), ImageUtils.readDimension(buildImage("gif", 300, 2), maxBytes));
+	}
+
+	@Test
+	public void testReadDimensionUnsupported() throws IOException {
+		assertNull(ImageUtils.readDimension(buildImage("bmp", 10, 10), maxBytes));
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadDimensionLimit() throws IOException {
+		ImageUtils.readDimension(buildImage("jpg", 120, 80), 10);
+	}
+
+	private static InputStream buildImage(String format, int width, int height) throws IOException {
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(img, format, out);
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * C5Connector.Java - The Java backend for the filemanager of corefive.
+ * It's a bridge between the filemanager and a storage backend and 
+ * works like a transparent VFS or proxy.
+ * Copyright (C) Thilo Schwarz
+ * 
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package codes.thischwa.c5c.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class SizeLimitInputStreamTest {
+
+	@Test
+	public void testWithinLimit() throws IOException {
+		SizeLimitInputStream in = new SizeLimitInputStream(new ByteArrayInputStream(new byte[100]), 100);
+		assertEquals(100, IOUtils.toByteArray(in).length);
+		assertEquals(100, in.getByteCount());
+	}
+
+	@Test
+	public void testLimitExceeded() throws IOException {
+		CountingSource source = new CountingSource(10000);
+		SizeLimitInputStream in = new SizeLimitInputStream(source, 100);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			IOUtils.copy(in, out, 64);
+			fail("SizeLimitExceededException expected");
+		} catch (SizeLimitInputStream.SizeLimitExceededException e) {
+			// expected
+		}
+		// the reading is aborted with the first buffer crossing the limit
+		assertEquals(128, source.read);
+		assertTrue(out.size() <= 100);
+	}
+
+	@Test
+	public void testSingleByteRead() throws IOException {
+		SizeLimitInputStream in = new SizeLimitInputStream(new ByteArrayInputStream(new byte[3]), 2);
+		in.read();
+		in.read();
+		try {
+			in.read();
+			fail("SizeLimitExceededException expected");
+		} catch (SizeLimitInputStream.SizeLimitExceededException e) {
+			// expected
+		}
+	}
+
+	private static class CountingSource extends InputStream {
+		private final int size;
+		private int read = 0;
+
+		CountingSource(int size) {
+			this.size = size;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if(read >= size)
+				return -1;
+			read++;
+			return 0;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(read >= size)
+				return -1;
+			int n = Math.min(len, size - read);
+			read += n;
+			return n;
+		}
+	}
+}
@@ -88,4 +88,11 @@ public class StringUtilsTest {
 
 		assertEquals("file.ext", StringUtils.getUniqueName(existingNames, "file.ext"));
 	}
+
+	@Test
+	public void testBuildSuffixedName() {
+		assertEquals("name_2.ext", StringUtils.buildSuffixedName("name.ext", 2));
+		assertEquals("file_10", StringUtils.buildSuffixedName("file", 10));
+		assertEquals("archive.tar_1.gz", StringUtils.buildSuffixedName("archive.tar.gz", 1));
+	}
 }